@@ -0,0 +1,124 @@
+-- Baseline: the schema as it was before migrations existed. Every statement is
+-- idempotent, so databases created from the old schema.sql are adopted as-is.
+
+-- 1. Users Table (Subclass of ChatParticipantBase)
+CREATE TABLE IF NOT EXISTS users (
+                       id SERIAL PRIMARY KEY,
+                       name VARCHAR(100) NOT NULL,
+                       persona TEXT,
+                       is_premium BOOLEAN DEFAULT FALSE
+);
+
+-- 2. Bots Table (Subclass of ChatParticipantBase)
+CREATE TABLE IF NOT EXISTS bots (
+                      id SERIAL PRIMARY KEY,
+                      name VARCHAR(100) NOT NULL,
+                      greeting TEXT NOT NULL,
+                      definition TEXT NOT NULL,
+                      token_limit INT DEFAULT 8000,
+                      created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                      CONSTRAINT chk_token_positive CHECK (token_limit > 0)
+);
+
+-- 3. Chat Sessions Table (Composition / Relationship)
+CREATE TABLE IF NOT EXISTS chat_sessions (
+                               id SERIAL PRIMARY KEY,
+                               bot_id INT NOT NULL,
+                               user_id INT NOT NULL,
+                               started_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                               total_tokens_used INT DEFAULT 0,
+
+                               CONSTRAINT fk_bot FOREIGN KEY (bot_id) REFERENCES bots(id) ON DELETE CASCADE,
+                               CONSTRAINT fk_user FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+-- 4. Token Usage Rollups (analytics)
+-- Pre-aggregated sessions/tokens per bot and user at minute ('m'), hour ('h') and day ('d')
+-- granularity, keyed by the bucket the session started in. Kept current by the statement-level
+-- triggers below, so every writer (single inserts, batches, COPY, token updates, cascade deletes)
+-- updates them in the same transaction.
+CREATE TABLE IF NOT EXISTS token_rollups (
+                               granularity CHAR(1) NOT NULL,
+                               bucket TIMESTAMP NOT NULL,
+                               bot_id INT NOT NULL,
+                               user_id INT NOT NULL,
+                               session_count BIGINT NOT NULL DEFAULT 0,
+                               tokens BIGINT NOT NULL DEFAULT 0,
+
+                               CONSTRAINT pk_token_rollups PRIMARY KEY (granularity, bucket, bot_id, user_id),
+                               CONSTRAINT chk_granularity CHECK (granularity IN ('m', 'h', 'd'))
+);
+CREATE INDEX IF NOT EXISTS idx_token_rollups_user ON token_rollups (granularity, user_id, bucket);
+CREATE INDEX IF NOT EXISTS idx_token_rollups_bot ON token_rollups (granularity, bot_id, bucket);
+
+-- Per-chunk minute aggregates written by parallel rebuild workers before they are merged.
+CREATE UNLOGGED TABLE IF NOT EXISTS token_rollups_rebuild (
+                                                bucket TIMESTAMP NOT NULL,
+                                                bot_id INT NOT NULL,
+                                                user_id INT NOT NULL,
+                                                session_count BIGINT NOT NULL,
+                                                tokens BIGINT NOT NULL
+);
+
+CREATE OR REPLACE FUNCTION token_rollups_apply() RETURNS trigger AS $$
+DECLARE
+    v_started TIMESTAMP[];
+    v_bots INT[];
+    v_users INT[];
+    v_sessions INT[];
+    v_tokens BIGINT[];
+BEGIN
+    -- Each row contributes +1 session / +tokens (new image) or -1 / -tokens (old image).
+    IF TG_OP = 'INSERT' THEN
+        SELECT array_agg(started_at), array_agg(bot_id), array_agg(user_id), array_agg(1),
+               array_agg(COALESCE(total_tokens_used, 0)::BIGINT)
+        INTO v_started, v_bots, v_users, v_sessions, v_tokens
+        FROM new_rows;
+    ELSIF TG_OP = 'DELETE' THEN
+        SELECT array_agg(started_at), array_agg(bot_id), array_agg(user_id), array_agg(-1),
+               array_agg(-COALESCE(total_tokens_used, 0)::BIGINT)
+        INTO v_started, v_bots, v_users, v_sessions, v_tokens
+        FROM old_rows;
+    ELSE
+        SELECT array_agg(d.started_at), array_agg(d.bot_id), array_agg(d.user_id), array_agg(d.sign),
+               array_agg(d.sign * COALESCE(d.total_tokens_used, 0)::BIGINT)
+        INTO v_started, v_bots, v_users, v_sessions, v_tokens
+        FROM (SELECT started_at, bot_id, user_id, total_tokens_used, 1 AS sign FROM new_rows
+              UNION ALL
+              SELECT started_at, bot_id, user_id, total_tokens_used, -1 FROM old_rows) d;
+    END IF;
+
+    INSERT INTO token_rollups AS r (granularity, bucket, bot_id, user_id, session_count, tokens)
+    SELECT g.code, date_trunc(g.unit, d.started_at), d.bot_id, d.user_id, SUM(d.sessions), SUM(d.tokens)
+    FROM unnest(v_started, v_bots, v_users, v_sessions, v_tokens) AS d (started_at, bot_id, user_id, sessions, tokens)
+             CROSS JOIN (VALUES ('m', 'minute'), ('h', 'hour'), ('d', 'day')) AS g (code, unit)
+    WHERE d.started_at IS NOT NULL
+    GROUP BY 1, 2, 3, 4
+    HAVING SUM(d.sessions) <> 0 OR SUM(d.tokens) <> 0
+    -- Key order, so concurrent statements lock shared rollup rows in the same order and cannot deadlock.
+    ORDER BY 1, 2, 3, 4
+    ON CONFLICT (granularity, bucket, bot_id, user_id) DO UPDATE
+        SET session_count = r.session_count + EXCLUDED.session_count,
+            tokens = r.tokens + EXCLUDED.tokens;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_token_rollups_insert ON chat_sessions;
+CREATE TRIGGER trg_token_rollups_insert AFTER INSERT ON chat_sessions
+    REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION token_rollups_apply();
+DROP TRIGGER IF EXISTS trg_token_rollups_update ON chat_sessions;
+CREATE TRIGGER trg_token_rollups_update AFTER UPDATE ON chat_sessions
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION token_rollups_apply();
+DROP TRIGGER IF EXISTS trg_token_rollups_delete ON chat_sessions;
+CREATE TRIGGER trg_token_rollups_delete AFTER DELETE ON chat_sessions
+    REFERENCING OLD TABLE AS old_rows FOR EACH STATEMENT EXECUTE FUNCTION token_rollups_apply();
+
+-- Databases that predate the rollup triggers start with empty rollups; seed them once.
+INSERT INTO token_rollups (granularity, bucket, bot_id, user_id, session_count, tokens)
+SELECT g.code, date_trunc(g.unit, s.started_at), s.bot_id, s.user_id, COUNT(*), SUM(COALESCE(s.total_tokens_used, 0))
+FROM chat_sessions s
+         CROSS JOIN (VALUES ('m', 'minute'), ('h', 'hour'), ('d', 'day')) AS g (code, unit)
+WHERE s.started_at IS NOT NULL
+  AND NOT EXISTS (SELECT 1 FROM token_rollups)
+GROUP BY 1, 2, 3, 4;
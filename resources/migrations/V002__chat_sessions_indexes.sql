@@ -0,0 +1,6 @@
+-- Foreign keys do not index the referencing side: without these, every per-bot or
+-- per-user lookup and every ON DELETE CASCADE from bots/users scans chat_sessions.
+CREATE INDEX IF NOT EXISTS idx_chat_sessions_bot_id ON chat_sessions (bot_id);
+CREATE INDEX IF NOT EXISTS idx_chat_sessions_user_id ON chat_sessions (user_id);
+-- Matches the (started_at, id) keyset used by getPageAfterStartedAt.
+CREATE INDEX IF NOT EXISTS idx_chat_sessions_started_at ON chat_sessions (started_at, id);
@@ -0,0 +1,108 @@
+-- Converts chat_sessions to monthly range partitions on started_at so that old
+-- sessions can be dropped a partition at a time (see PartitionMaintenance).
+--
+-- The partition key must be part of the primary key, so the key becomes
+-- (id, started_at); ids still come from the same sequence. Every partition
+-- also gets a unique index on id. PostgreSQL cannot enforce uniqueness across
+-- partitions without the partition key, so explicit ids (imports) are guarded
+-- in ChatSessionRepository. Lookups by id alone cannot prune partitions: each
+-- probes the id index of every partition, one per month of retained history.
+-- started_at becomes NOT NULL (existing NULLs are set to the migration time).
+-- Rows outside every monthly partition land in chat_sessions_default and are
+-- moved out when their month's partition is created.
+
+LOCK TABLE chat_sessions IN ACCESS EXCLUSIVE MODE;
+
+ALTER TABLE chat_sessions RENAME TO chat_sessions_unpartitioned;
+ALTER SEQUENCE chat_sessions_id_seq OWNED BY NONE;
+DROP INDEX IF EXISTS idx_chat_sessions_bot_id;
+DROP INDEX IF EXISTS idx_chat_sessions_user_id;
+DROP INDEX IF EXISTS idx_chat_sessions_started_at;
+
+CREATE TABLE chat_sessions (
+                               id INT NOT NULL DEFAULT nextval('chat_sessions_id_seq'),
+                               bot_id INT NOT NULL,
+                               user_id INT NOT NULL,
+                               started_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                               total_tokens_used INT DEFAULT 0,
+
+                               CONSTRAINT pk_chat_sessions PRIMARY KEY (id, started_at),
+                               CONSTRAINT fk_bot FOREIGN KEY (bot_id) REFERENCES bots(id) ON DELETE CASCADE,
+                               CONSTRAINT fk_user FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+) PARTITION BY RANGE (started_at);
+ALTER SEQUENCE chat_sessions_id_seq OWNED BY chat_sessions.id;
+
+CREATE TABLE chat_sessions_default PARTITION OF chat_sessions DEFAULT;
+CREATE UNIQUE INDEX chat_sessions_default_id_key ON chat_sessions_default (id);
+
+CREATE INDEX idx_chat_sessions_bot_id ON chat_sessions (bot_id);
+CREATE INDEX idx_chat_sessions_user_id ON chat_sessions (user_id);
+CREATE INDEX idx_chat_sessions_started_at ON chat_sessions (started_at, id);
+
+-- Creates the partition for the month containing p_month (named chat_sessions_pYYYYMM),
+-- first moving that month's rows out of the default partition. Returns false if it exists.
+CREATE OR REPLACE FUNCTION chat_sessions_create_partition(p_month DATE) RETURNS BOOLEAN AS $$
+DECLARE
+    v_from TIMESTAMP := date_trunc('month', p_month);
+    v_to TIMESTAMP := date_trunc('month', p_month) + INTERVAL '1 month';
+    v_name TEXT := 'chat_sessions_p' || to_char(p_month, 'YYYYMM');
+BEGIN
+    IF to_regclass(v_name) IS NOT NULL THEN
+        RETURN FALSE;
+    END IF;
+    EXECUTE format('CREATE TABLE %I (LIKE chat_sessions INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', v_name);
+    EXECUTE format('CREATE UNIQUE INDEX %I ON %I (id)', v_name || '_id_key', v_name);
+    -- Moving rows between partitions directly bypasses the parent's rollup triggers, as it should.
+    EXECUTE format('INSERT INTO %I SELECT * FROM chat_sessions_default WHERE started_at >= %L AND started_at < %L',
+                   v_name, v_from, v_to);
+    EXECUTE format('DELETE FROM chat_sessions_default WHERE started_at >= %L AND started_at < %L', v_from, v_to);
+    EXECUTE format('ALTER TABLE chat_sessions ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                   v_name, v_from, v_to);
+    RETURN TRUE;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Detaches and drops every monthly partition that ends on or before p_cutoff.
+-- Returns the number of partitions dropped. Rollups keep the dropped months.
+CREATE OR REPLACE FUNCTION chat_sessions_drop_partitions_before(p_cutoff DATE) RETURNS INT AS $$
+DECLARE
+    v_partition TEXT;
+    v_dropped INT := 0;
+BEGIN
+    FOR v_partition IN
+        SELECT c.relname
+        FROM pg_inherits i
+                 JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'chat_sessions'::regclass
+          AND c.relname ~ '^chat_sessions_p[0-9]{6}$'
+          AND to_date(substr(c.relname, 16), 'YYYYMM') + INTERVAL '1 month' <= p_cutoff
+        ORDER BY c.relname
+    LOOP
+        EXECUTE format('ALTER TABLE chat_sessions DETACH PARTITION %I', v_partition);
+        EXECUTE format('DROP TABLE %I', v_partition);
+        v_dropped := v_dropped + 1;
+    END LOOP;
+    RETURN v_dropped;
+END;
+$$ LANGUAGE plpgsql;
+
+-- One partition per month from the oldest session up to three months ahead.
+SELECT chat_sessions_create_partition(m::DATE)
+FROM generate_series(
+             date_trunc('month', COALESCE((SELECT MIN(started_at) FROM chat_sessions_unpartitioned), CURRENT_TIMESTAMP)),
+             date_trunc('month', CURRENT_TIMESTAMP) + INTERVAL '3 months',
+             INTERVAL '1 month') AS m;
+
+-- The rollups already count these rows, so copy them before the triggers exist.
+INSERT INTO chat_sessions (id, bot_id, user_id, started_at, total_tokens_used)
+SELECT id, bot_id, user_id, COALESCE(started_at, CURRENT_TIMESTAMP), total_tokens_used
+FROM chat_sessions_unpartitioned;
+
+DROP TABLE chat_sessions_unpartitioned;
+
+CREATE TRIGGER trg_token_rollups_insert AFTER INSERT ON chat_sessions
+    REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION token_rollups_apply();
+CREATE TRIGGER trg_token_rollups_update AFTER UPDATE ON chat_sessions
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION token_rollups_apply();
+CREATE TRIGGER trg_token_rollups_delete AFTER DELETE ON chat_sessions
+    REFERENCING OLD TABLE AS old_rows FOR EACH STATEMENT EXECUTE FUNCTION token_rollups_apply();
@@ -0,0 +1,14 @@
+-- Keyset listings (findPage) read "ORDER BY key, id LIMIT n" straight off these
+-- indexes, so a page costs n index entries however large the table is.
+CREATE INDEX IF NOT EXISTS idx_bots_name_lower ON bots (lower(name), id);
+CREATE INDEX IF NOT EXISTS idx_bots_token_limit ON bots (token_limit, id);
+CREATE INDEX IF NOT EXISTS idx_users_name_lower ON users (lower(name), id);
+-- No index on chat_sessions.total_tokens_used: it would stop the frequent token
+-- increments from being HOT updates, so sessions are not listed by tokens.
+
+-- Keyset comparisons skip NULL keys, so the sortable columns must never be NULL.
+UPDATE bots SET token_limit = 8000 WHERE token_limit IS NULL;
+ALTER TABLE bots ALTER COLUMN token_limit SET NOT NULL;
+-- total_tokens_used + n on a NULL row would stay NULL.
+UPDATE chat_sessions SET total_tokens_used = 0 WHERE total_tokens_used IS NULL;
+ALTER TABLE chat_sessions ALTER COLUMN total_tokens_used SET NOT NULL;
@@ -0,0 +1,15 @@
+-- Sample data for a fresh development database (after migrations have run).
+INSERT INTO users (name, persona, is_premium) VALUES
+                                                  ('Alice', 'Friendly girl trying to find her way home.', TRUE),
+                                                  ('White Rabbit', 'Anxious, always late, constantly checking the time.', FALSE);
+
+INSERT INTO bots (name, greeting, definition, token_limit) VALUES
+                                                               ('Wonderland',
+                                                                '*You know the beginning of this story, don''t you?*',
+                                                                'You are the Narrator of Wonderland. Your style is surreal, whimsical, and slightly unsettling. Describe the environment vividly using dream logic. You control NPCs like the Cheshire Cat and the Queen of Hearts. Never break character. Always offer the user a choice of where to go next.',
+                                                                16000),
+
+                                                               ('Test Bot',
+                                                                'Just pass by.',
+                                                                'You are a debug bot used for testing database connectivity. Ignore all user inputs and reply only with technical system status: "SYSTEM ONLINE: [Timestamp]". Do not engage in conversation.',
+                                                                8000);
@@ -0,0 +1,41 @@
+package analytics;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Bucket sizes kept in token_rollups, finest first. The code is the value of
+ * the granularity column.
+ */
+public enum Granularity {
+    MINUTE("m", ChronoUnit.MINUTES),
+    HOUR("h", ChronoUnit.HOURS),
+    DAY("d", ChronoUnit.DAYS);
+
+    private final String code;
+    private final ChronoUnit unit;
+
+    Granularity(String code, ChronoUnit unit) {
+        this.code = code;
+        this.unit = unit;
+    }
+
+    public String getCode() { return code; }
+
+    public long getMillis() { return unit.getDuration().toMillis(); }
+
+    /**
+     * Start of the bucket containing time.
+     */
+    public LocalDateTime floor(LocalDateTime time) {
+        return time.truncatedTo(unit);
+    }
+
+    /**
+     * Start of the first bucket that begins at or after time.
+     */
+    public LocalDateTime ceil(LocalDateTime time) {
+        LocalDateTime floor = floor(time);
+        return floor.equals(time) ? floor : floor.plus(1, unit);
+    }
+}
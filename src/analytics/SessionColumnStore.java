@@ -0,0 +1,633 @@
+package analytics;
+
+import model.ChatSession;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * All sessions in memory as parallel primitive columns (bot id, user id,
+ * started_at in epoch millis, tokens), 20 bytes a row instead of a
+ * ChatSession with a Date and two stub entities. Columns grow in chunks of
+ * CHUNK_SIZE rows, so growing never copies data. Aggregations run as
+ * fork/join tasks, one leaf per chunk, over primitive accumulators.
+ *
+ * The store loads through a cursor and then stays current by appending the
+ * sessions it has not seen yet (refresh()). Ids are handed out before their
+ * transactions commit, so a session can appear below the highest id already
+ * loaded; each refresh therefore re-reads the last lateIdWindow ids and skips
+ * the ones it has. Appends are single-writer; queries see every row published
+ * before they started. Token updates and deletions of loaded sessions, and
+ * sessions that commit later than the window allows, show up after reload();
+ * exact token totals are in token_rollups (TokenAnalytics).
+ */
+public class SessionColumnStore implements AutoCloseable {
+    static final int CHUNK_BITS = 16;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int ROW_BYTES = 4 + 4 + 8 + 4;
+    private static final int PUBLISH_ROWS = 4_096;
+    private static final int DEFAULT_LATE_ID_WINDOW = 10_000;
+
+    private static final int KEY_TOTAL = 0;
+    private static final int KEY_BOT = 1;
+    private static final int KEY_USER = 2;
+    private static final int KEY_BUCKET = 3;
+
+    public enum GroupBy { BOT, USER }
+
+    @FunctionalInterface
+    public interface Source {
+        // Sessions with id > afterId in id order; the stream is closed by the store.
+        Stream<ChatSession> open(int afterId) throws SQLException;
+    }
+
+    private final Source source;
+    private final ForkJoinPool pool;
+    private int lateIdWindow = DEFAULT_LATE_ID_WINDOW;
+    private volatile Columns columns = new Columns(DEFAULT_LATE_ID_WINDOW);
+    private volatile ScheduledExecutorService scheduler;
+
+    public SessionColumnStore(Source source) {
+        this(source, ForkJoinPool.commonPool());
+    }
+
+    public SessionColumnStore(Source source, ForkJoinPool pool) {
+        this.source = source;
+        this.pool = pool;
+    }
+
+    /**
+     * How many ids below the highest loaded one each refresh re-reads for
+     * sessions that committed late. Should cover the ids handed out while the
+     * slowest session insert is open. Takes effect now if nothing is loaded
+     * yet, otherwise at the next reload().
+     */
+    public synchronized void setLateIdWindow(int lateIdWindow) {
+        if (lateIdWindow <= 0) {
+            throw new IllegalArgumentException("Late id window must be positive.");
+        }
+        this.lateIdWindow = lateIdWindow;
+        if (columns.size == 0) {
+            columns = new Columns(lateIdWindow);
+        }
+    }
+
+    /**
+     * Appends the sessions added since the last refresh (on the first call,
+     * all of them). Returns the number of rows appended.
+     */
+    public synchronized int refresh() throws SQLException {
+        return load(columns);
+    }
+
+    /**
+     * Rebuilds the store from scratch, picking up token updates and deletions.
+     * Queries keep using the old columns until the new ones are complete.
+     */
+    public void reload() throws SQLException {
+        Columns fresh;
+        synchronized (this) {
+            fresh = new Columns(lateIdWindow);
+        }
+        load(fresh);
+        synchronized (this) {
+            load(fresh);
+            columns = fresh;
+        }
+    }
+
+    private int load(Columns target) throws SQLException {
+        int appended = 0;
+        try (Stream<ChatSession> rows = source.open(Math.max(0, target.lastId - target.window))) {
+            Iterator<ChatSession> it = rows.iterator();
+            while (it.hasNext()) {
+                ChatSession session = it.next();
+                if (target.isLoaded(session.getId())) {
+                    continue;
+                }
+                target.add(session.getId(), session.getBot().getId(), session.getUser().getId(),
+                        session.getStartedAt().getTime(), session.getTotalTokensUsed());
+                if (++appended % PUBLISH_ROWS == 0) {
+                    target.publish();
+                }
+            }
+        } finally {
+            target.publish();
+        }
+        return appended;
+    }
+
+    public int size() {
+        return columns.size;
+    }
+
+    public List<UsageTotal> topBots(Date from, Date to, int limit) {
+        return top(GroupBy.BOT, from, to, null, null, limit);
+    }
+
+    public List<UsageTotal> topUsers(Date from, Date to, int limit) {
+        return top(GroupBy.USER, from, to, null, null, limit);
+    }
+
+    /**
+     * Session count and token sum per bot or user, the limit largest by tokens
+     * first. botId and userId are optional filters.
+     */
+    public List<UsageTotal> top(GroupBy groupBy, Date from, Date to, Integer botId, Integer userId, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive.");
+        }
+        Query query = new Query(from, to, botId, userId, groupBy == GroupBy.BOT ? KEY_BOT : KEY_USER, 0);
+        GroupMap groups = pool.invoke(new GroupScan(query));
+        int[] slots = groups.topByTokens(limit);
+        List<UsageTotal> result = new ArrayList<>(slots.length);
+        for (int slot : slots) {
+            result.add(new UsageTotal((int) groups.keys[slot], null, null, groups.counts[slot], groups.sums[slot]));
+        }
+        return result;
+    }
+
+    public UsageTotal total(Date from, Date to, Integer botId, Integer userId) {
+        Query query = new Query(from, to, botId, userId, KEY_TOTAL, 0);
+        GroupMap groups = pool.invoke(new GroupScan(query));
+        int slot = groups.find(0);
+        int key = botId != null ? botId : userId != null ? userId : 0;
+        return new UsageTotal(key, null, null, slot < 0 ? 0 : groups.counts[slot], slot < 0 ? 0 : groups.sums[slot]);
+    }
+
+    /**
+     * One entry per non-empty bucket, oldest first. Buckets follow local time
+     * like the token_rollups buckets.
+     */
+    public List<UsageTotal> timeSeries(Granularity granularity, Date from, Date to, Integer botId, Integer userId) {
+        Query query = new Query(from, to, botId, userId, KEY_BUCKET, granularity.getMillis());
+        GroupMap groups = pool.invoke(new GroupScan(query));
+        int[] slots = groups.slotsByKey();
+        List<UsageTotal> result = new ArrayList<>(slots.length);
+        for (int slot : slots) {
+            long localMillis = groups.keys[slot] * query.bucketMillis;
+            LocalDateTime start = LocalDateTime.ofEpochSecond(Math.floorDiv(localMillis, 1000L), 0, ZoneOffset.UTC);
+            result.add(new UsageTotal(0, null, Timestamp.valueOf(start), groups.counts[slot], groups.sums[slot]));
+        }
+        return result;
+    }
+
+    /**
+     * Sessions per token range: entry i counts sessions with i * bucketWidth
+     * <= tokens < (i + 1) * bucketWidth; the last entry also takes everything
+     * above.
+     */
+    public long[] tokenHistogram(Date from, Date to, Integer botId, Integer userId, int bucketWidth, int bucketCount) {
+        if (bucketWidth <= 0 || bucketCount <= 0) {
+            throw new IllegalArgumentException("Bucket width and count must be positive.");
+        }
+        Query query = new Query(from, to, botId, userId, KEY_TOTAL, 0);
+        return pool.invoke(new HistogramScan(query, bucketWidth, bucketCount));
+    }
+
+    public long getMemoryBytes() {
+        return (long) columns.chunks.length * CHUNK_SIZE * ROW_BYTES;
+    }
+
+    /**
+     * Refreshes now, then every intervalMillis on a daemon thread until close().
+     */
+    public void start(long intervalMillis) throws SQLException {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Refresh interval must be positive.");
+        }
+        refresh();
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "session-column-store");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.scheduleWithFixedDelay(this::refreshQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        this.scheduler = executor;
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("[COLUMN STORE] Refresh failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        ScheduledExecutorService executor = scheduler;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public String toString() {
+        Columns current = columns;
+        return "sessions=" + current.size + ", chunks=" + current.chunks.length + ", bytes="
+                + (long) current.chunks.length * CHUNK_SIZE * ROW_BYTES + ", lastId=" + current.lastId;
+    }
+
+    private static final class Chunk {
+        final int[] bots = new int[CHUNK_SIZE];
+        final int[] users = new int[CHUNK_SIZE];
+        final long[] startedAt = new long[CHUNK_SIZE];
+        final int[] tokens = new int[CHUNK_SIZE];
+    }
+
+    /**
+     * Rows are written by one thread at a time and published by the volatile
+     * size write; a reader that reads size first, then chunks, sees every
+     * published row. recent has one bit per id in (lastId - window, lastId],
+     * at id % window, set if that id is loaded.
+     */
+    private static final class Columns {
+        volatile Chunk[] chunks = new Chunk[0];
+        volatile int size;
+        private int written;
+        int lastId;
+        final int window;
+        private final BitSet recent;
+
+        Columns(int window) {
+            this.window = window;
+            this.recent = new BitSet(window);
+        }
+
+        // Ids at or below the window were all loaded or given up on.
+        boolean isLoaded(int id) {
+            return id <= lastId && (id <= lastId - window || recent.get(id % window));
+        }
+
+        void add(int id, int botId, int userId, long startedAtMillis, int tokens) {
+            int chunkIndex = written >>> CHUNK_BITS;
+            Chunk[] current = chunks;
+            if (chunkIndex == current.length) {
+                current = Arrays.copyOf(current, chunkIndex + 1);
+                current[chunkIndex] = new Chunk();
+                chunks = current;
+            }
+            Chunk chunk = current[chunkIndex];
+            int i = written & CHUNK_MASK;
+            chunk.bots[i] = botId;
+            chunk.users[i] = userId;
+            chunk.startedAt[i] = startedAtMillis;
+            chunk.tokens[i] = tokens;
+            written++;
+            if (id > lastId) {
+                // The slots of the ids now sliding out of the window are reused by (lastId, id].
+                if ((long) id - lastId >= window) {
+                    recent.clear();
+                } else {
+                    for (int next = lastId + 1; next <= id; next++) {
+                        recent.clear(next % window);
+                    }
+                }
+                lastId = id;
+            }
+            if (id > lastId - window) {
+                recent.set(id % window);
+            }
+        }
+
+        void publish() {
+            size = written;
+        }
+    }
+
+    private static final class Query {
+        final long from;
+        final long to;
+        final boolean byBot;
+        final int botId;
+        final boolean byUser;
+        final int userId;
+        final int keyKind;
+        final long bucketMillis;
+        final TimeZone zone = TimeZone.getDefault();
+
+        Query(Date from, Date to, Integer botId, Integer userId, int keyKind, long bucketMillis) {
+            this.from = from == null ? Long.MIN_VALUE : from.getTime();
+            this.to = to == null ? Long.MAX_VALUE : to.getTime();
+            this.byBot = botId != null;
+            this.botId = botId == null ? 0 : botId;
+            this.byUser = userId != null;
+            this.userId = userId == null ? 0 : userId;
+            this.keyKind = keyKind;
+            this.bucketMillis = bucketMillis;
+        }
+
+        boolean matches(Chunk chunk, int i) {
+            long t = chunk.startedAt[i];
+            return t >= from && t < to
+                    && (!byBot || chunk.bots[i] == botId)
+                    && (!byUser || chunk.users[i] == userId);
+        }
+
+        long key(Chunk chunk, int i) {
+            switch (keyKind) {
+                case KEY_BOT:
+                    return chunk.bots[i];
+                case KEY_USER:
+                    return chunk.users[i];
+                case KEY_BUCKET: {
+                    long t = chunk.startedAt[i];
+                    return Math.floorDiv(t + zone.getOffset(t), bucketMillis);
+                }
+                default:
+                    return 0;
+            }
+        }
+    }
+
+    /**
+     * Splits a snapshot of the store by chunk; each leaf scans one chunk.
+     */
+    private abstract class Scan<R> extends RecursiveTask<R> {
+        private static final long serialVersionUID = 1L;
+
+        final Query query;
+        final Chunk[] chunks;
+        final int size;
+        final int lo;
+        final int hi;
+
+        Scan(Query query) {
+            this.query = query;
+            Columns current = columns;
+            this.size = current.size;
+            this.chunks = current.chunks;
+            this.lo = 0;
+            this.hi = (size + CHUNK_MASK) >>> CHUNK_BITS;
+        }
+
+        Scan(Scan<R> parent, int lo, int hi) {
+            this.query = parent.query;
+            this.chunks = parent.chunks;
+            this.size = parent.size;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected R compute() {
+            if (hi - lo <= 1) {
+                return lo == hi ? leaf(null, 0) : leaf(chunks[lo], Math.min(CHUNK_SIZE, size - (lo << CHUNK_BITS)));
+            }
+            int mid = (lo + hi) >>> 1;
+            Scan<R> left = child(lo, mid);
+            left.fork();
+            R right = child(mid, hi).compute();
+            return merge(left.join(), right);
+        }
+
+        abstract Scan<R> child(int lo, int hi);
+
+        abstract R leaf(Chunk chunk, int rows);
+
+        abstract R merge(R a, R b);
+    }
+
+    private final class GroupScan extends Scan<GroupMap> {
+        private static final long serialVersionUID = 1L;
+
+        GroupScan(Query query) {
+            super(query);
+        }
+
+        private GroupScan(GroupScan parent, int lo, int hi) {
+            super(parent, lo, hi);
+        }
+
+        @Override
+        Scan<GroupMap> child(int lo, int hi) {
+            return new GroupScan(this, lo, hi);
+        }
+
+        @Override
+        GroupMap leaf(Chunk chunk, int rows) {
+            GroupMap map = new GroupMap();
+            for (int i = 0; i < rows; i++) {
+                if (query.matches(chunk, i)) {
+                    map.add(query.key(chunk, i), 1, chunk.tokens[i]);
+                }
+            }
+            return map;
+        }
+
+        @Override
+        GroupMap merge(GroupMap a, GroupMap b) {
+            GroupMap into = a.size >= b.size ? a : b;
+            into.addAll(into == a ? b : a);
+            return into;
+        }
+    }
+
+    private final class HistogramScan extends Scan<long[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final int bucketWidth;
+        private final int bucketCount;
+
+        HistogramScan(Query query, int bucketWidth, int bucketCount) {
+            super(query);
+            this.bucketWidth = bucketWidth;
+            this.bucketCount = bucketCount;
+        }
+
+        private HistogramScan(HistogramScan parent, int lo, int hi) {
+            super(parent, lo, hi);
+            this.bucketWidth = parent.bucketWidth;
+            this.bucketCount = parent.bucketCount;
+        }
+
+        @Override
+        Scan<long[]> child(int lo, int hi) {
+            return new HistogramScan(this, lo, hi);
+        }
+
+        @Override
+        long[] leaf(Chunk chunk, int rows) {
+            long[] counts = new long[bucketCount];
+            for (int i = 0; i < rows; i++) {
+                if (query.matches(chunk, i)) {
+                    int bucket = Math.max(0, chunk.tokens[i]) / bucketWidth;
+                    counts[Math.min(bucket, bucketCount - 1)]++;
+                }
+            }
+            return counts;
+        }
+
+        @Override
+        long[] merge(long[] a, long[] b) {
+            for (int i = 0; i < a.length; i++) {
+                a[i] += b[i];
+            }
+            return a;
+        }
+    }
+
+    /**
+     * Open-addressing map from a long key to a count and a sum, so grouping
+     * never boxes.
+     */
+    private static final class GroupMap {
+        long[] keys = new long[16];
+        long[] counts = new long[16];
+        long[] sums = new long[16];
+        boolean[] used = new boolean[16];
+        int size;
+
+        void add(long key, long count, long sum) {
+            int slot = slotFor(key);
+            if (!used[slot]) {
+                used[slot] = true;
+                keys[slot] = key;
+                if (++size * 2 > keys.length) {
+                    grow();
+                    slot = slotFor(key);
+                }
+            }
+            counts[slot] += count;
+            sums[slot] += sum;
+        }
+
+        void addAll(GroupMap other) {
+            for (int slot = 0; slot < other.keys.length; slot++) {
+                if (other.used[slot]) {
+                    add(other.keys[slot], other.counts[slot], other.sums[slot]);
+                }
+            }
+        }
+
+        int find(long key) {
+            int slot = slotFor(key);
+            return used[slot] ? slot : -1;
+        }
+
+        // Slots of the limit largest sums, largest first.
+        int[] topByTokens(int limit) {
+            int[] slots = occupiedSlots();
+            long[] order = new long[slots.length];
+            for (int i = 0; i < slots.length; i++) {
+                order[i] = sums[slots[i]];
+            }
+            return sortSlots(slots, order, true, limit);
+        }
+
+        int[] slotsByKey() {
+            int[] slots = occupiedSlots();
+            long[] order = new long[slots.length];
+            for (int i = 0; i < slots.length; i++) {
+                order[i] = keys[slots[i]];
+            }
+            return sortSlots(slots, order, false, slots.length);
+        }
+
+        private int[] occupiedSlots() {
+            int[] slots = new int[size];
+            int n = 0;
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (used[slot]) {
+                    slots[n++] = slot;
+                }
+            }
+            return slots;
+        }
+
+        // Sorts positions by their order value with a primitive quicksort, so nothing is boxed.
+        private static int[] sortSlots(int[] slots, long[] order, boolean descending, int limit) {
+            int n = slots.length;
+            int[] index = new int[n];
+            for (int i = 0; i < n; i++) {
+                index[i] = i;
+            }
+            quickSort(index, order, 0, n - 1, descending);
+            int[] result = new int[Math.min(limit, n)];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = slots[index[i]];
+            }
+            return result;
+        }
+
+        private static void quickSort(int[] index, long[] order, int lo, int hi, boolean descending) {
+            while (lo < hi) {
+                long pivot = order[index[(lo + hi) >>> 1]];
+                int i = lo;
+                int j = hi;
+                while (i <= j) {
+                    while (descending ? order[index[i]] > pivot : order[index[i]] < pivot) {
+                        i++;
+                    }
+                    while (descending ? order[index[j]] < pivot : order[index[j]] > pivot) {
+                        j--;
+                    }
+                    if (i <= j) {
+                        int tmp = index[i];
+                        index[i++] = index[j];
+                        index[j--] = tmp;
+                    }
+                }
+                if (j - lo < hi - i) {
+                    quickSort(index, order, lo, j, descending);
+                    lo = i;
+                } else {
+                    quickSort(index, order, i, hi, descending);
+                    hi = j;
+                }
+            }
+        }
+
+        private int slotFor(long key) {
+            int mask = keys.length - 1;
+            int slot = (int) (mix(key) & mask);
+            while (used[slot] && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            long[] oldCounts = counts;
+            long[] oldSums = sums;
+            boolean[] oldUsed = used;
+            int capacity = oldKeys.length * 2;
+            keys = new long[capacity];
+            counts = new long[capacity];
+            sums = new long[capacity];
+            used = new boolean[capacity];
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldUsed[slot]) {
+                    int target = slotFor(oldKeys[slot]);
+                    used[target] = true;
+                    keys[target] = oldKeys[slot];
+                    counts[target] = oldCounts[slot];
+                    sums[target] = oldSums[slot];
+                }
+            }
+        }
+
+        private static long mix(long key) {
+            key *= 0x9E3779B97F4A7C15L;
+            return key ^ (key >>> 32);
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package analytics;
+
+import data.interfaces.IDB;
+import model.ChatSession;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Token usage queries over the token_rollups table (migration V1), which the
+ * chat_sessions triggers keep current. Nothing here reads chat_sessions except
+ * rebuild().
+ *
+ * Sessions and their tokens are counted in the bucket the session started in.
+ * Range bounds are widened to whole minutes; a range is answered from day
+ * buckets where it covers whole days, hour buckets for whole hours at the
+ * edges and minute buckets for the rest, so a long range reads few rows.
+ * Top lists leave out bots and users that no longer exist.
+ */
+public class TokenAnalytics {
+    private static final int REBUILD_CHUNK_IDS = 100_000;
+    // Same upsert as token_rollups_apply(), in key order, for one session taken back out.
+    private static final String FORGET_SESSION_SQL =
+            "INSERT INTO token_rollups AS r (granularity, bucket, bot_id, user_id, session_count, tokens) "
+                    + "SELECT g.code, date_trunc(g.unit, ?::timestamp), ?, ?, -1, ? "
+                    + "FROM (VALUES ('m', 'minute'), ('h', 'hour'), ('d', 'day')) AS g (code, unit) "
+                    + "ORDER BY 1, 2, 3, 4 "
+                    + "ON CONFLICT (granularity, bucket, bot_id, user_id) DO UPDATE "
+                    + "SET session_count = r.session_count + EXCLUDED.session_count, tokens = r.tokens + EXCLUDED.tokens";
+
+    private final IDB db;
+
+    public TokenAnalytics(IDB db) {
+        this.db = db;
+    }
+
+    public List<UsageTotal> topBots(Date from, Date to, int limit) throws SQLException {
+        return top("bot_id", "bots", from, to, limit);
+    }
+
+    public List<UsageTotal> topUsers(Date from, Date to, int limit) throws SQLException {
+        return top("user_id", "users", from, to, limit);
+    }
+
+    public UsageTotal botTotal(int botId, Date from, Date to) throws SQLException {
+        return total("bot_id", botId, from, to);
+    }
+
+    public UsageTotal userTotal(int userId, Date from, Date to) throws SQLException {
+        return total("user_id", userId, from, to);
+    }
+
+    /**
+     * One entry per non-empty bucket of the given granularity, oldest first.
+     * botId and userId are optional filters.
+     */
+    public List<UsageTotal> timeSeries(Granularity granularity, Date from, Date to,
+                                       Integer botId, Integer userId) throws SQLException {
+        StringBuilder sql = new StringBuilder(
+                "SELECT bucket, SUM(session_count) AS sessions, SUM(tokens) AS tokens FROM token_rollups "
+                        + "WHERE granularity = ?");
+        List<Object> params = new ArrayList<>();
+        params.add(granularity.getCode());
+        if (from != null) {
+            sql.append(" AND bucket >= ?");
+            params.add(Timestamp.valueOf(granularity.floor(toLocal(from))));
+        }
+        if (to != null) {
+            sql.append(" AND bucket < ?");
+            params.add(Timestamp.valueOf(granularity.ceil(toLocal(to))));
+        }
+        if (botId != null) {
+            sql.append(" AND bot_id = ?");
+            params.add(botId);
+        }
+        if (userId != null) {
+            sql.append(" AND user_id = ?");
+            params.add(userId);
+        }
+        sql.append(" GROUP BY bucket ORDER BY bucket");
+
+        List<UsageTotal> series = new ArrayList<>();
+        try (Connection conn = db.getConnection();
+             PreparedStatement pstmt = prepare(conn, sql.toString(), params);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                series.add(new UsageTotal(0, null, rs.getTimestamp("bucket"),
+                        rs.getLong("sessions"), rs.getLong("tokens")));
+            }
+        }
+        return series;
+    }
+
+    /**
+     * Takes a session that no longer passes through the chat_sessions triggers
+     * (an archived one) out of the rollups.
+     */
+    public void forgetSession(ChatSession session) throws SQLException {
+        try (Connection conn = db.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(FORGET_SESSION_SQL)) {
+            pstmt.setTimestamp(1, new Timestamp(session.getStartedAt().getTime()));
+            pstmt.setInt(2, session.getBot().getId());
+            pstmt.setInt(3, session.getUser().getId());
+            pstmt.setLong(4, -(long) session.getTotalTokensUsed());
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Drops the rollups of a deleted bot. Its live sessions were already taken
+     * out by the cascade, so what is left is archived usage and empty rows.
+     */
+    public void forgetBot(int botId) throws SQLException {
+        forget("bot_id", botId);
+    }
+
+    // Same as forgetBot, for a deleted user.
+    public void forgetUser(int userId) throws SQLException {
+        forget("user_id", userId);
+    }
+
+    private void forget(String keyColumn, int id) throws SQLException {
+        // The granularity list lets the delete use the (granularity, key, bucket) index.
+        String sql = "DELETE FROM token_rollups WHERE granularity IN ('m', 'h', 'd') AND " + keyColumn + " = ?";
+        try (Connection conn = db.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, id);
+            pstmt.executeUpdate();
+        }
+    }
+
+    private List<UsageTotal> top(String keyColumn, String nameTable, Date from, Date to, int limit) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        String sql = "SELECT r." + keyColumn + " AS id, n.name, SUM(r.session_count) AS sessions, SUM(r.tokens) AS tokens "
+                + "FROM token_rollups r JOIN " + nameTable + " n ON n.id = r." + keyColumn
+                + " WHERE " + rangeCondition(from, to, params)
+                + " GROUP BY r." + keyColumn + ", n.name"
+                + " ORDER BY SUM(r.tokens) DESC, r." + keyColumn + " LIMIT ?";
+        params.add(limit);
+
+        List<UsageTotal> top = new ArrayList<>(limit);
+        try (Connection conn = db.getConnection();
+             PreparedStatement pstmt = prepare(conn, sql, params);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                top.add(new UsageTotal(rs.getInt("id"), rs.getString("name"), null,
+                        rs.getLong("sessions"), rs.getLong("tokens")));
+            }
+        }
+        return top;
+    }
+
+    private UsageTotal total(String keyColumn, int id, Date from, Date to) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        params.add(id);
+        String sql = "SELECT COALESCE(SUM(r.session_count), 0) AS sessions, COALESCE(SUM(r.tokens), 0) AS tokens "
+                + "FROM token_rollups r WHERE r." + keyColumn + " = ? AND " + rangeCondition(from, to, params);
+        try (Connection conn = db.getConnection();
+             PreparedStatement pstmt = prepare(conn, sql, params);
+             ResultSet rs = pstmt.executeQuery()) {
+            rs.next();
+            return new UsageTotal(id, null, null, rs.getLong("sessions"), rs.getLong("tokens"));
+        }
+    }
+
+    /**
+     * Recomputes every rollup from chat_sessions. Workers aggregate id ranges
+     * into token_rollups_rebuild on their own connections; the merge then
+     * replaces token_rollups in one transaction. That transaction holds a
+     * SHARE ROW EXCLUSIVE lock on chat_sessions from the start, so session
+     * writes (and a second rebuild) wait until it commits and no delta from
+     * the triggers can be lost or counted twice. Reads are not blocked.
+     *
+     * Months whose chat_sessions partitions were dropped by retention are
+     * not in chat_sessions any more, so a rebuild loses their rollups too.
+     * The pool must allow workers + 1 connections.
+     *
+     * @return number of rollup rows written
+     */
+    public int rebuild(int workers) throws SQLException {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("Rebuild needs at least one worker.");
+        }
+        AtomicInteger threadIds = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "rollup-rebuild-" + threadIds.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("LOCK TABLE chat_sessions IN SHARE ROW EXCLUSIVE MODE");
+                stmt.executeUpdate("DELETE FROM token_rollups_rebuild");
+
+                long minId;
+                long maxId;
+                try (ResultSet rs = stmt.executeQuery("SELECT MIN(id), MAX(id) FROM chat_sessions")) {
+                    rs.next();
+                    minId = rs.getLong(1);
+                    maxId = rs.getLong(2);
+                }
+                List<Future<Integer>> chunks = new ArrayList<>();
+                for (long lo = minId; maxId > 0 && lo <= maxId; lo += REBUILD_CHUNK_IDS) {
+                    long start = lo;
+                    long end = Math.min(maxId + 1, lo + REBUILD_CHUNK_IDS);
+                    chunks.add(pool.submit(() -> aggregateChunk(start, end)));
+                }
+                // Worker inserts are committed, so the merge statements below see them.
+                awaitAll(chunks);
+
+                stmt.executeUpdate("DELETE FROM token_rollups");
+                int rows = stmt.executeUpdate(
+                        "INSERT INTO token_rollups (granularity, bucket, bot_id, user_id, session_count, tokens) "
+                                + "SELECT 'm', bucket, bot_id, user_id, SUM(session_count), SUM(tokens) "
+                                + "FROM token_rollups_rebuild GROUP BY bucket, bot_id, user_id");
+                rows += stmt.executeUpdate(rollUp(Granularity.MINUTE, Granularity.HOUR, "hour"));
+                rows += stmt.executeUpdate(rollUp(Granularity.HOUR, Granularity.DAY, "day"));
+                stmt.executeUpdate("DELETE FROM token_rollups_rebuild");
+                conn.commit();
+                return rows;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private int aggregateChunk(long startId, long endId) throws SQLException {
+        String sql = "INSERT INTO token_rollups_rebuild (bucket, bot_id, user_id, session_count, tokens) "
+                + "SELECT date_trunc('minute', started_at), bot_id, user_id, COUNT(*), SUM(COALESCE(total_tokens_used, 0)) "
+                + "FROM chat_sessions WHERE id >= ? AND id < ? AND started_at IS NOT NULL "
+                + "GROUP BY 1, 2, 3";
+        try (Connection conn = db.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, startId);
+            pstmt.setLong(2, endId);
+            return pstmt.executeUpdate();
+        }
+    }
+
+    private static void awaitAll(List<Future<Integer>> chunks) throws SQLException {
+        try {
+            for (Future<Integer> chunk : chunks) {
+                chunk.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Rollup rebuild was interrupted.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            throw new SQLException("Rollup rebuild chunk failed: " + cause.getMessage(), cause);
+        } finally {
+            for (Future<Integer> chunk : chunks) {
+                chunk.cancel(true);
+            }
+        }
+    }
+
+    private static String rollUp(Granularity source, Granularity target, String unit) {
+        return "INSERT INTO token_rollups (granularity, bucket, bot_id, user_id, session_count, tokens) "
+                + "SELECT '" + target.getCode() + "', date_trunc('" + unit + "', bucket), bot_id, user_id, "
+                + "SUM(session_count), SUM(tokens) FROM token_rollups WHERE granularity = '" + source.getCode() + "' "
+                + "GROUP BY 2, 3, 4";
+    }
+
+    /**
+     * Builds "(granularity = ? AND bucket >= ? AND bucket < ?) OR ..." for the
+     * segments of plan(from, to) and appends their parameters.
+     */
+    private static String rangeCondition(Date from, Date to, List<Object> params) {
+        List<Segment> segments = plan(from == null ? null : toLocal(from), to == null ? null : toLocal(to));
+        if (segments.isEmpty()) {
+            return "FALSE";
+        }
+        StringBuilder condition = new StringBuilder("(");
+        for (int i = 0; i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            if (i > 0) {
+                condition.append(" OR ");
+            }
+            condition.append("(r.granularity = ?");
+            params.add(segment.granularity.getCode());
+            if (segment.start != null) {
+                condition.append(" AND r.bucket >= ?");
+                params.add(Timestamp.valueOf(segment.start));
+            }
+            if (segment.end != null) {
+                condition.append(" AND r.bucket < ?");
+                params.add(Timestamp.valueOf(segment.end));
+            }
+            condition.append(')');
+        }
+        return condition.append(')').toString();
+    }
+
+    /**
+     * Splits [from, to) into minute, hour and day segments that together cover
+     * it exactly: minutes up to the first whole hour, hours up to the first
+     * whole day, whole days, then hours and minutes again at the end. A null
+     * bound is unbounded on that side.
+     */
+    static List<Segment> plan(LocalDateTime from, LocalDateTime to) {
+        LocalDateTime start = from == null ? null : Granularity.MINUTE.floor(from);
+        LocalDateTime end = to == null ? null : Granularity.MINUTE.ceil(to);
+        List<Segment> segments = new ArrayList<>(5);
+        if (start == null && end == null) {
+            segments.add(new Segment(Granularity.DAY, null, null));
+            return segments;
+        }
+        if (start != null && end != null && !start.isBefore(end)) {
+            return segments;
+        }
+        LocalDateTime hourStart = start == null ? null : Granularity.HOUR.ceil(start);
+        LocalDateTime dayStart = start == null ? null : Granularity.DAY.ceil(start);
+        LocalDateTime hourEnd = end == null ? null : Granularity.HOUR.floor(end);
+        LocalDateTime dayEnd = end == null ? null : Granularity.DAY.floor(end);
+
+        if (before(dayStart, dayEnd)) {
+            add(segments, Granularity.MINUTE, start, hourStart);
+            add(segments, Granularity.HOUR, hourStart, dayStart);
+            add(segments, Granularity.DAY, dayStart, dayEnd);
+            add(segments, Granularity.HOUR, dayEnd, hourEnd);
+            add(segments, Granularity.MINUTE, hourEnd, end);
+        } else if (before(hourStart, hourEnd)) {
+            add(segments, Granularity.MINUTE, start, hourStart);
+            add(segments, Granularity.HOUR, hourStart, hourEnd);
+            add(segments, Granularity.MINUTE, hourEnd, end);
+        } else {
+            add(segments, Granularity.MINUTE, start, end);
+        }
+        return segments;
+    }
+
+    // Head segments are empty when from is null, tail segments when to is null.
+    private static void add(List<Segment> segments, Granularity granularity, LocalDateTime start, LocalDateTime end) {
+        if ((start != null || end != null) && before(start, end)) {
+            segments.add(new Segment(granularity, start, end));
+        }
+    }
+
+    // null start means the beginning of time and null end the end of time.
+    private static boolean before(LocalDateTime start, LocalDateTime end) {
+        return start == null || end == null || start.isBefore(end);
+    }
+
+    private static LocalDateTime toLocal(Date date) {
+        return new Timestamp(date.getTime()).toLocalDateTime();
+    }
+
+    private static PreparedStatement prepare(Connection conn, String sql, List<Object> params) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(sql);
+        for (int i = 0; i < params.size(); i++) {
+            pstmt.setObject(i + 1, params.get(i));
+        }
+        return pstmt;
+    }
+
+    static final class Segment {
+        final Granularity granularity;
+        final LocalDateTime start;
+        final LocalDateTime end;
+
+        Segment(Granularity granularity, LocalDateTime start, LocalDateTime end) {
+            this.granularity = granularity;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public String toString() {
+            return granularity + "[" + start + ", " + end + ")";
+        }
+    }
+}
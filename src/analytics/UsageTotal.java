@@ -0,0 +1,36 @@
+package analytics;
+
+import java.util.Date;
+
+/**
+ * Sessions started and tokens used, either for one bot or user (id/name) or
+ * for one time bucket (bucketStart), depending on the query that produced it.
+ */
+public class UsageTotal {
+    private final int id;
+    private final String name;
+    private final Date bucketStart;
+    private final long sessionCount;
+    private final long tokens;
+
+    public UsageTotal(int id, String name, Date bucketStart, long sessionCount, long tokens) {
+        this.id = id;
+        this.name = name;
+        this.bucketStart = bucketStart;
+        this.sessionCount = sessionCount;
+        this.tokens = tokens;
+    }
+
+    public int getId() { return id; }
+    public String getName() { return name; }
+    public Date getBucketStart() { return bucketStart; }
+    public long getSessionCount() { return sessionCount; }
+    public long getTokens() { return tokens; }
+
+    @Override
+    public String toString() {
+        String key = bucketStart != null ? bucketStart.toString()
+                : "ID: " + id + (name != null ? " (" + name + ")" : "");
+        return key + " | Sessions: " + sessionCount + " | Tokens: " + tokens;
+    }
+}
@@ -0,0 +1,241 @@
+package archive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One immutable, memory-mapped segment file of archived sessions.
+ *
+ * Layout: a 64-byte header (ending with the file length, so a torn write is
+ * detected), a block index, then the five columns one after
+ * another. Rows are sorted by started_at and cut into blocks of BLOCK_ROWS;
+ * each index entry holds the block's started_at and id range, its row count
+ * and where each column's data for the block starts. Values are varints:
+ * started_at as the (non-negative) delta from the previous row in micros,
+ * id as a zigzag delta, bot_id, user_id and tokens zigzag-encoded as is.
+ * A column is decoded only if a query asks for it, and a block only if its
+ * started_at range overlaps the query.
+ */
+final class Segment {
+    static final int MAGIC = 0x43534152; // "CSAR"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int BLOCK_ROWS = 4096;
+    static final int BLOCK_ENTRY_SIZE = 48;
+    static final int BLOCK_LONGS = 10;
+
+    static final int ID = 0;
+    static final int BOT_ID = 1;
+    static final int USER_ID = 2;
+    static final int STARTED_AT = 3;
+    static final int TOKENS = 4;
+    static final int COLUMN_COUNT = 5;
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final int rowCount;
+    private final int blockCount;
+    private final int minId;
+    private final int maxId;
+    private final long minStartedAt;
+    private final long maxStartedAt;
+
+    private Segment(Path path, MappedByteBuffer buffer) throws IOException {
+        this.path = path;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException(path + " is not a session archive segment.");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException(path + " has unsupported segment version " + buffer.getInt(4) + ".");
+        }
+        this.rowCount = buffer.getInt(8);
+        this.blockCount = buffer.getInt(12);
+        this.minId = buffer.getInt(16);
+        this.maxId = buffer.getInt(20);
+        this.minStartedAt = buffer.getLong(24);
+        this.maxStartedAt = buffer.getLong(32);
+        if (buffer.getLong(40) != buffer.capacity()) {
+            throw new IOException(path + " is truncated.");
+        }
+    }
+
+    static Segment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed.
+            return new Segment(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    Path getPath() { return path; }
+    int getRowCount() { return rowCount; }
+    int getMinId() { return minId; }
+    int getMaxId() { return maxId; }
+    long getMinStartedAt() { return minStartedAt; }
+    long getMaxStartedAt() { return maxStartedAt; }
+    long getSizeBytes() { return buffer.capacity(); }
+
+    /**
+     * Visits the rows with fromMicros <= started_at < toMicros that match the
+     * filters (null matches everything) and are not hidden by deleted (null
+     * for none). Only the columns in the mask, plus those the filters need,
+     * are decoded; the rest are passed as 0. Stops after maxRows rows.
+     */
+    long scan(long fromMicros, long toMicros, Integer botId, Integer userId, int columnMask, long maxRows,
+              Tombstones deleted, SessionArchive.RowVisitor visitor) {
+        if (rowCount == 0 || maxRows <= 0 || maxStartedAt < fromMicros || minStartedAt >= toMicros) {
+            return 0;
+        }
+        long visited = 0;
+        Decoder[] decoders = new Decoder[COLUMN_COUNT];
+        for (int b = 0; b < blockCount; b++) {
+            int entry = HEADER_SIZE + b * BLOCK_ENTRY_SIZE;
+            long blockMin = buffer.getLong(entry);
+            long blockMax = buffer.getLong(entry + 8);
+            if (blockMax < fromMicros) {
+                continue;
+            }
+            if (blockMin >= toMicros) {
+                break;
+            }
+            boolean checkTime = blockMin < fromMicros || blockMax >= toMicros;
+            int needed = columnMask;
+            if (checkTime) {
+                needed |= 1 << STARTED_AT;
+            }
+            if (botId != null) {
+                needed |= 1 << BOT_ID;
+            }
+            if (userId != null) {
+                needed |= 1 << USER_ID;
+            }
+            if (deleted != null) {
+                needed |= (1 << ID) | (1 << BOT_ID) | (1 << USER_ID);
+            }
+            for (int c = 0; c < COLUMN_COUNT; c++) {
+                decoders[c] = (needed & (1 << c)) != 0 ? new Decoder(buffer, buffer.getInt(entry + 28 + c * 4)) : null;
+            }
+            int rows = buffer.getInt(entry + 24);
+            int id = 0;
+            long startedAt = blockMin;
+            for (int r = 0; r < rows; r++) {
+                int bot = 0;
+                int user = 0;
+                int tokens = 0;
+                if (decoders[ID] != null) {
+                    id += (int) unzigzag(decoders[ID].next());
+                }
+                if (decoders[BOT_ID] != null) {
+                    bot = (int) unzigzag(decoders[BOT_ID].next());
+                }
+                if (decoders[USER_ID] != null) {
+                    user = (int) unzigzag(decoders[USER_ID].next());
+                }
+                if (decoders[STARTED_AT] != null) {
+                    startedAt += decoders[STARTED_AT].next();
+                }
+                if (decoders[TOKENS] != null) {
+                    tokens = (int) unzigzag(decoders[TOKENS].next());
+                }
+                if (checkTime) {
+                    if (startedAt < fromMicros) {
+                        continue;
+                    }
+                    if (startedAt >= toMicros) {
+                        return visited;
+                    }
+                }
+                if ((botId != null && bot != botId) || (userId != null && user != userId)) {
+                    continue;
+                }
+                if (deleted != null && deleted.hides(id, bot, user)) {
+                    continue;
+                }
+                visitor.visit(id, bot, user, decoders[STARTED_AT] != null ? startedAt : 0, tokens);
+                if (++visited == maxRows) {
+                    return visited;
+                }
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Looks an id up through the per-block id ranges; fills row with
+     * id, bot, user, started_at and tokens and returns true if found.
+     */
+    boolean find(int targetId, long[] row) {
+        if (rowCount == 0 || targetId < minId || targetId > maxId) {
+            return false;
+        }
+        for (int b = 0; b < blockCount; b++) {
+            int entry = HEADER_SIZE + b * BLOCK_ENTRY_SIZE;
+            if (targetId < buffer.getInt(entry + 16) || targetId > buffer.getInt(entry + 20)) {
+                continue;
+            }
+            int rows = buffer.getInt(entry + 24);
+            Decoder ids = new Decoder(buffer, buffer.getInt(entry + 28 + ID * 4));
+            int id = 0;
+            int match = -1;
+            for (int r = 0; r < rows; r++) {
+                id += (int) unzigzag(ids.next());
+                if (id == targetId) {
+                    match = r;
+                    break;
+                }
+            }
+            if (match < 0) {
+                continue;
+            }
+            Decoder bots = new Decoder(buffer, buffer.getInt(entry + 28 + BOT_ID * 4));
+            Decoder users = new Decoder(buffer, buffer.getInt(entry + 28 + USER_ID * 4));
+            Decoder times = new Decoder(buffer, buffer.getInt(entry + 28 + STARTED_AT * 4));
+            Decoder tokens = new Decoder(buffer, buffer.getInt(entry + 28 + TOKENS * 4));
+            long startedAt = buffer.getLong(entry);
+            for (int r = 0; r < match; r++) {
+                bots.next();
+                users.next();
+                startedAt += times.next();
+                tokens.next();
+            }
+            row[0] = targetId;
+            row[1] = unzigzag(bots.next());
+            row[2] = unzigzag(users.next());
+            row[3] = startedAt + times.next();
+            row[4] = unzigzag(tokens.next());
+            return true;
+        }
+        return false;
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // Absolute reads only, so any number of threads can scan the same buffer.
+    private static final class Decoder {
+        private final ByteBuffer buffer;
+        private int position;
+
+        Decoder(ByteBuffer buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        long next() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+}
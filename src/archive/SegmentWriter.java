@@ -0,0 +1,169 @@
+package archive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Builds one segment file in memory, column by column, and writes it out in a
+ * single pass. Rows must arrive in started_at order. See Segment for the layout.
+ */
+final class SegmentWriter {
+    private final ByteSink[] columns = new ByteSink[Segment.COLUMN_COUNT];
+    private long[] blockMeta = new long[64 * Segment.BLOCK_LONGS];
+    private int blockCount;
+
+    private int rowCount;
+    private int blockRows;
+    private long previousStartedAt;
+    private int previousId;
+    private int blockMinId;
+    private int blockMaxId;
+    private long blockMinStartedAt;
+    private final int[] blockOffsets = new int[Segment.COLUMN_COUNT];
+
+    private int minId = Integer.MAX_VALUE;
+    private int maxId = Integer.MIN_VALUE;
+    private long minStartedAt;
+    private long maxStartedAt;
+
+    SegmentWriter() {
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new ByteSink();
+        }
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+
+    void add(int id, int botId, int userId, long startedAtMicros, int tokens) {
+        if (rowCount > 0 && startedAtMicros < previousStartedAt) {
+            throw new IllegalArgumentException("Rows must be added in started_at order.");
+        }
+        if (blockRows == 0) {
+            startBlock(startedAtMicros);
+        }
+        columns[Segment.ID].writeVarLong(zigzag(id - (long) previousId));
+        columns[Segment.BOT_ID].writeVarLong(zigzag(botId));
+        columns[Segment.USER_ID].writeVarLong(zigzag(userId));
+        columns[Segment.STARTED_AT].writeVarLong(startedAtMicros - previousStartedAt);
+        columns[Segment.TOKENS].writeVarLong(zigzag(tokens));
+        previousId = id;
+        previousStartedAt = startedAtMicros;
+        blockMinId = Math.min(blockMinId, id);
+        blockMaxId = Math.max(blockMaxId, id);
+        minId = Math.min(minId, id);
+        maxId = Math.max(maxId, id);
+        if (rowCount == 0) {
+            minStartedAt = startedAtMicros;
+        }
+        maxStartedAt = startedAtMicros;
+        rowCount++;
+        if (++blockRows == Segment.BLOCK_ROWS) {
+            endBlock();
+        }
+    }
+
+    /**
+     * Writes the segment to path and forces it to disk.
+     */
+    void writeTo(Path path) throws IOException {
+        if (blockRows > 0) {
+            endBlock();
+        }
+        long indexSize = (long) blockCount * Segment.BLOCK_ENTRY_SIZE;
+        long[] columnBase = new long[columns.length];
+        long offset = Segment.HEADER_SIZE + indexSize;
+        for (int c = 0; c < columns.length; c++) {
+            columnBase[c] = offset;
+            offset += columns[c].size;
+        }
+        if (offset > Integer.MAX_VALUE) {
+            throw new IOException("Segment would exceed 2 GB; use fewer rows per segment.");
+        }
+
+        ByteBuffer head = ByteBuffer.allocate((int) (Segment.HEADER_SIZE + indexSize));
+        head.putInt(Segment.MAGIC).putInt(Segment.VERSION).putInt(rowCount).putInt(blockCount)
+                .putInt(rowCount == 0 ? 0 : minId).putInt(rowCount == 0 ? 0 : maxId)
+                .putLong(minStartedAt).putLong(maxStartedAt).putLong(offset);
+        head.position(Segment.HEADER_SIZE);
+        for (int b = 0; b < blockCount; b++) {
+            int base = b * Segment.BLOCK_LONGS;
+            head.putLong(blockMeta[base]);                    // min started_at
+            head.putLong(blockMeta[base + 1]);                // max started_at
+            head.putInt((int) blockMeta[base + 2]);           // min id
+            head.putInt((int) blockMeta[base + 3]);           // max id
+            head.putInt((int) blockMeta[base + 4]);           // rows
+            for (int c = 0; c < columns.length; c++) {
+                head.putInt((int) (columnBase[c] + blockMeta[base + 5 + c]));
+            }
+        }
+        head.flip();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (head.hasRemaining()) {
+                channel.write(head);
+            }
+            for (ByteSink column : columns) {
+                ByteBuffer data = ByteBuffer.wrap(column.bytes, 0, column.size);
+                while (data.hasRemaining()) {
+                    channel.write(data);
+                }
+            }
+            channel.force(true);
+        }
+    }
+
+    private void startBlock(long startedAtMicros) {
+        blockMinStartedAt = startedAtMicros;
+        previousStartedAt = startedAtMicros;
+        previousId = 0;
+        blockMinId = Integer.MAX_VALUE;
+        blockMaxId = Integer.MIN_VALUE;
+        for (int c = 0; c < columns.length; c++) {
+            blockOffsets[c] = columns[c].size;
+        }
+    }
+
+    private void endBlock() {
+        int base = blockCount * Segment.BLOCK_LONGS;
+        if (base + Segment.BLOCK_LONGS > blockMeta.length) {
+            blockMeta = Arrays.copyOf(blockMeta, blockMeta.length * 2);
+        }
+        blockMeta[base] = blockMinStartedAt;
+        blockMeta[base + 1] = previousStartedAt;
+        blockMeta[base + 2] = blockMinId;
+        blockMeta[base + 3] = blockMaxId;
+        blockMeta[base + 4] = blockRows;
+        for (int c = 0; c < columns.length; c++) {
+            blockMeta[base + 5 + c] = blockOffsets[c];
+        }
+        blockCount++;
+        blockRows = 0;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static final class ByteSink {
+        byte[] bytes = new byte[1 << 12];
+        int size;
+
+        void writeVarLong(long value) {
+            if (size + 10 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package archive;
+
+import analytics.UsageTotal;
+import model.Bot;
+import model.ChatSession;
+import model.User;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Read side of the cold-session tier: a directory of append-only columnar
+ * segment files (*.seg), each memory-mapped once and never modified.
+ * SessionArchiver adds new segments; nothing is ever updated in place, so
+ * queries need no locking. Archived sessions keep their ids, which never
+ * occur in the live table again. Deletes are recorded as tombstones (see
+ * Tombstones) that every query applies.
+ */
+public class SessionArchive implements AutoCloseable {
+    static final String SEGMENT_SUFFIX = ".seg";
+
+    public static final int ID = 1 << Segment.ID;
+    public static final int BOT_ID = 1 << Segment.BOT_ID;
+    public static final int USER_ID = 1 << Segment.USER_ID;
+    public static final int STARTED_AT = 1 << Segment.STARTED_AT;
+    public static final int TOKENS = 1 << Segment.TOKENS;
+    public static final int ALL_COLUMNS = ID | BOT_ID | USER_ID | STARTED_AT | TOKENS;
+
+    @FunctionalInterface
+    public interface RowVisitor {
+        // Columns that were not requested are passed as 0.
+        void visit(int id, int botId, int userId, long startedAtMicros, int tokens);
+    }
+
+    private final Path directory;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final Tombstones tombstones;
+
+    private SessionArchive(Path directory, Tombstones tombstones) {
+        this.directory = directory;
+        this.tombstones = tombstones;
+    }
+
+    /**
+     * Opens (creating if needed) the archive in directory and maps its segments.
+     */
+    public static SessionArchive open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        SessionArchive archive = new SessionArchive(directory, Tombstones.load(directory));
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort(null);
+        for (Path file : files) {
+            archive.segments.add(Segment.open(file));
+        }
+        return archive;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    void add(Segment segment) {
+        segments.add(segment);
+    }
+
+    /**
+     * Visits archived sessions with from <= started_at < to (null for an open
+     * end) whose bot and user match the filters (null for any), in started_at
+     * order within each segment. columns is a mask of the constants above;
+     * only those columns are decoded. Returns the number of rows visited.
+     */
+    public long scan(Date from, Date to, Integer botId, Integer userId, int columns, RowVisitor visitor) {
+        long fromMicros = from == null ? Long.MIN_VALUE : toMicros(from);
+        long toMicros = to == null ? Long.MAX_VALUE : toMicros(to);
+        long visited = 0;
+        for (Segment segment : segments) {
+            visited += segment.scan(fromMicros, toMicros, botId, userId, columns, Long.MAX_VALUE, deleted(), visitor);
+        }
+        return visited;
+    }
+
+    /**
+     * Up to limit matching sessions, with stub bot and user as in FetchMode.STUBS.
+     */
+    public List<ChatSession> find(Date from, Date to, Integer botId, Integer userId, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive.");
+        }
+        List<ChatSession> result = new ArrayList<>();
+        long fromMicros = from == null ? Long.MIN_VALUE : toMicros(from);
+        long toMicros = to == null ? Long.MAX_VALUE : toMicros(to);
+        for (Segment segment : segments) {
+            segment.scan(fromMicros, toMicros, botId, userId, ALL_COLUMNS, limit - result.size(), deleted(),
+                    (id, bot, user, startedAt, tokens) -> result.add(toSession(id, bot, user, startedAt, tokens)));
+        }
+        return result;
+    }
+
+    /**
+     * Session count and token sum for the matching sessions; decodes only the
+     * token column plus whatever the filters need.
+     */
+    public UsageTotal sumTokens(Date from, Date to, Integer botId, Integer userId) {
+        long[] tokens = new long[1];
+        long count = scan(from, to, botId, userId, TOKENS, (id, bot, user, startedAt, t) -> tokens[0] += t);
+        int key = botId != null ? botId : userId != null ? userId : 0;
+        return new UsageTotal(key, null, from, count, tokens[0]);
+    }
+
+    /**
+     * The archived session with this id, with stub bot and user, or null.
+     */
+    public ChatSession getById(int id) {
+        long[] row = new long[Segment.COLUMN_COUNT];
+        for (Segment segment : segments) {
+            if (segment.find(id, row)) {
+                if (tombstones.hides(id, (int) row[1], (int) row[2])) {
+                    return null;
+                }
+                return toSession((int) row[0], (int) row[1], (int) row[2], row[3], (int) row[4]);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Deletes an archived session. Returns false if there is no such
+     * session or it is already deleted.
+     */
+    public boolean deleteSession(int id) throws IOException {
+        return getById(id) != null && tombstones.addSession(id);
+    }
+
+    /**
+     * Deletes every archived session of the bot; call after the bot itself is
+     * deleted, as ON DELETE CASCADE does for live sessions.
+     */
+    public void deleteBotSessions(int botId) throws IOException {
+        tombstones.addBot(botId);
+    }
+
+    // Same as deleteBotSessions, for a deleted user.
+    public void deleteUserSessions(int userId) throws IOException {
+        tombstones.addUser(userId);
+    }
+
+    private Tombstones deleted() {
+        return tombstones.isEmpty() ? null : tombstones;
+    }
+
+    public Stats getStats() {
+        long rows = 0;
+        long bytes = 0;
+        long oldest = Long.MAX_VALUE;
+        long newest = Long.MIN_VALUE;
+        int count = 0;
+        for (Segment segment : segments) {
+            count++;
+            rows += segment.getRowCount();
+            bytes += segment.getSizeBytes();
+            if (segment.getRowCount() > 0) {
+                oldest = Math.min(oldest, segment.getMinStartedAt());
+                newest = Math.max(newest, segment.getMaxStartedAt());
+            }
+        }
+        return new Stats(count, rows, bytes, tombstones.size(), rows == 0 ? null : fromMicros(oldest),
+                rows == 0 ? null : fromMicros(newest));
+    }
+
+    @Override
+    public void close() {
+        // Mappings are released by the garbage collector once unreachable.
+        segments.clear();
+    }
+
+    static ChatSession toSession(int id, int botId, int userId, long startedAtMicros, int tokens) {
+        return new ChatSession(id, new Bot(botId, "Unknown", "", "", 0), new User(userId, "Unknown", "", false),
+                fromMicros(startedAtMicros), tokens);
+    }
+
+    public static long toMicros(Date date) {
+        long micros = Math.floorDiv(date.getTime(), 1000L) * 1_000_000L;
+        if (date instanceof Timestamp) {
+            return micros + ((Timestamp) date).getNanos() / 1000;
+        }
+        return micros + Math.floorMod(date.getTime(), 1000L) * 1000L;
+    }
+
+    public static Timestamp fromMicros(long micros) {
+        Timestamp timestamp = new Timestamp(Math.floorDiv(micros, 1_000_000L) * 1000L);
+        timestamp.setNanos((int) Math.floorMod(micros, 1_000_000L) * 1000);
+        return timestamp;
+    }
+
+    public static final class Stats {
+        private final int segments;
+        private final long rows;
+        private final long bytes;
+        private final int tombstones;
+        private final Date oldest;
+        private final Date newest;
+
+        private Stats(int segments, long rows, long bytes, int tombstones, Date oldest, Date newest) {
+            this.segments = segments;
+            this.rows = rows;
+            this.bytes = bytes;
+            this.tombstones = tombstones;
+            this.oldest = oldest;
+            this.newest = newest;
+        }
+
+        public int getSegments() { return segments; }
+        // Rows stored in segments, including deleted ones.
+        public long getRows() { return rows; }
+        public long getBytes() { return bytes; }
+        public int getTombstones() { return tombstones; }
+        public Date getOldest() { return oldest; }
+        public Date getNewest() { return newest; }
+
+        @Override
+        public String toString() {
+            return "segments=" + segments + ", sessions=" + rows + ", bytes=" + bytes + ", tombstones=" + tombstones
+                    + (rows == 0 ? "" : ", from " + oldest + " to " + newest);
+        }
+    }
+}
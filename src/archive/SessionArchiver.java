@@ -0,0 +1,310 @@
+package archive;
+
+import data.interfaces.IDB;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves sessions older than a given age from chat_sessions into the archive.
+ *
+ * Whole monthly partitions (migration V3) are archived once their month has
+ * ended before the cutoff; rows of the default partition are archived one by
+ * one. Each source is done in one transaction: lock it against writes, stream
+ * its rows into ".seg.pending" files and fsync them, then DETACH and DROP the
+ * partition (or DELETE the default partition's rows) and commit. Only after
+ * the commit are the files renamed to ".seg" and opened. The rows never pass
+ * through the parent table's triggers, so the token rollups keep counting them.
+ *
+ * If the process dies between commit and rename, the next run finds the
+ * pending files and checks whether their rows are still live: if so the
+ * transaction was rolled back and the files are deleted, otherwise they are
+ * promoted. Only one process may archive into a directory.
+ */
+public class SessionArchiver implements AutoCloseable {
+    private static final String PENDING_SUFFIX = SessionArchive.SEGMENT_SUFFIX + ".pending";
+    private static final String LABEL = "[ARCHIVE]";
+    private static final int FETCH_SIZE = 10_000;
+    private static final String COLUMNS = "id, bot_id, user_id, started_at, total_tokens_used";
+
+    private static final String PARTITIONS_SQL =
+            "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                    "WHERE i.inhparent = 'chat_sessions'::regclass " +
+                    "AND c.relname ~ '^chat_sessions_p[0-9]{6}$' " +
+                    "AND to_date(substr(c.relname, 16), 'YYYYMM') + INTERVAL '1 month' <= ? " +
+                    "ORDER BY c.relname";
+    private static final String DEFAULT_PARTITION = "chat_sessions_default";
+    private static final String LIVE_SQL = "SELECT 1 FROM chat_sessions WHERE id = ? AND started_at = ?";
+
+    private final IDB db;
+    private final SessionArchive archive;
+    private final int afterDays;
+    private int segmentRows = 1_000_000;
+    private volatile ScheduledExecutorService scheduler;
+
+    /**
+     * @param afterDays sessions that started more than this many days ago are archived
+     */
+    public SessionArchiver(IDB db, SessionArchive archive, int afterDays) {
+        if (afterDays < 1) {
+            throw new IllegalArgumentException("Archive age must be at least one day.");
+        }
+        this.db = db;
+        this.archive = archive;
+        this.afterDays = afterDays;
+    }
+
+    // Rows per segment file; a segment is built in memory before it is written.
+    public void setSegmentRows(int segmentRows) {
+        if (segmentRows < Segment.BLOCK_ROWS) {
+            throw new IllegalArgumentException("Segments need at least " + Segment.BLOCK_ROWS + " rows.");
+        }
+        this.segmentRows = segmentRows;
+    }
+
+    /**
+     * Recovers pending files of an interrupted run, then archives everything
+     * older than the cutoff.
+     */
+    public synchronized Result runOnce() throws SQLException, IOException {
+        int recovered = recoverPending();
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minusDays(afterDays));
+        int partitionCount = 0;
+        long rows = 0;
+        List<String> partitions = new ArrayList<>();
+        try (Connection conn = db.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(PARTITIONS_SQL)) {
+            pstmt.setTimestamp(1, cutoff);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    partitions.add(rs.getString(1));
+                }
+            }
+        }
+        for (String partition : partitions) {
+            rows += archivePartition(partition);
+            partitionCount++;
+        }
+        rows += archiveDefaultPartition(cutoff);
+        return new Result(partitionCount, rows, recovered);
+    }
+
+    private long archivePartition(String partition) throws SQLException, IOException {
+        String select = "SELECT " + COLUMNS + " FROM " + partition + " ORDER BY started_at, id";
+        return archive(partition, "LOCK TABLE " + partition + " IN EXCLUSIVE MODE", select, null,
+                new String[]{"ALTER TABLE chat_sessions DETACH PARTITION " + partition, "DROP TABLE " + partition});
+    }
+
+    private long archiveDefaultPartition(Timestamp cutoff) throws SQLException, IOException {
+        String select = "SELECT " + COLUMNS + " FROM " + DEFAULT_PARTITION
+                + " WHERE started_at < ? ORDER BY started_at, id";
+        // Deleting from the partition itself bypasses the rollup triggers on chat_sessions.
+        return archive(DEFAULT_PARTITION, "LOCK TABLE " + DEFAULT_PARTITION + " IN EXCLUSIVE MODE", select, cutoff,
+                new String[]{"DELETE FROM " + DEFAULT_PARTITION + " WHERE started_at < ?"});
+    }
+
+    private long archive(String name, String lockSql, String selectSql, Timestamp cutoff, String[] removeSql)
+            throws SQLException, IOException {
+        List<Path> pending = new ArrayList<>();
+        String prefix = name + "-" + System.currentTimeMillis();
+        long rows = 0;
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute(lockSql);
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(selectSql)) {
+                    pstmt.setFetchSize(FETCH_SIZE);
+                    if (cutoff != null) {
+                        pstmt.setTimestamp(1, cutoff);
+                    }
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        SegmentWriter writer = new SegmentWriter();
+                        while (rs.next()) {
+                            writer.add(rs.getInt(1), rs.getInt(2), rs.getInt(3),
+                                    SessionArchive.toMicros(rs.getTimestamp(4)), rs.getInt(5));
+                            rows++;
+                            if (writer.getRowCount() == segmentRows) {
+                                pending.add(writePending(writer, prefix, pending.size()));
+                                writer = new SegmentWriter();
+                            }
+                        }
+                        if (writer.getRowCount() > 0) {
+                            pending.add(writePending(writer, prefix, pending.size()));
+                        }
+                    }
+                }
+                if (!pending.isEmpty()) {
+                    syncDirectory();
+                }
+                if (rows > 0 || cutoff == null) {
+                    for (String sql : removeSql) {
+                        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                            if (cutoff != null) {
+                                pstmt.setTimestamp(1, cutoff);
+                            }
+                            pstmt.executeUpdate();
+                        }
+                    }
+                }
+                conn.commit();
+            } catch (SQLException | IOException | RuntimeException e) {
+                conn.rollback();
+                for (Path file : pending) {
+                    Files.deleteIfExists(file);
+                }
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        for (Path file : pending) {
+            promote(file);
+        }
+        if (rows > 0) {
+            System.out.println(LABEL + " Archived " + rows + " sessions from " + name + " into "
+                    + pending.size() + " segment(s)");
+        }
+        return rows;
+    }
+
+    private Path writePending(SegmentWriter writer, String prefix, int part) throws IOException {
+        Path file = archive.getDirectory().resolve(String.format("%s-%03d%s", prefix, part, PENDING_SUFFIX));
+        writer.writeTo(file);
+        return file;
+    }
+
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(archive.getDirectory(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not every platform can sync a directory; the file contents are synced either way.
+        }
+    }
+
+    private void promote(Path pending) throws IOException {
+        String fileName = pending.getFileName().toString();
+        Path target = pending.resolveSibling(fileName.substring(0, fileName.length() - ".pending".length()));
+        Files.move(pending, target, StandardCopyOption.ATOMIC_MOVE);
+        archive.add(Segment.open(target));
+    }
+
+    private int recoverPending() throws SQLException, IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(archive.getDirectory(), "*" + PENDING_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        if (files.isEmpty()) {
+            return 0;
+        }
+        files.sort(null);
+        int promoted = 0;
+        try (Connection conn = db.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(LIVE_SQL)) {
+            for (Path file : files) {
+                long[] first = new long[Segment.COLUMN_COUNT];
+                boolean live;
+                try {
+                    Segment segment = Segment.open(file);
+                    // Every row of a pending file came from one transaction; any of them tells its outcome.
+                    segment.scan(Long.MIN_VALUE, Long.MAX_VALUE, null, null, SessionArchive.ALL_COLUMNS, 1, null,
+                            (id, bot, user, startedAt, tokens) -> {
+                                first[0] = id;
+                                first[3] = startedAt;
+                            });
+                    pstmt.setInt(1, (int) first[0]);
+                    pstmt.setTimestamp(2, SessionArchive.fromMicros(first[3]));
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        live = rs.next();
+                    }
+                } catch (IOException e) {
+                    // Written only partly before a crash, so its transaction cannot have committed.
+                    live = true;
+                }
+                if (live) {
+                    Files.delete(file);
+                } else {
+                    promote(file);
+                    promoted++;
+                }
+            }
+        }
+        if (promoted > 0) {
+            System.out.println(LABEL + " Recovered " + promoted + " segment(s) of an interrupted run");
+        }
+        return promoted;
+    }
+
+    /**
+     * Runs now, then every intervalMillis on a daemon thread until close().
+     */
+    public void start(long intervalMillis) throws SQLException, IOException {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Archive interval must be positive.");
+        }
+        runOnce();
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "session-archiver");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.scheduleWithFixedDelay(this::runQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        this.scheduler = executor;
+    }
+
+    private void runQuietly() {
+        try {
+            runOnce();
+        } catch (SQLException | IOException | RuntimeException e) {
+            System.err.println(LABEL + " Archiving failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        ScheduledExecutorService executor = scheduler;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    public static final class Result {
+        private final int partitions;
+        private final long sessions;
+        private final int recoveredSegments;
+
+        private Result(int partitions, long sessions, int recoveredSegments) {
+            this.partitions = partitions;
+            this.sessions = sessions;
+            this.recoveredSegments = recoveredSegments;
+        }
+
+        public int getPartitions() { return partitions; }
+        public long getSessions() { return sessions; }
+        public int getRecoveredSegments() { return recoveredSegments; }
+
+        @Override
+        public String toString() {
+            return sessions + " session(s) archived, " + partitions + " partition(s) dropped, "
+                    + recoveredSegments + " segment(s) recovered";
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package archive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Deletions of archived data. Segments are never rewritten, so deleting an
+ * archived session, or the bot or user it belongs to, appends a 5-byte record
+ * (kind, id) to one log file, and every read skips the rows it covers. The
+ * log is fsynced per record; a torn last record is ignored on load.
+ */
+final class Tombstones {
+    static final String FILE_NAME = "tombstones.log";
+    private static final int RECORD_SIZE = 5;
+    private static final byte SESSION = 1;
+    private static final byte BOT = 2;
+    private static final byte USER = 3;
+
+    private final Path path;
+    private final Set<Integer> sessions = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> bots = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> users = ConcurrentHashMap.newKeySet();
+    private volatile boolean empty = true;
+
+    private Tombstones(Path path) {
+        this.path = path;
+    }
+
+    static Tombstones load(Path directory) throws IOException {
+        Tombstones tombstones = new Tombstones(directory.resolve(FILE_NAME));
+        if (Files.exists(tombstones.path)) {
+            byte[] bytes = Files.readAllBytes(tombstones.path);
+            if (bytes.length % RECORD_SIZE != 0) {
+                // Cut the torn record off so the next append starts on a record boundary.
+                try (FileChannel channel = FileChannel.open(tombstones.path, StandardOpenOption.WRITE)) {
+                    channel.truncate(bytes.length - bytes.length % RECORD_SIZE);
+                    channel.force(false);
+                }
+            }
+            ByteBuffer records = ByteBuffer.wrap(bytes);
+            while (records.remaining() >= RECORD_SIZE) {
+                byte kind = records.get();
+                int id = records.getInt();
+                if (kind == SESSION || kind == BOT || kind == USER) {
+                    tombstones.setOf(kind).add(id);
+                    tombstones.empty = false;
+                }
+            }
+        }
+        return tombstones;
+    }
+
+    boolean isEmpty() {
+        return empty;
+    }
+
+    boolean hides(int id, int botId, int userId) {
+        return !empty && (sessions.contains(id) || bots.contains(botId) || users.contains(userId));
+    }
+
+    int size() {
+        return sessions.size() + bots.size() + users.size();
+    }
+
+    boolean addSession(int id) throws IOException {
+        return add(SESSION, id);
+    }
+
+    boolean addBot(int id) throws IOException {
+        return add(BOT, id);
+    }
+
+    boolean addUser(int id) throws IOException {
+        return add(USER, id);
+    }
+
+    // Returns false if the id was already deleted.
+    private synchronized boolean add(byte kind, int id) throws IOException {
+        Set<Integer> set = setOf(kind);
+        if (set.contains(id)) {
+            return false;
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE).put(kind).putInt(id);
+        record.flip();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+            channel.force(false);
+        }
+        set.add(id);
+        empty = false;
+        return true;
+    }
+
+    private Set<Integer> setOf(byte kind) {
+        return kind == SESSION ? sessions : kind == BOT ? bots : users;
+    }
+}
@@ -0,0 +1,94 @@
+package benchmark;
+
+import model.Bot;
+import model.User;
+import repository.interfaces.CrudRepository;
+import repository.interfaces.SessionRepository;
+import service.AsyncChatService;
+import service.ChatService;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Session-start latency, blocking vs CompletableFuture. The repositories are stubs
+ * that park for a fixed "round trip" per call, so the result isolates the effect of
+ * overlapping the bot and user lookups: the blocking flow costs three round trips,
+ * the async one two.
+ *
+ * Usage: java benchmark.AsyncSessionStartBenchmark [roundTripMicros] [iterations]
+ */
+public class AsyncSessionStartBenchmark {
+
+    public static void main(String[] args) {
+        long roundTripNanos = (args.length > 0 ? Long.parseLong(args[0]) : 2000) * 1000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+
+        Bot bot = new Bot(1, "Narrator", "Hello.", "You are the Narrator of Wonderland.", 4000);
+        User user = new User(1, "Alice", "Friendly girl trying to find her way home.", false);
+        ChatService service = new ChatService(
+                stub(CrudRepository.class, bot, roundTripNanos),
+                stub(CrudRepository.class, user, roundTripNanos),
+                stub(SessionRepository.class, null, roundTripNanos));
+
+        System.out.printf("round trip: %d us, iterations: %d%n", roundTripNanos / 1000, iterations);
+        try (AsyncChatService async = new AsyncChatService(service)) {
+            for (int round = 0; round < 2; round++) {
+                String label = round == 0 ? "warmup " : "";
+                report(label + "blocking", measure(iterations, () -> service.startChatSession(1, 1)));
+                report(label + "async   ", measure(iterations, () -> async.startChatSession(1, 1).join()));
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Flow {
+        void run() throws Exception;
+    }
+
+    private static long[] measure(int iterations, Flow flow) {
+        long[] samples = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            try {
+                flow.run();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        return samples;
+    }
+
+    private static void report(String label, long[] sorted) {
+        double mean = Arrays.stream(sorted).average().orElse(0) / 1000;
+        System.out.printf("%-16s mean %8.0f us   p50 %8.0f us   p99 %8.0f us%n", label, mean,
+                sorted[sorted.length / 2] / 1000.0, sorted[(int) (sorted.length * 0.99) - 1] / 1000.0);
+    }
+
+    /**
+     * Repository stub: every call parks for one round trip; getById returns the given entity.
+     */
+    @SuppressWarnings("unchecked")
+    private static <R> R stub(Class<?> type, Object entity, long roundTripNanos) {
+        return (R) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return method.getName().equals("toString") ? type.getSimpleName() + " stub" : null;
+            }
+            LockSupport.parkNanos(roundTripNanos);
+            if (method.getName().equals("getById")) {
+                return entity;
+            }
+            Class<?> returnType = method.getReturnType();
+            if (returnType == boolean.class) {
+                return true;
+            }
+            if (returnType == int.class) {
+                return 0;
+            }
+            return null;
+        });
+    }
+}
@@ -0,0 +1,92 @@
+package benchmark;
+
+import data.PooledDB;
+import data.PostgresDB;
+import data.interfaces.IDB;
+import model.Bot;
+import model.ChatSession;
+import model.User;
+import repository.BotRepository;
+import repository.ChatSessionRepository;
+import repository.UserRepository;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Compares chat_sessions insert throughput: one create() per row (the old
+ * loop), createAll() with JDBC batching, and createAll() through COPY.
+ *
+ * Usage: java -cp ".:postgresql.jar" benchmark.BatchInsertBenchmark [rows]
+ * Uses the same DB_* environment variables as controller.Main.
+ */
+public class BatchInsertBenchmark {
+
+    public static void main(String[] args) throws SQLException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+
+        IDB db = new PooledDB(new PostgresDB(
+                env("DB_HOST", "localhost:5432"),
+                env("DB_USER", "postgres"),
+                env("DB_PASSWORD", "1234"),
+                env("DB_NAME", "chatbot_platform")), 1, 4);
+
+        BotRepository botRepo = new BotRepository(db);
+        UserRepository userRepo = new UserRepository(db);
+        ChatSessionRepository sessionRepo = new ChatSessionRepository(db);
+
+        Bot bot = new Bot(0, "Benchmark Bot", "Hi", "Bulk insert benchmark", 8000);
+        User user = new User(0, "Benchmark User", "Bulk insert benchmark", false);
+        botRepo.create(bot);
+        userRepo.create(user);
+
+        try {
+            run("loop create()", rows, () -> {
+                for (ChatSession session : sessions(bot, user, rows)) {
+                    sessionRepo.create(session);
+                }
+            });
+
+            sessionRepo.setCopyThreshold(Integer.MAX_VALUE);
+            for (int batchSize : new int[]{100, 500, 2_000}) {
+                sessionRepo.setBatchSize(batchSize);
+                run("createAll() batch=" + batchSize, rows, () -> sessionRepo.createAll(sessions(bot, user, rows)));
+            }
+
+            run("copyAll()", rows, () -> sessionRepo.copyAll(sessions(bot, user, rows)));
+        } finally {
+            // chat_sessions rows go with the bot through ON DELETE CASCADE.
+            botRepo.delete(bot.getId());
+            userRepo.delete(user.getId());
+            db.close();
+        }
+    }
+
+    private static List<ChatSession> sessions(Bot bot, User user, int rows) {
+        List<ChatSession> sessions = new ArrayList<>(rows);
+        Date now = new Date();
+        for (int i = 0; i < rows; i++) {
+            sessions.add(new ChatSession(0, bot, user, now, i % 4000));
+        }
+        return sessions;
+    }
+
+    private static void run(String label, int rows, SqlTask task) throws SQLException {
+        long start = System.nanoTime();
+        task.run();
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        System.out.printf("%-24s %8d rows in %7.3f s  -> %,12.0f rows/s%n", label, rows, seconds, rows / seconds);
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value == null ? defaultValue : value;
+    }
+
+    @FunctionalInterface
+    private interface SqlTask {
+        void run() throws SQLException;
+    }
+}
@@ -0,0 +1,164 @@
+package benchmark;
+
+import metrics.LatencyHistogram;
+import model.Bot;
+import search.BotSearchIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Query latency of BotSearchIndex at several corpus sizes, against a linear
+ * scan that does what "definition LIKE '%term%'" does. Bots are synthetic:
+ * words drawn from a Zipf-distributed vocabulary, so a few terms occur in most
+ * definitions and most terms are rare, as in real text. Also reports single-
+ * and multi-threaded rebuild time and the postings size.
+ *
+ * Usage: java -Xmx4g -cp . benchmark.BotSearchBenchmark [bots...]   (default 10000 100000 1000000)
+ */
+public class BotSearchBenchmark {
+    private static final int VOCABULARY = 50_000;
+    private static final int QUERIES = 2_000;
+    private static final String[] SYLLABLES = {
+            "ka", "lo", "mi", "ne", "ru", "sa", "to", "vi", "da", "pe", "zo", "ri", "mo", "lu", "ta", "wen",
+            "gar", "fi", "bel", "dor", "an", "el", "is", "or", "un", "ha", "qui", "xen", "yo", "ju", "cra", "ste"
+    };
+
+    private static final String[] WORDS = new String[VOCABULARY];
+    private static final double[] CUMULATIVE = new double[VOCABULARY];
+
+    static {
+        double total = 0;
+        for (int i = 0; i < VOCABULARY; i++) {
+            WORDS[i] = word(i);
+            total += 1.0 / (i + 1);
+            CUMULATIVE[i] = total;
+        }
+        for (int i = 0; i < VOCABULARY; i++) {
+            CUMULATIVE[i] /= total;
+        }
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = args.length == 0
+                ? new int[]{10_000, 100_000, 1_000_000}
+                : Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int size : sizes) {
+            System.out.printf("%n=== %,d bots ===%n", size);
+            List<Bot> bots = generate(size, new Random(42));
+
+            BotSearchIndex index = new BotSearchIndex();
+            long start = System.nanoTime();
+            index.rebuild(bots, 1);
+            System.out.printf("rebuild, 1 worker:    %,8d ms%n", (System.nanoTime() - start) / 1_000_000);
+            start = System.nanoTime();
+            index.rebuild(bots, cores);
+            System.out.printf("rebuild, %d worker(s): %,8d ms%n", cores, (System.nanoTime() - start) / 1_000_000);
+            System.out.println("index: " + index.getStats());
+
+            Random random = new Random(7);
+            System.out.printf("%-24s %10s %10s %10s%n", "query", "p50 us", "p99 us", "max us");
+            run(index, "common term", QUERIES, () -> WORDS[random.nextInt(10)]);
+            run(index, "mid-frequency term", QUERIES, () -> WORDS[100 + random.nextInt(1_000)]);
+            run(index, "rare term", QUERIES, () -> WORDS[10_000 + random.nextInt(VOCABULARY - 10_000)]);
+            run(index, "two terms", QUERIES, () -> WORDS[random.nextInt(1_000)] + " " + WORDS[random.nextInt(5_000)] + " ");
+            run(index, "prefix (3 chars)", QUERIES, () -> prefix(WORDS[random.nextInt(5_000)], 3));
+            run(index, "term + prefix", QUERIES, () -> WORDS[random.nextInt(1_000)] + " "
+                    + prefix(WORDS[random.nextInt(5_000)], 4));
+
+            LatencyHistogram scan = new LatencyHistogram();
+            long sink = 0;
+            for (int i = 0; i < 20; i++) {
+                String term = WORDS[100 + random.nextInt(1_000)];
+                long t = System.nanoTime();
+                sink += scan(bots, term);
+                scan.record(System.nanoTime() - t);
+            }
+            print("linear scan (LIKE)", scan.snapshot());
+            if (sink == 42) {
+                System.out.println();
+            }
+        }
+    }
+
+    private interface QuerySource {
+        String next();
+    }
+
+    private static void run(BotSearchIndex index, String label, int queries, QuerySource source) {
+        long sink = 0;
+        for (int i = 0; i < queries / 4; i++) {
+            sink += index.search(source.next(), 10).size();
+        }
+        LatencyHistogram latency = new LatencyHistogram();
+        for (int i = 0; i < queries; i++) {
+            String query = source.next();
+            long start = System.nanoTime();
+            sink += index.search(query, 10).size();
+            latency.record(System.nanoTime() - start);
+        }
+        print(label, latency.snapshot());
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    private static void print(String label, LatencyHistogram.Snapshot snapshot) {
+        System.out.printf(Locale.ROOT, "%-24s %10.1f %10.1f %10.1f%n", label,
+                snapshot.getValueAtPercentile(50) / 1000.0,
+                snapshot.getValueAtPercentile(99) / 1000.0,
+                snapshot.getMaxNanos() / 1000.0);
+    }
+
+    private static int scan(List<Bot> bots, String term) {
+        int matches = 0;
+        for (Bot bot : bots) {
+            if (bot.getDefinition().toLowerCase(Locale.ROOT).contains(term)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    private static List<Bot> generate(int count, Random random) {
+        List<Bot> bots = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            bots.add(new Bot(i, capitalize(text(random, 2)), text(random, 8), text(random, 30), 8000));
+        }
+        return bots;
+    }
+
+    private static String text(Random random, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            int rank = Arrays.binarySearch(CUMULATIVE, random.nextDouble());
+            sb.append(WORDS[Math.min(VOCABULARY - 1, rank < 0 ? -rank - 1 : rank)]);
+        }
+        return sb.toString();
+    }
+
+    private static String word(int i) {
+        StringBuilder sb = new StringBuilder();
+        int n = i;
+        do {
+            sb.append(SYLLABLES[n % SYLLABLES.length]);
+            n /= SYLLABLES.length;
+        } while (n > 0);
+        return sb.toString(); // short words for the common ranks, like real text
+    }
+
+    private static String prefix(String word, int length) {
+        return word.substring(0, Math.min(length, word.length()));
+    }
+
+    private static String capitalize(String s) {
+        return Character.toUpperCase(s.charAt(0)) + s.substring(1);
+    }
+}
@@ -0,0 +1,258 @@
+package benchmark;
+
+import benchmark.harness.BenchmarkRunner;
+import benchmark.harness.StubDB;
+import data.PooledDB;
+import model.Bot;
+import model.ChatSession;
+import model.User;
+import repository.BotRepository;
+import repository.ChatSessionRepository;
+import repository.UserRepository;
+import repository.interfaces.SessionRepository;
+import service.ChatService;
+import utils.SortingUtils;
+
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * Offline benchmark suite for the repository, service and model hot paths.
+ * Repositories run against StubDB (canned rows, no PostgreSQL), so the numbers
+ * cover mapping, binding and batching work; pass --round-trip-us to add a
+ * simulated network round trip per statement and --parse-us to charge each
+ * newly prepared statement for its server-side parse and plan (what the
+ * pool's statement cache saves).
+ *
+ * Usage: java benchmark.CoreBenchmarks [--filter regex] [--csv file] [--json file]
+ *                                      [--warmup n] [--iterations n] [--time ms] [--round-trip-us n]
+ *                                      [--parse-us n]
+ */
+public class CoreBenchmarks {
+    private static final int[] ROW_COUNTS = {100, 10_000};
+    private static final int[] BATCH_SIZES = {100, 1_000};
+    private static final int[] SORT_SIZES = {100, 1_000, 10_000};
+
+    private static final String[] DEFINITIONS = {
+            "You are a debug bot. Reply only with SYSTEM ONLINE.",
+            "You are the Narrator of Wonderland. Your style is surreal, whimsical, and slightly unsettling. "
+                    + "Describe the environment vividly using dream logic. You control NPCs like the Cheshire Cat "
+                    + "and the Queen of Hearts. Never break character. Always offer the user a choice of where to go next.",
+    };
+
+    public static void main(String[] args) throws Exception {
+        Pattern filter = null;
+        String csv = null;
+        String json = null;
+        int warmup = 3;
+        int iterations = 5;
+        long timeMillis = 500;
+        long roundTripNanos = 0;
+        long parseNanos = 0;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--filter": filter = Pattern.compile(args[++i]); break;
+                case "--csv": csv = args[++i]; break;
+                case "--json": json = args[++i]; break;
+                case "--warmup": warmup = Integer.parseInt(args[++i]); break;
+                case "--iterations": iterations = Integer.parseInt(args[++i]); break;
+                case "--time": timeMillis = Long.parseLong(args[++i]); break;
+                case "--round-trip-us": roundTripNanos = Long.parseLong(args[++i]) * 1000; break;
+                case "--parse-us": parseNanos = Long.parseLong(args[++i]) * 1000; break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        BenchmarkRunner runner = new BenchmarkRunner(warmup, iterations, timeMillis);
+        addRepositoryBenchmarks(runner, roundTripNanos, parseNanos);
+        addStatementCacheBenchmarks(runner, roundTripNanos, parseNanos);
+        addServiceBenchmarks(runner, roundTripNanos, parseNanos);
+        addModelBenchmarks(runner);
+
+        List<BenchmarkRunner.Result> results = runner.run(filter);
+        if (csv != null) {
+            BenchmarkRunner.writeCsv(results, Paths.get(csv));
+        }
+        if (json != null) {
+            BenchmarkRunner.writeJson(results, Paths.get(json));
+        }
+    }
+
+    private static void addRepositoryBenchmarks(BenchmarkRunner runner, long roundTripNanos, long parseNanos) {
+        for (int rows : ROW_COUNTS) {
+            StubDB db = populatedDb(rows, roundTripNanos, parseNanos);
+            BotRepository bots = new BotRepository(db);
+            UserRepository users = new UserRepository(db);
+            ChatSessionRepository sessions = new ChatSessionRepository(db);
+            String params = "rows=" + rows;
+
+            runner.add("repo.bot.getAll", params, bh -> bh.consume(bots.getAll()));
+            runner.add("repo.user.getAll", params, bh -> bh.consume(users.getAll()));
+            runner.add("repo.session.getAll.stubs", params,
+                    bh -> bh.consume(sessions.getAll(SessionRepository.FetchMode.STUBS)));
+            runner.add("repo.session.getAll.names", params,
+                    bh -> bh.consume(sessions.getAll(SessionRepository.FetchMode.NAMES_ONLY)));
+            runner.add("repo.session.getAll.hydrated", params,
+                    bh -> bh.consume(sessions.getAll(SessionRepository.FetchMode.HYDRATED)));
+        }
+
+        StubDB db = populatedDb(1_000, roundTripNanos, parseNanos);
+        BotRepository bots = new BotRepository(db);
+        UserRepository users = new UserRepository(db);
+        ChatSessionRepository sessions = new ChatSessionRepository(db);
+        Random random = new Random(42);
+
+        runner.add("repo.bot.getById", "", bh -> bh.consume(bots.getById(1 + random.nextInt(1_000))));
+        runner.add("repo.user.getById", "", bh -> bh.consume(users.getById(1 + random.nextInt(1_000))));
+        runner.add("repo.session.getById", "", bh -> bh.consume(sessions.getById(1 + random.nextInt(1_000))));
+        runner.add("repo.bot.create", "", bh -> {
+            Bot bot = bot(0);
+            bots.create(bot);
+            bh.consume(bot.getId());
+        });
+        runner.add("repo.bot.update", "", bh -> bh.consume(bots.update(bot(1 + random.nextInt(1_000)))));
+        runner.add("repo.bot.delete", "", bh -> bh.consume(bots.delete(1 + random.nextInt(1_000))));
+        runner.add("repo.user.create", "", bh -> {
+            User user = user(0);
+            users.create(user);
+            bh.consume(user.getId());
+        });
+        runner.add("repo.session.create", "", bh -> {
+            ChatSession session = session(0, bot(1), user(1));
+            sessions.create(session);
+            bh.consume(session.getId());
+        });
+        runner.add("repo.session.addTokens", "", bh -> bh.consume(sessions.addTokens(1 + random.nextInt(1_000), 10)));
+
+        for (int size : BATCH_SIZES) {
+            String params = "batch=" + size;
+            runner.add("repo.bot.createAll", params, bh -> bh.consume(bots.createAll(bots(size))));
+            runner.add("repo.bot.updateAll", params, bh -> bh.consume(bots.updateAll(bots(size))));
+            runner.add("repo.session.createAll", params, bh -> {
+                List<ChatSession> batch = new ArrayList<>(size);
+                Bot bot = bot(1);
+                User user = user(1);
+                for (int i = 0; i < size; i++) {
+                    batch.add(session(0, bot, user));
+                }
+                bh.consume(sessions.createAll(batch));
+            });
+            List<Integer> ids = new ArrayList<>(size);
+            for (int i = 1; i <= size; i++) {
+                ids.add(i);
+            }
+            runner.add("repo.session.deleteAll", params, bh -> bh.consume(sessions.deleteAll(ids)));
+        }
+    }
+
+    /**
+     * The same lookups through a one-connection PooledDB, without and with its statement cache.
+     */
+    private static void addStatementCacheBenchmarks(BenchmarkRunner runner, long roundTripNanos, long parseNanos) {
+        for (int cacheSize : new int[]{0, 64}) {
+            PooledDB pool = new PooledDB(populatedDb(1_000, roundTripNanos, parseNanos), 1, 1);
+            pool.setStatementCacheSize(cacheSize);
+            BotRepository bots = new BotRepository(pool);
+            ChatSessionRepository sessions = new ChatSessionRepository(pool);
+            Random random = new Random(42);
+            String params = "stmtCache=" + cacheSize;
+
+            runner.add("pool.bot.getById", params, bh -> bh.consume(bots.getById(1 + random.nextInt(1_000))));
+            runner.add("pool.session.addTokens", params,
+                    bh -> bh.consume(sessions.addTokens(1 + random.nextInt(1_000), 10)));
+        }
+    }
+
+    private static void addServiceBenchmarks(BenchmarkRunner runner, long roundTripNanos, long parseNanos) {
+        StubDB db = populatedDb(1_000, roundTripNanos, parseNanos);
+        ChatService service = new ChatService(new BotRepository(db), new UserRepository(db), new ChatSessionRepository(db));
+        Random random = new Random(7);
+        runner.add("service.startChatSession", "", bh ->
+                bh.consume(service.startChatSession(1 + random.nextInt(1_000), 1 + random.nextInt(1_000))));
+        runner.add("service.getAllSessions", "rows=1000", bh -> bh.consume(service.getAllSessions()));
+    }
+
+    private static void addModelBenchmarks(BenchmarkRunner runner) {
+        for (String definition : DEFINITIONS) {
+            String params = "chars=" + definition.length();
+            Bot cached = new Bot(1, "Narrator", "Hello there.", definition, 4000);
+            runner.add("model.bot.estimateTokenUsage.cold", params,
+                    bh -> bh.consume(new Bot(1, "Narrator", "Hello there.", definition, 4000).estimateTokenUsage()));
+            runner.add("model.bot.estimateTokenUsage.cached", params, bh -> bh.consume(cached.estimateTokenUsage()));
+        }
+        User user = user(1);
+        runner.add("model.user.estimateTokenUsage.cold", "",
+                bh -> bh.consume(new User(1, user.getName(), user.getPersona(), false).estimateTokenUsage()));
+
+        for (int size : SORT_SIZES) {
+            List<Bot> shuffled = bots(size);
+            Collections.shuffle(shuffled, new Random(size));
+            String params = "bots=" + size;
+            // Each operation sorts a fresh copy, so the copy is part of the measured cost.
+            runner.add("utils.sortBotsByTokenLimit", params, bh -> {
+                List<Bot> copy = new ArrayList<>(shuffled);
+                SortingUtils.sortBotsByTokenLimit(copy);
+                bh.consume(copy);
+            });
+            runner.add("utils.sortBotsByName", params, bh -> {
+                List<Bot> copy = new ArrayList<>(shuffled);
+                SortingUtils.sortBotsByName(copy);
+                bh.consume(copy);
+            });
+        }
+    }
+
+    private static StubDB populatedDb(int rows, long roundTripNanos, long parseNanos) {
+        StubDB db = new StubDB(roundTripNanos, parseNanos);
+        List<Map<String, Object>> bots = new ArrayList<>(rows);
+        List<Map<String, Object>> users = new ArrayList<>(rows);
+        List<Map<String, Object>> sessions = new ArrayList<>(rows);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (int id = 1; id <= rows; id++) {
+            int botId = 1 + id % Math.max(1, rows / 10);
+            int userId = 1 + id % Math.max(1, rows / 4);
+            bots.add(StubDB.row("id", id, "name", "Bot " + id, "greeting", "Hello from bot " + id + ".",
+                    "definition", DEFINITIONS[id % DEFINITIONS.length], "token_limit", 1000 + id % 7000));
+            users.add(StubDB.row("id", id, "name", "User " + id, "persona", "Curious traveller number " + id,
+                    "is_premium", id % 5 == 0));
+            // Session rows carry the joined columns too, so every FetchMode can read them.
+            sessions.add(StubDB.row("id", id, "bot_id", botId, "user_id", userId, "started_at", now,
+                    "total_tokens_used", id % 4000, "bot_name", "Bot " + botId,
+                    "greeting", "Hello from bot " + botId + ".", "definition", DEFINITIONS[botId % DEFINITIONS.length],
+                    "token_limit", 1000 + botId % 7000, "user_name", "User " + userId,
+                    "persona", "Curious traveller number " + userId, "is_premium", userId % 5 == 0));
+        }
+        db.table("bots", bots);
+        db.table("users", users);
+        db.table("chat_sessions", sessions);
+        return db;
+    }
+
+    private static List<Bot> bots(int count) {
+        List<Bot> bots = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            bots.add(bot(i));
+        }
+        return bots;
+    }
+
+    private static Bot bot(int id) {
+        return new Bot(id, "Bot " + id, "Hello from bot " + id + ".", DEFINITIONS[id % DEFINITIONS.length],
+                1000 + (id * 7919) % 7000);
+    }
+
+    private static User user(int id) {
+        return new User(id, "User " + id, "Curious traveller number " + id, id % 5 == 0);
+    }
+
+    private static ChatSession session(int id, Bot bot, User user) {
+        return new ChatSession(id, bot, user, new Date(), id % 4000);
+    }
+}
@@ -0,0 +1,102 @@
+package benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Closed-loop load test for the HTTP API: for each concurrency level, N client
+ * threads issue GET requests back to back for a fixed duration, and the test
+ * reports throughput and p50/p99 latency.
+ *
+ * Start the server first (java controller.Main --http 8080), then:
+ * Usage: java benchmark.HttpLoadTest [baseUrl] [path] [secondsPerLevel]
+ *   e.g. java benchmark.HttpLoadTest http://localhost:8080 /bots/1 10
+ */
+public class HttpLoadTest {
+    private static final int[] CONCURRENCY = {1, 4, 16, 64};
+    private static final int MAX_SAMPLES_PER_CLIENT = 1_000_000;
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        String path = args.length > 1 ? args[1] : "/bots";
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+
+        System.out.println("Target: GET " + baseUrl + path + ", " + seconds + "s per level");
+        run(client, request, 4, 2, false);
+        System.out.printf("%-12s %10s %10s %10s %10s %8s%n", "concurrency", "requests", "req/s", "p50 ms", "p99 ms", "errors");
+        for (int clients : CONCURRENCY) {
+            run(client, request, clients, seconds, true);
+        }
+    }
+
+    private static void run(HttpClient client, HttpRequest request, int clients, int seconds, boolean report)
+            throws InterruptedException {
+        long[][] samples = new long[clients][];
+        int[] counts = new int[clients];
+        AtomicInteger errors = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(clients);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+
+        for (int c = 0; c < clients; c++) {
+            int index = c;
+            Thread worker = new Thread(() -> {
+                long[] latencies = new long[1024];
+                int n = 0;
+                while (System.nanoTime() < deadline && n < MAX_SAMPLES_PER_CLIENT) {
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                        if (response.statusCode() >= 400) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                    if (n == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, n * 2);
+                    }
+                    latencies[n++] = System.nanoTime() - start;
+                }
+                samples[index] = latencies;
+                counts[index] = n;
+                done.countDown();
+            }, "load-client-" + c);
+            worker.start();
+        }
+        done.await();
+        if (!report) {
+            return;
+        }
+
+        int total = Arrays.stream(counts).sum();
+        long[] all = new long[total];
+        int offset = 0;
+        for (int c = 0; c < clients; c++) {
+            System.arraycopy(samples[c], 0, all, offset, counts[c]);
+            offset += counts[c];
+        }
+        Arrays.sort(all);
+        System.out.printf("%-12d %10d %10.0f %10.2f %10.2f %8d%n", clients, total, total / (double) seconds,
+                percentile(all, 0.50), percentile(all, 0.99), errors.get());
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,119 @@
+package benchmark;
+
+import benchmark.harness.BenchmarkRunner;
+import metrics.LatencyHistogram;
+import metrics.MetricsRegistry;
+import metrics.OperationMetrics;
+import model.Bot;
+import model.User;
+import repository.InstrumentedRepository;
+import repository.InstrumentedSessionRepository;
+import repository.interfaces.CrudRepository;
+import repository.memory.InMemoryBotRepository;
+import repository.memory.InMemorySessionRepository;
+import repository.memory.InMemoryStore;
+import repository.memory.InMemoryUserRepository;
+import service.ChatService;
+import service.InstrumentedChatService;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Cost of the metrics layer: the raw histogram record, and getById / the
+ * session-start flow with and without instrumentation. Runs on the in-memory
+ * repositories so the repository call itself is as cheap as possible and the
+ * overhead is not hidden behind JDBC. Also reports bytes allocated per record
+ * and multi-threaded record throughput.
+ *
+ * Usage: java benchmark.MetricsOverheadBenchmark [--json file] [--csv file]
+ */
+public class MetricsOverheadBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        InMemoryStore store = new InMemoryStore();
+        CrudRepository<Bot> bots = new InMemoryBotRepository(store);
+        CrudRepository<User> users = new InMemoryUserRepository(store);
+        InMemorySessionRepository sessions = new InMemorySessionRepository(store);
+        for (int i = 0; i < 1_000; i++) {
+            bots.create(new Bot(0, "Bot " + i, "Hello.", "Definition " + i, 4000));
+            users.create(new User(0, "User " + i, "Persona " + i, i % 5 == 0));
+        }
+
+        MetricsRegistry registry = new MetricsRegistry();
+        CrudRepository<Bot> instrumentedBots = new InstrumentedRepository<>(bots, registry, "repository.bots");
+        CrudRepository<User> instrumentedUsers = new InstrumentedRepository<>(users, registry, "repository.users");
+        InstrumentedSessionRepository instrumentedSessions =
+                new InstrumentedSessionRepository(sessions, registry, "repository.sessions");
+        ChatService plainService = new ChatService(bots, users, sessions);
+        ChatService instrumentedService = new InstrumentedChatService(instrumentedBots, instrumentedUsers,
+                instrumentedSessions, null, registry);
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        OperationMetrics operation = registry.operation("benchmark.noop");
+        Random random = new Random(1);
+
+        BenchmarkRunner runner = new BenchmarkRunner(3, 5, 500);
+        runner.add("histogram.record", "", bh -> histogram.record(random.nextInt(1_000_000)));
+        runner.add("operation.success", "", bh -> operation.success(System.nanoTime()));
+        runner.add("repo.bot.getById", "plain", bh -> bh.consume(bots.getById(1 + random.nextInt(1_000))));
+        runner.add("repo.bot.getById", "instrumented",
+                bh -> bh.consume(instrumentedBots.getById(1 + random.nextInt(1_000))));
+        runner.add("service.startChatSession", "plain",
+                bh -> bh.consume(plainService.startChatSession(1 + random.nextInt(1_000), 1 + random.nextInt(1_000))));
+        runner.add("service.startChatSession", "instrumented",
+                bh -> bh.consume(instrumentedService.startChatSession(1 + random.nextInt(1_000), 1 + random.nextInt(1_000))));
+        List<BenchmarkRunner.Result> results = runner.run(null);
+        for (int i = 0; i < args.length - 1; i += 2) {
+            if (args[i].equals("--json")) {
+                BenchmarkRunner.writeJson(results, Paths.get(args[i + 1]));
+            } else if (args[i].equals("--csv")) {
+                BenchmarkRunner.writeCsv(results, Paths.get(args[i + 1]));
+            }
+        }
+
+        System.out.printf("%nallocated per histogram.record: %.2f bytes%n", allocatedPerRecord(histogram));
+        for (int threads : new int[]{1, 2, 4, 8}) {
+            System.out.printf("concurrent record, %d threads: %,.0f records/s%n", threads, concurrentRecords(threads));
+        }
+        System.out.println();
+        System.out.print(registry.dump());
+    }
+
+    private static double allocatedPerRecord(LatencyHistogram histogram) {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return Double.NaN;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        long id = Thread.currentThread().getId();
+        int n = 10_000_000;
+        long before = threads.getThreadAllocatedBytes(id);
+        for (int i = 0; i < n; i++) {
+            histogram.record(i & 0xFFFFF);
+        }
+        return (double) (threads.getThreadAllocatedBytes(id) - before) / n;
+    }
+
+    private static double concurrentRecords(int threadCount) throws InterruptedException {
+        LatencyHistogram shared = new LatencyHistogram();
+        int perThread = 5_000_000;
+        Thread[] workers = new Thread[threadCount];
+        long start = System.nanoTime();
+        for (int t = 0; t < threadCount; t++) {
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    shared.record(i & 0xFFFF);
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return threadCount * (double) perThread / seconds;
+    }
+}
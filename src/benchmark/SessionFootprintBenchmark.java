@@ -0,0 +1,79 @@
+package benchmark;
+
+import model.Bot;
+import model.ChatSession;
+import model.User;
+import utils.StringPool;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Retained heap for 100k loaded sessions that reference a handful of bots and users,
+ * with every row carrying its own copy of the text (as the JDBC driver returns it).
+ * "before" disables the StringPool and builds derived values per call, "after" uses
+ * the pool and the cached prompts/token counts.
+ *
+ * Usage: java -Xmx1g -cp . benchmark.SessionFootprintBenchmark [sessions]
+ */
+public class SessionFootprintBenchmark {
+    private static final String DEFINITION =
+            "You are the Narrator of Wonderland. Your style is surreal, whimsical, and slightly unsettling. "
+                    + "Describe the environment vividly using dream logic. You control NPCs like the Cheshire Cat "
+                    + "and the Queen of Hearts. Never break character. Always offer the user a choice of where to go next.";
+    private static final String GREETING = "*You know the beginning of this story, don't you?*";
+    private static final String PERSONA = "Friendly girl trying to find her way home.";
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+
+        StringPool.setEnabled(false);
+        long before = measure(count, false);
+
+        StringPool.setEnabled(true);
+        long after = measure(count, true);
+
+        System.out.printf("sessions: %,d%n", count);
+        System.out.printf("before (no pool):   %,12d bytes  (%,d bytes/session)%n", before, before / count);
+        System.out.printf("after  (pool+cache): %,11d bytes  (%,d bytes/session)%n", after, after / count);
+        System.out.printf("saved: %.1f%%%n", 100.0 * (before - after) / before);
+    }
+
+    private static long measure(int count, boolean touchDerived) {
+        long baseline = usedHeap();
+        List<ChatSession> sessions = new ArrayList<>(count);
+        Date now = new Date();
+        for (int i = 0; i < count; i++) {
+            int botId = i % 8;
+            int userId = i % 32;
+            // new String(...) mimics ResultSet.getString, which hands back a fresh copy per row.
+            Bot bot = new Bot(botId, new String("Wonderland " + botId), new String(GREETING),
+                    new String(DEFINITION + botId), 16000);
+            User user = new User(userId, new String("User " + userId), new String(PERSONA), userId % 2 == 0);
+            if (touchDerived) {
+                bot.getSystemPrompt();
+                user.getSystemPrompt();
+            }
+            sessions.add(new ChatSession(i, bot, user, now, i));
+        }
+        long retained = usedHeap() - baseline;
+        if (sessions.size() != count) {
+            throw new IllegalStateException();
+        }
+        return retained;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,75 @@
+package benchmark;
+
+import tokenizer.BpeTokenizer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Measures BpeTokenizer throughput (tokens/s) on typical bot definitions,
+ * both on the raw encode path and through the per-string count cache.
+ *
+ * Usage: java benchmark.TokenizerBenchmark [path/to/bpe_merges.txt]
+ */
+public class TokenizerBenchmark {
+    private static final String[] DEFINITIONS = {
+            "You are the Narrator of Wonderland. Your style is surreal, whimsical, and slightly unsettling. "
+                    + "Describe the environment vividly using dream logic. You control NPCs like the Cheshire Cat "
+                    + "and the Queen of Hearts. Never break character. Always offer the user a choice of where to go next.",
+            "You are a debug bot used for testing database connectivity. Ignore all user inputs and reply only "
+                    + "with technical system status: \"SYSTEM ONLINE: [Timestamp]\". Do not engage in conversation.",
+            "You are a senior Java reviewer. When given code such as `public int sum(int[] xs) { int s = 0; "
+                    + "for (int x : xs) s += x; return s; }` point out bugs, naming issues and missing tests. "
+                    + "Answer in Markdown with ```java fenced blocks.",
+            "Ты — дружелюбный помощник, который отвечает кратко и по делу. Всегда уточняй вопрос, если он неясен. "
+                    + "あなたは丁寧な日本語で答えるアシスタントです。"
+    };
+
+    public static void main(String[] args) throws IOException {
+        Path merges = Paths.get(args.length > 0 ? args[0] : "resources/bpe_merges.txt");
+        BpeTokenizer raw;
+        BpeTokenizer cached;
+        try (Reader reader = Files.newBufferedReader(merges, StandardCharsets.UTF_8)) {
+            raw = BpeTokenizer.load(reader, 0);
+        }
+        cached = BpeTokenizer.load(merges);
+
+        System.out.println("Vocabulary size: " + raw.vocabularySize());
+        for (String definition : DEFINITIONS) {
+            System.out.printf("%4d chars -> %4d tokens (old length/4 estimate: %d)%n",
+                    definition.length(), raw.countTokensUncached(definition), definition.length() / 4);
+        }
+
+        run("uncached encode", raw, 5, 2_000_000);
+        run("cached count", cached, 5, 2_000_000);
+    }
+
+    private static void run(String label, BpeTokenizer tokenizer, int rounds, int iterations) {
+        long sink = 0;
+        for (int warmup = 0; warmup < 3; warmup++) {
+            sink += loop(tokenizer, iterations / 10);
+        }
+        for (int round = 1; round <= rounds; round++) {
+            long start = System.nanoTime();
+            long tokens = loop(tokenizer, iterations);
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+            sink += tokens;
+            System.out.printf("%-16s round %d: %,14.0f tokens/s%n", label, round, tokens / seconds);
+        }
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    private static long loop(BpeTokenizer tokenizer, int iterations) {
+        long tokens = 0;
+        for (int i = 0; i < iterations; i++) {
+            tokens += tokenizer.countTokens(DEFINITIONS[i & (DEFINITIONS.length - 1)]);
+        }
+        return tokens;
+    }
+}
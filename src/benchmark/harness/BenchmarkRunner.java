@@ -0,0 +1,207 @@
+package benchmark.harness;
+
+import controller.http.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Small JMH-style harness: each benchmark runs for a number of timed warmup
+ * iterations, then timed measurement iterations, and reports the mean time per
+ * operation with its standard deviation across iterations. Results can be
+ * written as CSV or JSON so runs can be diffed.
+ */
+public class BenchmarkRunner {
+
+    @FunctionalInterface
+    public interface Operation {
+        void run(Blackhole blackhole) throws Exception;
+    }
+
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final long iterationNanos;
+    private final List<Case> cases = new ArrayList<>();
+
+    public BenchmarkRunner(int warmupIterations, int measurementIterations, long iterationMillis) {
+        if (measurementIterations <= 0 || iterationMillis <= 0) {
+            throw new IllegalArgumentException("Need at least one measurement iteration of positive length.");
+        }
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationNanos = iterationMillis * 1_000_000;
+    }
+
+    /**
+     * @param params free-form parameter description, e.g. "rows=1000"; empty when there are none
+     */
+    public void add(String name, String params, Operation operation) {
+        cases.add(new Case(name, params, operation));
+    }
+
+    public List<Result> run(Pattern filter) throws Exception {
+        List<Result> results = new ArrayList<>();
+        Blackhole blackhole = new Blackhole();
+        System.out.printf("%-40s %-14s %14s %12s %14s%n", "benchmark", "params", "ns/op", "stdev", "ops/s");
+        for (Case c : cases) {
+            if (filter != null && !filter.matcher(c.name).find()) {
+                continue;
+            }
+            for (int i = 0; i < warmupIterations; i++) {
+                iteration(c.operation, blackhole);
+            }
+            double[] nsPerOp = new double[measurementIterations];
+            long totalOps = 0;
+            for (int i = 0; i < measurementIterations; i++) {
+                long[] measured = iteration(c.operation, blackhole);
+                nsPerOp[i] = (double) measured[1] / measured[0];
+                totalOps += measured[0];
+            }
+            Result result = new Result(c.name, c.params, mean(nsPerOp), stdev(nsPerOp), measurementIterations, totalOps);
+            results.add(result);
+            System.out.printf("%-40s %-14s %14.1f %12.1f %,14.0f%n", result.name, result.params,
+                    result.nsPerOp, result.stdev, result.getOpsPerSecond());
+        }
+        blackhole.check();
+        return results;
+    }
+
+    /**
+     * Runs the operation until the iteration time is used up; returns {operations, elapsed nanos}.
+     */
+    private long[] iteration(Operation operation, Blackhole blackhole) throws Exception {
+        long start = System.nanoTime();
+        long deadline = start + iterationNanos;
+        long ops = 0;
+        long now;
+        do {
+            operation.run(blackhole);
+            ops++;
+            now = System.nanoTime();
+        } while (now < deadline);
+        return new long[]{ops, now - start};
+    }
+
+    public static void writeCsv(List<Result> results, Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("benchmark,params,ns_per_op,stdev,ops_per_sec,iterations,operations\n");
+            for (Result r : results) {
+                out.write(String.format(Locale.ROOT, "%s,\"%s\",%.3f,%.3f,%.3f,%d,%d%n", r.name,
+                        r.params, r.nsPerOp, r.stdev, r.getOpsPerSecond(), r.iterations, r.operations));
+            }
+        }
+    }
+
+    public static void writeJson(List<Result> results, Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            JsonWriter json = new JsonWriter(out);
+            json.beginObject()
+                    .field("javaVersion", System.getProperty("java.version"))
+                    .field("processors", Runtime.getRuntime().availableProcessors())
+                    .field("timestamp", System.currentTimeMillis());
+            json.name("results").beginArray();
+            for (Result r : results) {
+                json.beginObject()
+                        .field("benchmark", r.name)
+                        .field("params", r.params)
+                        .field("nsPerOp", r.nsPerOp)
+                        .field("stdev", r.stdev)
+                        .field("opsPerSecond", r.getOpsPerSecond())
+                        .field("iterations", r.iterations)
+                        .field("operations", r.operations)
+                        .endObject();
+            }
+            json.endArray().endObject();
+            json.flush();
+        }
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double v : values) {
+            sum += v;
+        }
+        return sum / values.length;
+    }
+
+    private static double stdev(double[] values) {
+        if (values.length < 2) {
+            return 0;
+        }
+        double mean = mean(values);
+        double squares = 0;
+        for (double v : values) {
+            squares += (v - mean) * (v - mean);
+        }
+        return Math.sqrt(squares / (values.length - 1));
+    }
+
+    private static final class Case {
+        private final String name;
+        private final String params;
+        private final Operation operation;
+
+        private Case(String name, String params, Operation operation) {
+            this.name = name;
+            this.params = params;
+            this.operation = operation;
+        }
+    }
+
+    /**
+     * Keeps results alive so the JIT cannot drop the work that produced them.
+     */
+    public static final class Blackhole {
+        private long sink;
+
+        public void consume(Object value) {
+            sink += System.identityHashCode(value);
+        }
+
+        public void consume(long value) {
+            sink += value;
+        }
+
+        private void check() {
+            if (sink == 42) {
+                System.out.print("");
+            }
+        }
+    }
+
+    public static final class Result {
+        private final String name;
+        private final String params;
+        private final double nsPerOp;
+        private final double stdev;
+        private final int iterations;
+        private final long operations;
+
+        private Result(String name, String params, double nsPerOp, double stdev, int iterations, long operations) {
+            this.name = name;
+            this.params = params;
+            this.nsPerOp = nsPerOp;
+            this.stdev = stdev;
+            this.iterations = iterations;
+            this.operations = operations;
+        }
+
+        public String getName() { return name; }
+        public String getParams() { return params; }
+        public double getNsPerOp() { return nsPerOp; }
+        public double getStdev() { return stdev; }
+        public int getIterations() { return iterations; }
+        public long getOperations() { return operations; }
+
+        public double getOpsPerSecond() {
+            return nsPerOp == 0 ? 0 : 1_000_000_000.0 / nsPerOp;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package benchmark.harness;
+
+import data.interfaces.IDB;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory IDB stand-in so repository code can be benchmarked without PostgreSQL.
+ * It does not interpret SQL: SELECTs return the canned rows registered for the
+ * table after FROM (one row for "WHERE id = ?", the first N for "LIMIT ?"),
+ * writes report one affected row per statement, and generated keys come from a
+ * sequence. Connection, PreparedStatement and ResultSet are dynamic proxies, so
+ * the measured cost is the repository's own mapping and binding work plus an
+ * optional simulated round trip per execute and parse cost per new statement.
+ */
+public class StubDB implements IDB {
+    private static final Pattern FROM_TABLE = Pattern.compile("\\bFROM\\s+(\\w+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern BY_ID = Pattern.compile("WHERE\\s+(\\w+\\.)?id\\s*=\\s*\\?", Pattern.CASE_INSENSITIVE);
+
+    private final Map<String, Table> tables = new ConcurrentHashMap<>();
+    private final AtomicInteger sequence = new AtomicInteger(1_000_000);
+    private final AtomicInteger executions = new AtomicInteger();
+    private final long roundTripNanos;
+    private final long parseNanos;
+
+    public StubDB() {
+        this(0);
+    }
+
+    public StubDB(long roundTripNanos) {
+        this(roundTripNanos, 0);
+    }
+
+    /**
+     * @param roundTripNanos time every execute/executeQuery/executeBatch parks for, to model network latency
+     * @param parseNanos     extra time the first execute of each PreparedStatement parks for, to model the
+     *                       server parsing and planning it; later executes reuse the server-side statement
+     */
+    public StubDB(long roundTripNanos, long parseNanos) {
+        this.roundTripNanos = roundTripNanos;
+        this.parseNanos = parseNanos;
+    }
+
+    /**
+     * Registers the rows returned by SELECTs from the given table. Every row must
+     * use the same column order; column 1 is what getInt(1) reads.
+     */
+    public void table(String name, List<Map<String, Object>> rows) {
+        tables.put(name.toLowerCase(), new Table(rows));
+    }
+
+    public static Map<String, Object> row(Object... columnsAndValues) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 0; i < columnsAndValues.length; i += 2) {
+            row.put((String) columnsAndValues[i], columnsAndValues[i + 1]);
+        }
+        return row;
+    }
+
+    public int getExecutions() {
+        return executions.get();
+    }
+
+    @Override
+    public Connection getConnection() {
+        return proxy(Connection.class, new ConnectionHandler());
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private void roundTrip(boolean parse) {
+        executions.incrementAndGet();
+        long nanos = roundTripNanos + (parse ? parseNanos : 0);
+        if (nanos > 0) {
+            LockSupport.parkNanos(nanos);
+        }
+    }
+
+    private static final class Table {
+        private final List<Map<String, Object>> rows;
+        private final Map<Integer, Map<String, Object>> byId = new HashMap<>();
+
+        private Table(List<Map<String, Object>> rows) {
+            this.rows = Collections.unmodifiableList(new ArrayList<>(rows));
+            for (Map<String, Object> row : rows) {
+                Object id = row.get("id");
+                if (id instanceof Integer) {
+                    byId.put((Integer) id, row);
+                }
+            }
+        }
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+        private boolean autoCommit = true;
+        private boolean closed;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "prepareStatement":
+                    return proxy(PreparedStatement.class, new StatementHandler((String) args[0]));
+                case "setAutoCommit":
+                    autoCommit = (Boolean) args[0];
+                    return null;
+                case "getAutoCommit":
+                    return autoCommit;
+                case "close":
+                    closed = true;
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "isValid":
+                    return !closed;
+                default:
+                    return objectMethod(proxy, method, args, "StubDB connection");
+            }
+        }
+    }
+
+    private final class StatementHandler implements InvocationHandler {
+        private final String sql;
+        private final Map<Integer, Object> parameters = new HashMap<>();
+        private int batched;
+        private int generated;
+        private boolean parsed;
+
+        private StatementHandler(String sql) {
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length == 2 && args[0] instanceof Integer) {
+                parameters.put((Integer) args[0], args[1]);
+                return null;
+            }
+            if (name.startsWith("execute")) {
+                roundTrip(!parsed);
+                parsed = true;
+            }
+            switch (name) {
+                case "addBatch":
+                    batched++;
+                    return null;
+                case "clearBatch":
+                    batched = 0;
+                    return null;
+                case "executeBatch": {
+                    int[] counts = new int[batched];
+                    Arrays.fill(counts, 1);
+                    generated = batched;
+                    batched = 0;
+                    return counts;
+                }
+                case "executeUpdate":
+                    generated = 1;
+                    return 1;
+                case "execute":
+                    return false;
+                case "executeQuery":
+                    return resultSet(query());
+                case "getGeneratedKeys": {
+                    List<Map<String, Object>> keys = new ArrayList<>(generated);
+                    for (int i = 0; i < generated; i++) {
+                        keys.add(row("id", sequence.incrementAndGet()));
+                    }
+                    generated = 0;
+                    return resultSet(keys);
+                }
+                default:
+                    return objectMethod(proxy, method, args, "StubDB statement: " + sql);
+            }
+        }
+
+        private List<Map<String, Object>> query() {
+            if (sql.toUpperCase().contains("RETURNING")) {
+                return Collections.singletonList(row("value", 0));
+            }
+            Matcher from = FROM_TABLE.matcher(sql);
+            Table table = from.find() ? tables.get(from.group(1).toLowerCase()) : null;
+            if (table == null) {
+                return Collections.emptyList();
+            }
+            if (BY_ID.matcher(sql).find()) {
+                Map<String, Object> row = table.byId.get((Integer) parameters.get(1));
+                return row == null ? Collections.emptyList() : Collections.singletonList(row);
+            }
+            if (sql.toUpperCase().contains("LIMIT ?")) {
+                Object limit = parameters.get(parameters.size());
+                int n = limit instanceof Integer ? (Integer) limit : table.rows.size();
+                return table.rows.subList(0, Math.min(n, table.rows.size()));
+            }
+            return table.rows;
+        }
+    }
+
+    private static ResultSet resultSet(List<Map<String, Object>> rows) {
+        return proxy(ResultSet.class, new ResultSetHandler(rows));
+    }
+
+    private static final class ResultSetHandler implements InvocationHandler {
+        private final List<Map<String, Object>> rows;
+        private int cursor = -1;
+        private Object[] current;
+        private boolean wasNull;
+
+        private ResultSetHandler(List<Map<String, Object>> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if (name.equals("next")) {
+                if (++cursor < rows.size()) {
+                    current = rows.get(cursor).values().toArray();
+                    return true;
+                }
+                return false;
+            }
+            if (name.startsWith("get") && args != null && args.length == 1 && current != null) {
+                Object value = args[0] instanceof Integer
+                        ? current[(Integer) args[0] - 1]
+                        : rows.get(cursor).get((String) args[0]);
+                wasNull = value == null;
+                return convert(value, method.getReturnType());
+            }
+            if (name.equals("wasNull")) {
+                return wasNull;
+            }
+            return objectMethod(proxy, method, args, "StubDB result set");
+        }
+
+        private static Object convert(Object value, Class<?> type) {
+            if (value == null) {
+                return defaultValue(type);
+            }
+            if (type == int.class) {
+                return ((Number) value).intValue();
+            }
+            if (type == long.class) {
+                return ((Number) value).longValue();
+            }
+            return value;
+        }
+    }
+
+    private static Object objectMethod(Object proxy, Method method, Object[] args, String description) {
+        switch (method.getName()) {
+            case "toString":
+                return description;
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "unwrap":
+                return proxy;
+            case "isWrapperFor":
+                return false;
+            default:
+                return defaultValue(method.getReturnType());
+        }
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == double.class) {
+            return 0.0;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(StubDB.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+}
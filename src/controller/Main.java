@@ -1,22 +1,73 @@
 package controller;
 
+import analytics.Granularity;
+import analytics.SessionColumnStore;
+import analytics.TokenAnalytics;
+import analytics.UsageTotal;
+import archive.SessionArchive;
+import archive.SessionArchiver;
+import controller.http.ApiServer;
+import data.PooledDB;
+import data.TracingDB;
+import data.migration.MigrationRunner;
+import data.migration.PartitionMaintenance;
 import data.PostgresDB;
 import data.interfaces.IDB;
+import metrics.MetricsRegistry;
+import model.BaseEntity;
 import model.Bot;
 import model.User;
 import model.ChatSession;
 import repository.BotRepository;
+import repository.CachingRepository;
+import repository.InstrumentedRepository;
+import repository.InstrumentedSessionRepository;
 import repository.UserRepository;
+import repository.interfaces.CrudRepository;
+import repository.interfaces.Page;
+import repository.interfaces.PageRequest;
+import repository.interfaces.SessionRepository;
+import repository.memory.InMemoryBotRepository;
+import repository.memory.InMemorySessionRepository;
+import repository.memory.InMemoryStore;
+import repository.memory.InMemoryUserRepository;
 import repository.ChatSessionRepository;
+import search.BotSearchIndex;
 import service.ChatService;
-
+import service.InstrumentedChatService;
+import service.SessionBudgetTracker;
+import service.SessionWriteBehindBuffer;
+import service.TokenRateLimiter;
+import transfer.BulkExporter;
+import transfer.BulkImporter;
+import transfer.RecordCodec;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.Date;
 import java.util.List;
 import java.util.Scanner;
+import java.util.stream.Stream;
 
 public class Main {
     private static ChatService service;
     private static Scanner scanner;
+    private static IDB db;
+    private static PooledDB pool;
+    private static TracingDB sqlTrace;
+    private static TokenAnalytics analytics;
+    private static SessionColumnStore columnStore;
+    private static PartitionMaintenance partitions;
+    private static SessionArchive sessionArchive;
+    private static SessionArchiver archiver;
+    private static InMemoryStore memoryStore;
+    private static MetricsRegistry metrics;
+    private static CachingRepository<Bot> botCache;
+    private static CachingRepository<User> userCache;
 
     public static void main(String[] args) {
         String host = System.getenv("DB_HOST");
@@ -31,12 +82,125 @@ public class Main {
         String dbName = System.getenv("DB_NAME");
         if (dbName == null) dbName = "chatbot_platform";
 
-        IDB db = new PostgresDB(host, dbUser, dbPass, dbName);
-        BotRepository botRepo = new BotRepository(db);
-        UserRepository userRepo = new UserRepository(db);
-        ChatSessionRepository sessionRepo = new ChatSessionRepository(db);
+        int poolMin = intFromEnv("DB_POOL_MIN", 2);
+        int poolMax = intFromEnv("DB_POOL_MAX", 10);
+
+        CrudRepository<Bot> botRepo;
+        CrudRepository<User> userRepo;
+        SessionRepository sessionRepo;
+        if ("memory".equalsIgnoreCase(System.getenv("STORAGE"))) {
+            memoryStore = new InMemoryStore();
+            String snapshotPath = System.getenv("MEMORY_SNAPSHOT_PATH");
+            if (snapshotPath != null) {
+                try {
+                    memoryStore.enableSnapshots(Paths.get(snapshotPath), intFromEnv("MEMORY_SNAPSHOT_MS", 30_000));
+                } catch (java.io.IOException e) {
+                    System.out.println("Error: could not load snapshot " + snapshotPath + ": " + e.getMessage());
+                    return;
+                }
+            }
+            botRepo = new InMemoryBotRepository(memoryStore);
+            userRepo = new InMemoryUserRepository(memoryStore);
+            sessionRepo = new InMemorySessionRepository(memoryStore);
+        } else {
+            PostgresDB postgres = new PostgresDB(host, dbUser, dbPass, dbName);
+            if (System.getenv("DB_PREPARE_THRESHOLD") != null) {
+                postgres.setPrepareThreshold(intFromEnv("DB_PREPARE_THRESHOLD", 5));
+            }
+            pool = new PooledDB(postgres, poolMin, poolMax);
+            pool.setStatementCacheSize(intFromEnv("DB_STATEMENT_CACHE_SIZE", 64));
+            db = pool;
+            if ("on".equalsIgnoreCase(System.getenv("SQL_TRACE"))) {
+                String sampleRate = System.getenv("SQL_TRACE_SAMPLE");
+                sqlTrace = new TracingDB(pool, intFromEnv("SQL_SLOW_MS", 200),
+                        sampleRate == null ? 1.0 : Double.parseDouble(sampleRate),
+                        "on".equalsIgnoreCase(System.getenv("SQL_LOG_PARAMS")));
+                db = sqlTrace;
+            }
+            boolean migrateOnly = args.length > 0 && args[0].equals("--migrate");
+            if (migrateOnly || !"off".equalsIgnoreCase(System.getenv("DB_MIGRATE"))) {
+                if (!migrate() || migrateOnly) {
+                    closeStorage();
+                    return;
+                }
+            }
+            startPartitionMaintenance();
+            if (System.getenv("ARCHIVE_DIR") != null) {
+                startArchive(Paths.get(System.getenv("ARCHIVE_DIR")));
+            }
+            botRepo = new BotRepository(db);
+            userRepo = new UserRepository(db);
+            sessionRepo = new ChatSessionRepository(db);
+            analytics = new TokenAnalytics(db);
+        }
+
+        if ("on".equalsIgnoreCase(System.getenv("METRICS"))) {
+            metrics = new MetricsRegistry();
+            metrics.registerJmx();
+            botRepo = new InstrumentedRepository<>(botRepo, metrics, "repository.bots");
+            userRepo = new InstrumentedRepository<>(userRepo, metrics, "repository.users");
+            sessionRepo = new InstrumentedSessionRepository(sessionRepo, metrics, "repository.sessions");
+        }
+
+        SessionWriteBehindBuffer writeBehind = null;
+        if ("write-behind".equalsIgnoreCase(System.getenv("SESSION_LOG_MODE"))) {
+            writeBehind = new SessionWriteBehindBuffer(sessionRepo,
+                    intFromEnv("SESSION_LOG_QUEUE_CAPACITY", 10_000),
+                    intFromEnv("SESSION_LOG_BATCH_SIZE", 500),
+                    intFromEnv("SESSION_LOG_FLUSH_MS", 200),
+                    SessionWriteBehindBuffer.OverflowPolicy.BLOCK);
+        }
+
+        int cacheSize = intFromEnv("ENTITY_CACHE_SIZE", 1_000);
+        int cacheTtlMs = intFromEnv("ENTITY_CACHE_TTL_MS", 60_000);
+        if (cacheSize > 0) {
+            botCache = new CachingRepository<>(botRepo, cacheSize, cacheTtlMs, 5_000);
+            userCache = new CachingRepository<>(userRepo, cacheSize, cacheTtlMs, 5_000);
+            service = newService(botCache, userCache, sessionRepo, writeBehind);
+        } else {
+            service = newService(botRepo, userRepo, sessionRepo, writeBehind);
+        }
+
+        service.setSessionArchive(sessionArchive);
+        service.setTokenAnalytics(analytics);
+
+        SessionBudgetTracker budgetTracker = new SessionBudgetTracker(sessionRepo, intFromEnv("BUDGET_RECONCILE_MS", 5_000));
+        budgetTracker.setIdleMillis(intFromEnv("BUDGET_IDLE_MS", 600_000));
+        service.setBudgetTracker(budgetTracker);
+
+        int freeTokensPerSec = intFromEnv("RATE_LIMIT_FREE_TOKENS_PER_SEC", 0);
+        int premiumTokensPerSec = intFromEnv("RATE_LIMIT_PREMIUM_TOKENS_PER_SEC", 0);
+        if (freeTokensPerSec > 0 && premiumTokensPerSec > 0) {
+            // Burst: one minute worth of tokens for each tier.
+            service.setRateLimiter(new TokenRateLimiter(
+                    freeTokensPerSec, freeTokensPerSec * 60L,
+                    premiumTokensPerSec, premiumTokensPerSec * 60L,
+                    600_000));
+        }
+
+        boolean transfer = args.length > 0 && (args[0].equals("--import") || args[0].equals("--export"));
+        if (transfer) {
+            runTransfer(args);
+            service.shutdown();
+            closeStorage();
+            return;
+        }
+
+        if ("on".equalsIgnoreCase(System.getenv("SESSION_COLUMN_STORE"))) {
+            startColumnStore(intFromEnv("SESSION_COLUMN_STORE_REFRESH_MS", 5_000),
+                    intFromEnv("SESSION_COLUMN_STORE_LATE_IDS", 10_000));
+        }
+
+        if (!"off".equalsIgnoreCase(System.getenv("BOT_SEARCH"))) {
+            startBotSearch(intFromEnv("BOT_SEARCH_WORKERS", Runtime.getRuntime().availableProcessors()));
+        }
+
+        if (args.length > 0 && args[0].equals("--http")) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : intFromEnv("API_PORT", 8080);
+            startHttpServer(port);
+            return;
+        }
 
-        service = new ChatService(botRepo, userRepo, sessionRepo);
         scanner = new Scanner(System.in);
 
         while (true) {
@@ -45,6 +209,13 @@ public class Main {
             System.out.println("1. Manage BOTS");
             System.out.println("2. Manage USERS");
             System.out.println("3. Manage SESSIONS");
+            System.out.println("4. Runtime Stats");
+            if (analytics != null) {
+                System.out.println("5. Token Analytics");
+            }
+            if (columnStore != null) {
+                System.out.println("6. In-Memory Session Analytics");
+            }
             System.out.println("0. Exit");
             System.out.print("Select entity: ");
 
@@ -61,8 +232,55 @@ public class Main {
                     case "3":
                         handleSessionOperations();
                         break;
+                    case "4":
+                        if (metrics != null) {
+                            System.out.print(metrics.dump());
+                        }
+                        if (pool != null) {
+                            System.out.println("Pool: " + pool.getStats());
+                        }
+                        if (sqlTrace != null) {
+                            System.out.print(sqlTrace.dump());
+                        }
+                        if (botCache != null) {
+                            System.out.println("Bot cache: " + botCache.getStats());
+                            System.out.println("User cache: " + userCache.getStats());
+                        }
+                        if (service.getSessionWriteBehind() != null) {
+                            System.out.println("Session write-behind: " + service.getSessionWriteBehind());
+                        }
+                        System.out.println("Session budgets: " + service.getBudgetTracker());
+                        if (service.getRateLimiter() != null) {
+                            System.out.println("Rate limiter: " + service.getRateLimiter());
+                        }
+                        if (service.getSearchIndex() != null) {
+                            System.out.println("Bot search: " + service.getSearchIndex().getStats());
+                        }
+                        if (sessionArchive != null) {
+                            System.out.println("Session archive: " + sessionArchive.getStats());
+                        }
+                        if (columnStore != null) {
+                            System.out.println("Session column store: " + columnStore);
+                        }
+                        break;
+                    case "5":
+                        if (analytics == null) {
+                            System.out.println("Token analytics needs the PostgreSQL storage.");
+                            break;
+                        }
+                        handleAnalytics();
+                        break;
+                    case "6":
+                        if (columnStore == null) {
+                            System.out.println("Set SESSION_COLUMN_STORE=on to enable in-memory session analytics.");
+                            break;
+                        }
+                        handleColumnStore();
+                        break;
                     case "0":
                         System.out.println("Exiting...");
+                        service.shutdown();
+                        closeStorage();
                         return;
                     default:
                         System.out.println("Invalid option.");
@@ -73,6 +291,179 @@ public class Main {
         }
     }
 
+    private static void startHttpServer(int port) {
+        try {
+            ApiServer server = new ApiServer(service, port, intFromEnv("API_MAX_REQUEST_BYTES", 64 * 1024),
+                    intFromEnv("API_REQUEST_TIMEOUT_MS", 0));
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.stop(2);
+                service.shutdown();
+                closeStorage();
+            }));
+            System.out.println("HTTP API listening on port " + port + ". Press Ctrl+C to stop.");
+        } catch (java.io.IOException e) {
+            System.out.println("Error: could not start HTTP server: " + e.getMessage());
+            service.shutdown();
+            closeStorage();
+        }
+    }
+
+    /**
+     * --import|--export bots|users|sessions &lt;file&gt;. The format follows the file
+     * name: .csv is CSV, anything else JSONL. Import sessions after the bots and
+     * users they reference.
+     */
+    private static void runTransfer(String[] args) {
+        RecordCodec<?> codec = args.length == 3 ? RecordCodec.forName(args[1]) : null;
+        if (codec == null) {
+            System.out.println("Usage: " + args[0] + " bots|users|sessions <file.jsonl|file.csv>");
+            return;
+        }
+        Path file = Paths.get(args[2]);
+        boolean isImport = args[0].equals("--import");
+        try {
+            if (codec == RecordCodec.BOTS) {
+                transfer(isImport, RecordCodec.BOTS, file, service::validateBot, service::importBots, service::streamBots);
+            } else if (codec == RecordCodec.USERS) {
+                transfer(isImport, RecordCodec.USERS, file, service::validateUser, service::importUsers,
+                        service::streamUsers);
+            } else {
+                transfer(isImport, RecordCodec.SESSIONS, file, service::validateSession, service::importSessions,
+                        service::streamSessions);
+            }
+        } catch (Exception e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    private static <T extends BaseEntity> void transfer(boolean isImport, RecordCodec<T> codec, Path file,
+                                                        BulkImporter.Validator<T> validator,
+                                                        BulkImporter.BatchWriter<T> writer,
+                                                        BulkExporter.Source<T> source) throws Exception {
+        int progressMs = intFromEnv("TRANSFER_PROGRESS_MS", 5_000);
+        if (isImport) {
+            // Session batches default to the COPY threshold of ChatSessionRepository.
+            int batchSize = intFromEnv("IMPORT_BATCH_SIZE", codec == RecordCodec.SESSIONS ? 5_000 : 1_000);
+            BulkImporter<T> importer = new BulkImporter<>(codec, validator, writer,
+                    intFromEnv("IMPORT_WORKERS", Runtime.getRuntime().availableProcessors()), batchSize);
+            importer.setProgressInterval(progressMs);
+            System.out.println("[IMPORT] Done, " + importer.run(file));
+        } else {
+            BulkExporter<T> exporter = new BulkExporter<>(codec, source);
+            exporter.setProgressInterval(progressMs);
+            System.out.println("[EXPORT] Done, " + exporter.run(file));
+        }
+    }
+
+    private static boolean migrate() {
+        try {
+            List<MigrationRunner.Migration> applied = new MigrationRunner(db, MigrationRunner.defaultDirectory()).migrate();
+            for (MigrationRunner.Migration migration : applied) {
+                System.out.println("[MIGRATION] Applied " + migration);
+            }
+            return true;
+        } catch (java.io.IOException | java.sql.SQLException e) {
+            System.out.println("Error: database migration failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static void startPartitionMaintenance() {
+        partitions = new PartitionMaintenance(db, intFromEnv("PARTITION_MONTHS_AHEAD", 3),
+                intFromEnv("SESSION_RETENTION_MONTHS", 0));
+        try {
+            partitions.start(intFromEnv("PARTITION_MAINTENANCE_MS", 3_600_000));
+        } catch (java.sql.SQLException e) {
+            System.out.println("Warning: partition maintenance disabled: " + e.getMessage());
+            partitions = null;
+        }
+    }
+
+    private static void startArchive(Path directory) {
+        try {
+            sessionArchive = SessionArchive.open(directory);
+            int afterDays = intFromEnv("ARCHIVE_AFTER_DAYS", 365);
+            int retentionMonths = intFromEnv("SESSION_RETENTION_MONTHS", 0);
+            if (retentionMonths > 0 && retentionMonths * 28 <= afterDays) {
+                System.out.println("Warning: SESSION_RETENTION_MONTHS drops partitions before they reach "
+                        + "ARCHIVE_AFTER_DAYS; those sessions are never archived.");
+            }
+            archiver = new SessionArchiver(db, sessionArchive, afterDays);
+            archiver.start(intFromEnv("ARCHIVE_INTERVAL_MS", 3_600_000));
+            System.out.println("[ARCHIVE] " + sessionArchive.getStats());
+        } catch (java.io.IOException | java.sql.SQLException e) {
+            System.out.println("Warning: session archiving disabled: " + e.getMessage());
+            if (archiver != null) {
+                archiver.close();
+                archiver = null;
+            }
+        }
+    }
+
+    private static void startColumnStore(int refreshMs, int lateIds) {
+        SessionColumnStore store = new SessionColumnStore(service::streamSessions);
+        try {
+            store.setLateIdWindow(lateIds);
+            long start = System.currentTimeMillis();
+            store.start(refreshMs);
+            System.out.println("[COLUMN STORE] Loaded " + store.size() + " sessions in "
+                    + (System.currentTimeMillis() - start) + " ms");
+            columnStore = store;
+        } catch (java.sql.SQLException | RuntimeException e) {
+            System.out.println("Warning: in-memory session analytics disabled: " + e.getMessage());
+            store.close();
+        }
+    }
+
+    private static void startBotSearch(int workers) {
+        BotSearchIndex index = new BotSearchIndex();
+        try {
+            long start = System.currentTimeMillis();
+            List<Bot> bots = service.getAllBots();
+            index.rebuild(bots, workers);
+            System.out.println("[SEARCH] Indexed " + bots.size() + " bots in "
+                    + (System.currentTimeMillis() - start) + " ms");
+            service.setSearchIndex(index);
+        } catch (java.sql.SQLException | RuntimeException e) {
+            System.out.println("Warning: bot search disabled: " + e.getMessage());
+        }
+    }
+
+    private static ChatService newService(CrudRepository<Bot> bots, CrudRepository<User> users,
+                                          SessionRepository sessions, SessionWriteBehindBuffer writeBehind) {
+        if (metrics != null) {
+            return new InstrumentedChatService(bots, users, sessions, writeBehind, metrics);
+        }
+        return new ChatService(bots, users, sessions, writeBehind);
+    }
+
+    private static void closeStorage() {
+        if (columnStore != null) {
+            columnStore.close();
+        }
+        if (partitions != null) {
+            partitions.close();
+        }
+        if (archiver != null) {
+            archiver.close();
+        }
+        if (sessionArchive != null) {
+            sessionArchive.close();
+        }
+        if (db != null) {
+            db.close();
+        }
+        if (memoryStore != null) {
+            memoryStore.close();
+        }
+    }
+
+    private static int intFromEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
     private static void handleBotOperations() {
         while (true) {
             System.out.println("\n--- MANAGE BOTS ---");
@@ -81,7 +472,8 @@ public class Main {
             System.out.println("3. Find Bot by ID");
             System.out.println("4. Update Bot");
             System.out.println("5. Delete Bot");
-            System.out.println("6. Show All Bots (Sorted with Lambdas)");
+            System.out.println("6. Show All Bots (Sorted, Paged)");
+            System.out.println("7. Search Bots");
             System.out.println("0. Back to Main Menu");
             System.out.print("Select operation: ");
 
@@ -143,20 +535,172 @@ public class Main {
                         System.out.println("Success: Bot deleted.");
                         break;
                     case "6":
-                        List<Bot> sortedBots = service.getAllBots();
-
                         System.out.println("Sort by: 1. Token Limit | 2. Name");
-                        String sortType = scanner.nextLine();
+                        String sortKey = scanner.nextLine().equals("1") ? "token_limit" : "name";
+                        System.out.println("Order: 1. Ascending | 2. Descending");
+                        PageRequest.Direction dir = scanner.nextLine().equals("2")
+                                ? PageRequest.Direction.DESC : PageRequest.Direction.ASC;
+                        System.out.print("Page size: ");
+                        PageRequest pageRequest = PageRequest.first(sortKey, dir, Integer.parseInt(scanner.nextLine()));
+                        while (true) {
+                            Page<Bot> page = service.listBots(pageRequest);
+                            page.getItems().forEach(Bot::displayInfo);
+                            if (!page.hasNext()) {
+                                break;
+                            }
+                            System.out.print("Next page? (y/n): ");
+                            if (!scanner.nextLine().equalsIgnoreCase("y")) {
+                                break;
+                            }
+                            pageRequest = pageRequest.next(page.getNextCursor());
+                        }
+                        break;
 
-                        if (sortType.equals("1")) {
-                            utils.SortingUtils.sortBotsByTokenLimit(sortedBots);
-                        } else {
-                            utils.SortingUtils.sortBotsByName(sortedBots);
+                    case "7":
+                        System.out.print("Search: ");
+                        List<Bot> found = service.searchBots(scanner.nextLine(), 10);
+                        if (found.isEmpty()) {
+                            System.out.println("No matching bots.");
                         }
+                        found.forEach(Bot::displayInfo);
+                        break;
 
-                        sortedBots.forEach(Bot::displayInfo);
+                    case "0":
+                        return;
+                    default:
+                        System.out.println("Invalid option.");
+                }
+            } catch (Exception e) {
+                System.out.println("Error: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void handleAnalytics() {
+        while (true) {
+            System.out.println("\n--- TOKEN ANALYTICS ---");
+            System.out.println("1. Top Bots by Tokens");
+            System.out.println("2. Top Users by Tokens");
+            System.out.println("3. Totals for a User");
+            System.out.println("4. Usage over Time (per hour/day)");
+            System.out.println("5. Rebuild Rollups from Sessions");
+            System.out.println("0. Back to Main Menu");
+            System.out.print("Select operation: ");
+
+            String choice = scanner.nextLine();
+            try {
+                switch (choice) {
+                    case "1":
+                    case "2": {
+                        Date from = readDate("From");
+                        Date to = readDate("To");
+                        System.out.print("How many: ");
+                        int limit = Integer.parseInt(scanner.nextLine());
+                        List<UsageTotal> top = choice.equals("1")
+                                ? analytics.topBots(from, to, limit)
+                                : analytics.topUsers(from, to, limit);
+                        top.forEach(System.out::println);
+                        break;
+                    }
+                    case "3": {
+                        System.out.print("Enter User ID: ");
+                        int userId = Integer.parseInt(scanner.nextLine());
+                        System.out.println(analytics.userTotal(userId, readDate("From"), readDate("To")));
                         break;
+                    }
+                    case "4": {
+                        System.out.print("Granularity (minute/hour/day): ");
+                        Granularity granularity = Granularity.valueOf(scanner.nextLine().trim().toUpperCase());
+                        Date from = readDate("From");
+                        Date to = readDate("To");
+                        System.out.print("Bot ID (blank for all): ");
+                        String bot = scanner.nextLine().trim();
+                        analytics.timeSeries(granularity, from, to, bot.isEmpty() ? null : Integer.valueOf(bot), null)
+                                .forEach(System.out::println);
+                        break;
+                    }
+                    case "5": {
+                        long start = System.currentTimeMillis();
+                        int rows = analytics.rebuild(intFromEnv("ROLLUP_REBUILD_WORKERS", 4));
+                        System.out.println("Success: " + rows + " rollup rows rebuilt in "
+                                + (System.currentTimeMillis() - start) + " ms.");
+                        break;
+                    }
+                    case "0":
+                        return;
+                    default:
+                        System.out.println("Invalid option.");
+                }
+            } catch (Exception e) {
+                System.out.println("Error: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void handleColumnStore() {
+        while (true) {
+            System.out.println("\n--- IN-MEMORY SESSION ANALYTICS ---");
+            System.out.println("1. Top Bots by Tokens");
+            System.out.println("2. Top Users by Tokens");
+            System.out.println("3. Totals for a Bot or User");
+            System.out.println("4. Usage over Time (per minute/hour/day)");
+            System.out.println("5. Tokens per Session Histogram");
+            System.out.println("6. Reload from Database");
+            System.out.println("0. Back to Main Menu");
+            System.out.print("Select operation: ");
 
+            String choice = scanner.nextLine();
+            try {
+                switch (choice) {
+                    case "1":
+                    case "2": {
+                        Date from = readDate("From");
+                        Date to = readDate("To");
+                        System.out.print("How many: ");
+                        int limit = Integer.parseInt(scanner.nextLine());
+                        List<UsageTotal> top = choice.equals("1")
+                                ? columnStore.topBots(from, to, limit)
+                                : columnStore.topUsers(from, to, limit);
+                        top.forEach(System.out::println);
+                        break;
+                    }
+                    case "3": {
+                        Integer[] filters = readBotUserFilters();
+                        System.out.println(columnStore.total(readDate("From"), readDate("To"), filters[0], filters[1]));
+                        break;
+                    }
+                    case "4": {
+                        System.out.print("Granularity (minute/hour/day): ");
+                        Granularity granularity = Granularity.valueOf(scanner.nextLine().trim().toUpperCase());
+                        Date from = readDate("From");
+                        Date to = readDate("To");
+                        Integer[] filters = readBotUserFilters();
+                        columnStore.timeSeries(granularity, from, to, filters[0], filters[1])
+                                .forEach(System.out::println);
+                        break;
+                    }
+                    case "5": {
+                        Date from = readDate("From");
+                        Date to = readDate("To");
+                        Integer[] filters = readBotUserFilters();
+                        System.out.print("Bucket width (tokens): ");
+                        int width = Integer.parseInt(scanner.nextLine());
+                        System.out.print("Number of buckets: ");
+                        int buckets = Integer.parseInt(scanner.nextLine());
+                        long[] counts = columnStore.tokenHistogram(from, to, filters[0], filters[1], width, buckets);
+                        for (int i = 0; i < counts.length; i++) {
+                            String range = i == counts.length - 1 ? (i * width) + "+" : (i * width) + "-" + ((i + 1) * width - 1);
+                            System.out.println(range + " tokens | Sessions: " + counts[i]);
+                        }
+                        break;
+                    }
+                    case "6": {
+                        long start = System.currentTimeMillis();
+                        columnStore.reload();
+                        System.out.println("Success: " + columnStore.size() + " sessions loaded in "
+                                + (System.currentTimeMillis() - start) + " ms.");
+                        break;
+                    }
                     case "0":
                         return;
                     default:
@@ -168,6 +712,28 @@ public class Main {
         }
     }
 
+    // Bot and user id filters, null where left blank.
+    private static Integer[] readBotUserFilters() {
+        System.out.print("Bot ID (blank for all): ");
+        String bot = scanner.nextLine().trim();
+        System.out.print("User ID (blank for all): ");
+        String user = scanner.nextLine().trim();
+        return new Integer[]{bot.isEmpty() ? null : Integer.valueOf(bot), user.isEmpty() ? null : Integer.valueOf(user)};
+    }
+
+    // Accepts "yyyy-MM-dd" or "yyyy-MM-dd HH:mm"; blank means unbounded.
+    private static Date readDate(String label) {
+        System.out.print(label + " (yyyy-MM-dd [HH:mm], blank = unbounded): ");
+        String value = scanner.nextLine().trim();
+        if (value.isEmpty()) {
+            return null;
+        }
+        LocalDateTime time = value.length() <= 10
+                ? LocalDate.parse(value).atStartOfDay()
+                : LocalDateTime.parse(value, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
+        return Timestamp.valueOf(time);
+    }
+
     private static void handleUserOperations() {
         while (true) {
             System.out.println("\n--- MANAGE USERS ---");
@@ -244,6 +810,12 @@ public class Main {
             System.out.println("3. Find Session by ID");
             System.out.println("4. Update Token Usage");
             System.out.println("5. Delete Session Log");
+            System.out.println("6. Add Tokens to Session");
+            System.out.println("7. Send Message (enforces bot token limit)");
+            System.out.println("8. Close Session");
+            if (sessionArchive != null) {
+                System.out.println("9. Search Archived Sessions");
+            }
             System.out.println("0. Back to Main Menu");
             System.out.print("Select operation: ");
 
@@ -256,21 +828,21 @@ public class Main {
                         System.out.print("Enter User ID: ");
                         int userId = Integer.parseInt(scanner.nextLine());
 
-                        Bot b = service.getBotById(botId);
-                        User u = service.getUserById(userId);
-
-                        Date now = new Date();
-                        int load = b.estimateTokenUsage() + u.estimateTokenUsage();
-
-                        service.logChatSession(b, u, now, load);
-                        System.out.println(">> Chat started! Context load: " + load + " tokens.");
-                        System.out.println(">> Session saved to database.");
+                        ChatSession started = service.startChatSession(botId, userId);
+                        System.out.println(">> Chat started! Context load: " + started.getTotalTokensUsed() + " tokens.");
+                        System.out.println(service.getSessionWriteBehind() != null
+                                ? ">> Session queued for saving."
+                                : ">> Session saved to database.");
                         break;
 
                     case "2":
-                        List<ChatSession> sessions = service.getAllSessions();
                         System.out.println("--- Session History ---");
-                        sessions.forEach(System.out::println);
+                        try (Stream<ChatSession> sessions =
+                                     service.streamAllSessions(SessionRepository.FetchMode.NAMES_ONLY)) {
+                            sessions.forEach(sess -> System.out.println(sess +
+                                    " | Bot: " + sess.getBot().getName() +
+                                    " | User: " + sess.getUser().getName()));
+                        }
                         break;
 
                     case "3":
@@ -295,6 +867,55 @@ public class Main {
                         System.out.println("Success: Session deleted.");
                         break;
 
+                    case "6":
+                        System.out.print("Enter Session ID: ");
+                        int addId = Integer.parseInt(scanner.nextLine());
+                        System.out.print("Tokens to add: ");
+                        int delta = Integer.parseInt(scanner.nextLine());
+                        service.addSessionTokens(addId, delta);
+                        System.out.println("Success: Tokens added.");
+                        break;
+
+                    case "7":
+                        System.out.print("Enter Session ID: ");
+                        int msgSessionId = Integer.parseInt(scanner.nextLine());
+                        System.out.print("Message: ");
+                        String message = scanner.nextLine();
+                        int messageTokens = Math.max(1, tokenizer.Tokenizers.getDefault().countTokens(message));
+                        SessionBudgetTracker.Reservation reservation =
+                                service.reserveSessionTokens(msgSessionId, messageTokens);
+                        service.commitSessionTokens(reservation, messageTokens);
+                        System.out.println("Success: " + messageTokens + " tokens counted against the session budget.");
+                        break;
+
+                    case "8":
+                        System.out.print("Enter Session ID: ");
+                        int closeId = Integer.parseInt(scanner.nextLine());
+                        service.closeSessionBudget(closeId);
+                        System.out.println("Success: Session usage saved.");
+                        break;
+
+                    case "9": {
+                        if (sessionArchive == null) {
+                            System.out.println("Invalid option.");
+                            break;
+                        }
+                        Date from = readDate("From");
+                        Date to = readDate("To");
+                        System.out.print("Bot ID (blank = any): ");
+                        String botFilter = scanner.nextLine().trim();
+                        System.out.print("User ID (blank = any): ");
+                        String userFilter = scanner.nextLine().trim();
+                        Integer archBot = botFilter.isEmpty() ? null : Integer.parseInt(botFilter);
+                        Integer archUser = userFilter.isEmpty() ? null : Integer.parseInt(userFilter);
+                        UsageTotal total = sessionArchive.sumTokens(from, to, archBot, archUser);
+                        System.out.println("Archived sessions: " + total.getSessionCount() + " | Tokens: " + total.getTokens());
+                        for (ChatSession archived : sessionArchive.find(from, to, archBot, archUser, 20)) {
+                            System.out.println(archived + " | Started: " + archived.getStartedAt());
+                        }
+                        break;
+                    }
+
                     case "0":
                         return;
                     default:
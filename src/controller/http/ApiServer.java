@@ -0,0 +1,592 @@
+package controller.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import exception.DatabaseOperationException;
+import exception.InvalidInputException;
+import exception.RateLimitExceededException;
+import exception.ResourceNotFoundException;
+import exception.TokenBudgetExceededException;
+import model.Bot;
+import model.ChatSession;
+import model.User;
+import repository.interfaces.Page;
+import repository.interfaces.PageRequest;
+import repository.interfaces.SessionRepository;
+import service.AsyncChatService;
+import service.ChatService;
+import service.SessionBudgetTracker;
+import utils.AsyncTasks;
+import utils.VirtualThreads;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+/**
+ * HTTP/JSON front end for ChatService, built on the JDK's HttpServer.
+ * Every exchange runs on its own virtual thread (platform threads before JDK 21),
+ * connections are kept alive between requests, request bodies are capped at
+ * maxRequestBytes, and list endpoints stream their JSON as rows are read.
+ *
+ * Routes:
+ *   GET/POST /bots                  GET/PUT/DELETE /bots/{id}
+ *   GET/POST /users                 GET/PUT/DELETE /users/{id}
+ *   GET/POST /sessions              GET/DELETE /sessions/{id}
+ *   PUT  /sessions/{id}/tokens      (set total)   POST /sessions/{id}/tokens (add delta)
+ *   POST /sessions/{id}/messages    (reserve + commit against the bot limit)
+ */
+public class ApiServer {
+    private static final String JSON = "application/json; charset=utf-8";
+
+    private final ChatService service;
+    private final int maxRequestBytes;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AsyncChatService asyncService;
+
+    public ApiServer(ChatService service, int port, int maxRequestBytes) throws IOException {
+        this(service, port, maxRequestBytes, 0);
+    }
+
+    /**
+     * @param requestTimeoutMillis timeout for service calls issued asynchronously (504 when exceeded); 0 disables it
+     */
+    public ApiServer(ChatService service, int port, int maxRequestBytes, long requestTimeoutMillis) throws IOException {
+        this.service = service;
+        this.maxRequestBytes = maxRequestBytes;
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        this.executor = VirtualThreads.newPerTaskExecutor("api-request");
+        this.asyncService = new AsyncChatService(service, executor, requestTimeoutMillis);
+        server.setExecutor(executor);
+        server.createContext("/bots", exchange -> handle(exchange, this::routeBots));
+        server.createContext("/users", exchange -> handle(exchange, this::routeUsers));
+        server.createContext("/sessions", exchange -> handle(exchange, this::routeSessions));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @FunctionalInterface
+    private interface Route {
+        void serve(Request request) throws Exception;
+    }
+
+    private void handle(HttpExchange exchange, Route route) {
+        try {
+            Request request = new Request(exchange, readBody(exchange));
+            route.serve(request);
+        } catch (Exception e) {
+            sendFailure(exchange, AsyncTasks.unwrap(e));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void sendFailure(HttpExchange exchange, Throwable e) {
+        if (e instanceof PayloadTooLargeException) {
+            sendError(exchange, 413, e.getMessage());
+        } else if (e instanceof InvalidInputException || e instanceof IllegalArgumentException) {
+            sendError(exchange, 400, e.getMessage());
+        } else if (e instanceof ResourceNotFoundException) {
+            sendError(exchange, 404, e.getMessage());
+        } else if (e instanceof TokenBudgetExceededException) {
+            sendError(exchange, 409, e.getMessage());
+        } else if (e instanceof RateLimitExceededException) {
+            long retryAfterMillis = ((RateLimitExceededException) e).getRetryAfterMillis();
+            exchange.getResponseHeaders().set("Retry-After", Long.toString(Math.max(1, (retryAfterMillis + 999) / 1000)));
+            sendError(exchange, 429, e.getMessage());
+        } else if (e instanceof MethodNotAllowedException) {
+            sendError(exchange, 405, "Method not allowed.");
+        } else if (e instanceof TimeoutException) {
+            sendError(exchange, 504, "Request timed out.");
+        } else {
+            // The message can carry SQL text or internal state; it goes to the log, not the client.
+            System.err.println("[HTTP] " + exchange.getRequestMethod() + " " + exchange.getRequestURI() + " failed: " + e);
+            sendError(exchange, 500, e instanceof SQLException || e instanceof DatabaseOperationException
+                    ? "Database error." : "Internal server error.");
+        }
+    }
+
+    // ---- /bots ----
+
+    private void routeBots(Request req) throws Exception {
+        if (req.segments.length == 1) {
+            switch (req.method) {
+                case "GET":
+                    String query = req.query.get("q");
+                    if (query != null) {
+                        List<Bot> found = service.searchBots(query, Integer.parseInt(req.query.getOrDefault("limit", "20")));
+                        streamList(req.exchange, json -> {
+                            for (Bot bot : found) {
+                                writeBot(json, bot);
+                            }
+                        });
+                        return;
+                    }
+                    PageRequest botPage = pageRequest(req);
+                    if (botPage != null) {
+                        sendPage(req.exchange, service.listBots(botPage), ApiServer::writeBot);
+                        return;
+                    }
+                    streamPages(req.exchange, service::listBots, ApiServer::writeBot);
+                    return;
+                case "POST":
+                    Map<String, Object> body = req.jsonBody();
+                    Bot created = service.createBot(string(body, "name"), string(body, "greeting"),
+                            string(body, "definition"), integer(body, "tokenLimit"));
+                    sendObject(req.exchange, 201, json -> writeBot(json, created));
+                    return;
+                default:
+                    throw new MethodNotAllowedException();
+            }
+        }
+
+        requireNoSubpath(req);
+        int id = req.id(1);
+        switch (req.method) {
+            case "GET":
+                Bot bot = service.getBotById(id);
+                sendObject(req.exchange, 200, json -> writeBot(json, bot));
+                return;
+            case "PUT":
+                Map<String, Object> body = req.jsonBody();
+                service.updateBot(id, string(body, "name"), string(body, "greeting"),
+                        string(body, "definition"), integer(body, "tokenLimit"));
+                sendObject(req.exchange, 200, json -> writeBot(json, service.getBotById(id)));
+                return;
+            case "DELETE":
+                service.deleteBot(id);
+                sendEmpty(req.exchange, 204);
+                return;
+            default:
+                throw new MethodNotAllowedException();
+        }
+    }
+
+    // ---- /users ----
+
+    private void routeUsers(Request req) throws Exception {
+        if (req.segments.length == 1) {
+            switch (req.method) {
+                case "GET":
+                    PageRequest userPage = pageRequest(req);
+                    if (userPage != null) {
+                        sendPage(req.exchange, service.listUsers(userPage), ApiServer::writeUser);
+                        return;
+                    }
+                    streamPages(req.exchange, service::listUsers, ApiServer::writeUser);
+                    return;
+                case "POST":
+                    Map<String, Object> body = req.jsonBody();
+                    User created = service.createUser(string(body, "name"), string(body, "persona"),
+                            bool(body, "premium"));
+                    sendObject(req.exchange, 201, json -> writeUser(json, created));
+                    return;
+                default:
+                    throw new MethodNotAllowedException();
+            }
+        }
+
+        requireNoSubpath(req);
+        int id = req.id(1);
+        switch (req.method) {
+            case "GET":
+                User user = service.getUserById(id);
+                sendObject(req.exchange, 200, json -> writeUser(json, user));
+                return;
+            case "PUT":
+                Map<String, Object> body = req.jsonBody();
+                service.updateUser(id, string(body, "name"), string(body, "persona"), bool(body, "premium"));
+                sendObject(req.exchange, 200, json -> writeUser(json, service.getUserById(id)));
+                return;
+            case "DELETE":
+                service.deleteUser(id);
+                sendEmpty(req.exchange, 204);
+                return;
+            default:
+                throw new MethodNotAllowedException();
+        }
+    }
+
+    // ---- /sessions ----
+
+    private void routeSessions(Request req) throws Exception {
+        if (req.segments.length == 1) {
+            switch (req.method) {
+                case "GET":
+                    listSessions(req);
+                    return;
+                case "POST":
+                    Map<String, Object> body = req.jsonBody();
+                    ChatSession started = asyncService.startChatSession(integer(body, "botId"),
+                            integer(body, "userId")).get();
+                    sendObject(req.exchange, 201, json -> writeSession(json, started));
+                    return;
+                default:
+                    throw new MethodNotAllowedException();
+            }
+        }
+
+        int id = req.id(1);
+        if (req.segments.length == 2) {
+            switch (req.method) {
+                case "GET":
+                    ChatSession session = service.getSessionById(id, fetchMode(req.query.get("mode")));
+                    sendObject(req.exchange, 200, json -> writeSession(json, session));
+                    return;
+                case "DELETE":
+                    service.deleteSession(id);
+                    sendEmpty(req.exchange, 204);
+                    return;
+                default:
+                    throw new MethodNotAllowedException();
+            }
+        }
+
+        String action = req.segments[2];
+        if (req.segments.length > 3) {
+            throw noRoute(req);
+        } else if (action.equals("tokens") && req.method.equals("PUT")) {
+            service.updateSessionTokens(id, integer(req.jsonBody(), "total"));
+            sendEmpty(req.exchange, 204);
+        } else if (action.equals("tokens") && req.method.equals("POST")) {
+            service.addSessionTokens(id, integer(req.jsonBody(), "delta"));
+            sendEmpty(req.exchange, 204);
+        } else if (action.equals("messages") && req.method.equals("POST")) {
+            int tokens = integer(req.jsonBody(), "tokens");
+            SessionBudgetTracker.Reservation reservation = service.reserveSessionTokens(id, tokens);
+            service.commitSessionTokens(reservation, tokens);
+            sendObject(req.exchange, 200, json -> json.beginObject()
+                    .field("sessionId", id).field("tokens", tokens).endObject());
+        } else {
+            throw noRoute(req);
+        }
+    }
+
+    private static void requireNoSubpath(Request req) {
+        if (req.segments.length > 2) {
+            throw noRoute(req);
+        }
+    }
+
+    private static ResourceNotFoundException noRoute(Request req) {
+        return new ResourceNotFoundException("No route for " + req.method + " " + req.exchange.getRequestURI().getPath());
+    }
+
+    private void listSessions(Request req) throws Exception {
+        PageRequest sessionPage = pageRequest(req);
+        if (sessionPage != null) {
+            sendPage(req.exchange, service.listSessions(sessionPage), ApiServer::writeSession);
+            return;
+        }
+        SessionRepository.FetchMode mode = fetchMode(req.query.get("mode"));
+        String limit = req.query.get("limit");
+        if (limit != null) {
+            int afterId = req.query.containsKey("afterId") ? Integer.parseInt(req.query.get("afterId")) : 0;
+            List<ChatSession> page = service.getSessionsPage(afterId, Integer.parseInt(limit));
+            streamList(req.exchange, json -> {
+                for (ChatSession session : page) {
+                    writeSession(json, session);
+                }
+            });
+            return;
+        }
+        try (Stream<ChatSession> sessions = service.streamAllSessions(mode)) {
+            streamList(req.exchange, json -> {
+                java.util.Iterator<ChatSession> it = sessions.iterator();
+                while (it.hasNext()) {
+                    writeSession(json, it.next());
+                }
+            });
+        }
+    }
+
+    /**
+     * Keyset listing parameters: sort (default id), order (asc/desc), limit (default 50) and
+     * cursor (the nextCursor of the previous page). Null when neither sort nor cursor is given.
+     */
+    private static PageRequest pageRequest(Request req) throws InvalidInputException {
+        String sort = req.query.get("sort");
+        String cursor = req.query.get("cursor");
+        if (sort == null && cursor == null) {
+            return null;
+        }
+        String order = req.query.getOrDefault("order", "asc");
+        if (!order.equalsIgnoreCase("asc") && !order.equalsIgnoreCase("desc")) {
+            throw new InvalidInputException("Unknown order '" + order + "' (expected asc or desc).");
+        }
+        try {
+            PageRequest first = PageRequest.first(sort == null ? "id" : sort,
+                    PageRequest.Direction.valueOf(order.toUpperCase()),
+                    Integer.parseInt(req.query.getOrDefault("limit", "50")));
+            return cursor == null ? first : first.next(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidInputException(e.getMessage());
+        }
+    }
+
+    private static SessionRepository.FetchMode fetchMode(String value) throws InvalidInputException {
+        if (value == null || value.equalsIgnoreCase("names")) {
+            return SessionRepository.FetchMode.NAMES_ONLY;
+        }
+        if (value.equalsIgnoreCase("full")) {
+            return SessionRepository.FetchMode.HYDRATED;
+        }
+        if (value.equalsIgnoreCase("ids")) {
+            return SessionRepository.FetchMode.STUBS;
+        }
+        throw new InvalidInputException("Unknown mode '" + value + "' (expected names, full or ids).");
+    }
+
+    // ---- JSON mapping ----
+
+    private static void writeBot(JsonWriter json, Bot bot) throws IOException {
+        json.beginObject()
+                .field("id", bot.getId())
+                .field("name", bot.getName())
+                .field("greeting", bot.getGreeting())
+                .field("definition", bot.getDefinition())
+                .field("tokenLimit", bot.getTokenLimit())
+                .endObject();
+    }
+
+    private static void writeUser(JsonWriter json, User user) throws IOException {
+        json.beginObject()
+                .field("id", user.getId())
+                .field("name", user.getName())
+                .field("persona", user.getPersona())
+                .field("premium", user.isPremium())
+                .endObject();
+    }
+
+    private static void writeSession(JsonWriter json, ChatSession session) throws IOException {
+        json.beginObject().field("id", session.getId());
+        json.name("bot").beginObject().field("id", session.getBot().getId())
+                .field("name", session.getBot().getName()).endObject();
+        json.name("user").beginObject().field("id", session.getUser().getId())
+                .field("name", session.getUser().getName()).endObject();
+        json.name("startedAt").value(session.getStartedAt() == null ? null
+                : session.getStartedAt().toInstant().toString());
+        json.field("totalTokensUsed", session.getTotalTokensUsed()).endObject();
+    }
+
+    private static String string(Map<String, Object> body, String field) throws InvalidInputException {
+        Object value = body.get(field);
+        if (value != null && !(value instanceof String)) {
+            throw new InvalidInputException("Field '" + field + "' must be a string.");
+        }
+        return (String) value;
+    }
+
+    private static int integer(Map<String, Object> body, String field) throws InvalidInputException {
+        Object value = body.get(field);
+        if (!(value instanceof Long) || (Long) value > Integer.MAX_VALUE || (Long) value < Integer.MIN_VALUE) {
+            throw new InvalidInputException("Field '" + field + "' must be an integer.");
+        }
+        return ((Long) value).intValue();
+    }
+
+    private static boolean bool(Map<String, Object> body, String field) throws InvalidInputException {
+        Object value = body.get(field);
+        if (value == null) {
+            return false;
+        }
+        if (!(value instanceof Boolean)) {
+            throw new InvalidInputException("Field '" + field + "' must be a boolean.");
+        }
+        return (Boolean) value;
+    }
+
+    // ---- HTTP plumbing ----
+
+    @FunctionalInterface
+    private interface JsonBody {
+        void write(JsonWriter json) throws Exception;
+    }
+
+    private static void sendObject(HttpExchange exchange, int status, JsonBody body) throws Exception {
+        StringWriter buffer = new StringWriter();
+        JsonWriter json = new JsonWriter(buffer);
+        body.write(json);
+        json.flush();
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Sends a JSON array with chunked encoding, writing elements as the callback produces them.
+     */
+    private interface ItemWriter<T> {
+        void write(JsonWriter json, T item) throws IOException;
+    }
+
+    private static <T> void sendPage(HttpExchange exchange, Page<T> page, ItemWriter<T> writer) throws Exception {
+        sendObject(exchange, 200, json -> {
+            json.beginObject().name("items").beginArray();
+            for (T item : page.getItems()) {
+                writer.write(json, item);
+            }
+            json.endArray().field("nextCursor", page.getNextCursor()).endObject();
+        });
+    }
+
+    @FunctionalInterface
+    private interface PageSource<T> {
+        Page<T> fetch(PageRequest request) throws Exception;
+    }
+
+    /**
+     * Streams a whole table as one JSON array, reading it in id-ordered keyset
+     * pages so no connection stays checked out while a slow client reads.
+     */
+    private static <T> void streamPages(HttpExchange exchange, PageSource<T> source, ItemWriter<T> writer)
+            throws Exception {
+        PageRequest request = PageRequest.first("id", PageRequest.Direction.ASC, PageRequest.MAX_PAGE_SIZE);
+        Page<T> first = source.fetch(request);
+        streamList(exchange, json -> {
+            Page<T> page = first;
+            while (true) {
+                for (T item : page.getItems()) {
+                    writer.write(json, item);
+                }
+                if (!page.hasNext()) {
+                    return;
+                }
+                page = source.fetch(request.next(page.getNextCursor()));
+            }
+        });
+    }
+
+    private static void streamList(HttpExchange exchange, JsonBody elements) throws Exception {
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(200, 0);
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(),
+                StandardCharsets.UTF_8), 16 * 1024)) {
+            JsonWriter json = new JsonWriter(out);
+            json.beginArray();
+            elements.write(json);
+            json.endArray();
+        }
+    }
+
+    private static void sendEmpty(HttpExchange exchange, int status) throws IOException {
+        exchange.sendResponseHeaders(status, -1);
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) {
+        try {
+            StringWriter buffer = new StringWriter();
+            new JsonWriter(buffer).beginObject().field("status", status).field("error", message).endObject();
+            byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", JSON);
+            exchange.sendResponseHeaders(status, bytes.length);
+            exchange.getResponseBody().write(bytes);
+        } catch (IOException | IllegalStateException ignored) {
+            // Headers were already sent (e.g. a streamed list failed halfway); the connection just closes.
+        }
+    }
+
+    private byte[] readBody(HttpExchange exchange) throws IOException, PayloadTooLargeException {
+        String declared = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (declared != null && Long.parseLong(declared.trim()) > maxRequestBytes) {
+            throw new PayloadTooLargeException(maxRequestBytes);
+        }
+        try (InputStream in = exchange.getRequestBody()) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] chunk = new byte[4096];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                if (body.size() + read > maxRequestBytes) {
+                    throw new PayloadTooLargeException(maxRequestBytes);
+                }
+                body.write(chunk, 0, read);
+            }
+            return body.toByteArray();
+        }
+    }
+
+    private static final class Request {
+        private final HttpExchange exchange;
+        private final String method;
+        private final String[] segments;
+        private final Map<String, String> query;
+        private final byte[] body;
+
+        private Request(HttpExchange exchange, byte[] body) {
+            this.exchange = exchange;
+            this.method = exchange.getRequestMethod().toUpperCase();
+            String path = exchange.getRequestURI().getPath();
+            this.segments = path.replaceAll("^/+|/+$", "").split("/+");
+            this.query = parseQuery(exchange.getRequestURI().getRawQuery());
+            this.body = body;
+        }
+
+        private int id(int index) throws InvalidInputException {
+            try {
+                return Integer.parseInt(segments[index]);
+            } catch (NumberFormatException e) {
+                throw new InvalidInputException("Invalid id '" + segments[index] + "'.");
+            }
+        }
+
+        private Map<String, Object> jsonBody() throws InvalidInputException {
+            if (body.length == 0) {
+                throw new InvalidInputException("Request body is required.");
+            }
+            return JsonParser.parseObject(new String(body, StandardCharsets.UTF_8));
+        }
+
+        private static Map<String, String> parseQuery(String raw) {
+            Map<String, String> params = new HashMap<>();
+            if (raw == null || raw.isEmpty()) {
+                return params;
+            }
+            for (String pair : raw.split("&")) {
+                int eq = pair.indexOf('=');
+                String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+                String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+                params.put(key, value);
+            }
+            return params;
+        }
+    }
+
+    private static final class PayloadTooLargeException extends Exception {
+        private PayloadTooLargeException(int limit) {
+            super("Request body exceeds " + limit + " bytes.");
+        }
+    }
+
+    private static final class MethodNotAllowedException extends Exception {
+    }
+}
@@ -0,0 +1,683 @@
+package data;
+
+import data.interfaces.IDB;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Connection pool that sits in front of another IDB (usually PostgresDB).
+ * Repositories keep calling getConnection()/close() as before: close() on a
+ * borrowed connection hands it back to the pool instead of closing the socket.
+ *
+ * With a statement cache size set, each pooled connection also keeps its most
+ * recently used prepared statements open, keyed by SQL text: close() on such
+ * a statement returns it to the connection's LRU, and the next
+ * prepareStatement with the same SQL on that connection gets it back without
+ * a new parse. Once the driver has executed a statement prepareThreshold
+ * times (see PostgresDB) it is a named server-side statement, so its parse
+ * and plan are reused too.
+ */
+public class PooledDB implements IDB {
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    // Statement settings that outlive a checkout; a statement that changed one is closed instead of cached.
+    private static final Set<String> STATEMENT_SETTERS = Set.of(
+            "setFetchSize", "setFetchDirection", "setMaxRows", "setLargeMaxRows", "setMaxFieldSize",
+            "setQueryTimeout", "setEscapeProcessing", "setPoolable", "setCursorName", "closeOnCompletion");
+
+    private final IDB source;
+    private final int minSize;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long leakThresholdMillis;
+
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> active = ConcurrentHashMap.newKeySet();
+    private final Semaphore permits;
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder createdCount = new LongAdder();
+    private final LongAdder evictedCount = new LongAdder();
+    private final LongAdder invalidCount = new LongAdder();
+    private final LongAdder leakCount = new LongAdder();
+    private final LongAdder statementHits = new LongAdder();
+    private final LongAdder statementMisses = new LongAdder();
+    private final LongAdder statementEvictions = new LongAdder();
+    private volatile int statementCacheSize;
+
+    public PooledDB(IDB source, int minSize, int maxSize) {
+        this(source, minSize, maxSize, 30_000, 600_000, 60_000);
+    }
+
+    public PooledDB(IDB source, int minSize, int maxSize, long borrowTimeoutMillis,
+                    long idleTimeoutMillis, long leakThresholdMillis) {
+        if (minSize < 0 || maxSize <= 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Pool size must satisfy 0 <= min <= max and max > 0.");
+        }
+        this.source = source;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1_000, Math.min(idleTimeoutMillis, leakThresholdMillis) / 2);
+        housekeeper.scheduleWithFixedDelay(this::houseKeep, period, period, TimeUnit.MILLISECONDS);
+
+        fillToMinimum();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed.");
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeoutCount.increment();
+                throw new SQLTimeoutException("Timed out after " + borrowTimeoutMillis
+                        + " ms waiting for a database connection (" + getStats() + ").");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection.", e);
+        } finally {
+            waitNanos.add(System.nanoTime() - start);
+        }
+
+        try {
+            PooledConnection pooled = takeValidConnection();
+            pooled.borrowedAt = System.currentTimeMillis();
+            pooled.borrowTrace = leakThresholdMillis > 0 ? new Throwable("Connection borrowed here") : null;
+            active.add(pooled);
+            borrowCount.increment();
+            return pooled.newHandle();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Prepared statements to keep open per connection; 0 (the default) turns the cache off.
+     * Connections that already have a cache keep its size.
+     */
+    public void setStatementCacheSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Statement cache size cannot be negative.");
+        }
+        this.statementCacheSize = size;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+    }
+
+    public PoolStats getStats() {
+        int cachedStatements = 0;
+        for (PooledConnection pooled : idle) {
+            cachedStatements += pooled.cachedStatementCount();
+        }
+        for (PooledConnection pooled : active) {
+            cachedStatements += pooled.cachedStatementCount();
+        }
+        return new PoolStats(
+                active.size(),
+                idle.size(),
+                totalConnections.get(),
+                maxSize,
+                permits.getQueueLength(),
+                borrowCount.sum(),
+                waitNanos.sum(),
+                timeoutCount.sum(),
+                createdCount.sum(),
+                evictedCount.sum(),
+                invalidCount.sum(),
+                leakCount.sum(),
+                statementHits.sum(),
+                statementMisses.sum(),
+                statementEvictions.sum(),
+                cachedStatements
+        );
+    }
+
+    private PooledConnection takeValidConnection() throws SQLException {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (isUsable(pooled)) {
+                return pooled;
+            }
+            invalidCount.increment();
+            destroy(pooled);
+        }
+        return createConnection();
+    }
+
+    private boolean isUsable(PooledConnection pooled) {
+        try {
+            return !pooled.physical.isClosed() && pooled.physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection createConnection() throws SQLException {
+        Connection physical = source.getConnection();
+        totalConnections.incrementAndGet();
+        createdCount.increment();
+        return new PooledConnection(physical);
+    }
+
+    private void release(PooledConnection pooled) {
+        active.remove(pooled);
+        if (pooled.statements != null) {
+            pooled.statements.closeCheckedOut();
+        }
+        boolean reusable = !closed && resetState(pooled);
+        if (reusable) {
+            pooled.lastUsedAt = System.currentTimeMillis();
+            idle.offerFirst(pooled);
+        } else {
+            destroy(pooled);
+        }
+        permits.release();
+    }
+
+    private boolean resetState(PooledConnection pooled) {
+        try {
+            if (pooled.physical.isClosed()) {
+                return false;
+            }
+            if (!pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+            pooled.physical.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void destroy(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        if (pooled.statements != null) {
+            pooled.statements.closeAll();
+        }
+        try {
+            pooled.physical.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private void houseKeep() {
+        long now = System.currentTimeMillis();
+
+        Iterator<PooledConnection> it = idle.descendingIterator();
+        while (it.hasNext() && totalConnections.get() > minSize) {
+            PooledConnection pooled = it.next();
+            if (now - pooled.lastUsedAt > idleTimeoutMillis && idle.removeLastOccurrence(pooled)) {
+                evictedCount.increment();
+                destroy(pooled);
+            }
+        }
+
+        if (leakThresholdMillis > 0) {
+            for (PooledConnection pooled : active) {
+                if (!pooled.leakReported && now - pooled.borrowedAt > leakThresholdMillis) {
+                    pooled.leakReported = true;
+                    leakCount.increment();
+                    System.err.println("[DB POOL] Possible connection leak: held for "
+                            + (now - pooled.borrowedAt) + " ms.");
+                    if (pooled.borrowTrace != null) {
+                        pooled.borrowTrace.printStackTrace();
+                    }
+                }
+            }
+        }
+
+        fillToMinimum();
+    }
+
+    private void fillToMinimum() {
+        while (!closed && totalConnections.get() < minSize && permits.tryAcquire()) {
+            try {
+                PooledConnection pooled = createConnection();
+                pooled.lastUsedAt = System.currentTimeMillis();
+                idle.offerLast(pooled);
+            } catch (SQLException e) {
+                System.err.println("[DB POOL] Could not open connection: " + e.getMessage());
+                return;
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    private final class PooledConnection {
+        private final Connection physical;
+        private volatile long lastUsedAt;
+        private volatile long borrowedAt;
+        private volatile Throwable borrowTrace;
+        private volatile boolean leakReported;
+        private volatile StatementCache statements;
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        private StatementCache statements() {
+            if (statements == null && statementCacheSize > 0) {
+                statements = new StatementCache(physical, statementCacheSize);
+            }
+            return statements;
+        }
+
+        private int cachedStatementCount() {
+            StatementCache cache = statements;
+            return cache == null ? 0 : cache.size();
+        }
+
+        private Connection newHandle() {
+            leakReported = false;
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new Handle(this));
+        }
+    }
+
+    /**
+     * One handle per borrow, so a stale reference kept after close() cannot
+     * touch a connection that has since been lent to someone else.
+     */
+    private final class Handle implements InvocationHandler {
+        private PooledConnection pooled;
+
+        private Handle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            PooledConnection current;
+            synchronized (this) {
+                if (name.equals("close")) {
+                    if (pooled != null) {
+                        PooledConnection returned = pooled;
+                        pooled = null;
+                        release(returned);
+                    }
+                    return null;
+                }
+                if (name.equals("isClosed")) {
+                    return pooled == null || pooled.physical.isClosed();
+                }
+                if (pooled == null) {
+                    if (name.equals("toString")) return "PooledConnection[closed]";
+                    if (name.equals("hashCode")) return System.identityHashCode(proxy);
+                    if (name.equals("equals")) return proxy == args[0];
+                    throw new SQLException("Connection has already been returned to the pool.");
+                }
+                // A concurrent close() may clear the field from here on; use only this copy.
+                current = pooled;
+            }
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            }
+            if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            if (name.equals("prepareStatement")) {
+                StatementCache statements = current.statements();
+                String key = statements == null ? null : statementKey(args);
+                if (key != null) {
+                    return statements.checkout(key, (Connection) proxy, args);
+                }
+            }
+            try {
+                return method.invoke(current.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Cache key for the prepareStatement overloads whose extra arguments are plain ints; null for the others.
+     */
+    private static String statementKey(Object[] args) {
+        if (args.length == 1) {
+            return "s|" + args[0];
+        }
+        if (args.length == 2 && args[1] instanceof Integer) {
+            return "k" + args[1] + "|" + args[0];
+        }
+        if (args.length == 3 && args[1] instanceof Integer && args[2] instanceof Integer) {
+            return "t" + args[1] + "," + args[2] + "|" + args[0];
+        }
+        return null;
+    }
+
+    /**
+     * Idle prepared statements of one connection, least recently used first.
+     * A checked-out statement is not in the map, so two open statements with
+     * the same SQL get separate physical statements and only one is kept.
+     */
+    private final class StatementCache {
+        private final Connection physical;
+        private final int capacity;
+        private final LinkedHashMap<String, PreparedStatement> idleStatements = new LinkedHashMap<>(16, 0.75f, true);
+        private final Set<CachedStatement> checkedOut = new HashSet<>();
+
+        private StatementCache(Connection physical, int capacity) {
+            this.physical = physical;
+            this.capacity = capacity;
+        }
+
+        private PreparedStatement checkout(String key, Connection owner, Object[] args) throws SQLException {
+            PreparedStatement statement;
+            synchronized (this) {
+                statement = idleStatements.remove(key);
+            }
+            if (statement != null) {
+                statementHits.increment();
+            } else {
+                statementMisses.increment();
+                String sql = (String) args[0];
+                if (args.length == 1) {
+                    statement = physical.prepareStatement(sql);
+                } else if (args.length == 2) {
+                    statement = physical.prepareStatement(sql, (Integer) args[1]);
+                } else {
+                    statement = physical.prepareStatement(sql, (Integer) args[1], (Integer) args[2]);
+                }
+            }
+            CachedStatement handle = new CachedStatement(this, key, statement, owner);
+            synchronized (this) {
+                checkedOut.add(handle);
+            }
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    handle);
+        }
+
+        private void checkin(CachedStatement handle, boolean reusable) {
+            PreparedStatement statement = handle.physical;
+            if (reusable) {
+                try {
+                    statement.clearParameters();
+                    if (handle.batched) {
+                        statement.clearBatch();
+                    }
+                    statement.clearWarnings();
+                } catch (SQLException e) {
+                    reusable = false;
+                }
+            }
+            List<PreparedStatement> toClose = new ArrayList<>(2);
+            synchronized (this) {
+                checkedOut.remove(handle);
+                if (reusable && !idleStatements.containsKey(handle.key)) {
+                    idleStatements.put(handle.key, statement);
+                    if (idleStatements.size() > capacity) {
+                        Iterator<Map.Entry<String, PreparedStatement>> eldest = idleStatements.entrySet().iterator();
+                        toClose.add(eldest.next().getValue());
+                        eldest.remove();
+                        statementEvictions.increment();
+                    }
+                } else {
+                    toClose.add(statement);
+                }
+            }
+            for (PreparedStatement stale : toClose) {
+                closeQuietly(stale);
+            }
+        }
+
+        private int size() {
+            synchronized (this) {
+                return idleStatements.size();
+            }
+        }
+
+        /**
+         * Statements the borrower never closed: they may still be mid-result, so they are not reused.
+         */
+        private void closeCheckedOut() {
+            List<CachedStatement> leaked;
+            synchronized (this) {
+                if (checkedOut.isEmpty()) {
+                    return;
+                }
+                leaked = new ArrayList<>(checkedOut);
+            }
+            for (CachedStatement handle : leaked) {
+                handle.close(false);
+            }
+        }
+
+        private void closeAll() {
+            closeCheckedOut();
+            List<PreparedStatement> statements;
+            synchronized (this) {
+                statements = new ArrayList<>(idleStatements.values());
+                idleStatements.clear();
+            }
+            for (PreparedStatement statement : statements) {
+                closeQuietly(statement);
+            }
+        }
+
+        private void closeQuietly(PreparedStatement statement) {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+
+    /**
+     * The borrower's view of a cached statement: close() hands the physical
+     * statement back to the cache, after closing the result sets it produced.
+     */
+    private final class CachedStatement implements InvocationHandler {
+        private final StatementCache cache;
+        private final String key;
+        private final PreparedStatement physical;
+        private final Connection owner;
+        private final List<ResultSet> results = new ArrayList<>(1);
+        private boolean closed;
+        private boolean reusable = true;
+        private boolean batched;
+
+        private CachedStatement(StatementCache cache, String key, PreparedStatement physical, Connection owner) {
+            this.cache = cache;
+            this.key = key;
+            this.physical = physical;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    close(true);
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + (closed ? "closed" : physical.toString()) + "]";
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Statement is closed.");
+            }
+            if (name.equals("getConnection")) {
+                return owner;
+            }
+            if (STATEMENT_SETTERS.contains(name)) {
+                reusable = false;
+            } else if (name.equals("addBatch")) {
+                batched = true;
+            } else if (name.startsWith("execute")) {
+                results.clear(); // executing closes the statement's previous results
+            }
+            Object result;
+            try {
+                result = method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof ResultSet) {
+                results.add((ResultSet) result);
+            }
+            return result;
+        }
+
+        private synchronized void close(boolean reuse) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (ResultSet rs : results) {
+                try {
+                    rs.close();
+                } catch (SQLException e) {
+                    reusable = false;
+                }
+            }
+            results.clear();
+            cache.checkin(this, reuse && reusable);
+        }
+    }
+
+    public static final class PoolStats {
+        private final int active;
+        private final int idle;
+        private final int total;
+        private final int maxSize;
+        private final int waiting;
+        private final long borrowCount;
+        private final long totalWaitNanos;
+        private final long timeouts;
+        private final long created;
+        private final long evicted;
+        private final long invalidated;
+        private final long leaksDetected;
+        private final long statementHits;
+        private final long statementMisses;
+        private final long statementEvictions;
+        private final int cachedStatements;
+
+        private PoolStats(int active, int idle, int total, int maxSize, int waiting, long borrowCount,
+                          long totalWaitNanos, long timeouts, long created, long evicted,
+                          long invalidated, long leaksDetected, long statementHits, long statementMisses,
+                          long statementEvictions, int cachedStatements) {
+            this.active = active;
+            this.idle = idle;
+            this.total = total;
+            this.maxSize = maxSize;
+            this.waiting = waiting;
+            this.borrowCount = borrowCount;
+            this.totalWaitNanos = totalWaitNanos;
+            this.timeouts = timeouts;
+            this.created = created;
+            this.evicted = evicted;
+            this.invalidated = invalidated;
+            this.leaksDetected = leaksDetected;
+            this.statementHits = statementHits;
+            this.statementMisses = statementMisses;
+            this.statementEvictions = statementEvictions;
+            this.cachedStatements = cachedStatements;
+        }
+
+        public int getActive() { return active; }
+        public int getIdle() { return idle; }
+        public int getTotal() { return total; }
+        public int getMaxSize() { return maxSize; }
+        public int getWaiting() { return waiting; }
+        public long getBorrowCount() { return borrowCount; }
+        public long getTotalWaitNanos() { return totalWaitNanos; }
+        public long getTimeouts() { return timeouts; }
+        public long getCreated() { return created; }
+        public long getEvicted() { return evicted; }
+        public long getInvalidated() { return invalidated; }
+        public long getLeaksDetected() { return leaksDetected; }
+        public long getStatementHits() { return statementHits; }
+        public long getStatementMisses() { return statementMisses; }
+        public long getStatementEvictions() { return statementEvictions; }
+        public int getCachedStatements() { return cachedStatements; }
+
+        public double getStatementHitRate() {
+            long lookups = statementHits + statementMisses;
+            return lookups == 0 ? 0 : (double) statementHits / lookups;
+        }
+
+        public double getAverageWaitMillis() {
+            return borrowCount == 0 ? 0 : totalWaitNanos / 1_000_000.0 / borrowCount;
+        }
+
+        @Override
+        public String toString() {
+            return "active=" + active + ", idle=" + idle + ", total=" + total + "/" + maxSize +
+                    ", waiting=" + waiting + ", borrows=" + borrowCount +
+                    ", avgWaitMs=" + String.format("%.3f", getAverageWaitMillis()) +
+                    ", timeouts=" + timeouts + ", created=" + created + ", evicted=" + evicted +
+                    ", invalid=" + invalidated + ", leaks=" + leaksDetected +
+                    ", stmtHits=" + statementHits + ", stmtMisses=" + statementMisses +
+                    ", stmtHitRate=" + String.format("%.1f%%", getStatementHitRate() * 100) +
+                    ", stmtEvicted=" + statementEvictions + ", stmtCached=" + cachedStatements;
+        }
+    }
+}
@@ -4,12 +4,14 @@ import data.interfaces.IDB;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Properties;
 
 public class PostgresDB implements IDB {
     private String host;
     private String user;
     private String password;
     private String dbName;
+    private Integer prepareThreshold;
 
     public PostgresDB(String host, String user, String password, String dbName) {
         this.host = host;
@@ -18,12 +20,30 @@ public class PostgresDB implements IDB {
         this.dbName = dbName;
     }
 
+    /**
+     * Executions of one PreparedStatement after which the driver switches it to a
+     * named server-side statement, parsed and planned once (driver default: 5).
+     * 0 never does, which is what a transaction-pooling PgBouncer needs.
+     */
+    public void setPrepareThreshold(int prepareThreshold) {
+        if (prepareThreshold < 0) {
+            throw new IllegalArgumentException("Prepare threshold cannot be negative.");
+        }
+        this.prepareThreshold = prepareThreshold;
+    }
+
     @Override
     public Connection getConnection() throws SQLException {
         String connectionUrl = "jdbc:postgresql://" + host + "/" + dbName;
+        Properties props = new Properties();
+        props.setProperty("user", user);
+        props.setProperty("password", password);
+        if (prepareThreshold != null) {
+            props.setProperty("prepareThreshold", String.valueOf(prepareThreshold));
+        }
         try {
             Class.forName("org.postgresql.Driver");
-            return DriverManager.getConnection(connectionUrl, user, password);
+            return DriverManager.getConnection(connectionUrl, props);
         } catch (ClassNotFoundException e) {
             throw new SQLException("PostgreSQL Driver not found", e);
         }
@@ -0,0 +1,448 @@
+package data;
+
+import data.interfaces.IDB;
+import metrics.LatencyHistogram;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * IDB wrapper that traces JDBC work per SQL shape: time to acquire a
+ * connection, to prepare, to execute, and to iterate the ResultSet, plus the
+ * number of rows fetched. Statements whose prepare + execute + fetch time
+ * exceeds the slow threshold are logged to System.err, with their bound
+ * parameters if enabled.
+ *
+ * Only a sampled fraction of statements is traced; unsampled statements are
+ * handed out unwrapped and cost one random draw. A shape is the SQL text with
+ * whitespace collapsed and multi-row VALUES / IN lists folded, so batches of
+ * different sizes share one entry.
+ */
+public class TracingDB implements IDB {
+    private static final int MAX_SHAPES = 512;
+    private static final int MAX_LOGGED_PARAM_CHARS = 64;
+    private static final String OTHER_SHAPE = "<other>";
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern VALUES_ROWS = Pattern.compile("(\\(\\?(?:, ?\\?)*\\))(?:, ?\\(\\?(?:, ?\\?)*\\))+");
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bIN \\(\\?(?:, ?\\?)+\\)");
+
+    private final IDB delegate;
+    private final long slowThresholdNanos;
+    private final double sampleRate;
+    private final boolean logParameters;
+
+    private final LatencyHistogram acquire = new LatencyHistogram();
+    private final LongAdder acquireFailures = new LongAdder();
+    private final LongAdder slowCount = new LongAdder();
+    private final Map<String, ShapeStats> shapes = new ConcurrentHashMap<>();
+    private final Map<String, String> shapeOfSql = new ConcurrentHashMap<>();
+
+    /**
+     * @param slowThresholdMillis statements slower than this are logged; negative disables the log
+     * @param sampleRate fraction of statements traced, between 0 and 1
+     * @param logParameters include bound parameter values in slow-query lines
+     */
+    public TracingDB(IDB delegate, long slowThresholdMillis, double sampleRate, boolean logParameters) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("Sample rate must be between 0 and 1.");
+        }
+        this.delegate = delegate;
+        this.slowThresholdNanos = slowThresholdMillis < 0 ? Long.MAX_VALUE : slowThresholdMillis * 1_000_000;
+        this.sampleRate = sampleRate;
+        this.logParameters = logParameters;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        Connection connection;
+        try {
+            connection = delegate.getConnection();
+        } catch (SQLException | RuntimeException e) {
+            acquireFailures.increment();
+            throw e;
+        }
+        acquire.record(System.nanoTime() - start);
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new ConnectionHandle(connection));
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    public IDB getDelegate() {
+        return delegate;
+    }
+
+    public List<ShapeStats> getShapeStats() {
+        List<ShapeStats> stats = new ArrayList<>(shapes.values());
+        stats.sort((a, b) -> Long.compare(b.totalNanos(), a.totalNanos()));
+        return stats;
+    }
+
+    public void reset() {
+        acquire.reset();
+        acquireFailures.reset();
+        slowCount.reset();
+        shapes.clear();
+    }
+
+    /**
+     * One line for acquire, then one per shape ordered by total time spent.
+     */
+    public String dump() {
+        StringBuilder out = new StringBuilder();
+        LatencyHistogram.Snapshot a = acquire.snapshot();
+        out.append(String.format("SQL trace (sample %.2f): acquire n=%d p50=%s p99=%s max=%s failures=%d, slow=%d%n",
+                sampleRate, a.getCount(), millis(a.getValueAtPercentile(50)), millis(a.getValueAtPercentile(99)),
+                millis(a.getMaxNanos()), acquireFailures.sum(), slowCount.sum()));
+        for (ShapeStats stats : getShapeStats()) {
+            out.append("  ").append(stats).append(System.lineSeparator());
+        }
+        return out.toString();
+    }
+
+    String shapeOf(String sql) {
+        String shape = shapeOfSql.get(sql);
+        if (shape == null) {
+            String collapsed = WHITESPACE.matcher(sql.trim()).replaceAll(" ");
+            collapsed = VALUES_ROWS.matcher(collapsed).replaceAll("$1, ...");
+            shape = IN_LIST.matcher(collapsed).replaceAll("IN (?, ...)");
+            if (shapeOfSql.size() >= MAX_SHAPES * 8) {
+                shapeOfSql.clear();
+            }
+            shapeOfSql.put(sql, shape);
+        }
+        return shape;
+    }
+
+    private ShapeStats statsFor(String shape) {
+        ShapeStats stats = shapes.get(shape);
+        if (stats != null) {
+            return stats;
+        }
+        if (shapes.size() >= MAX_SHAPES) {
+            shape = OTHER_SHAPE;
+        }
+        return shapes.computeIfAbsent(shape, ShapeStats::new);
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.3fms", nanos / 1_000_000.0);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private final class ConnectionHandle implements InvocationHandler {
+        private final Connection connection;
+
+        private ConnectionHandle(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            }
+            if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            if (!name.equals("prepareStatement") || sampleRate == 0
+                    || (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+                return TracingDB.invoke(connection, method, args);
+            }
+            String sql = (String) args[0];
+            ShapeStats stats = statsFor(shapeOf(sql));
+            long start = System.nanoTime();
+            PreparedStatement statement;
+            try {
+                statement = (PreparedStatement) TracingDB.invoke(connection, method, args);
+            } catch (Throwable e) {
+                stats.errors.increment();
+                throw e;
+            }
+            long prepareNanos = System.nanoTime() - start;
+            stats.prepare.record(prepareNanos);
+            return Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    new StatementHandle(statement, sql, stats, prepareNanos));
+        }
+    }
+
+    /**
+     * Traces one prepared statement across however many executions it sees.
+     * Each execution is judged slow on its own, with the prepare time counted
+     * against the first one only.
+     */
+    private final class StatementHandle implements InvocationHandler {
+        private final PreparedStatement statement;
+        private final String sql;
+        private final ShapeStats stats;
+        private long pendingPrepareNanos;
+        private Object[] parameters;
+        private int batchCount;
+        private ResultSetHandle openResult;
+
+        private StatementHandle(PreparedStatement statement, String sql, ShapeStats stats, long prepareNanos) {
+            this.statement = statement;
+            this.sql = sql;
+            this.stats = stats;
+            this.pendingPrepareNanos = prepareNanos;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            }
+            if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            if (logParameters && name.startsWith("set") && args != null && args.length >= 2
+                    && args[0] instanceof Integer) {
+                bind((Integer) args[0], name.equals("setNull") ? null : args[1]);
+            } else if (name.equals("addBatch")) {
+                batchCount++;
+            } else if (name.equals("clearParameters")) {
+                parameters = null;
+            } else if (name.equals("clearBatch")) {
+                batchCount = 0;
+            }
+            if (name.equals("close")) {
+                finishOpenResult();
+            }
+            if (!name.startsWith("execute")) {
+                return TracingDB.invoke(statement, method, args);
+            }
+
+            finishOpenResult();
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = TracingDB.invoke(statement, method, args);
+            } catch (Throwable e) {
+                stats.errors.increment();
+                throw e;
+            }
+            long executeNanos = System.nanoTime() - start;
+            stats.execute.record(executeNanos);
+            long prepareNanos = pendingPrepareNanos;
+            pendingPrepareNanos = 0;
+            String detail = batchCount > 0 ? "batch=" + batchCount : null;
+            batchCount = 0;
+
+            if (result instanceof ResultSet) {
+                openResult = new ResultSetHandle((ResultSet) result, this, prepareNanos, executeNanos, detail);
+                return Proxy.newProxyInstance(
+                        ResultSet.class.getClassLoader(),
+                        new Class<?>[]{ResultSet.class},
+                        openResult);
+            }
+            if (result instanceof Integer) {
+                stats.rowsAffected.add((Integer) result);
+            } else if (result instanceof int[]) {
+                for (int count : (int[]) result) {
+                    stats.rowsAffected.add(Math.max(0, count));
+                }
+            }
+            finish(prepareNanos, executeNanos, 0, -1, detail);
+            return result;
+        }
+
+        // Closing or re-executing a statement closes its ResultSet, often without the caller doing so.
+        private void finishOpenResult() {
+            if (openResult != null) {
+                openResult.finish();
+                openResult = null;
+            }
+        }
+
+        private void bind(int index, Object value) {
+            if (index < 1 || index > 65_535) {
+                return;
+            }
+            if (parameters == null || parameters.length < index) {
+                parameters = parameters == null ? new Object[Math.max(index, 8)]
+                        : Arrays.copyOf(parameters, Math.max(index, parameters.length * 2));
+            }
+            parameters[index - 1] = value;
+        }
+
+        void finish(long prepareNanos, long executeNanos, long fetchNanos, long rows, String detail) {
+            long total = prepareNanos + executeNanos + fetchNanos;
+            if (total < slowThresholdNanos) {
+                return;
+            }
+            slowCount.increment();
+            StringBuilder line = new StringBuilder("[SLOW SQL] ").append(millis(total))
+                    .append(" (prepare ").append(millis(prepareNanos))
+                    .append(", execute ").append(millis(executeNanos));
+            if (rows >= 0) {
+                line.append(", fetch ").append(millis(fetchNanos)).append(", rows ").append(rows);
+            }
+            if (detail != null) {
+                line.append(", ").append(detail);
+            }
+            line.append("): ").append(WHITESPACE.matcher(sql.trim()).replaceAll(" "));
+            if (logParameters && parameters != null) {
+                line.append(" | params ").append(formatParameters());
+            }
+            System.err.println(line);
+        }
+
+        private String formatParameters() {
+            int last = parameters.length;
+            while (last > 0 && parameters[last - 1] == null) {
+                last--;
+            }
+            StringBuilder out = new StringBuilder("[");
+            for (int i = 0; i < last; i++) {
+                if (i > 0) {
+                    out.append(", ");
+                }
+                Object value = parameters[i];
+                if (value instanceof String) {
+                    String s = (String) value;
+                    out.append('\'').append(s.length() > MAX_LOGGED_PARAM_CHARS
+                            ? s.substring(0, MAX_LOGGED_PARAM_CHARS) + "..." : s).append('\'');
+                } else if (value != null && value.getClass().isArray()) {
+                    out.append(value.getClass().getComponentType().getSimpleName()).append("[]");
+                } else {
+                    out.append(value);
+                }
+            }
+            return out.append(']').toString();
+        }
+    }
+
+    /**
+     * Accumulates time spent in next() and counts rows. The fetch is recorded
+     * once, when next() returns false or the ResultSet or its statement is
+     * closed, whichever comes first.
+     */
+    private final class ResultSetHandle implements InvocationHandler {
+        private final ResultSet resultSet;
+        private final StatementHandle statement;
+        private final long prepareNanos;
+        private final long executeNanos;
+        private final String detail;
+        private long fetchNanos;
+        private long rows;
+        private boolean finished;
+
+        private ResultSetHandle(ResultSet resultSet, StatementHandle statement, long prepareNanos,
+                                long executeNanos, String detail) {
+            this.resultSet = resultSet;
+            this.statement = statement;
+            this.prepareNanos = prepareNanos;
+            this.executeNanos = executeNanos;
+            this.detail = detail;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("next")) {
+                long start = System.nanoTime();
+                boolean hasRow = (Boolean) TracingDB.invoke(resultSet, method, args);
+                fetchNanos += System.nanoTime() - start;
+                if (hasRow) {
+                    rows++;
+                } else {
+                    finish();
+                }
+                return hasRow;
+            }
+            if (name.equals("close")) {
+                finish();
+                return TracingDB.invoke(resultSet, method, args);
+            }
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            }
+            if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            return TracingDB.invoke(resultSet, method, args);
+        }
+
+        private void finish() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            statement.stats.fetch.record(fetchNanos);
+            statement.stats.rowsFetched.add(rows);
+            statement.finish(prepareNanos, executeNanos, fetchNanos, rows, detail);
+        }
+    }
+
+    public static final class ShapeStats {
+        private final String shape;
+        private final LatencyHistogram prepare = new LatencyHistogram();
+        private final LatencyHistogram execute = new LatencyHistogram();
+        private final LatencyHistogram fetch = new LatencyHistogram();
+        private final LongAdder rowsFetched = new LongAdder();
+        private final LongAdder rowsAffected = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+
+        private ShapeStats(String shape) {
+            this.shape = shape;
+        }
+
+        public String getShape() { return shape; }
+        public LatencyHistogram.Snapshot getPrepare() { return prepare.snapshot(); }
+        public LatencyHistogram.Snapshot getExecute() { return execute.snapshot(); }
+        public LatencyHistogram.Snapshot getFetch() { return fetch.snapshot(); }
+        public long getRowsFetched() { return rowsFetched.sum(); }
+        public long getRowsAffected() { return rowsAffected.sum(); }
+        public long getErrors() { return errors.sum(); }
+
+        private long totalNanos() {
+            LatencyHistogram.Snapshot p = prepare.snapshot();
+            LatencyHistogram.Snapshot e = execute.snapshot();
+            LatencyHistogram.Snapshot f = fetch.snapshot();
+            return (long) (p.getMeanNanos() * p.getCount() + e.getMeanNanos() * e.getCount()
+                    + f.getMeanNanos() * f.getCount());
+        }
+
+        @Override
+        public String toString() {
+            LatencyHistogram.Snapshot e = execute.snapshot();
+            LatencyHistogram.Snapshot f = fetch.snapshot();
+            return String.format("execs=%d p50=%s p99=%s max=%s | prepare mean=%s | fetch p99=%s rows=%d"
+                            + " | affected=%d errors=%d | %s",
+                    e.getCount(), millis(e.getValueAtPercentile(50)), millis(e.getValueAtPercentile(99)),
+                    millis(e.getMaxNanos()), millis((long) prepare.snapshot().getMeanNanos()),
+                    millis(f.getValueAtPercentile(99)), rowsFetched.sum(), rowsAffected.sum(), errors.sum(), shape);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package data.migration;
+
+import data.interfaces.IDB;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Applies the versioned SQL scripts in a migrations directory, oldest first,
+ * and records each one in schema_migrations. Scripts are named
+ * V&lt;version&gt;__&lt;description&gt;.sql and run whole, each in its own
+ * transaction, so a failing script leaves no trace and stops the run.
+ *
+ * Migrations only ever move forward: an applied script is never re-run, and a
+ * script whose contents changed after it was applied is reported as an error
+ * rather than silently ignored. A session-level advisory lock keeps two
+ * application instances from migrating at the same time.
+ */
+public class MigrationRunner {
+    private static final Pattern FILE_NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+    private static final long ADVISORY_LOCK_KEY = 0x63686174626f74L; // "chatbot"
+    private static final String CREATE_HISTORY_SQL =
+            "CREATE TABLE IF NOT EXISTS schema_migrations ("
+                    + "version INT PRIMARY KEY, "
+                    + "description VARCHAR(200) NOT NULL, "
+                    + "checksum BIGINT NOT NULL, "
+                    + "applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+                    + "execution_ms BIGINT NOT NULL)";
+    private static final String INSERT_HISTORY_SQL =
+            "INSERT INTO schema_migrations (version, description, checksum, execution_ms) VALUES (?, ?, ?, ?)";
+
+    private final IDB db;
+    private final Path directory;
+
+    public MigrationRunner(IDB db, Path directory) {
+        this.db = db;
+        this.directory = directory;
+    }
+
+    /**
+     * resources/migrations relative to the working directory, or its parent when started from src/.
+     */
+    public static Path defaultDirectory() {
+        Path local = Paths.get("resources", "migrations");
+        return Files.isDirectory(local) ? local : Paths.get("..", "resources", "migrations");
+    }
+
+    /**
+     * Applies every pending migration.
+     *
+     * @return the migrations applied by this call, in order
+     */
+    public List<Migration> migrate() throws SQLException, IOException {
+        List<Migration> available = load();
+        List<Migration> applied = new ArrayList<>();
+        try (Connection conn = db.getConnection()) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("SELECT pg_advisory_lock(" + ADVISORY_LOCK_KEY + ")");
+            }
+            try {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute(CREATE_HISTORY_SQL);
+                }
+                Map<Integer, Long> history = readHistory(conn);
+                for (Migration migration : available) {
+                    Long checksum = history.get(migration.version);
+                    if (checksum == null) {
+                        apply(conn, migration);
+                        applied.add(migration);
+                    } else if (checksum != migration.checksum) {
+                        throw new SQLException("Migration " + migration + " was changed after it was applied; "
+                                + "add a new migration instead of editing an applied one.");
+                    }
+                }
+            } finally {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("SELECT pg_advisory_unlock(" + ADVISORY_LOCK_KEY + ")");
+                }
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Migrations in the directory that have not been applied yet.
+     */
+    public List<Migration> pending() throws SQLException, IOException {
+        List<Migration> pending = new ArrayList<>();
+        try (Connection conn = db.getConnection()) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(CREATE_HISTORY_SQL);
+            }
+            Map<Integer, Long> history = readHistory(conn);
+            for (Migration migration : load()) {
+                if (!history.containsKey(migration.version)) {
+                    pending.add(migration);
+                }
+            }
+        }
+        return pending;
+    }
+
+    private void apply(Connection conn, Migration migration) throws SQLException {
+        long start = System.currentTimeMillis();
+        conn.setAutoCommit(false);
+        try {
+            // The driver splits the script into statements itself, honouring $$ bodies.
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(migration.sql);
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(INSERT_HISTORY_SQL)) {
+                pstmt.setInt(1, migration.version);
+                pstmt.setString(2, migration.description);
+                pstmt.setLong(3, migration.checksum);
+                pstmt.setLong(4, System.currentTimeMillis() - start);
+                pstmt.executeUpdate();
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw new SQLException("Migration " + migration + " failed: " + e.getMessage(), e.getSQLState(), e);
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    private static Map<Integer, Long> readHistory(Connection conn) throws SQLException {
+        Map<Integer, Long> history = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version, checksum FROM schema_migrations")) {
+            while (rs.next()) {
+                history.put(rs.getInt("version"), rs.getLong("checksum"));
+            }
+        }
+        return history;
+    }
+
+    private List<Migration> load() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            throw new IOException("Migrations directory not found: " + directory.toAbsolutePath());
+        }
+        List<Migration> migrations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.sql")) {
+            for (Path file : files) {
+                Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+                if (!matcher.matches()) {
+                    throw new IOException("Migration file name must look like V1__description.sql: " + file);
+                }
+                byte[] bytes = Files.readAllBytes(file);
+                CRC32 crc = new CRC32();
+                crc.update(bytes);
+                migrations.add(new Migration(Integer.parseInt(matcher.group(1)),
+                        matcher.group(2).replace('_', ' '), new String(bytes, StandardCharsets.UTF_8), crc.getValue()));
+            }
+        }
+        migrations.sort((a, b) -> Integer.compare(a.version, b.version));
+        for (int i = 1; i < migrations.size(); i++) {
+            if (migrations.get(i).version == migrations.get(i - 1).version) {
+                throw new IOException("Duplicate migration version " + migrations.get(i).version + " in " + directory);
+            }
+        }
+        return migrations;
+    }
+
+    public static final class Migration {
+        private final int version;
+        private final String description;
+        private final String sql;
+        private final long checksum;
+
+        private Migration(int version, String description, String sql, long checksum) {
+            this.version = version;
+            this.description = description;
+            this.sql = sql;
+            this.checksum = checksum;
+        }
+
+        public int getVersion() { return version; }
+        public String getDescription() { return description; }
+
+        @Override
+        public String toString() {
+            return "V" + version + " (" + description + ")";
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package data.migration;
+
+import data.interfaces.IDB;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the monthly chat_sessions partitions (migration V3) ahead of time and,
+ * with a retention period set, drops the partitions that fell out of it. Old
+ * sessions go away a whole month at a time with DROP TABLE, never with a
+ * row-by-row DELETE, so retention costs neither table bloat nor WAL volume.
+ * The work itself is done by the SQL functions the migration installs.
+ */
+public class PartitionMaintenance implements AutoCloseable {
+    private final IDB db;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private volatile ScheduledExecutorService scheduler;
+
+    /**
+     * @param monthsAhead partitions are created up to this many months after the current one
+     * @param retentionMonths months of sessions to keep besides the current one; 0 keeps everything
+     */
+    public PartitionMaintenance(IDB db, int monthsAhead, int retentionMonths) {
+        if (monthsAhead < 1 || retentionMonths < 0) {
+            throw new IllegalArgumentException("Need monthsAhead >= 1 and retentionMonths >= 0.");
+        }
+        this.db = db;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+    }
+
+    /**
+     * Creates the missing partitions and applies retention once.
+     */
+    public Result runOnce() throws SQLException {
+        LocalDate month = LocalDate.now().withDayOfMonth(1);
+        int created = 0;
+        int dropped = 0;
+        try (Connection conn = db.getConnection()) {
+            try (PreparedStatement pstmt = conn.prepareStatement("SELECT chat_sessions_create_partition(?)")) {
+                for (int i = 0; i <= monthsAhead; i++) {
+                    pstmt.setDate(1, Date.valueOf(month.plusMonths(i)));
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        if (rs.next() && rs.getBoolean(1)) {
+                            created++;
+                        }
+                    }
+                }
+            }
+            if (retentionMonths > 0) {
+                try (PreparedStatement pstmt = conn.prepareStatement("SELECT chat_sessions_drop_partitions_before(?)")) {
+                    pstmt.setDate(1, Date.valueOf(month.minusMonths(retentionMonths)));
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        rs.next();
+                        dropped = rs.getInt(1);
+                    }
+                }
+            }
+        }
+        return new Result(created, dropped);
+    }
+
+    /**
+     * Runs now, then every intervalMillis on a daemon thread until close().
+     */
+    public void start(long intervalMillis) throws SQLException {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Maintenance interval must be positive.");
+        }
+        Result first = runOnce();
+        if (first.created > 0 || first.dropped > 0) {
+            System.out.println("[PARTITIONS] " + first);
+        }
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "partition-maintenance");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.scheduleWithFixedDelay(this::runQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        this.scheduler = executor;
+    }
+
+    private void runQuietly() {
+        try {
+            Result result = runOnce();
+            if (result.created > 0 || result.dropped > 0) {
+                System.out.println("[PARTITIONS] " + result);
+            }
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("[PARTITIONS] Maintenance failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        ScheduledExecutorService executor = scheduler;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    public static final class Result {
+        private final int created;
+        private final int dropped;
+
+        private Result(int created, int dropped) {
+            this.created = created;
+            this.dropped = dropped;
+        }
+
+        public int getCreated() { return created; }
+        public int getDropped() { return dropped; }
+
+        @Override
+        public String toString() {
+            return created + " partition(s) created, " + dropped + " dropped by retention";
+        }
+    }
+}
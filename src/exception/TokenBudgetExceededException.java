@@ -0,0 +1,7 @@
+package exception;
+
+public class TokenBudgetExceededException extends RuntimeException {
+    public TokenBudgetExceededException(String message) {
+        super(message);
+    }
+}
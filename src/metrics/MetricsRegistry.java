@@ -0,0 +1,105 @@
+package metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Named OperationMetrics, created on first request. Instrumented components look
+ * their operations up once at construction time, so recording never touches
+ * the registry. After registerJmx() every operation, including ones created
+ * later, is also visible as an MBean.
+ */
+public class MetricsRegistry implements MetricsRegistryMBean {
+    private static final String DOMAIN = "metrics";
+
+    private final ConcurrentSkipListMap<String, OperationMetrics> operations = new ConcurrentSkipListMap<>();
+    private volatile MBeanServer mbeanServer;
+
+    public OperationMetrics operation(String name) {
+        OperationMetrics existing = operations.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        OperationMetrics created = new OperationMetrics(name);
+        existing = operations.putIfAbsent(name, created);
+        if (existing != null) {
+            return existing;
+        }
+        MBeanServer server = mbeanServer;
+        if (server != null) {
+            register(server, created);
+        }
+        return created;
+    }
+
+    public List<OperationMetrics> getOperations() {
+        return new ArrayList<>(operations.values());
+    }
+
+    public synchronized void registerJmx() {
+        if (mbeanServer != null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(this, new ObjectName(DOMAIN + ":type=Registry"));
+        } catch (JMException e) {
+            System.err.println("[METRICS] Could not register registry MBean: " + e.getMessage());
+        }
+        mbeanServer = server;
+        for (OperationMetrics metrics : operations.values()) {
+            register(server, metrics);
+        }
+    }
+
+    private static void register(MBeanServer server, OperationMetrics metrics) {
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":type=Operation,name=" + ObjectName.quote(metrics.getName()));
+            if (!server.isRegistered(name)) {
+                server.registerMBean(metrics, name);
+            }
+        } catch (JMException e) {
+            System.err.println("[METRICS] Could not register " + metrics.getName() + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public int getOperationCount() {
+        return operations.size();
+    }
+
+    @Override
+    public String dump() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%-44s %10s %7s %10s %10s %10s %10s %10s%n",
+                "operation", "calls", "errors", "mean us", "p50 us", "p99 us", "p999 us", "max us"));
+        for (OperationMetrics metrics : operations.values()) {
+            LatencyHistogram.Snapshot latency = metrics.getLatency();
+            if (latency.getCount() == 0) {
+                continue;
+            }
+            out.append(String.format("%-44s %10d %7d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                    metrics.getName(), latency.getCount(), metrics.getErrors(),
+                    latency.getMeanNanos() / 1000.0,
+                    latency.getValueAtPercentile(50) / 1000.0,
+                    latency.getValueAtPercentile(99) / 1000.0,
+                    latency.getValueAtPercentile(99.9) / 1000.0,
+                    latency.getMaxNanos() / 1000.0));
+            for (Map.Entry<String, Long> error : metrics.getErrorCounts().entrySet()) {
+                out.append(String.format("    %-40s %10d%n", error.getKey(), error.getValue()));
+            }
+        }
+        return out.toString();
+    }
+
+    @Override
+    public void resetAll() {
+        operations.values().forEach(OperationMetrics::reset);
+    }
+}
@@ -0,0 +1,10 @@
+package metrics;
+
+/**
+ * JMX view of the whole registry, registered as metrics:type=Registry.
+ */
+public interface MetricsRegistryMBean {
+    int getOperationCount();
+    String dump();
+    void resetAll();
+}
@@ -0,0 +1,16 @@
+package metrics;
+
+/**
+ * JMX view of one operation, registered as metrics:type=Operation,name=&lt;operation&gt;.
+ */
+public interface OperationMetricsMBean {
+    long getCalls();
+    long getErrors();
+    String getErrorsByType();
+    double getMeanMicros();
+    double getP50Micros();
+    double getP99Micros();
+    double getP999Micros();
+    double getMaxMicros();
+    void reset();
+}
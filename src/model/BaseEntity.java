@@ -13,5 +13,10 @@ public abstract class BaseEntity {
 
     public void setId(int id) {
         this.id = id;
+        onIdChanged();
+    }
+
+    // Lets subclasses drop cached values that include the id.
+    protected void onIdChanged() {
     }
 }
\ No newline at end of file
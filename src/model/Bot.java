@@ -1,22 +1,35 @@
 package model;
 
 import model.interfaces.Tokenizable;
+import tokenizer.TokenCounter;
+import tokenizer.Tokenizers;
+import utils.StringPool;
 
 public class Bot extends ChatParticipantBase implements Tokenizable {
     private String greeting;
     private String definition;
     private int tokenLimit;
 
+    // Derived values, built on first use. Fields above never change, only the id can.
+    private String systemPrompt;
+    private String logMessage;
+    private int tokenUsage = -1;
+
     public Bot(int id, String name, String greeting, String definition, int tokenLimit) {
         super(id, name);
-        this.greeting = greeting;
-        this.definition = definition;
+        this.greeting = StringPool.intern(greeting);
+        this.definition = StringPool.intern(definition);
         this.tokenLimit = tokenLimit;
     }
 
     @Override
     public String getSystemPrompt() {
-        return "System Instruction: You are " + name + ". " + definition;
+        String prompt = systemPrompt;
+        if (prompt == null) {
+            prompt = StringPool.intern("System Instruction: You are " + name + ". " + definition);
+            systemPrompt = prompt;
+        }
+        return prompt;
     }
 
     @Override
@@ -26,7 +39,13 @@ public class Bot extends ChatParticipantBase implements Tokenizable {
 
     @Override
     public int estimateTokenUsage() {
-        return (name.length() + definition.length() + greeting.length()) / 4;
+        int usage = tokenUsage;
+        if (usage < 0) {
+            TokenCounter tokenizer = Tokenizers.getDefault();
+            usage = tokenizer.countTokens(name) + tokenizer.countTokens(definition) + tokenizer.countTokens(greeting);
+            tokenUsage = usage;
+        }
+        return usage;
     }
 
     @Override
@@ -36,7 +55,17 @@ public class Bot extends ChatParticipantBase implements Tokenizable {
 
     @Override
     public String getLogMessage() {
-        return "Bot Log [ID=" + id + "]: " + name + " (Limit: " + tokenLimit + ")";
+        String message = logMessage;
+        if (message == null) {
+            message = "Bot Log [ID=" + id + "]: " + name + " (Limit: " + tokenLimit + ")";
+            logMessage = message;
+        }
+        return message;
+    }
+
+    @Override
+    protected void onIdChanged() {
+        logMessage = null;
     }
 
     public String getGreeting() { return greeting; }
@@ -2,13 +2,14 @@ package model;
 
 import model.interfaces.Loggable;
 import model.interfaces.Validatable;
+import utils.StringPool;
 
 public abstract class ChatParticipantBase extends BaseEntity implements Loggable, Validatable {
     protected String name;
 
     public ChatParticipantBase(int id, String name) {
         super(id);
-        this.name = name;
+        this.name = StringPool.intern(name);
     }
 
     public String getName() {
@@ -1,20 +1,33 @@
 package model;
 
 import model.interfaces.Tokenizable;
+import tokenizer.TokenCounter;
+import tokenizer.Tokenizers;
+import utils.StringPool;
 
 public class User extends ChatParticipantBase implements Tokenizable {
     private String persona;
     private boolean isPremium;
 
+    // Derived values, built on first use. Fields above never change, only the id can.
+    private String systemPrompt;
+    private String logMessage;
+    private int tokenUsage = -1;
+
     public User(int id, String name, String persona, boolean isPremium) {
         super(id, name);
-        this.persona = persona;
+        this.persona = StringPool.intern(persona);
         this.isPremium = isPremium;
     }
 
     @Override
     public String getSystemPrompt() {
-        return "[User Context] Name: " + name + ". Persona: " + persona;
+        String prompt = systemPrompt;
+        if (prompt == null) {
+            prompt = StringPool.intern("[User Context] Name: " + name + ". Persona: " + persona);
+            systemPrompt = prompt;
+        }
+        return prompt;
     }
 
     @Override
@@ -24,7 +37,13 @@ public class User extends ChatParticipantBase implements Tokenizable {
 
     @Override
     public int estimateTokenUsage() {
-        return (name.length() + persona.length()) / 4;
+        int usage = tokenUsage;
+        if (usage < 0) {
+            TokenCounter tokenizer = Tokenizers.getDefault();
+            usage = tokenizer.countTokens(name) + tokenizer.countTokens(persona);
+            tokenUsage = usage;
+        }
+        return usage;
     }
 
     @Override
@@ -34,7 +53,17 @@ public class User extends ChatParticipantBase implements Tokenizable {
 
     @Override
     public String getLogMessage() {
-        return "User Log [ID=" + id + "]: " + name + " (Premium: " + isPremium + ")";
+        String message = logMessage;
+        if (message == null) {
+            message = "User Log [ID=" + id + "]: " + name + " (Premium: " + isPremium + ")";
+            logMessage = message;
+        }
+        return message;
+    }
+
+    @Override
+    protected void onIdChanged() {
+        logMessage = null;
     }
 
     public String getPersona() { return persona; }
@@ -0,0 +1,78 @@
+package repository;
+
+import repository.interfaces.AsyncCrudRepository;
+import repository.interfaces.CrudRepository;
+import repository.interfaces.Page;
+import repository.interfaces.PageRequest;
+import utils.AsyncTasks;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Runs each call of a blocking CrudRepository on an executor. JDBC stays blocking
+ * underneath, so the executor should be a virtual-thread-per-task executor (or a
+ * pool at least as large as the connection pool).
+ */
+public class AsyncRepository<T> implements AsyncCrudRepository<T> {
+    private final CrudRepository<T> delegate;
+    private final ExecutorService executor;
+
+    public AsyncRepository(CrudRepository<T> delegate, ExecutorService executor) {
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<T> create(T entity) {
+        return AsyncTasks.supply(executor, () -> {
+            delegate.create(entity);
+            return entity;
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<T>> getAll() {
+        return AsyncTasks.supply(executor, delegate::getAll);
+    }
+
+    @Override
+    public CompletableFuture<T> getById(int id) {
+        return AsyncTasks.supply(executor, () -> delegate.getById(id));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> update(T entity) {
+        return AsyncTasks.supply(executor, () -> delegate.update(entity));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> delete(int id) {
+        return AsyncTasks.supply(executor, () -> delegate.delete(id));
+    }
+
+    @Override
+    public CompletableFuture<Page<T>> findPage(PageRequest request) {
+        return AsyncTasks.supply(executor, () -> delegate.findPage(request));
+    }
+
+    @Override
+    public CompletableFuture<List<Integer>> createAll(List<T> entities) {
+        return AsyncTasks.supply(executor, () -> delegate.createAll(entities));
+    }
+
+    @Override
+    public CompletableFuture<Integer> updateAll(List<T> entities) {
+        return AsyncTasks.supply(executor, () -> delegate.updateAll(entities));
+    }
+
+    @Override
+    public CompletableFuture<Integer> deleteAll(List<Integer> ids) {
+        return AsyncTasks.supply(executor, () -> delegate.deleteAll(ids));
+    }
+
+    public CrudRepository<T> getDelegate() {
+        return delegate;
+    }
+}
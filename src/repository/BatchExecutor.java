@@ -0,0 +1,252 @@
+package repository;
+
+import data.interfaces.IDB;
+import model.BaseEntity;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shared addBatch/executeBatch plumbing for the JDBC repositories.
+ * Every call runs in a single transaction and flushes every batchSize rows.
+ */
+final class BatchExecutor {
+    static final int DEFAULT_BATCH_SIZE = 500;
+    private static final String ADVANCE_SEQUENCE_SQL =
+            "SELECT setval(seq, GREATEST(?, COALESCE(pg_sequence_last_value(seq), 0))) "
+                    + "FROM (SELECT pg_get_serial_sequence(?, 'id')::regclass AS seq) s";
+
+    @FunctionalInterface
+    interface StatementBinder<T> {
+        void bind(PreparedStatement pstmt, T item) throws SQLException;
+    }
+
+    @FunctionalInterface
+    interface RowMatcher<T> {
+        // True if the current row of rs holds the same values as item.
+        boolean matches(ResultSet rs, T item) throws SQLException;
+    }
+
+    private BatchExecutor() {
+    }
+
+    static <T extends BaseEntity> List<Integer> insert(IDB db, String sql, List<T> entities, int batchSize,
+                                                       StatementBinder<T> binder) throws SQLException {
+        List<Integer> ids = new ArrayList<>(entities.size());
+        if (entities.isEmpty()) {
+            return ids;
+        }
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                int pending = 0;
+                for (T entity : entities) {
+                    binder.bind(pstmt, entity);
+                    pstmt.addBatch();
+                    if (++pending == batchSize) {
+                        pstmt.executeBatch();
+                        collectKeys(pstmt, ids);
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    pstmt.executeBatch();
+                    collectKeys(pstmt, ids);
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        for (int i = 0; i < ids.size(); i++) {
+            entities.get(i).setId(ids.get(i));
+        }
+        return ids;
+    }
+
+    static <T> int update(IDB db, String sql, List<T> items, int batchSize,
+                          StatementBinder<T> binder) throws SQLException {
+        if (items.isEmpty()) {
+            return 0;
+        }
+        int affected = 0;
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                int pending = 0;
+                for (T item : items) {
+                    binder.bind(pstmt, item);
+                    pstmt.addBatch();
+                    if (++pending == batchSize) {
+                        affected += countAffected(pstmt.executeBatch());
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    affected += countAffected(pstmt.executeBatch());
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * Inserts entities that carry their own ids with sql, which should end in
+     * ON CONFLICT DO NOTHING, after moving the table's id sequence past them in
+     * the same transaction, so no id handed out meanwhile can collide with
+     * them. If any row was skipped, the stored rows are read back with
+     * selectSql (see requireSameRows). Returns the number of rows inserted.
+     */
+    static <T extends BaseEntity> int importRows(IDB db, String table, String sql, String selectSql, List<T> entities,
+                                                 int batchSize, StatementBinder<T> binder, RowMatcher<T> matcher)
+            throws SQLException {
+        if (entities.isEmpty()) {
+            return 0;
+        }
+        int inserted = 0;
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                advanceSequence(conn, table, maxId(entities));
+                boolean exact = true;
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    int pending = 0;
+                    for (T entity : entities) {
+                        binder.bind(pstmt, entity);
+                        pstmt.addBatch();
+                        if (++pending == batchSize) {
+                            int[] results = pstmt.executeBatch();
+                            inserted += countAffected(results);
+                            exact &= isExact(results);
+                            pending = 0;
+                        }
+                    }
+                    if (pending > 0) {
+                        int[] results = pstmt.executeBatch();
+                        inserted += countAffected(results);
+                        exact &= isExact(results);
+                    }
+                }
+                if (inserted < entities.size() || !exact) {
+                    requireSameRows(conn, selectSql, entities, batchSize, matcher);
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        return inserted;
+    }
+
+    /**
+     * Reads the stored rows for the entities' ids with selectSql, which takes
+     * an integer array and must return the id column, and throws
+     * IllegalArgumentException naming every id whose stored row differs from
+     * the entity. Run it inside the importing transaction so the caller can
+     * roll back.
+     */
+    static <T extends BaseEntity> void requireSameRows(Connection conn, String selectSql, List<T> entities,
+                                                       int batchSize, RowMatcher<T> matcher) throws SQLException {
+        List<Integer> mismatched = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(selectSql)) {
+            for (int from = 0; from < entities.size(); from += batchSize) {
+                Map<Integer, List<T>> byId = new HashMap<>();
+                for (T entity : entities.subList(from, Math.min(entities.size(), from + batchSize))) {
+                    byId.computeIfAbsent(entity.getId(), id -> new ArrayList<>()).add(entity);
+                }
+                pstmt.setArray(1, conn.createArrayOf("integer", byId.keySet().toArray()));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        for (T entity : byId.get(rs.getInt("id"))) {
+                            if (!matcher.matches(rs, entity)) {
+                                mismatched.add(entity.getId());
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        if (!mismatched.isEmpty()) {
+            mismatched.sort(null);
+            String ids = mismatched.size() <= 20 ? mismatched.toString()
+                    : mismatched.subList(0, 20) + " and " + (mismatched.size() - 20) + " more";
+            throw new IllegalArgumentException("Ids already exist with different values: " + ids + ".");
+        }
+    }
+
+    /**
+     * Makes sure the SERIAL sequence of table.id will not hand out an id at or
+     * below maxId. The advisory lock serializes concurrent importers of the
+     * table until commit, so the sequence only ever moves forward and an
+     * importer's existence checks see every id imported before it.
+     */
+    static void advanceSequence(Connection conn, String table, int maxId) throws SQLException {
+        if (maxId <= 0) {
+            return;
+        }
+        try (PreparedStatement lock = conn.prepareStatement("SELECT pg_advisory_xact_lock(hashtext(?))")) {
+            lock.setString(1, table + ".id");
+            lock.executeQuery().close();
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(ADVANCE_SEQUENCE_SQL)) {
+            pstmt.setInt(1, maxId);
+            pstmt.setString(2, table);
+            pstmt.executeQuery().close();
+        }
+    }
+
+    static <T extends BaseEntity> int maxId(List<T> entities) {
+        int max = 0;
+        for (T entity : entities) {
+            max = Math.max(max, entity.getId());
+        }
+        return max;
+    }
+
+    static int deleteByIds(IDB db, String sql, List<Integer> ids, int batchSize) throws SQLException {
+        return update(db, sql, ids, batchSize, (pstmt, id) -> pstmt.setInt(1, id));
+    }
+
+    private static void collectKeys(PreparedStatement pstmt, List<Integer> ids) throws SQLException {
+        try (ResultSet keys = pstmt.getGeneratedKeys()) {
+            while (keys.next()) {
+                ids.add(keys.getInt(1));
+            }
+        }
+    }
+
+    // Drivers may report SUCCESS_NO_INFO for rewritten batches, which hides skipped rows.
+    private static boolean isExact(int[] results) {
+        for (int result : results) {
+            if (result == Statement.SUCCESS_NO_INFO) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int countAffected(int[] results) {
+        int affected = 0;
+        for (int result : results) {
+            if (result > 0) {
+                affected += result;
+            } else if (result == Statement.SUCCESS_NO_INFO) {
+                affected++;
+            }
+        }
+        return affected;
+    }
+}
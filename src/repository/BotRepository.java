@@ -3,30 +3,58 @@ package repository;
 import data.interfaces.IDB;
 import model.Bot;
 import repository.interfaces.CrudRepository;
+import repository.interfaces.Page;
+import repository.interfaces.PageRequest;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
 
 public class BotRepository implements CrudRepository<Bot> {
+    private static final String INSERT_SQL = "INSERT INTO bots (name, greeting, definition, token_limit) VALUES (?, ?, ?, ?)";
+    private static final String UPDATE_SQL = "UPDATE bots SET name = ?, greeting = ?, definition = ?, token_limit = ? WHERE id = ?";
+    private static final String DELETE_SQL = "DELETE FROM bots WHERE id = ?";
+    private static final String IMPORT_SQL =
+            "INSERT INTO bots (name, greeting, definition, token_limit, id) VALUES (?, ?, ?, ?, ?) ON CONFLICT (id) DO NOTHING";
+    private static final String IMPORT_CHECK_SQL =
+            "SELECT id, name, greeting, definition, token_limit FROM bots WHERE id = ANY(?)";
+    private static final String STREAM_SQL = "SELECT * FROM bots WHERE id > ? ORDER BY id";
+    private static final int FETCH_SIZE = 1_000;
+
     private final IDB db;
+    private int batchSize = BatchExecutor.DEFAULT_BATCH_SIZE;
 
     public BotRepository(IDB db) {
         this.db = db;
     }
 
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive.");
+        }
+        this.batchSize = batchSize;
+    }
+
     @Override
     public void create(Bot bot) throws SQLException {
-        String sql = "INSERT INTO bots (name, greeting, definition, token_limit) VALUES (?, ?, ?, ?)";
         try (Connection conn = db.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, bot.getName());
-            pstmt.setString(2, bot.getGreeting());
-            pstmt.setString(3, bot.getDefinition());
-            pstmt.setInt(4, bot.getTokenLimit());
+             PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            bindInsert(pstmt, bot);
             pstmt.executeUpdate();
+            try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                if (keys.next()) {
+                    bot.setId(keys.getInt(1));
+                }
+            }
         }
     }
 
+    @Override
+    public List<Integer> createAll(List<Bot> bots) throws SQLException {
+        return BatchExecutor.insert(db, INSERT_SQL, bots, batchSize, this::bindInsert);
+    }
+
     @Override
     public List<Bot> getAll() throws SQLException {
         List<Bot> bots = new ArrayList<>();
@@ -47,6 +75,20 @@ public class BotRepository implements CrudRepository<Bot> {
         return bots;
     }
 
+    /**
+     * Sort keys: "id", "name" (case-insensitive) and "token_limit".
+     */
+    @Override
+    public Page<Bot> findPage(PageRequest request) throws SQLException {
+        switch (request.getSortBy()) {
+            case "id": return Keyset.query(db, "*", "bots", null, null, request, BotRepository::mapRow);
+            case "name": return Keyset.query(db, "*", "bots", "lower(name)", String.class, request, BotRepository::mapRow);
+            case "token_limit":
+                return Keyset.query(db, "*", "bots", "token_limit", Integer.class, request, BotRepository::mapRow);
+            default: throw new IllegalArgumentException("Bots cannot be sorted by " + request.getSortBy() + ".");
+        }
+    }
+
     @Override
     public Bot getById(int id) throws SQLException {
         String sql = "SELECT * FROM bots WHERE id = ?";
@@ -69,10 +111,8 @@ public class BotRepository implements CrudRepository<Bot> {
 
     @Override
     public boolean delete(int id) throws SQLException {
-        String sql = "DELETE FROM bots WHERE id = ?";
-
         try (Connection conn = db.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(DELETE_SQL)) {
 
             pstmt.setInt(1, id);
             int rowsAffected = pstmt.executeUpdate();
@@ -83,19 +123,63 @@ public class BotRepository implements CrudRepository<Bot> {
 
     @Override
     public boolean update(Bot bot) throws SQLException {
-        String sql = "UPDATE bots SET name = ?, greeting = ?, definition = ?, token_limit = ? WHERE id = ?";
-
         try (Connection conn = db.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(UPDATE_SQL)) {
 
-            pstmt.setString(1, bot.getName());
-            pstmt.setString(2, bot.getGreeting());
-            pstmt.setString(3, bot.getDefinition());
-            pstmt.setInt(4, bot.getTokenLimit());
-            pstmt.setInt(5, bot.getId());
+            bindUpdate(pstmt, bot);
 
             int rowsAffected = pstmt.executeUpdate();
             return rowsAffected > 0;
         }
     }
+
+    @Override
+    public int updateAll(List<Bot> bots) throws SQLException {
+        return BatchExecutor.update(db, UPDATE_SQL, bots, batchSize, this::bindUpdate);
+    }
+
+    @Override
+    public int deleteAll(List<Integer> ids) throws SQLException {
+        return BatchExecutor.deleteByIds(db, DELETE_SQL, ids, batchSize);
+    }
+
+    @Override
+    public Stream<Bot> streamAfter(int afterId) throws SQLException {
+        return CursorStream.open(db, STREAM_SQL, FETCH_SIZE, pstmt -> pstmt.setInt(1, afterId), BotRepository::mapRow);
+    }
+
+    @Override
+    public int importAll(List<Bot> bots) throws SQLException {
+        return BatchExecutor.importRows(db, "bots", IMPORT_SQL, IMPORT_CHECK_SQL, bots, batchSize,
+                this::bindUpdate, BotRepository::matches);
+    }
+
+    private static boolean matches(ResultSet rs, Bot bot) throws SQLException {
+        return Objects.equals(rs.getString("name"), bot.getName())
+                && Objects.equals(rs.getString("greeting"), bot.getGreeting())
+                && Objects.equals(rs.getString("definition"), bot.getDefinition())
+                && rs.getInt("token_limit") == bot.getTokenLimit();
+    }
+
+    private static Bot mapRow(ResultSet rs) throws SQLException {
+        return new Bot(
+                rs.getInt("id"),
+                rs.getString("name"),
+                rs.getString("greeting"),
+                rs.getString("definition"),
+                rs.getInt("token_limit")
+        );
+    }
+
+    private void bindInsert(PreparedStatement pstmt, Bot bot) throws SQLException {
+        pstmt.setString(1, bot.getName());
+        pstmt.setString(2, bot.getGreeting());
+        pstmt.setString(3, bot.getDefinition());
+        pstmt.setInt(4, bot.getTokenLimit());
+    }
+
+    private void bindUpdate(PreparedStatement pstmt, Bot bot) throws SQLException {
+        bindInsert(pstmt, bot);
+        pstmt.setInt(5, bot.getId());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,267 @@
+package repository;
+
+import model.BaseEntity;
+import repository.interfaces.CrudRepository;
+import repository.interfaces.Page;
+import repository.interfaces.PageRequest;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Read-through LRU cache in front of any CrudRepository. Entries expire after
+ * a TTL, ids that were not found are remembered for a shorter negative TTL,
+ * and every write through this repository invalidates the ids it touched.
+ *
+ * A load that raced with a write is never cached: each id maps to a version
+ * stripe that writes bump, and a loaded value is only stored if its stripe
+ * did not change while the database read was in flight.
+ */
+public class CachingRepository<T extends BaseEntity> implements CrudRepository<T> {
+    private static final int VERSION_STRIPES = 64;
+
+    private final CrudRepository<T> delegate;
+    private final int maxSize;
+    private final long ttlMillis;
+    private final long negativeTtlMillis;
+
+    private final LinkedHashMap<Integer, CacheEntry<T>> entries;
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public CachingRepository(CrudRepository<T> delegate, int maxSize, long ttlMillis, long negativeTtlMillis) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive.");
+        }
+        this.delegate = delegate;
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.negativeTtlMillis = negativeTtlMillis;
+        this.entries = new LinkedHashMap<>(Math.min(maxSize, 1024), 0.75f, true);
+    }
+
+    @Override
+    public T getById(int id) throws SQLException {
+        CacheEntry<T> cached = lookup(id);
+        if (cached != null) {
+            if (cached.value == null) {
+                negativeHits.increment();
+            } else {
+                hits.increment();
+            }
+            return cached.value;
+        }
+
+        misses.increment();
+        long version = versions.get(stripe(id));
+        T loaded = delegate.getById(id);
+        storeIfUnchanged(id, loaded, version);
+        return loaded;
+    }
+
+    @Override
+    public List<T> getAll() throws SQLException {
+        return delegate.getAll();
+    }
+
+    @Override
+    public Page<T> findPage(PageRequest request) throws SQLException {
+        return delegate.findPage(request);
+    }
+
+    @Override
+    public Stream<T> streamAfter(int afterId) throws SQLException {
+        return delegate.streamAfter(afterId);
+    }
+
+    @Override
+    public void create(T entity) throws SQLException {
+        delegate.create(entity);
+        invalidate(entity.getId());
+    }
+
+    @Override
+    public boolean update(T entity) throws SQLException {
+        try {
+            return delegate.update(entity);
+        } finally {
+            invalidate(entity.getId());
+        }
+    }
+
+    @Override
+    public boolean delete(int id) throws SQLException {
+        try {
+            return delegate.delete(id);
+        } finally {
+            invalidate(id);
+        }
+    }
+
+    @Override
+    public List<Integer> createAll(List<T> entities) throws SQLException {
+        List<Integer> ids = delegate.createAll(entities);
+        ids.forEach(this::invalidate);
+        return ids;
+    }
+
+    @Override
+    public int updateAll(List<T> entities) throws SQLException {
+        try {
+            return delegate.updateAll(entities);
+        } finally {
+            entities.forEach(entity -> invalidate(entity.getId()));
+        }
+    }
+
+    @Override
+    public int deleteAll(List<Integer> ids) throws SQLException {
+        try {
+            return delegate.deleteAll(ids);
+        } finally {
+            ids.forEach(this::invalidate);
+        }
+    }
+
+    @Override
+    public int importAll(List<T> entities) throws SQLException {
+        try {
+            return delegate.importAll(entities);
+        } finally {
+            entities.forEach(entity -> invalidate(entity.getId()));
+        }
+    }
+
+    public void invalidate(int id) {
+        versions.incrementAndGet(stripe(id));
+        synchronized (entries) {
+            if (entries.remove(id) != null) {
+                invalidations.increment();
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        for (int i = 0; i < VERSION_STRIPES; i++) {
+            versions.incrementAndGet(i);
+        }
+        synchronized (entries) {
+            invalidations.add(entries.size());
+            entries.clear();
+        }
+    }
+
+    public CacheStats getStats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new CacheStats(size, maxSize, hits.sum(), negativeHits.sum(), misses.sum(),
+                evictions.sum(), expirations.sum(), invalidations.sum());
+    }
+
+    private CacheEntry<T> lookup(int id) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            CacheEntry<T> entry = entries.get(id);
+            if (entry != null && entry.expiresAt <= now) {
+                entries.remove(id);
+                expirations.increment();
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    private void storeIfUnchanged(int id, T value, long version) {
+        long ttl = value == null ? negativeTtlMillis : ttlMillis;
+        if (ttl <= 0) {
+            return;
+        }
+        CacheEntry<T> entry = new CacheEntry<>(value, System.currentTimeMillis() + ttl);
+        synchronized (entries) {
+            // Checked under the lock so invalidate() cannot slip in between the check and the put.
+            if (versions.get(stripe(id)) != version) {
+                return;
+            }
+            entries.put(id, entry);
+            if (entries.size() > maxSize) {
+                Iterator<Map.Entry<Integer, CacheEntry<T>>> eldest = entries.entrySet().iterator();
+                eldest.next();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    private static int stripe(int id) {
+        return (id ^ (id >>> 16)) & (VERSION_STRIPES - 1);
+    }
+
+    private static final class CacheEntry<T> {
+        private final T value;
+        private final long expiresAt;
+
+        private CacheEntry(T value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public static final class CacheStats {
+        private final int size;
+        private final int maxSize;
+        private final long hits;
+        private final long negativeHits;
+        private final long misses;
+        private final long evictions;
+        private final long expirations;
+        private final long invalidations;
+
+        private CacheStats(int size, int maxSize, long hits, long negativeHits, long misses,
+                           long evictions, long expirations, long invalidations) {
+            this.size = size;
+            this.maxSize = maxSize;
+            this.hits = hits;
+            this.negativeHits = negativeHits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+            this.invalidations = invalidations;
+        }
+
+        public int getSize() { return size; }
+        public int getMaxSize() { return maxSize; }
+        public long getHits() { return hits; }
+        public long getNegativeHits() { return negativeHits; }
+        public long getMisses() { return misses; }
+        public long getEvictions() { return evictions; }
+        public long getExpirations() { return expirations; }
+        public long getInvalidations() { return invalidations; }
+
+        public double getHitRate() {
+            long lookups = hits + negativeHits + misses;
+            return lookups == 0 ? 0 : (double) (hits + negativeHits) / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return "size=" + size + "/" + maxSize + ", hits=" + hits + ", negativeHits=" + negativeHits +
+                    ", misses=" + misses + String.format(", hitRate=%.1f%%", getHitRate() * 100) +
+                    ", evictions=" + evictions + ", expirations=" + expirations +
+                    ", invalidations=" + invalidations;
+        }
+    }
+}
@@ -4,58 +4,309 @@ import data.interfaces.IDB;
 import model.Bot;
 import model.User;
 import model.ChatSession;
-import repository.interfaces.CrudRepository;
+import repository.interfaces.Page;
+import repository.interfaces.PageRequest;
+import repository.interfaces.SessionRepository;
+import utils.LruMap;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public class ChatSessionRepository implements SessionRepository {
+    private static final String INSERT_SQL = "INSERT INTO chat_sessions (bot_id, user_id, started_at, total_tokens_used) VALUES (?, ?, ?, ?)";
+    // Lookups by id alone cannot prune partitions; each probes every partition's id index (see migration V003).
+    private static final String UPDATE_SQL = "UPDATE chat_sessions SET total_tokens_used = ? WHERE id = ?";
+    private static final String DELETE_SQL = "DELETE FROM chat_sessions WHERE id = ?";
+    private static final String ADD_TOKENS_SQL =
+            "UPDATE chat_sessions SET total_tokens_used = total_tokens_used + ? WHERE id = ? RETURNING total_tokens_used";
+    private static final String ADD_TOKENS_BATCH_SQL =
+            "UPDATE chat_sessions SET total_tokens_used = total_tokens_used + ? WHERE id = ?";
+    private static final String RESERVE_IDS_SQL =
+            "SELECT nextval(pg_get_serial_sequence('chat_sessions', 'id')) FROM generate_series(1, ?)";
+    private static final String COPY_SQL =
+            "COPY chat_sessions (id, bot_id, user_id, started_at, total_tokens_used) FROM STDIN WITH (FORMAT csv)";
+    // The primary key is (id, started_at), so ON CONFLICT alone would accept a known id with another start time.
+    private static final String IMPORT_SQL =
+            "INSERT INTO chat_sessions (bot_id, user_id, started_at, total_tokens_used, id) "
+                    + "SELECT ?::int, ?::int, ?::timestamp, ?::int, ?::int "
+                    + "WHERE NOT EXISTS (SELECT 1 FROM chat_sessions WHERE id = ?) ON CONFLICT DO NOTHING";
+    private static final String IMPORT_STAGING_SQL =
+            "CREATE TEMP TABLE IF NOT EXISTS chat_sessions_import (LIKE chat_sessions) ON COMMIT DELETE ROWS";
+    private static final String IMPORT_COPY_SQL =
+            "COPY chat_sessions_import (id, bot_id, user_id, started_at, total_tokens_used) FROM STDIN WITH (FORMAT csv)";
+    private static final String IMPORT_MERGE_SQL =
+            "INSERT INTO chat_sessions (id, bot_id, user_id, started_at, total_tokens_used) "
+                    + "SELECT DISTINCT ON (i.id) i.id, i.bot_id, i.user_id, i.started_at, i.total_tokens_used "
+                    + "FROM chat_sessions_import i "
+                    + "WHERE NOT EXISTS (SELECT 1 FROM chat_sessions s WHERE s.id = i.id) "
+                    + "ORDER BY i.id ON CONFLICT DO NOTHING";
+    private static final String IMPORT_CHECK_SQL =
+            "SELECT id, bot_id, user_id, started_at, total_tokens_used FROM chat_sessions WHERE id = ANY(?)";
+    private static final String SELECT_STUBS = "SELECT s.* FROM chat_sessions s";
+    private static final String SELECT_HYDRATED =
+            "SELECT s.id, s.bot_id, s.user_id, s.started_at, s.total_tokens_used, " +
+            "b.name AS bot_name, b.greeting, b.definition, b.token_limit, " +
+            "u.name AS user_name, u.persona, u.is_premium " +
+            "FROM chat_sessions s JOIN bots b ON b.id = s.bot_id JOIN users u ON u.id = s.user_id";
+    private static final String SELECT_NAMES_ONLY =
+            "SELECT s.id, s.bot_id, s.user_id, s.started_at, s.total_tokens_used, " +
+            "b.name AS bot_name, b.token_limit, u.name AS user_name, u.is_premium " +
+            "FROM chat_sessions s JOIN bots b ON b.id = s.bot_id JOIN users u ON u.id = s.user_id";
+    private static final String PAGE_BY_ID_SQL = "SELECT * FROM chat_sessions WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String PAGE_BY_STARTED_AT_SQL =
+            "SELECT * FROM chat_sessions WHERE (started_at, id) > (?, ?) ORDER BY started_at, id LIMIT ?";
+    private static final String FIRST_PAGE_BY_STARTED_AT_SQL =
+            "SELECT * FROM chat_sessions ORDER BY started_at, id LIMIT ?";
+    private static final int DEFAULT_COPY_THRESHOLD = 5_000;
+    private static final int DEFAULT_FETCH_SIZE = 1_000;
 
-public class ChatSessionRepository implements CrudRepository<ChatSession> {
     private final IDB db;
+    private int batchSize = BatchExecutor.DEFAULT_BATCH_SIZE;
+    private int copyThreshold = DEFAULT_COPY_THRESHOLD;
+    private int fetchSize = DEFAULT_FETCH_SIZE;
 
     public ChatSessionRepository(IDB db) {
         this.db = db;
     }
 
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive.");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * createAll and importAll switch from JDBC batching to COPY once a call has at least
+     * this many rows. Use Integer.MAX_VALUE to always batch.
+     */
+    public void setCopyThreshold(int copyThreshold) {
+        this.copyThreshold = copyThreshold;
+    }
+
+    /**
+     * Rows pulled per round trip by streamAll() and streamAfter().
+     */
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("Fetch size must be positive.");
+        }
+        this.fetchSize = fetchSize;
+    }
+
     @Override
     public void create(ChatSession session) throws SQLException {
-        String sql = "INSERT INTO chat_sessions (bot_id, user_id, started_at, total_tokens_used) VALUES (?, ?, ?, ?)";
         try (Connection conn = db.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
 
-            pstmt.setInt(1, session.getBot().getId());
-            pstmt.setInt(2, session.getUser().getId());
+            bindInsert(pstmt, session);
+            pstmt.executeUpdate();
 
-            pstmt.setTimestamp(3, new Timestamp(session.getStartedAt().getTime()));
+            try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                if (keys.next()) {
+                    session.setId(keys.getInt(1));
+                }
+            }
+        }
+    }
 
-            pstmt.setInt(4, session.getTotalTokensUsed());
+    @Override
+    public List<Integer> createAll(List<ChatSession> sessions) throws SQLException {
+        if (sessions.size() >= copyThreshold && isCopySupported()) {
+            return copyAll(sessions);
+        }
+        return BatchExecutor.insert(db, INSERT_SQL, sessions, batchSize, this::bindInsert);
+    }
 
-            pstmt.executeUpdate();
+    /**
+     * Bulk load through PostgreSQL COPY. The ids are reserved from the serial
+     * sequence first so they can be written explicitly and returned to the caller.
+     */
+    public List<Integer> copyAll(List<ChatSession> sessions) throws SQLException {
+        List<Integer> ids = new ArrayList<>(sessions.size());
+        if (sessions.isEmpty()) {
+            return ids;
+        }
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement pstmt = conn.prepareStatement(RESERVE_IDS_SQL)) {
+                    pstmt.setInt(1, sessions.size());
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            ids.add(rs.getInt(1));
+                        }
+                    }
+                }
+
+                StringBuilder csv = new StringBuilder(sessions.size() * 48);
+                for (int i = 0; i < sessions.size(); i++) {
+                    appendCsv(csv, ids.get(i), sessions.get(i));
+                }
+                copyIn(conn, COPY_SQL, new StringReader(csv.toString()));
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        for (int i = 0; i < ids.size(); i++) {
+            sessions.get(i).setId(ids.get(i));
+        }
+        return ids;
+    }
+
+    /**
+     * Large imports go through COPY into a temporary staging table, since COPY
+     * itself cannot skip rows that already exist; smaller ones are batched.
+     */
+    @Override
+    public int importAll(List<ChatSession> sessions) throws SQLException {
+        if (sessions.size() < copyThreshold || !isCopySupported()) {
+            return BatchExecutor.importRows(db, "chat_sessions", IMPORT_SQL, IMPORT_CHECK_SQL, sessions,
+                    batchSize, this::bindImport, ChatSessionRepository::matches);
+        }
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                BatchExecutor.advanceSequence(conn, "chat_sessions", BatchExecutor.maxId(sessions));
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute(IMPORT_STAGING_SQL);
+                }
+                StringBuilder csv = new StringBuilder(sessions.size() * 48);
+                for (ChatSession session : sessions) {
+                    appendCsv(csv, session.getId(), session);
+                }
+                copyIn(conn, IMPORT_COPY_SQL, new StringReader(csv.toString()));
+                int inserted;
+                try (Statement stmt = conn.createStatement()) {
+                    inserted = stmt.executeUpdate(IMPORT_MERGE_SQL);
+                }
+                if (inserted < sessions.size()) {
+                    BatchExecutor.requireSameRows(conn, IMPORT_CHECK_SQL, sessions, batchSize,
+                            ChatSessionRepository::matches);
+                }
+                conn.commit();
+                return inserted;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
         }
     }
 
+    private static void appendCsv(StringBuilder csv, int id, ChatSession session) {
+        csv.append(id).append(',')
+                .append(session.getBot().getId()).append(',')
+                .append(session.getUser().getId()).append(',')
+                .append(new Timestamp(session.getStartedAt().getTime())).append(',')
+                .append(session.getTotalTokensUsed()).append('\n');
+    }
+
     @Override
     public List<ChatSession> getAll() throws SQLException {
-        String sql = "SELECT * FROM chat_sessions";
+        return getAll(FetchMode.STUBS);
+    }
+
+    @Override
+    public List<ChatSession> getAll(FetchMode mode) throws SQLException {
+        CursorStream.RowMapper<ChatSession> mapper = rowMapper(mode);
         try (Connection conn = db.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
+             PreparedStatement pstmt = conn.prepareStatement(selectSql(mode) + " ORDER BY s.id");
              ResultSet rs = pstmt.executeQuery()) {
             List<ChatSession> sessions = new ArrayList<>();
             while (rs.next()) {
-                sessions.add(mapRowToSession(rs));
+                sessions.add(mapper.map(rs));
             }
             return sessions;
         }
     }
 
     @Override
-    public ChatSession getById(int id) throws SQLException {
-        String sql = "SELECT * FROM chat_sessions WHERE id = ?";
+    public Stream<ChatSession> streamAll() throws SQLException {
+        return streamAll(FetchMode.STUBS);
+    }
+
+    @Override
+    public Stream<ChatSession> streamAll(FetchMode mode) throws SQLException {
+        return CursorStream.open(db, selectSql(mode) + " ORDER BY s.id", fetchSize, pstmt -> { }, rowMapper(mode));
+    }
+
+    @Override
+    public Stream<ChatSession> streamAfter(int afterId) throws SQLException {
+        return CursorStream.open(db, SELECT_STUBS + " WHERE s.id > ? ORDER BY s.id", fetchSize,
+                pstmt -> pstmt.setInt(1, afterId), this::mapRowToSession);
+    }
+
+    @Override
+    public List<ChatSession> getPageAfterId(int afterId, int pageSize) throws SQLException {
+        try (Connection conn = db.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(PAGE_BY_ID_SQL)) {
+            pstmt.setInt(1, afterId);
+            pstmt.setInt(2, pageSize);
+            return readPage(pstmt, pageSize);
+        }
+    }
+
+    @Override
+    public List<ChatSession> getPageAfterStartedAt(Date afterStartedAt, int afterId, int pageSize) throws SQLException {
+        String sql = afterStartedAt == null ? FIRST_PAGE_BY_STARTED_AT_SQL : PAGE_BY_STARTED_AT_SQL;
         try (Connection conn = db.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            if (afterStartedAt == null) {
+                pstmt.setInt(1, pageSize);
+            } else {
+                pstmt.setTimestamp(1, new Timestamp(afterStartedAt.getTime()));
+                pstmt.setInt(2, afterId);
+                pstmt.setInt(3, pageSize);
+            }
+            return readPage(pstmt, pageSize);
+        }
+    }
+
+    private List<ChatSession> readPage(PreparedStatement pstmt, int pageSize) throws SQLException {
+        List<ChatSession> page = new ArrayList<>(pageSize);
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                page.add(mapRowToSession(rs));
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Sort keys: "id" and "started_at". Sessions come back as STUBS.
+     */
+    @Override
+    public Page<ChatSession> findPage(PageRequest request) throws SQLException {
+        switch (request.getSortBy()) {
+            case "id": return Keyset.query(db, "*", "chat_sessions", null, null, request, this::mapRowToSession);
+            case "started_at":
+                return Keyset.query(db, "*", "chat_sessions", "started_at", Timestamp.class, request, this::mapRowToSession);
+            default: throw new IllegalArgumentException("Sessions cannot be sorted by " + request.getSortBy() + ".");
+        }
+    }
+
+    @Override
+    public ChatSession getById(int id) throws SQLException {
+        return getById(id, FetchMode.STUBS);
+    }
+
+    @Override
+    public ChatSession getById(int id, FetchMode mode) throws SQLException {
+        try (Connection conn = db.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(selectSql(mode) + " WHERE s.id = ?")) {
             pstmt.setInt(1, id);
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
-                    return mapRowToSession(rs);
+                    return rowMapper(mode).map(rs);
                 }
             }
         }
@@ -64,27 +315,124 @@ public class ChatSessionRepository implements CrudRepository<ChatSession> {
 
     @Override
     public boolean update(ChatSession session) throws SQLException {
-        String sql = "UPDATE chat_sessions SET total_tokens_used = ? WHERE id = ?";
         try (Connection conn = db.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(UPDATE_SQL)) {
 
-            pstmt.setInt(1, session.getTotalTokensUsed());
-            pstmt.setInt(2, session.getId());
+            bindUpdate(pstmt, session);
 
             return pstmt.executeUpdate() > 0;
         }
     }
 
+    @Override
+    public int updateAll(List<ChatSession> sessions) throws SQLException {
+        return BatchExecutor.update(db, UPDATE_SQL, sessions, batchSize, this::bindUpdate);
+    }
+
+    @Override
+    public Integer addTokens(int sessionId, int delta) throws SQLException {
+        try (Connection conn = db.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(ADD_TOKENS_SQL)) {
+            pstmt.setInt(1, delta);
+            pstmt.setInt(2, sessionId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : null;
+            }
+        }
+    }
+
+    @Override
+    public int addTokensBatch(Map<Integer, Long> deltas) throws SQLException {
+        return BatchExecutor.update(db, ADD_TOKENS_BATCH_SQL, new ArrayList<>(deltas.entrySet()), batchSize,
+                (pstmt, entry) -> {
+                    pstmt.setLong(1, entry.getValue());
+                    pstmt.setInt(2, entry.getKey());
+                });
+    }
+
     @Override
     public boolean delete(int id) throws SQLException {
-        String sql = "DELETE FROM chat_sessions WHERE id = ?";
         try (Connection conn = db.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(DELETE_SQL)) {
             pstmt.setInt(1, id);
             return pstmt.executeUpdate() > 0;
         }
     }
 
+    @Override
+    public int deleteAll(List<Integer> ids) throws SQLException {
+        return BatchExecutor.deleteByIds(db, DELETE_SQL, ids, batchSize);
+    }
+
+    private void bindInsert(PreparedStatement pstmt, ChatSession session) throws SQLException {
+        pstmt.setInt(1, session.getBot().getId());
+        pstmt.setInt(2, session.getUser().getId());
+        pstmt.setTimestamp(3, new Timestamp(session.getStartedAt().getTime()));
+        pstmt.setInt(4, session.getTotalTokensUsed());
+    }
+
+    private static boolean matches(ResultSet rs, ChatSession session) throws SQLException {
+        return rs.getInt("bot_id") == session.getBot().getId()
+                && rs.getInt("user_id") == session.getUser().getId()
+                && rs.getTimestamp("started_at").getTime() == session.getStartedAt().getTime()
+                && rs.getInt("total_tokens_used") == session.getTotalTokensUsed();
+    }
+
+    private void bindImport(PreparedStatement pstmt, ChatSession session) throws SQLException {
+        bindInsert(pstmt, session);
+        pstmt.setInt(5, session.getId());
+        pstmt.setInt(6, session.getId());
+    }
+
+    private void bindUpdate(PreparedStatement pstmt, ChatSession session) throws SQLException {
+        pstmt.setInt(1, session.getTotalTokensUsed());
+        pstmt.setInt(2, session.getId());
+    }
+
+    private static boolean isCopySupported() {
+        try {
+            Class.forName("org.postgresql.copy.CopyManager");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    // The driver is only on the runtime classpath (see PostgresDB), so CopyManager is reached reflectively.
+    private static void copyIn(Connection conn, String sql, Reader data) throws SQLException {
+        try {
+            Class<?> pgConnectionClass = Class.forName("org.postgresql.PGConnection");
+            Object pgConnection = conn.unwrap(pgConnectionClass);
+            Object copyManager = pgConnectionClass.getMethod("getCopyAPI").invoke(pgConnection);
+            Method copyIn = Class.forName("org.postgresql.copy.CopyManager")
+                    .getMethod("copyIn", String.class, Reader.class);
+            copyIn.invoke(copyManager, sql, data);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            throw new SQLException("COPY into chat_sessions failed.", cause);
+        } catch (ReflectiveOperationException e) {
+            throw new SQLException("PostgreSQL COPY API not available.", e);
+        }
+    }
+
+    private static String selectSql(FetchMode mode) {
+        switch (mode) {
+            case HYDRATED:
+                return SELECT_HYDRATED;
+            case NAMES_ONLY:
+                return SELECT_NAMES_ONLY;
+            default:
+                return SELECT_STUBS;
+        }
+    }
+
+    private CursorStream.RowMapper<ChatSession> rowMapper(FetchMode mode) {
+        return mode == FetchMode.STUBS ? this::mapRowToSession : new JoinedRowMapper(mode == FetchMode.HYDRATED);
+    }
+
     private ChatSession mapRowToSession(ResultSet rs) throws SQLException {
         Bot botStub = new Bot(rs.getInt("bot_id"), "Unknown", "", "", 0);
         User userStub = new User(rs.getInt("user_id"), "Unknown", "", false);
@@ -97,4 +445,53 @@ public class ChatSessionRepository implements CrudRepository<ChatSession> {
                 rs.getInt("total_tokens_used")
         );
     }
-}
\ No newline at end of file
+
+    /**
+     * Maps joined rows and keeps a small LRU identity map for the lifetime of
+     * one query, so a bot or user that appears in many nearby sessions is only
+     * built once. The bound keeps a cursor over the whole table at constant memory.
+     */
+    private static final class JoinedRowMapper implements CursorStream.RowMapper<ChatSession> {
+        private static final int IDENTITY_MAP_SIZE = 1_024;
+
+        private final boolean fullText;
+        private final Map<Integer, Bot> bots = new LruMap<>(IDENTITY_MAP_SIZE);
+        private final Map<Integer, User> users = new LruMap<>(IDENTITY_MAP_SIZE);
+
+        private JoinedRowMapper(boolean fullText) {
+            this.fullText = fullText;
+        }
+
+        @Override
+        public ChatSession map(ResultSet rs) throws SQLException {
+            int botId = rs.getInt("bot_id");
+            Bot bot = bots.get(botId);
+            if (bot == null) {
+                bot = new Bot(botId,
+                        rs.getString("bot_name"),
+                        fullText ? rs.getString("greeting") : "",
+                        fullText ? rs.getString("definition") : "",
+                        rs.getInt("token_limit"));
+                bots.put(botId, bot);
+            }
+
+            int userId = rs.getInt("user_id");
+            User user = users.get(userId);
+            if (user == null) {
+                user = new User(userId,
+                        rs.getString("user_name"),
+                        fullText ? rs.getString("persona") : "",
+                        rs.getBoolean("is_premium"));
+                users.put(userId, user);
+            }
+
+            return new ChatSession(
+                    rs.getInt("id"),
+                    bot,
+                    user,
+                    rs.getTimestamp("started_at"),
+                    rs.getInt("total_tokens_used")
+            );
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package repository;
+
+import metrics.MetricsRegistry;
+import metrics.OperationMetrics;
+import repository.interfaces.CrudRepository;
+import repository.interfaces.Page;
+import repository.interfaces.PageRequest;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Records call counts, errors by type and latency for every call to a
+ * CrudRepository, under "&lt;prefix&gt;.&lt;method&gt;" in a MetricsRegistry.
+ */
+public class InstrumentedRepository<T> implements CrudRepository<T> {
+    private final CrudRepository<T> delegate;
+    private final OperationMetrics create;
+    private final OperationMetrics getAll;
+    private final OperationMetrics getById;
+    private final OperationMetrics findPage;
+    private final OperationMetrics update;
+    private final OperationMetrics delete;
+    private final OperationMetrics createAll;
+    private final OperationMetrics updateAll;
+    private final OperationMetrics deleteAll;
+    private final OperationMetrics streamAfter;
+    private final OperationMetrics importAll;
+
+    public InstrumentedRepository(CrudRepository<T> delegate, MetricsRegistry registry, String prefix) {
+        this.delegate = delegate;
+        this.create = registry.operation(prefix + ".create");
+        this.getAll = registry.operation(prefix + ".getAll");
+        this.getById = registry.operation(prefix + ".getById");
+        this.findPage = registry.operation(prefix + ".findPage");
+        this.update = registry.operation(prefix + ".update");
+        this.delete = registry.operation(prefix + ".delete");
+        this.createAll = registry.operation(prefix + ".createAll");
+        this.updateAll = registry.operation(prefix + ".updateAll");
+        this.deleteAll = registry.operation(prefix + ".deleteAll");
+        this.streamAfter = registry.operation(prefix + ".streamAfter");
+        this.importAll = registry.operation(prefix + ".importAll");
+    }
+
+    @Override
+    public void create(T entity) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            delegate.create(entity);
+            create.success(start);
+        } catch (Throwable e) {
+            create.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<T> getAll() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            List<T> result = delegate.getAll();
+            getAll.success(start);
+            return result;
+        } catch (Throwable e) {
+            getAll.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public T getById(int id) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            T result = delegate.getById(id);
+            getById.success(start);
+            return result;
+        } catch (Throwable e) {
+            getById.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public Page<T> findPage(PageRequest request) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            Page<T> result = delegate.findPage(request);
+            findPage.success(start);
+            return result;
+        } catch (Throwable e) {
+            findPage.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean update(T entity) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            boolean result = delegate.update(entity);
+            update.success(start);
+            return result;
+        } catch (Throwable e) {
+            update.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean delete(int id) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            boolean result = delegate.delete(id);
+            delete.success(start);
+            return result;
+        } catch (Throwable e) {
+            delete.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<Integer> createAll(List<T> entities) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            List<Integer> result = delegate.createAll(entities);
+            createAll.success(start);
+            return result;
+        } catch (Throwable e) {
+            createAll.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public int updateAll(List<T> entities) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            int result = delegate.updateAll(entities);
+            updateAll.success(start);
+            return result;
+        } catch (Throwable e) {
+            updateAll.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public int deleteAll(List<Integer> ids) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            int result = delegate.deleteAll(ids);
+            deleteAll.success(start);
+            return result;
+        } catch (Throwable e) {
+            deleteAll.failure(start, e);
+            throw e;
+        }
+    }
+
+    // Timed until the stream is opened, not until it is consumed.
+    @Override
+    public Stream<T> streamAfter(int afterId) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            Stream<T> result = delegate.streamAfter(afterId);
+            streamAfter.success(start);
+            return result;
+        } catch (Throwable e) {
+            streamAfter.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public int importAll(List<T> entities) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            int result = delegate.importAll(entities);
+            importAll.success(start);
+            return result;
+        } catch (Throwable e) {
+            importAll.failure(start, e);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package repository;
+
+import metrics.MetricsRegistry;
+import metrics.OperationMetrics;
+import model.ChatSession;
+import repository.interfaces.SessionRepository;
+
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * InstrumentedRepository plus the session-specific methods. streamAll is timed
+ * until the stream is opened, not until it is consumed.
+ */
+public class InstrumentedSessionRepository extends InstrumentedRepository<ChatSession> implements SessionRepository {
+    private final SessionRepository delegate;
+    private final OperationMetrics getAllByMode;
+    private final OperationMetrics getByIdByMode;
+    private final OperationMetrics streamAll;
+    private final OperationMetrics getPageAfterId;
+    private final OperationMetrics getPageAfterStartedAt;
+    private final OperationMetrics addTokens;
+    private final OperationMetrics addTokensBatch;
+
+    public InstrumentedSessionRepository(SessionRepository delegate, MetricsRegistry registry, String prefix) {
+        super(delegate, registry, prefix);
+        this.delegate = delegate;
+        this.getAllByMode = registry.operation(prefix + ".getAll(mode)");
+        this.getByIdByMode = registry.operation(prefix + ".getById(mode)");
+        this.streamAll = registry.operation(prefix + ".streamAll");
+        this.getPageAfterId = registry.operation(prefix + ".getPageAfterId");
+        this.getPageAfterStartedAt = registry.operation(prefix + ".getPageAfterStartedAt");
+        this.addTokens = registry.operation(prefix + ".addTokens");
+        this.addTokensBatch = registry.operation(prefix + ".addTokensBatch");
+    }
+
+    @Override
+    public List<ChatSession> getAll(FetchMode mode) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            List<ChatSession> result = delegate.getAll(mode);
+            getAllByMode.success(start);
+            return result;
+        } catch (Throwable e) {
+            getAllByMode.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public ChatSession getById(int id, FetchMode mode) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            ChatSession result = delegate.getById(id, mode);
+            getByIdByMode.success(start);
+            return result;
+        } catch (Throwable e) {
+            getByIdByMode.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public Stream<ChatSession> streamAll() throws SQLException {
+        return streamAll(FetchMode.STUBS);
+    }
+
+    @Override
+    public Stream<ChatSession> streamAll(FetchMode mode) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            Stream<ChatSession> result = delegate.streamAll(mode);
+            streamAll.success(start);
+            return result;
+        } catch (Throwable e) {
+            streamAll.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<ChatSession> getPageAfterId(int afterId, int pageSize) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            List<ChatSession> result = delegate.getPageAfterId(afterId, pageSize);
+            getPageAfterId.success(start);
+            return result;
+        } catch (Throwable e) {
+            getPageAfterId.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<ChatSession> getPageAfterStartedAt(Date afterStartedAt, int afterId, int pageSize) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            List<ChatSession> result = delegate.getPageAfterStartedAt(afterStartedAt, afterId, pageSize);
+            getPageAfterStartedAt.success(start);
+            return result;
+        } catch (Throwable e) {
+            getPageAfterStartedAt.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public Integer addTokens(int sessionId, int delta) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            Integer result = delegate.addTokens(sessionId, delta);
+            addTokens.success(start);
+            return result;
+        } catch (Throwable e) {
+            addTokens.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public int addTokensBatch(Map<Integer, Long> deltas) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            int result = delegate.addTokensBatch(deltas);
+            addTokensBatch.success(start);
+            return result;
+        } catch (Throwable e) {
+            addTokensBatch.failure(start, e);
+            throw e;
+        }
+    }
+}
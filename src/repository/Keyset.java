@@ -0,0 +1,154 @@
+package repository;
+
+import data.interfaces.IDB;
+import repository.interfaces.Page;
+import repository.interfaces.PageRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Keyset pagination shared by the repositories. A cursor is the sort value and
+ * id of the last row of a page, encoded as an opaque URL-safe string; the next
+ * page is "WHERE (sort, id) > (cursor) ORDER BY sort, id LIMIT n" (mirrored
+ * for descending), which an index on (sort, id) answers by reading n rows.
+ */
+public final class Keyset {
+    private final Object value;
+    private final int id;
+
+    private Keyset(Object value, int id) {
+        this.value = value;
+        this.id = id;
+    }
+
+    /**
+     * @return the sort value of the cursor row: Integer, Long, String, Boolean or Timestamp; null when sorted by id
+     */
+    public Object getValue() { return value; }
+    public int getId() { return id; }
+
+    public static String encode(Object value, int id) {
+        String encoded;
+        if (value == null) {
+            encoded = "";
+        } else if (value instanceof Integer) {
+            encoded = "i" + value;
+        } else if (value instanceof Long) {
+            encoded = "l" + value;
+        } else if (value instanceof Boolean) {
+            encoded = "b" + value;
+        } else if (value instanceof Timestamp) {
+            encoded = "t" + value; // keeps the microseconds PostgreSQL stores
+        } else if (value instanceof String) {
+            encoded = "s" + value;
+        } else {
+            throw new IllegalArgumentException("Unsupported sort value type: " + value.getClass().getName());
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((id + ":" + encoded).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor and checks that its sort value has the type the sort key
+     * produces (keyType null: sorted by id, no value). A cursor from another
+     * listing or sort order fails here with IllegalArgumentException instead of
+     * reaching the query with a mismatched value.
+     */
+    public static Keyset decode(String cursor, Class<?> keyType) {
+        Keyset keyset = decode(cursor);
+        if (keyType == null ? keyset.value != null : !keyType.isInstance(keyset.value)) {
+            throw new IllegalArgumentException("Page cursor does not match the sort key.");
+        }
+        return keyset;
+    }
+
+    public static Keyset decode(String cursor) {
+        try {
+            String text = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int colon = text.indexOf(':');
+            int id = Integer.parseInt(text.substring(0, colon));
+            String encoded = text.substring(colon + 1);
+            if (encoded.isEmpty()) {
+                return new Keyset(null, id);
+            }
+            String raw = encoded.substring(1);
+            switch (encoded.charAt(0)) {
+                case 'i': return new Keyset(Integer.valueOf(raw), id);
+                case 'l': return new Keyset(Long.valueOf(raw), id);
+                case 'b': return new Keyset(Boolean.valueOf(raw), id);
+                case 't': return new Keyset(Timestamp.valueOf(raw), id);
+                case 's': return new Keyset(raw, id);
+                default: throw new IllegalArgumentException();
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid page cursor.");
+        }
+    }
+
+    /**
+     * Reads one page of "SELECT columns FROM table". sortExpression is the SQL
+     * expression to order by, or null to order by id alone; it must be non-null
+     * in every row and backed by an index on (sortExpression, id). keyType is
+     * the Java type the driver returns for it (null when sortExpression is null).
+     */
+    static <T> Page<T> query(IDB db, String columns, String table, String sortExpression, Class<?> keyType,
+                             PageRequest request, CursorStream.RowMapper<T> mapper) throws SQLException {
+        Keyset after = request.getCursor() == null ? null : decode(request.getCursor(), keyType);
+        String direction = request.isDescending() ? " DESC" : " ASC";
+        String comparison = request.isDescending() ? " < " : " > ";
+        StringBuilder sql = new StringBuilder("SELECT ").append(columns);
+        if (sortExpression != null) {
+            sql.append(", ").append(sortExpression).append(" AS page_key");
+        }
+        sql.append(" FROM ").append(table);
+        if (after != null) {
+            sql.append(sortExpression == null
+                    ? " WHERE id" + comparison + "?"
+                    : " WHERE (" + sortExpression + ", id)" + comparison + "(?, ?)");
+        }
+        sql.append(" ORDER BY ");
+        if (sortExpression != null) {
+            sql.append(sortExpression).append(direction).append(", ");
+        }
+        sql.append("id").append(direction).append(" LIMIT ?");
+
+        int size = request.getSize();
+        try (Connection conn = db.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            int index = 1;
+            if (after != null) {
+                if (sortExpression != null) {
+                    pstmt.setObject(index++, after.value);
+                }
+                pstmt.setInt(index++, after.id);
+            }
+            pstmt.setInt(index, size + 1); // one extra row tells whether there is a next page
+            List<T> items = new ArrayList<>(size);
+            Object lastKey = null;
+            int lastId = 0;
+            boolean more = false;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    if (items.size() == size) {
+                        more = true;
+                        break;
+                    }
+                    items.add(mapper.map(rs));
+                    lastId = rs.getInt("id");
+                    if (sortExpression != null) {
+                        lastKey = rs.getObject("page_key");
+                    }
+                }
+            }
+            return new Page<>(items, more ? encode(lastKey, lastId) : null);
+        }
+    }
+}
@@ -3,29 +3,58 @@ package repository;
 import data.interfaces.IDB;
 import model.User;
 import repository.interfaces.CrudRepository;
+import repository.interfaces.Page;
+import repository.interfaces.PageRequest;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
 
 public class UserRepository implements CrudRepository<User> {
+    private static final String INSERT_SQL = "INSERT INTO users (name, persona, is_premium) VALUES (?, ?, ?)";
+    private static final String UPDATE_SQL = "UPDATE users SET name = ?, persona = ?, is_premium = ? WHERE id = ?";
+    private static final String DELETE_SQL = "DELETE FROM users WHERE id = ?";
+    private static final String IMPORT_SQL =
+            "INSERT INTO users (name, persona, is_premium, id) VALUES (?, ?, ?, ?) ON CONFLICT (id) DO NOTHING";
+    private static final String IMPORT_CHECK_SQL =
+            "SELECT id, name, persona, is_premium FROM users WHERE id = ANY(?)";
+    private static final String STREAM_SQL = "SELECT * FROM users WHERE id > ? ORDER BY id";
+    private static final int FETCH_SIZE = 1_000;
+
     private final IDB db;
+    private int batchSize = BatchExecutor.DEFAULT_BATCH_SIZE;
 
     public UserRepository(IDB db) {
         this.db = db;
     }
 
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive.");
+        }
+        this.batchSize = batchSize;
+    }
+
     @Override
     public void create(User user) throws SQLException {
-        String sql = "INSERT INTO users (name, persona, is_premium) VALUES (?, ?, ?)";
         try (Connection conn = db.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, user.getName());
-            pstmt.setString(2, user.getPersona());
-            pstmt.setBoolean(3, user.isPremium());
+             PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            bindInsert(pstmt, user);
             pstmt.executeUpdate();
+            try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                if (keys.next()) {
+                    user.setId(keys.getInt(1));
+                }
+            }
         }
     }
 
+    @Override
+    public List<Integer> createAll(List<User> users) throws SQLException {
+        return BatchExecutor.insert(db, INSERT_SQL, users, batchSize, this::bindInsert);
+    }
+
     @Override
     public List<User> getAll() throws SQLException {
         List<User> users = new ArrayList<>();
@@ -45,6 +74,18 @@ public class UserRepository implements CrudRepository<User> {
         return users;
     }
 
+    /**
+     * Sort keys: "id" and "name" (case-insensitive).
+     */
+    @Override
+    public Page<User> findPage(PageRequest request) throws SQLException {
+        switch (request.getSortBy()) {
+            case "id": return Keyset.query(db, "*", "users", null, null, request, UserRepository::mapRow);
+            case "name": return Keyset.query(db, "*", "users", "lower(name)", String.class, request, UserRepository::mapRow);
+            default: throw new IllegalArgumentException("Users cannot be sorted by " + request.getSortBy() + ".");
+        }
+    }
+
     @Override
     public User getById(int id) throws SQLException {
         String sql = "SELECT * FROM users WHERE id = ?";
@@ -66,9 +107,8 @@ public class UserRepository implements CrudRepository<User> {
 
     @Override
     public boolean delete(int id) throws SQLException {
-        String sql = "DELETE FROM users WHERE id = ?";
         try (Connection conn = db.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(DELETE_SQL)) {
             pstmt.setInt(1, id);
             return pstmt.executeUpdate() > 0;
         }
@@ -76,16 +116,59 @@ public class UserRepository implements CrudRepository<User> {
 
     @Override
     public boolean update(User user) throws SQLException {
-        String sql = "UPDATE users SET name = ?, persona = ?, is_premium = ? WHERE id = ?";
         try (Connection conn = db.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(UPDATE_SQL)) {
 
-            pstmt.setString(1, user.getName());
-            pstmt.setString(2, user.getPersona());
-            pstmt.setBoolean(3, user.isPremium());
-            pstmt.setInt(4, user.getId());
+            bindUpdate(pstmt, user);
 
             return pstmt.executeUpdate() > 0;
         }
     }
+
+    @Override
+    public int updateAll(List<User> users) throws SQLException {
+        return BatchExecutor.update(db, UPDATE_SQL, users, batchSize, this::bindUpdate);
+    }
+
+    @Override
+    public int deleteAll(List<Integer> ids) throws SQLException {
+        return BatchExecutor.deleteByIds(db, DELETE_SQL, ids, batchSize);
+    }
+
+    @Override
+    public Stream<User> streamAfter(int afterId) throws SQLException {
+        return CursorStream.open(db, STREAM_SQL, FETCH_SIZE, pstmt -> pstmt.setInt(1, afterId), UserRepository::mapRow);
+    }
+
+    @Override
+    public int importAll(List<User> users) throws SQLException {
+        return BatchExecutor.importRows(db, "users", IMPORT_SQL, IMPORT_CHECK_SQL, users, batchSize,
+                this::bindUpdate, UserRepository::matches);
+    }
+
+    private static boolean matches(ResultSet rs, User user) throws SQLException {
+        return Objects.equals(rs.getString("name"), user.getName())
+                && Objects.equals(rs.getString("persona"), user.getPersona())
+                && rs.getBoolean("is_premium") == user.isPremium();
+    }
+
+    private static User mapRow(ResultSet rs) throws SQLException {
+        return new User(
+                rs.getInt("id"),
+                rs.getString("name"),
+                rs.getString("persona"),
+                rs.getBoolean("is_premium")
+        );
+    }
+
+    private void bindInsert(PreparedStatement pstmt, User user) throws SQLException {
+        pstmt.setString(1, user.getName());
+        pstmt.setString(2, user.getPersona());
+        pstmt.setBoolean(3, user.isPremium());
+    }
+
+    private void bindUpdate(PreparedStatement pstmt, User user) throws SQLException {
+        bindInsert(pstmt, user);
+        pstmt.setInt(4, user.getId());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,22 @@
+package repository.interfaces;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking view of a CrudRepository. Futures complete exceptionally with the
+ * SQLException the blocking call would have thrown; cancelling a future interrupts
+ * the query if it is still running.
+ */
+public interface AsyncCrudRepository<T> {
+    CompletableFuture<T> create(T entity);
+    CompletableFuture<List<T>> getAll();
+    CompletableFuture<T> getById(int id);
+    CompletableFuture<Boolean> update(T entity);
+    CompletableFuture<Boolean> delete(int id);
+    CompletableFuture<Page<T>> findPage(PageRequest request);
+
+    CompletableFuture<List<Integer>> createAll(List<T> entities);
+    CompletableFuture<Integer> updateAll(List<T> entities);
+    CompletableFuture<Integer> deleteAll(List<Integer> ids);
+}
@@ -2,6 +2,7 @@ package repository.interfaces;
 
 import java.sql.SQLException;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface CrudRepository<T> {
     void create(T entity) throws SQLException;
@@ -9,4 +10,19 @@ public interface CrudRepository<T> {
     T getById(int id) throws SQLException;
     boolean update(T entity) throws SQLException;
     boolean delete(int id) throws SQLException;
-}
\ No newline at end of file
+
+    // Sorted keyset page; throws IllegalArgumentException for an unsupported sort key or a bad cursor.
+    Page<T> findPage(PageRequest request) throws SQLException;
+
+    // Bulk variants: one transaction, sent to the database in batches.
+    List<Integer> createAll(List<T> entities) throws SQLException;
+    int updateAll(List<T> entities) throws SQLException;
+    int deleteAll(List<Integer> ids) throws SQLException;
+
+    // Every row with id > afterId in id order, read through a cursor; the returned stream must be closed.
+    Stream<T> streamAfter(int afterId) throws SQLException;
+    // Inserts entities with the ids they already carry, skipping ids whose stored row is identical, and
+    // moves the id sequence past them. An id stored with different values fails the whole call with
+    // IllegalArgumentException. One transaction; returns the number of rows inserted.
+    int importAll(List<T> entities) throws SQLException;
+}
@@ -0,0 +1,20 @@
+package repository.interfaces;
+
+import java.util.List;
+
+/**
+ * Rows of one listing page plus the cursor for the next one (null on the last page).
+ */
+public final class Page<T> {
+    private final List<T> items;
+    private final String nextCursor;
+
+    public Page(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() { return items; }
+    public String getNextCursor() { return nextCursor; }
+    public boolean hasNext() { return nextCursor != null; }
+}
@@ -0,0 +1,52 @@
+package repository.interfaces;
+
+/**
+ * One page of a sorted listing: the sort key (a column name such as "name" or
+ * "token_limit"; see each repository for the keys it supports), a direction,
+ * a page size and the cursor returned with the previous page (null for the
+ * first page). Ties on the sort key are broken by id, so pages never overlap
+ * or skip rows however many rows share a value.
+ *
+ * The first page of a descending sort is also the top-K query: it is answered
+ * from an index (or a bounded heap in memory), never by sorting the table.
+ */
+public final class PageRequest {
+    public static final int MAX_PAGE_SIZE = 1_000;
+
+    public enum Direction { ASC, DESC }
+
+    private final String sortBy;
+    private final Direction direction;
+    private final int size;
+    private final String cursor;
+
+    private PageRequest(String sortBy, Direction direction, int size, String cursor) {
+        if (sortBy == null || direction == null) {
+            throw new IllegalArgumentException("Sort key and direction are required.");
+        }
+        if (size <= 0 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE + ".");
+        }
+        this.sortBy = sortBy;
+        this.direction = direction;
+        this.size = size;
+        this.cursor = cursor;
+    }
+
+    public static PageRequest first(String sortBy, Direction direction, int size) {
+        return new PageRequest(sortBy, direction, size, null);
+    }
+
+    /**
+     * The page after the one that returned cursor, with the same sort and size.
+     */
+    public PageRequest next(String cursor) {
+        return new PageRequest(sortBy, direction, size, cursor);
+    }
+
+    public String getSortBy() { return sortBy; }
+    public Direction getDirection() { return direction; }
+    public int getSize() { return size; }
+    public String getCursor() { return cursor; }
+    public boolean isDescending() { return direction == Direction.DESC; }
+}
@@ -0,0 +1,34 @@
+package repository.interfaces;
+
+import model.ChatSession;
+
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public interface SessionRepository extends CrudRepository<ChatSession> {
+    /**
+     * How the bot and user of each session are populated:
+     * STUBS carries only their ids, HYDRATED loads both entities with a single JOIN,
+     * NAMES_ONLY joins as well but skips the large definition/greeting/persona columns.
+     */
+    enum FetchMode { STUBS, HYDRATED, NAMES_ONLY }
+
+    List<ChatSession> getAll(FetchMode mode) throws SQLException;
+    ChatSession getById(int id, FetchMode mode) throws SQLException;
+
+    // Reads every session through a cursor; the returned stream must be closed.
+    Stream<ChatSession> streamAll() throws SQLException;
+    Stream<ChatSession> streamAll(FetchMode mode) throws SQLException;
+
+    // Keyset pages: pass 0 / null to get the first page, then the last row's values.
+    List<ChatSession> getPageAfterId(int afterId, int pageSize) throws SQLException;
+    List<ChatSession> getPageAfterStartedAt(Date afterStartedAt, int afterId, int pageSize) throws SQLException;
+
+    // Atomic increment in the database; returns the new total, or null if the session does not exist.
+    Integer addTokens(int sessionId, int delta) throws SQLException;
+    // Applies many increments in one batched transaction; returns the number of sessions updated.
+    int addTokensBatch(Map<Integer, Long> deltas) throws SQLException;
+}
@@ -0,0 +1,163 @@
+package repository.memory;
+
+import model.Bot;
+import repository.interfaces.CrudRepository;
+import repository.interfaces.Page;
+import repository.interfaces.PageRequest;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Memory-resident CrudRepository<Bot> over an InMemoryStore. Entities are copied
+ * on write, so later changes to the caller's object do not leak into the store;
+ * reads return the stored instance, which callers must treat as read-only.
+ * Deleting a bot deletes its sessions, as ON DELETE CASCADE does in SQL.
+ */
+public class InMemoryBotRepository implements CrudRepository<Bot> {
+    private final InMemoryStore store;
+
+    public InMemoryBotRepository(InMemoryStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public void create(Bot bot) throws SQLException {
+        check(bot);
+        int id = store.botSequence.incrementAndGet();
+        store.bots.put(id, copy(id, bot));
+        bot.setId(id);
+    }
+
+    @Override
+    public List<Integer> createAll(List<Bot> bots) throws SQLException {
+        for (Bot bot : bots) {
+            check(bot);
+        }
+        List<Integer> ids = new ArrayList<>(bots.size());
+        for (Bot bot : bots) {
+            create(bot);
+            ids.add(bot.getId());
+        }
+        return ids;
+    }
+
+    @Override
+    public List<Bot> getAll() {
+        int[] ids = store.bots.sortedKeys();
+        List<Bot> bots = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            Bot bot = store.bots.get(id);
+            if (bot != null) {
+                bots.add(bot);
+            }
+        }
+        return bots;
+    }
+
+    @Override
+    public Page<Bot> findPage(PageRequest request) {
+        switch (request.getSortBy()) {
+            case "id": return InMemoryPages.select(store.bots, null, null, request, bot -> bot);
+            case "name": return InMemoryPages.select(store.bots, bot -> bot.getName().toLowerCase(Locale.ROOT), String.class,
+                    request, bot -> bot);
+            case "token_limit": return InMemoryPages.select(store.bots, Bot::getTokenLimit, Integer.class, request, bot -> bot);
+            default: throw new IllegalArgumentException("Bots cannot be sorted by " + request.getSortBy() + ".");
+        }
+    }
+
+    @Override
+    public Bot getById(int id) {
+        return store.bots.get(id);
+    }
+
+    @Override
+    public boolean update(Bot bot) throws SQLException {
+        check(bot);
+        Bot replacement = copy(bot.getId(), bot);
+        while (true) {
+            Bot current = store.bots.get(bot.getId());
+            if (current == null) {
+                return false;
+            }
+            if (store.bots.replace(bot.getId(), current, replacement)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public int updateAll(List<Bot> bots) throws SQLException {
+        for (Bot bot : bots) {
+            check(bot);
+        }
+        int updated = 0;
+        for (Bot bot : bots) {
+            if (update(bot)) {
+                updated++;
+            }
+        }
+        return updated;
+    }
+
+    @Override
+    public boolean delete(int id) {
+        return store.deleteBot(id);
+    }
+
+    @Override
+    public int deleteAll(List<Integer> ids) {
+        int deleted = 0;
+        for (int id : ids) {
+            if (store.deleteBot(id)) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public Stream<Bot> streamAfter(int afterId) {
+        return Arrays.stream(store.bots.sortedKeys())
+                .filter(id -> id > afterId)
+                .mapToObj(store.bots::get)
+                .filter(Objects::nonNull);
+    }
+
+    @Override
+    public int importAll(List<Bot> bots) throws SQLException {
+        for (Bot bot : bots) {
+            check(bot);
+        }
+        InMemoryStore.requireSameRows(store.bots, bots, Bot::getId, (a, b) -> a.getName().equals(b.getName())
+                && a.getGreeting().equals(b.getGreeting()) && a.getDefinition().equals(b.getDefinition())
+                && a.getTokenLimit() == b.getTokenLimit());
+        int inserted = 0;
+        for (Bot bot : bots) {
+            if (store.bots.putIfAbsent(bot.getId(), copy(bot.getId(), bot)) == null) {
+                inserted++;
+            }
+            store.botSequence.accumulateAndGet(bot.getId(), Math::max);
+        }
+        return inserted;
+    }
+
+    // Same constraints as the bots table: NOT NULL text columns and token_limit > 0.
+    private static void check(Bot bot) throws SQLException {
+        if (bot.getName() == null || bot.getGreeting() == null || bot.getDefinition() == null) {
+            throw new SQLException("null value in column of relation bots violates not-null constraint", "23502");
+        }
+        if (bot.getTokenLimit() <= 0) {
+            throw new SQLException("new row for relation bots violates check constraint chk_token_positive", "23514");
+        }
+    }
+
+    private static Bot copy(int id, Bot bot) {
+        return new Bot(id, bot.getName(), bot.getGreeting(), bot.getDefinition(), bot.getTokenLimit());
+    }
+}
@@ -0,0 +1,88 @@
+package repository.memory;
+
+import repository.Keyset;
+import repository.interfaces.Page;
+import repository.interfaces.PageRequest;
+import utils.IntConcurrentHashMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+
+/**
+ * Keyset pages over an in-memory table, with the same cursors and ordering
+ * rules as the JDBC repositories. One pass over the table keeps the best
+ * size + 1 rows in a bounded heap, so a page (or a top-K) costs O(n log k)
+ * and never sorts or copies the whole table.
+ */
+final class InMemoryPages {
+    private InMemoryPages() {
+    }
+
+    /**
+     * @param sortKey extracts the sort value (Integer, String, Timestamp...), or null to sort by id alone
+     * @param keyType the type sortKey returns, null with it
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    static <V, R> Page<R> select(IntConcurrentHashMap<V> table, Function<V, Comparable> sortKey, Class<?> keyType,
+                                 PageRequest request, Function<V, R> toResult) {
+        Keyset after = request.getCursor() == null ? null : Keyset.decode(request.getCursor(), keyType);
+        int sign = request.isDescending() ? -1 : 1;
+        int limit = request.getSize() + 1;
+        Comparable afterKey = after == null ? null : (Comparable) after.getValue();
+        PriorityQueue<Entry<V>> worstFirst = new PriorityQueue<>(limit + 1, (a, b) -> -compare(a.key, a.id, b.key, b.id, sign));
+
+        table.forEach((id, value) -> {
+            Comparable key = sortKey == null ? null : sortKey.apply(value);
+            if (after != null && compare(key, id, afterKey, after.getId(), sign) <= 0) {
+                return;
+            }
+            if (worstFirst.size() == limit) {
+                Entry<V> worst = worstFirst.peek();
+                if (compare(key, id, worst.key, worst.id, sign) >= 0) {
+                    return;
+                }
+                worstFirst.poll();
+            }
+            worstFirst.add(new Entry<>(key, id, value));
+        });
+
+        List<Entry<V>> entries = new ArrayList<>(worstFirst);
+        entries.sort((a, b) -> compare(a.key, a.id, b.key, b.id, sign));
+        boolean more = entries.size() == limit;
+        int size = more ? limit - 1 : entries.size();
+        List<R> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            items.add(toResult.apply(entries.get(i).value));
+        }
+        String next = null;
+        if (more) {
+            Entry<V> last = entries.get(size - 1);
+            next = Keyset.encode(last.key, last.id);
+        }
+        return new Page<>(items, next);
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static int compare(Comparable keyA, int idA, Comparable keyB, int idB, int sign) {
+        int c = keyA == null ? 0 : keyA.compareTo(keyB);
+        if (c == 0) {
+            c = Integer.compare(idA, idB);
+        }
+        return sign * c;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static final class Entry<V> {
+        final Comparable key;
+        final int id;
+        final V value;
+
+        Entry(Comparable key, int id, V value) {
+            this.key = key;
+            this.id = id;
+            this.value = value;
+        }
+    }
+}
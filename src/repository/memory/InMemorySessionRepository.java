@@ -0,0 +1,306 @@
+package repository.memory;
+
+import model.Bot;
+import model.ChatSession;
+import model.User;
+import repository.interfaces.Page;
+import repository.interfaces.PageRequest;
+import repository.interfaces.SessionRepository;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.stream.Stream;
+
+/**
+ * Memory-resident SessionRepository over an InMemoryStore. Sessions are stored
+ * as compact id/foreign-key rows and a fresh ChatSession is built per read, as
+ * the JDBC repository does. Creating a session for a missing bot or user fails
+ * with the same SQLState (23503) as the foreign key in the schema migrations.
+ *
+ * Reads come back in id order. FetchMode.STUBS returns "Unknown" bot/user stubs;
+ * HYDRATED and NAMES_ONLY both return the stored Bot and User instances, since
+ * sharing them costs nothing here.
+ */
+public class InMemorySessionRepository implements SessionRepository {
+    private final InMemoryStore store;
+
+    public InMemorySessionRepository(InMemoryStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public void create(ChatSession session) throws SQLException {
+        int id = store.insertSession(session.getBot().getId(), session.getUser().getId(),
+                startedAt(session), session.getTotalTokensUsed());
+        session.setId(id);
+    }
+
+    @Override
+    public List<Integer> createAll(List<ChatSession> sessions) throws SQLException {
+        int n = sessions.size();
+        int[] botIds = new int[n];
+        int[] userIds = new int[n];
+        long[] startedAt = new long[n];
+        int[] tokens = new int[n];
+        for (int i = 0; i < n; i++) {
+            ChatSession session = sessions.get(i);
+            botIds[i] = session.getBot().getId();
+            userIds[i] = session.getUser().getId();
+            startedAt[i] = startedAt(session);
+            tokens[i] = session.getTotalTokensUsed();
+        }
+        List<Integer> ids = store.insertSessions(botIds, userIds, startedAt, tokens);
+        for (int i = 0; i < n; i++) {
+            sessions.get(i).setId(ids.get(i));
+        }
+        return ids;
+    }
+
+    @Override
+    public List<ChatSession> getAll() {
+        return getAll(FetchMode.STUBS);
+    }
+
+    @Override
+    public List<ChatSession> getAll(FetchMode mode) {
+        int[] ids = store.sessions.sortedKeys();
+        List<ChatSession> sessions = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            InMemoryStore.SessionRow row = store.sessions.get(id);
+            if (row != null) {
+                sessions.add(toSession(row, mode));
+            }
+        }
+        return sessions;
+    }
+
+    @Override
+    public ChatSession getById(int id) {
+        return getById(id, FetchMode.STUBS);
+    }
+
+    @Override
+    public ChatSession getById(int id, FetchMode mode) {
+        InMemoryStore.SessionRow row = store.sessions.get(id);
+        return row == null ? null : toSession(row, mode);
+    }
+
+    @Override
+    public Stream<ChatSession> streamAll() {
+        return streamAll(FetchMode.STUBS);
+    }
+
+    /**
+     * Streams over a snapshot of the ids taken now; rows are looked up lazily, so
+     * sessions deleted while the stream is consumed are skipped.
+     */
+    @Override
+    public Stream<ChatSession> streamAll(FetchMode mode) {
+        return Arrays.stream(store.sessions.sortedKeys())
+                .mapToObj(store.sessions::get)
+                .filter(Objects::nonNull)
+                .map(row -> toSession(row, mode));
+    }
+
+    @Override
+    public Stream<ChatSession> streamAfter(int afterId) {
+        return Arrays.stream(store.sessions.sortedKeys())
+                .filter(id -> id > afterId)
+                .mapToObj(store.sessions::get)
+                .filter(Objects::nonNull)
+                .map(row -> toSession(row, FetchMode.STUBS));
+    }
+
+    @Override
+    public int importAll(List<ChatSession> sessions) throws SQLException {
+        List<InMemoryStore.SessionRow> rows = new ArrayList<>(sessions.size());
+        for (ChatSession session : sessions) {
+            rows.add(new InMemoryStore.SessionRow(session.getId(), session.getBot().getId(),
+                    session.getUser().getId(), startedAt(session), session.getTotalTokensUsed()));
+        }
+        return store.importSessions(rows);
+    }
+
+    /**
+     * Ids come from a sequence, so the next page is found by probing ids upwards
+     * from afterId. If the ids turn out to be sparse (mass deletes), it falls back
+     * to sorting the key set once.
+     */
+    @Override
+    public List<ChatSession> getPageAfterId(int afterId, int pageSize) {
+        List<ChatSession> page = new ArrayList<>(pageSize);
+        int maxId = store.sessionSequence.get();
+        int probeBudget = pageSize * 4 + 1024;
+        for (long id = afterId + 1L; id <= maxId && page.size() < pageSize; id++) {
+            if (--probeBudget < 0) {
+                return pageFromSortedKeys((int) id - 1, pageSize, page);
+            }
+            InMemoryStore.SessionRow row = store.sessions.get((int) id);
+            if (row != null) {
+                page.add(toSession(row, FetchMode.STUBS));
+            }
+        }
+        return page;
+    }
+
+    private List<ChatSession> pageFromSortedKeys(int afterId, int pageSize, List<ChatSession> page) {
+        int[] ids = store.sessions.sortedKeys();
+        int start = Arrays.binarySearch(ids, afterId);
+        start = start >= 0 ? start + 1 : -start - 1;
+        for (int i = start; i < ids.length && page.size() < pageSize; i++) {
+            InMemoryStore.SessionRow row = store.sessions.get(ids[i]);
+            if (row != null) {
+                page.add(toSession(row, FetchMode.STUBS));
+            }
+        }
+        return page;
+    }
+
+    /**
+     * There is no index on started_at, so this scans every row once and keeps the
+     * pageSize smallest (started_at, id) keys in a bounded heap.
+     */
+    @Override
+    public List<ChatSession> getPageAfterStartedAt(Date afterStartedAt, int afterId, int pageSize) {
+        Comparator<InMemoryStore.SessionRow> order = Comparator
+                .comparingLong((InMemoryStore.SessionRow row) -> row.startedAt)
+                .thenComparingInt(row -> row.id);
+        PriorityQueue<InMemoryStore.SessionRow> largestFirst = new PriorityQueue<>(pageSize + 1, order.reversed());
+        long afterTime = afterStartedAt == null ? Long.MIN_VALUE : afterStartedAt.getTime();
+        store.sessions.forEach((id, row) -> {
+            if (afterStartedAt != null
+                    && (row.startedAt < afterTime || (row.startedAt == afterTime && row.id <= afterId))) {
+                return;
+            }
+            largestFirst.add(row);
+            if (largestFirst.size() > pageSize) {
+                largestFirst.poll();
+            }
+        });
+        List<InMemoryStore.SessionRow> rows = new ArrayList<>(largestFirst);
+        rows.sort(order);
+        List<ChatSession> page = new ArrayList<>(rows.size());
+        for (InMemoryStore.SessionRow row : rows) {
+            page.add(toSession(row, FetchMode.STUBS));
+        }
+        return page;
+    }
+
+    @Override
+    public Page<ChatSession> findPage(PageRequest request) {
+        switch (request.getSortBy()) {
+            case "id":
+                return InMemoryPages.select(store.sessions, null, null, request, row -> toSession(row, FetchMode.STUBS));
+            case "started_at":
+                return InMemoryPages.select(store.sessions, row -> new Timestamp(row.startedAt), Timestamp.class, request,
+                        row -> toSession(row, FetchMode.STUBS));
+            default:
+                throw new IllegalArgumentException("Sessions cannot be sorted by " + request.getSortBy() + ".");
+        }
+    }
+
+    @Override
+    public boolean update(ChatSession session) {
+        return setTokens(session.getId(), session.getTotalTokensUsed()) != null;
+    }
+
+    @Override
+    public int updateAll(List<ChatSession> sessions) {
+        int updated = 0;
+        for (ChatSession session : sessions) {
+            if (update(session)) {
+                updated++;
+            }
+        }
+        return updated;
+    }
+
+    @Override
+    public Integer addTokens(int sessionId, int delta) throws SQLException {
+        while (true) {
+            InMemoryStore.SessionRow current = store.sessions.get(sessionId);
+            if (current == null) {
+                return null;
+            }
+            int total = checkedTotal(current.totalTokensUsed + (long) delta);
+            if (store.sessions.replace(sessionId, current, current.withTokens(total))) {
+                return total;
+            }
+        }
+    }
+
+    @Override
+    public int addTokensBatch(Map<Integer, Long> deltas) throws SQLException {
+        int updated = 0;
+        for (Map.Entry<Integer, Long> entry : deltas.entrySet()) {
+            long delta = entry.getValue();
+            if (delta < Integer.MIN_VALUE || delta > Integer.MAX_VALUE) {
+                throw new SQLException("integer out of range", "22003");
+            }
+            if (addTokens(entry.getKey(), (int) delta) != null) {
+                updated++;
+            }
+        }
+        return updated;
+    }
+
+    @Override
+    public boolean delete(int id) {
+        return store.sessions.remove(id) != null;
+    }
+
+    @Override
+    public int deleteAll(List<Integer> ids) {
+        int deleted = 0;
+        for (int id : ids) {
+            if (store.sessions.remove(id) != null) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    private Integer setTokens(int sessionId, int total) {
+        while (true) {
+            InMemoryStore.SessionRow current = store.sessions.get(sessionId);
+            if (current == null) {
+                return null;
+            }
+            if (store.sessions.replace(sessionId, current, current.withTokens(total))) {
+                return total;
+            }
+        }
+    }
+
+    private ChatSession toSession(InMemoryStore.SessionRow row, FetchMode mode) {
+        Bot bot = mode == FetchMode.STUBS ? null : store.bots.get(row.botId);
+        User user = mode == FetchMode.STUBS ? null : store.users.get(row.userId);
+        if (bot == null) {
+            bot = new Bot(row.botId, "Unknown", "", "", 0);
+        }
+        if (user == null) {
+            user = new User(row.userId, "Unknown", "", false);
+        }
+        return new ChatSession(row.id, bot, user, new Timestamp(row.startedAt), row.totalTokensUsed);
+    }
+
+    // started_at defaults to CURRENT_TIMESTAMP in the schema.
+    private static long startedAt(ChatSession session) {
+        return session.getStartedAt() == null ? System.currentTimeMillis() : session.getStartedAt().getTime();
+    }
+
+    private static int checkedTotal(long total) throws SQLException {
+        if (total < Integer.MIN_VALUE || total > Integer.MAX_VALUE) {
+            throw new SQLException("integer out of range", "22003");
+        }
+        return (int) total;
+    }
+}
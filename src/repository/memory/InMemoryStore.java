@@ -0,0 +1,397 @@
+package repository.memory;
+
+import model.Bot;
+import model.User;
+import utils.IntConcurrentHashMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiPredicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Shared state behind the in-memory repositories: one int-keyed map per table,
+ * an id sequence per table (like SERIAL), and the foreign-key rules of
+ * the schema migrations. Creating a session requires its bot and user to exist, and
+ * deleting a bot or user deletes its sessions (ON DELETE CASCADE).
+ *
+ * Session writes take the shared side of a read/write lock and bot/user deletes
+ * the exclusive side, so a session can never be created for a parent that is
+ * being deleted. Everything else is lock-free or locks a single map segment.
+ *
+ * The store can be written to and reloaded from a snapshot file, optionally on
+ * a schedule, so a restart does not begin cold.
+ */
+public class InMemoryStore implements AutoCloseable {
+    static final String FK_VIOLATION = "23503";
+    private static final int SNAPSHOT_MAGIC = 0x43485453; // "CHTS"
+    private static final int SNAPSHOT_VERSION = 1;
+
+    final IntConcurrentHashMap<Bot> bots = new IntConcurrentHashMap<>();
+    final IntConcurrentHashMap<User> users = new IntConcurrentHashMap<>();
+    final IntConcurrentHashMap<SessionRow> sessions = new IntConcurrentHashMap<>(64, 16_384);
+
+    final AtomicInteger botSequence = new AtomicInteger();
+    final AtomicInteger userSequence = new AtomicInteger();
+    final AtomicInteger sessionSequence = new AtomicInteger();
+
+    private final ReentrantReadWriteLock parentLock = new ReentrantReadWriteLock();
+    private volatile ScheduledExecutorService snapshotter;
+    private volatile Path snapshotPath;
+
+    /**
+     * Stored form of a chat session: only the foreign keys and scalar columns,
+     * never references to Bot/User objects. Immutable, so token updates swap
+     * the whole row with a compare-and-set.
+     */
+    static final class SessionRow {
+        final int id;
+        final int botId;
+        final int userId;
+        final long startedAt;
+        final int totalTokensUsed;
+
+        SessionRow(int id, int botId, int userId, long startedAt, int totalTokensUsed) {
+            this.id = id;
+            this.botId = botId;
+            this.userId = userId;
+            this.startedAt = startedAt;
+            this.totalTokensUsed = totalTokensUsed;
+        }
+
+        SessionRow withTokens(int totalTokensUsed) {
+            return new SessionRow(id, botId, userId, startedAt, totalTokensUsed);
+        }
+    }
+
+    /**
+     * Inserts a session row under the shared lock after checking both parents exist.
+     */
+    int insertSession(int botId, int userId, long startedAt, int tokens) throws SQLException {
+        ReentrantReadWriteLock.ReadLock lock = parentLock.readLock();
+        lock.lock();
+        try {
+            requireParents(botId, userId);
+            int id = sessionSequence.incrementAndGet();
+            sessions.put(id, new SessionRow(id, botId, userId, startedAt, tokens));
+            return id;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inserts many session rows; fails without inserting anything if any parent is missing.
+     */
+    List<Integer> insertSessions(int[] botIds, int[] userIds, long[] startedAt, int[] tokens) throws SQLException {
+        ReentrantReadWriteLock.ReadLock lock = parentLock.readLock();
+        lock.lock();
+        try {
+            for (int i = 0; i < botIds.length; i++) {
+                requireParents(botIds[i], userIds[i]);
+            }
+            List<Integer> ids = new ArrayList<>(botIds.length);
+            for (int i = 0; i < botIds.length; i++) {
+                int id = sessionSequence.incrementAndGet();
+                sessions.put(id, new SessionRow(id, botIds[i], userIds[i], startedAt[i], tokens[i]));
+                ids.add(id);
+            }
+            return ids;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inserts rows that keep their ids, skipping identical rows already present,
+     * and moves the session sequence past them. Fails without inserting
+     * anything if any parent is missing or an id is stored with other values.
+     */
+    int importSessions(List<SessionRow> rows) throws SQLException {
+        ReentrantReadWriteLock.ReadLock lock = parentLock.readLock();
+        lock.lock();
+        try {
+            for (SessionRow row : rows) {
+                requireParents(row.botId, row.userId);
+            }
+            requireSameRows(sessions, rows, row -> row.id, (a, b) -> a.botId == b.botId && a.userId == b.userId
+                    && a.startedAt == b.startedAt && a.totalTokensUsed == b.totalTokensUsed);
+            int inserted = 0;
+            for (SessionRow row : rows) {
+                if (sessions.putIfAbsent(row.id, row) == null) {
+                    inserted++;
+                }
+                sessionSequence.accumulateAndGet(row.id, Math::max);
+            }
+            return inserted;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Throws IllegalArgumentException, as the JDBC importers do, naming every
+     * id of rows that is stored (or listed earlier in rows) with other values.
+     */
+    static <T> void requireSameRows(IntConcurrentHashMap<T> table, List<T> rows, ToIntFunction<T> idOf,
+                                    BiPredicate<T, T> same) {
+        Map<Integer, T> listed = new HashMap<>();
+        List<Integer> mismatched = new ArrayList<>();
+        for (T row : rows) {
+            int id = idOf.applyAsInt(row);
+            T existing = table.get(id);
+            if (existing == null) {
+                existing = listed.putIfAbsent(id, row);
+            }
+            if (existing != null && !same.test(existing, row)) {
+                mismatched.add(id);
+            }
+        }
+        if (!mismatched.isEmpty()) {
+            mismatched.sort(null);
+            String ids = mismatched.size() <= 20 ? mismatched.toString()
+                    : mismatched.subList(0, 20) + " and " + (mismatched.size() - 20) + " more";
+            throw new IllegalArgumentException("Ids already exist with different values: " + ids + ".");
+        }
+    }
+
+    boolean deleteBot(int id) {
+        ReentrantReadWriteLock.WriteLock lock = parentLock.writeLock();
+        lock.lock();
+        try {
+            if (bots.remove(id) == null) {
+                return false;
+            }
+            sessions.forEach((sessionId, row) -> {
+                if (row.botId == id) {
+                    sessions.remove(sessionId);
+                }
+            });
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean deleteUser(int id) {
+        ReentrantReadWriteLock.WriteLock lock = parentLock.writeLock();
+        lock.lock();
+        try {
+            if (users.remove(id) == null) {
+                return false;
+            }
+            sessions.forEach((sessionId, row) -> {
+                if (row.userId == id) {
+                    sessions.remove(sessionId);
+                }
+            });
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void requireParents(int botId, int userId) throws SQLException {
+        if (!bots.containsKey(botId)) {
+            throw new SQLException("insert on chat_sessions violates foreign key fk_bot: bot " + botId
+                    + " does not exist", FK_VIOLATION);
+        }
+        if (!users.containsKey(userId)) {
+            throw new SQLException("insert on chat_sessions violates foreign key fk_user: user " + userId
+                    + " does not exist", FK_VIOLATION);
+        }
+    }
+
+    public int getBotCount() { return bots.size(); }
+    public int getUserCount() { return users.size(); }
+    public int getSessionCount() { return sessions.size(); }
+
+    // ---- snapshots ----
+
+    /**
+     * Writes every table to a temporary file and atomically moves it over path. The
+     * maps are copied under the exclusive lock, so the snapshot never holds a
+     * session whose parent is missing; the file I/O happens outside the lock.
+     */
+    public void snapshot(Path path) throws IOException {
+        List<Bot> botRows;
+        List<User> userRows;
+        List<SessionRow> sessionRows;
+        int[] sequences;
+        ReentrantReadWriteLock.WriteLock lock = parentLock.writeLock();
+        lock.lock();
+        try {
+            botRows = bots.values();
+            userRows = users.values();
+            sessionRows = sessions.values();
+            sequences = new int[]{botSequence.get(), userSequence.get(), sessionSequence.get()};
+        } finally {
+            lock.unlock();
+        }
+
+        Path target = path.toAbsolutePath();
+        Path parent = target.getParent();
+        if (parent == null) {
+            throw new IOException("Snapshot path " + path + " has no parent directory.");
+        }
+        Files.createDirectories(parent);
+        // Beside the target, never in the system temp dir: ATOMIC_MOVE cannot cross file systems.
+        Path temp = Files.createTempFile(parent, target.getFileName().toString(), ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            for (int sequence : sequences) {
+                out.writeInt(sequence);
+            }
+            out.writeInt(botRows.size());
+            for (Bot bot : botRows) {
+                out.writeInt(bot.getId());
+                writeString(out, bot.getName());
+                writeString(out, bot.getGreeting());
+                writeString(out, bot.getDefinition());
+                out.writeInt(bot.getTokenLimit());
+            }
+            out.writeInt(userRows.size());
+            for (User user : userRows) {
+                out.writeInt(user.getId());
+                writeString(out, user.getName());
+                writeString(out, user.getPersona());
+                out.writeBoolean(user.isPremium());
+            }
+            out.writeInt(sessionRows.size());
+            for (SessionRow row : sessionRows) {
+                out.writeInt(row.id);
+                out.writeInt(row.botId);
+                out.writeInt(row.userId);
+                out.writeLong(row.startedAt);
+                out.writeInt(row.totalTokensUsed);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Replaces the current contents with a snapshot. Returns false if the file does not exist.
+     */
+    public boolean load(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return false;
+        }
+        ReentrantReadWriteLock.WriteLock lock = parentLock.writeLock();
+        lock.lock();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Not a chat store snapshot (or unsupported version): " + path);
+            }
+            int botSeq = in.readInt();
+            int userSeq = in.readInt();
+            int sessionSeq = in.readInt();
+
+            bots.clear();
+            users.clear();
+            sessions.clear();
+            for (int n = in.readInt(); n > 0; n--) {
+                int id = in.readInt();
+                bots.put(id, new Bot(id, readString(in), readString(in), readString(in), in.readInt()));
+            }
+            for (int n = in.readInt(); n > 0; n--) {
+                int id = in.readInt();
+                users.put(id, new User(id, readString(in), readString(in), in.readBoolean()));
+            }
+            for (int n = in.readInt(); n > 0; n--) {
+                int id = in.readInt();
+                sessions.put(id, new SessionRow(id, in.readInt(), in.readInt(), in.readLong(), in.readInt()));
+            }
+            botSequence.set(botSeq);
+            userSequence.set(userSeq);
+            sessionSequence.set(sessionSeq);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Loads path if it exists, then snapshots to it every intervalMillis and once more on close().
+     */
+    public void enableSnapshots(Path path, long intervalMillis) throws IOException {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Snapshot interval must be positive.");
+        }
+        if (load(path)) {
+            System.out.println("[MEMORY STORE] Loaded snapshot " + path + ": " + getBotCount() + " bots, "
+                    + getUserCount() + " users, " + getSessionCount() + " sessions.");
+        }
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "memory-store-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::snapshotQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        this.snapshotPath = path;
+        this.snapshotter = scheduler;
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot(snapshotPath);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[MEMORY STORE] Snapshot failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        ScheduledExecutorService scheduler = snapshotter;
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        snapshotQuietly();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,155 @@
+package repository.memory;
+
+import model.User;
+import repository.interfaces.CrudRepository;
+import repository.interfaces.Page;
+import repository.interfaces.PageRequest;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Memory-resident CrudRepository<User> over an InMemoryStore; same copy and
+ * cascade rules as InMemoryBotRepository.
+ */
+public class InMemoryUserRepository implements CrudRepository<User> {
+    private final InMemoryStore store;
+
+    public InMemoryUserRepository(InMemoryStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public void create(User user) throws SQLException {
+        check(user);
+        int id = store.userSequence.incrementAndGet();
+        store.users.put(id, copy(id, user));
+        user.setId(id);
+    }
+
+    @Override
+    public List<Integer> createAll(List<User> users) throws SQLException {
+        for (User user : users) {
+            check(user);
+        }
+        List<Integer> ids = new ArrayList<>(users.size());
+        for (User user : users) {
+            create(user);
+            ids.add(user.getId());
+        }
+        return ids;
+    }
+
+    @Override
+    public List<User> getAll() {
+        int[] ids = store.users.sortedKeys();
+        List<User> users = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            User user = store.users.get(id);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+        return users;
+    }
+
+    @Override
+    public Page<User> findPage(PageRequest request) {
+        switch (request.getSortBy()) {
+            case "id": return InMemoryPages.select(store.users, null, null, request, user -> user);
+            case "name": return InMemoryPages.select(store.users, user -> user.getName().toLowerCase(Locale.ROOT), String.class,
+                    request, user -> user);
+            default: throw new IllegalArgumentException("Users cannot be sorted by " + request.getSortBy() + ".");
+        }
+    }
+
+    @Override
+    public User getById(int id) {
+        return store.users.get(id);
+    }
+
+    @Override
+    public boolean update(User user) throws SQLException {
+        check(user);
+        User replacement = copy(user.getId(), user);
+        while (true) {
+            User current = store.users.get(user.getId());
+            if (current == null) {
+                return false;
+            }
+            if (store.users.replace(user.getId(), current, replacement)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public int updateAll(List<User> users) throws SQLException {
+        for (User user : users) {
+            check(user);
+        }
+        int updated = 0;
+        for (User user : users) {
+            if (update(user)) {
+                updated++;
+            }
+        }
+        return updated;
+    }
+
+    @Override
+    public boolean delete(int id) {
+        return store.deleteUser(id);
+    }
+
+    @Override
+    public int deleteAll(List<Integer> ids) {
+        int deleted = 0;
+        for (int id : ids) {
+            if (store.deleteUser(id)) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public Stream<User> streamAfter(int afterId) {
+        return Arrays.stream(store.users.sortedKeys())
+                .filter(id -> id > afterId)
+                .mapToObj(store.users::get)
+                .filter(Objects::nonNull);
+    }
+
+    @Override
+    public int importAll(List<User> users) throws SQLException {
+        for (User user : users) {
+            check(user);
+        }
+        InMemoryStore.requireSameRows(store.users, users, User::getId, (a, b) -> a.getName().equals(b.getName())
+                && Objects.equals(a.getPersona(), b.getPersona()) && a.isPremium() == b.isPremium());
+        int inserted = 0;
+        for (User user : users) {
+            if (store.users.putIfAbsent(user.getId(), copy(user.getId(), user)) == null) {
+                inserted++;
+            }
+            store.userSequence.accumulateAndGet(user.getId(), Math::max);
+        }
+        return inserted;
+    }
+
+    private static void check(User user) throws SQLException {
+        if (user.getName() == null) {
+            throw new SQLException("null value in column name of relation users violates not-null constraint", "23502");
+        }
+    }
+
+    private static User copy(int id, User user) {
+        return new User(id, user.getName(), user.getPersona(), user.isPremium());
+    }
+}
@@ -0,0 +1,760 @@
+package search;
+
+import model.Bot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory full-text index over bot name, greeting and definition, ranked
+ * with BM25. Name terms count NAME_WEIGHT times, so a match in the name beats
+ * the same match buried in a long definition. The last query term also
+ * matches as a prefix ("wond" finds "wonderland"), for search-as-you-type.
+ *
+ * Every indexed bot version gets an internal document number, handed out in
+ * increasing order, and each term's postings list is a byte array of
+ * varint-encoded (doc gap, term frequency) pairs. An update or delete only
+ * marks the old document as deleted and appends the new one; once deleted
+ * documents make up a quarter of the index, the postings are compacted.
+ * Like any BM25 engine with lazy deletes, document frequencies still count
+ * deleted documents until then.
+ *
+ * Searches share a read lock; writes take the write lock. The index only sees
+ * the writes that go through this process (ChatService), so with several
+ * application instances each one's index misses the others' bot changes
+ * until its next rebuild.
+ */
+public class BotSearchIndex {
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final int NAME_WEIGHT = 3;
+    private static final int MAX_TERM_LENGTH = 40;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    private static final int MIN_DOCS_PER_REBUILD_WORKER = 1_000;
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "do", "for", "from", "if", "in", "is", "it",
+            "of", "on", "or", "so", "that", "the", "this", "to", "with", "you", "your");
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final BlockingQueue<Scratch> scratchPool =
+            new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors());
+    private State state = new State(0);
+    // Writes made while a rebuild runs, replayed onto the rebuilt state: a Bot to put or an Integer id to remove.
+    private List<Object> rebuildLog;
+
+    /**
+     * Adds a bot, or replaces the indexed version of it.
+     */
+    public void put(Bot bot) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        int length = termFrequencies(bot, frequencies);
+        lock.writeLock().lock();
+        try {
+            state.add(bot.getId(), length, frequencies);
+            state.compactIfNeeded();
+            if (rebuildLog != null) {
+                rebuildLog.add(bot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return false when the bot was not indexed
+     */
+    public boolean remove(int botId) {
+        lock.writeLock().lock();
+        try {
+            if (rebuildLog != null) {
+                rebuildLog.add(botId);
+            }
+            boolean removed = state.remove(botId);
+            state.compactIfNeeded();
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the whole index with the given bots. Workers tokenize contiguous
+     * id ranges into their own postings lists, which are then concatenated in
+     * id order. Searches keep using the old index until the new one is swapped
+     * in; put/remove calls made meanwhile are applied to both.
+     */
+    public void rebuild(List<Bot> bots, int workers) {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("Rebuild needs at least one worker.");
+        }
+        lock.writeLock().lock();
+        try {
+            if (rebuildLog != null) {
+                throw new IllegalStateException("A search index rebuild is already running.");
+            }
+            rebuildLog = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        State rebuilt;
+        try {
+            rebuilt = build(bots, workers);
+        } catch (RuntimeException | Error e) {
+            lock.writeLock().lock();
+            try {
+                rebuildLog = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (Object write : rebuildLog) {
+                if (write instanceof Bot) {
+                    Bot bot = (Bot) write;
+                    Map<String, Integer> frequencies = new HashMap<>();
+                    int length = termFrequencies(bot, frequencies);
+                    rebuilt.add(bot.getId(), length, frequencies);
+                } else {
+                    rebuilt.remove((Integer) write);
+                }
+            }
+            rebuilt.compactIfNeeded();
+            state = rebuilt;
+            rebuildLog = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static State build(List<Bot> bots, int workers) {
+        Bot[] sorted = bots.toArray(new Bot[0]);
+        Arrays.sort(sorted, Comparator.comparingInt(Bot::getId));
+        int count = sorted.length;
+        State built = new State(count);
+        int chunks = Math.max(1, Math.min(workers, count / MIN_DOCS_PER_REBUILD_WORKER));
+        int chunkSize = (count + chunks - 1) / Math.max(1, chunks);
+
+        AtomicInteger threadIds = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(chunks, r -> {
+            Thread t = new Thread(r, "search-index-rebuild-" + threadIds.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<Map<String, Postings>>> segments = new ArrayList<>();
+            for (int from = 0; from < count; from += chunkSize) {
+                int start = from;
+                int end = Math.min(count, from + chunkSize);
+                segments.add(pool.submit(() -> buildSegment(sorted, start, end, built)));
+            }
+            Map<String, Postings> terms = new HashMap<>();
+            for (Future<Map<String, Postings>> segment : segments) {
+                // Segments cover increasing document ranges, so appending keeps every list sorted.
+                for (Map.Entry<String, Postings> entry : segment.get().entrySet()) {
+                    Postings postings = terms.get(entry.getKey());
+                    if (postings == null) {
+                        terms.put(entry.getKey(), entry.getValue());
+                    } else {
+                        postings.append(entry.getValue());
+                    }
+                }
+            }
+            for (Postings postings : terms.values()) {
+                postings.trim();
+            }
+            built.terms = new TreeMap<>(terms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Search index rebuild was interrupted.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Search index rebuild failed.", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        for (int doc = 0; doc < count; doc++) {
+            int previous = built.botDoc.put(built.docBot[doc], doc);
+            if (previous >= 0) {
+                built.markDeleted(previous);
+            }
+            built.liveLength += built.docLength[doc];
+        }
+        built.docCount = count;
+        return built;
+    }
+
+    private static Map<String, Postings> buildSegment(Bot[] bots, int from, int to, State target) {
+        Map<String, Postings> terms = new HashMap<>();
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (int doc = from; doc < to; doc++) {
+            frequencies.clear();
+            target.docBot[doc] = bots[doc].getId();
+            target.docLength[doc] = termFrequencies(bots[doc], frequencies);
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                terms.computeIfAbsent(entry.getKey(), t -> new Postings()).add(doc, entry.getValue());
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Best-scoring bots first. Terms are OR-ed, so bots matching more of them rank higher.
+     */
+    public List<Hit> search(String query, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Search limit must be positive.");
+        }
+        List<String> tokens = new ArrayList<>();
+        tokenize(query, 1, (term, weight) -> tokens.add(term));
+        boolean lastIsPrefix = !query.isEmpty() && Character.isLetterOrDigit(query.codePointBefore(query.length()));
+        Set<String> exact = new LinkedHashSet<>();
+        String prefix = null;
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            if (i == tokens.size() - 1 && lastIsPrefix) {
+                prefix = token;
+            } else if (!STOP_WORDS.contains(token)) {
+                exact.add(token);
+            }
+        }
+        if (prefix != null && exact.contains(prefix)) {
+            prefix = null;
+        }
+
+        Scratch scratch = scratchPool.poll();
+        if (scratch == null) {
+            scratch = new Scratch();
+        }
+        List<Hit> hits;
+        lock.readLock().lock();
+        try {
+            hits = state.search(exact, prefix, limit, scratch);
+        } finally {
+            lock.readLock().unlock();
+        }
+        scratchPool.offer(scratch);
+        return hits;
+    }
+
+    public Stats getStats() {
+        lock.readLock().lock();
+        try {
+            long bytes = 0;
+            for (Postings postings : state.terms.values()) {
+                bytes += postings.length;
+            }
+            return new Stats(state.docCount - state.deletedCount, state.deletedCount, state.terms.size(), bytes);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static int termFrequencies(Bot bot, Map<String, Integer> frequencies) {
+        TermSink sink = (term, weight) -> {
+            if (!STOP_WORDS.contains(term)) {
+                frequencies.merge(term, weight, Integer::sum);
+            }
+        };
+        return tokenize(bot.getName(), NAME_WEIGHT, sink)
+                + tokenize(bot.getGreeting(), 1, sink)
+                + tokenize(bot.getDefinition(), 1, sink);
+    }
+
+    private interface TermSink {
+        void accept(String term, int weight);
+    }
+
+    /**
+     * Lower-cased runs of letters and digits, cut at MAX_TERM_LENGTH.
+     *
+     * @return the weighted number of terms, stop words included
+     */
+    private static int tokenize(String text, int weight, TermSink sink) {
+        if (text == null) {
+            return 0;
+        }
+        int length = 0;
+        StringBuilder term = new StringBuilder();
+        int i = 0;
+        while (i <= text.length()) {
+            int cp = i < text.length() ? text.codePointAt(i) : ' ';
+            i += Character.charCount(cp);
+            if (Character.isLetterOrDigit(cp)) {
+                if (term.length() < MAX_TERM_LENGTH) {
+                    term.appendCodePoint(Character.toLowerCase(cp));
+                }
+            } else if (term.length() > 0) {
+                sink.accept(term.toString(), weight);
+                length += weight;
+                term.setLength(0);
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Everything a search reads. Rebuilds fill a fresh State and swap it in.
+     */
+    private static final class State {
+        TreeMap<String, Postings> terms = new TreeMap<>();
+        int[] docBot;
+        int[] docLength;
+        int docCount;
+        final BitSet deleted = new BitSet();
+        int deletedCount;
+        long liveLength;
+        IntIntMap botDoc;
+
+        State(int capacity) {
+            docBot = new int[Math.max(16, capacity)];
+            docLength = new int[docBot.length];
+            botDoc = new IntIntMap(capacity);
+        }
+
+        void add(int botId, int length, Map<String, Integer> frequencies) {
+            remove(botId);
+            if (docCount == docBot.length) {
+                docBot = Arrays.copyOf(docBot, docCount * 2);
+                docLength = Arrays.copyOf(docLength, docCount * 2);
+            }
+            int doc = docCount++;
+            docBot[doc] = botId;
+            docLength[doc] = length;
+            liveLength += length;
+            botDoc.put(botId, doc);
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                terms.computeIfAbsent(entry.getKey(), t -> new Postings()).add(doc, entry.getValue());
+            }
+        }
+
+        boolean remove(int botId) {
+            int doc = botDoc.remove(botId);
+            if (doc < 0) {
+                return false;
+            }
+            markDeleted(doc);
+            return true;
+        }
+
+        void markDeleted(int doc) {
+            if (!deleted.get(doc)) {
+                deleted.set(doc);
+                deletedCount++;
+                liveLength -= docLength[doc];
+            }
+        }
+
+        void compactIfNeeded() {
+            if (deletedCount < 1_000 || deletedCount * 4 < docCount) {
+                return;
+            }
+            int[] remap = new int[docCount];
+            int live = 0;
+            for (int doc = 0; doc < docCount; doc++) {
+                if (deleted.get(doc)) {
+                    remap[doc] = -1;
+                } else {
+                    remap[doc] = live;
+                    docBot[live] = docBot[doc];
+                    docLength[live] = docLength[doc];
+                    live++;
+                }
+            }
+            for (Iterator<Postings> it = terms.values().iterator(); it.hasNext(); ) {
+                Postings postings = it.next();
+                Postings compacted = new Postings();
+                PostingsCursor cursor = new PostingsCursor(postings);
+                while (cursor.next()) {
+                    if (remap[cursor.doc] >= 0) {
+                        compacted.add(remap[cursor.doc], cursor.frequency);
+                    }
+                }
+                if (compacted.docFrequency == 0) {
+                    it.remove();
+                } else {
+                    compacted.trim();
+                    postings.replaceWith(compacted);
+                }
+            }
+            botDoc = new IntIntMap(live);
+            for (int doc = 0; doc < live; doc++) {
+                botDoc.put(docBot[doc], doc);
+            }
+            deleted.clear();
+            deletedCount = 0;
+            docCount = live;
+        }
+
+        /**
+         * Term-at-a-time: each postings list is decoded front to back and its
+         * BM25 contributions are added into a dense per-document array, then
+         * one pass over the touched documents keeps the best limit in a heap.
+         * Within the prefix clause only the best expansion counts, so it is
+         * scored first, while the array is still all zeros, by taking maxima.
+         */
+        List<Hit> search(Set<String> exact, String prefix, int limit, Scratch scratch) {
+            int liveDocs = docCount - deletedCount;
+            if (liveDocs == 0) {
+                return new ArrayList<>();
+            }
+            float averageLength = Math.max(1f, (float) liveLength / liveDocs);
+            scratch.ensureCapacity(docCount);
+            if (prefix != null) {
+                for (Postings postings : expand(prefix)) {
+                    accumulate(postings, averageLength, scratch, true);
+                }
+            }
+            for (String term : exact) {
+                Postings postings = terms.get(term);
+                if (postings != null) {
+                    accumulate(postings, averageLength, scratch, false);
+                }
+            }
+            return topHits(scratch, limit);
+        }
+
+        private void accumulate(Postings postings, float averageLength, Scratch scratch, boolean keepMax) {
+            float[] scores = scratch.scores;
+            float idf = idf(postings.docFrequency);
+            boolean checkDeleted = deletedCount > 0;
+            PostingsCursor cursor = new PostingsCursor(postings);
+            while (cursor.next()) {
+                int doc = cursor.doc;
+                if (checkDeleted && deleted.get(doc)) {
+                    continue;
+                }
+                float norm = K1 * (1 - B + B * docLength[doc] / averageLength);
+                float score = idf * cursor.frequency * (K1 + 1) / (cursor.frequency + norm);
+                float current = scores[doc];
+                if (current == 0f) {
+                    scratch.touched[scratch.touchedCount++] = doc;
+                    scores[doc] = score;
+                } else {
+                    scores[doc] = keepMax ? Math.max(current, score) : current + score;
+                }
+            }
+        }
+
+        private float idf(int docFrequency) {
+            return (float) Math.log(1 + (docCount - docFrequency + 0.5) / (docFrequency + 0.5));
+        }
+
+        /**
+         * The MAX_PREFIX_EXPANSIONS terms starting with prefix that occur in the most documents.
+         */
+        private List<Postings> expand(String prefix) {
+            PriorityQueue<Postings> best = new PriorityQueue<>(Comparator.comparingInt(p -> p.docFrequency));
+            for (Postings postings : terms.subMap(prefix, prefix + Character.MAX_VALUE).values()) {
+                if (best.size() < MAX_PREFIX_EXPANSIONS) {
+                    best.add(postings);
+                } else if (postings.docFrequency > best.peek().docFrequency) {
+                    best.poll();
+                    best.add(postings);
+                }
+            }
+            return new ArrayList<>(best);
+        }
+
+        /**
+         * Also clears the scores it read, leaving the scratch arrays ready for the next search.
+         */
+        private List<Hit> topHits(Scratch scratch, int limit) {
+            float[] scores = scratch.scores;
+            PriorityQueue<Hit> top = new PriorityQueue<>(limit + 1, Hit.WORST_FIRST);
+            for (int i = 0; i < scratch.touchedCount; i++) {
+                int doc = scratch.touched[i];
+                float score = scores[doc];
+                scores[doc] = 0f;
+                int botId = docBot[doc];
+                if (top.size() < limit) {
+                    top.add(new Hit(botId, score));
+                } else {
+                    // Documents are not in bot id order once bots are updated, so ties are settled by id here.
+                    Hit worst = top.peek();
+                    if (score > worst.score || (score == worst.score && botId < worst.botId)) {
+                        top.poll();
+                        top.add(new Hit(botId, score));
+                    }
+                }
+            }
+            scratch.touchedCount = 0;
+            List<Hit> hits = new ArrayList<>(top);
+            hits.sort(Hit.WORST_FIRST.reversed());
+            return hits;
+        }
+    }
+
+    /**
+     * Per-search score accumulator, one slot per document number. Pooled
+     * (up to one per core) rather than thread-local, since request threads
+     * may be virtual.
+     */
+    private static final class Scratch {
+        float[] scores = new float[0];
+        int[] touched = new int[0];
+        int touchedCount;
+
+        void ensureCapacity(int documents) {
+            if (scores.length < documents) {
+                scores = new float[documents];
+                touched = new int[documents];
+            }
+        }
+    }
+
+    /**
+     * Varint (doc gap, frequency) pairs in increasing doc order.
+     */
+    private static final class Postings {
+        private byte[] bytes = new byte[8];
+        private int length;
+        private int docFrequency;
+        private int lastDoc = -1;
+
+        void add(int doc, int frequency) {
+            ensureCapacity(10);
+            length = writeVarint(bytes, length, doc - lastDoc);
+            length = writeVarint(bytes, length, frequency);
+            lastDoc = doc;
+            docFrequency++;
+        }
+
+        /**
+         * Appends a list whose documents all come after this one's; only its first gap is re-encoded.
+         */
+        void append(Postings next) {
+            int pos = 0;
+            int firstGap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = next.bytes[pos++];
+                firstGap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            int firstDoc = firstGap - 1;
+            ensureCapacity(5 + next.length - pos);
+            length = writeVarint(bytes, length, firstDoc - lastDoc);
+            System.arraycopy(next.bytes, pos, bytes, length, next.length - pos);
+            length += next.length - pos;
+            docFrequency += next.docFrequency;
+            lastDoc = next.lastDoc;
+        }
+
+        void replaceWith(Postings other) {
+            bytes = other.bytes;
+            length = other.length;
+            docFrequency = other.docFrequency;
+            lastDoc = other.lastDoc;
+        }
+
+        void trim() {
+            if (bytes.length > length) {
+                bytes = Arrays.copyOf(bytes, length);
+            }
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(length + extra, bytes.length * 2));
+            }
+        }
+
+        private static int writeVarint(byte[] out, int pos, int value) {
+            while ((value & ~0x7F) != 0) {
+                out[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out[pos++] = (byte) value;
+            return pos;
+        }
+    }
+
+    private static final class PostingsCursor {
+        final Postings postings;
+        int pos;
+        int doc = -1;
+        int frequency;
+
+        PostingsCursor(Postings postings) {
+            this.postings = postings;
+        }
+
+        boolean next() {
+            if (pos >= postings.length) {
+                doc = Integer.MAX_VALUE;
+                return false;
+            }
+            doc += readVarint();
+            frequency = readVarint();
+            return true;
+        }
+
+        private int readVarint() {
+            byte[] bytes = postings.bytes;
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[pos++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+
+    /**
+     * Open-addressing bot id -> document map without boxing; -1 means absent.
+     */
+    private static final class IntIntMap {
+        private static final int FREE = Integer.MIN_VALUE;
+        private int[] keys;
+        private int[] values;
+        private int used;
+
+        IntIntMap(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(16, expected * 2) - 1) << 1;
+            keys = new int[capacity];
+            values = new int[capacity];
+            Arrays.fill(keys, FREE);
+        }
+
+        int get(int key) {
+            int mask = keys.length - 1;
+            for (int i = mix(key) & mask; keys[i] != FREE; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return the previous value, or -1
+         */
+        int put(int key, int value) {
+            int mask = keys.length - 1;
+            int i = mix(key) & mask;
+            for (; keys[i] != FREE; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    int previous = values[i];
+                    values[i] = value;
+                    return previous;
+                }
+            }
+            keys[i] = key;
+            values[i] = value;
+            if (++used * 2 > keys.length) {
+                resize();
+            }
+            return -1;
+        }
+
+        /**
+         * Keeps the key with value -1, so probe chains stay intact; compaction drops it.
+         */
+        int remove(int key) {
+            int mask = keys.length - 1;
+            for (int i = mix(key) & mask; keys[i] != FREE; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    int previous = values[i];
+                    values[i] = -1;
+                    return previous;
+                }
+            }
+            return -1;
+        }
+
+        private void resize() {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            Arrays.fill(keys, FREE);
+            used = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != FREE && oldValues[i] >= 0) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int mix(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    public static final class Hit {
+        static final Comparator<Hit> WORST_FIRST = Comparator.<Hit>comparingDouble(h -> h.score)
+                .thenComparing(Comparator.comparingInt((Hit h) -> h.botId).reversed());
+
+        private final int botId;
+        private final float score;
+
+        private Hit(int botId, float score) {
+            this.botId = botId;
+            this.score = score;
+        }
+
+        public int getBotId() { return botId; }
+        public float getScore() { return score; }
+
+        @Override
+        public String toString() {
+            return "bot " + botId + " (" + String.format(Locale.ROOT, "%.3f", score) + ")";
+        }
+    }
+
+    public static final class Stats {
+        private final int documents;
+        private final int deletedDocuments;
+        private final int terms;
+        private final long postingsBytes;
+
+        private Stats(int documents, int deletedDocuments, int terms, long postingsBytes) {
+            this.documents = documents;
+            this.deletedDocuments = deletedDocuments;
+            this.terms = terms;
+            this.postingsBytes = postingsBytes;
+        }
+
+        public int getDocuments() { return documents; }
+        public int getDeletedDocuments() { return deletedDocuments; }
+        public int getTerms() { return terms; }
+        public long getPostingsBytes() { return postingsBytes; }
+
+        @Override
+        public String toString() {
+            return "bots=" + documents + ", deleted=" + deletedDocuments + ", terms=" + terms
+                    + ", postingsBytes=" + postingsBytes;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package service;
+
+import model.Bot;
+import model.ChatSession;
+import model.User;
+import utils.AsyncTasks;
+import utils.VirtualThreads;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CompletableFuture facade over ChatService. Each call runs on the executor
+ * (virtual threads by default), so independent lookups overlap instead of
+ * queuing on the caller's thread. Validation, caching, rate limiting and
+ * budgets are still ChatService's.
+ *
+ * Futures complete exceptionally with ChatService's own exceptions (wrapped in
+ * CompletionException by join), with TimeoutException when the configured
+ * timeout elapses, and cancelling a future interrupts the work still running
+ * (startChatSession never abandons a session write half way, see there).
+ */
+public class AsyncChatService implements AutoCloseable {
+    private final ChatService service;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final long timeoutMillis;
+
+    public AsyncChatService(ChatService service) {
+        this(service, VirtualThreads.newPerTaskExecutor("async-chat-service"), true, 0);
+    }
+
+    /**
+     * @param timeoutMillis per-call timeout; 0 disables it
+     */
+    public AsyncChatService(ChatService service, ExecutorService executor, long timeoutMillis) {
+        this(service, executor, false, timeoutMillis);
+    }
+
+    private AsyncChatService(ChatService service, ExecutorService executor, boolean ownsExecutor, long timeoutMillis) {
+        if (timeoutMillis < 0) {
+            throw new IllegalArgumentException("Timeout must not be negative.");
+        }
+        this.service = service;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public CompletableFuture<List<Bot>> getAllBots() {
+        return call(service::getAllBots);
+    }
+
+    public CompletableFuture<Bot> getBotById(int id) {
+        return call(() -> service.getBotById(id));
+    }
+
+    public CompletableFuture<Bot> createBot(String name, String greeting, String definition, int tokenLimit) {
+        return call(() -> service.createBot(name, greeting, definition, tokenLimit));
+    }
+
+    public CompletableFuture<List<User>> getAllUsers() {
+        return call(service::getAllUsers);
+    }
+
+    public CompletableFuture<User> getUserById(int id) {
+        return call(() -> service.getUserById(id));
+    }
+
+    public CompletableFuture<User> createUser(String name, String persona, boolean isPremium) {
+        return call(() -> service.createUser(name, persona, isPremium));
+    }
+
+    public CompletableFuture<List<ChatSession>> getAllSessions() {
+        return call(service::getAllSessions);
+    }
+
+    public CompletableFuture<ChatSession> getSessionById(int id) {
+        return call(() -> service.getSessionById(id));
+    }
+
+    /**
+     * Loads the bot and the user concurrently and logs the session once both are in.
+     * If either lookup fails, or the whole call times out or is cancelled, the
+     * other lookup is cancelled too.
+     *
+     * The timeout and cancellation only apply until the write begins: a call that
+     * fails with TimeoutException or is cancelled has not written a session, and
+     * once the write is running the future reports its real outcome.
+     */
+    public CompletableFuture<ChatSession> startChatSession(int botId, int userId) {
+        CompletableFuture<Bot> bot = AsyncTasks.supply(executor, () -> service.getBotById(botId));
+        CompletableFuture<User> user = AsyncTasks.supply(executor, () -> service.getUserById(userId));
+        bot.whenComplete((b, error) -> {
+            if (error != null) {
+                user.cancel(true);
+            }
+        });
+        user.whenComplete((u, error) -> {
+            if (error != null) {
+                bot.cancel(true);
+            }
+        });
+
+        // Completed by the write as it starts; whichever of it, the timeout or a cancel comes first wins.
+        CompletableFuture<Void> writeGate = withTimeout(new CompletableFuture<>());
+        CompletableFuture<ChatSession> session = bot.thenCombine(user, Participants::new)
+                .thenCompose(p -> AsyncTasks.supply(executor, () -> {
+                    if (!writeGate.complete(null)) {
+                        throw new CancellationException("Session start was cancelled or timed out before the write.");
+                    }
+                    return service.startChatSession(p.bot, p.user);
+                }));
+        writeGate.whenComplete((v, error) -> {
+            if (error != null) {
+                session.completeExceptionally(error);
+            }
+        });
+        session.whenComplete((s, error) -> {
+            if (error != null) {
+                writeGate.cancel(false);
+                bot.cancel(true);
+                user.cancel(true);
+            }
+        });
+        return session;
+    }
+
+    public CompletableFuture<Void> addSessionTokens(int id, int delta) {
+        return call(() -> {
+            service.addSessionTokens(id, delta);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> updateSessionTokens(int id, int newTotalTokens) {
+        return call(() -> {
+            service.updateSessionTokens(id, newTotalTokens);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> deleteSession(int id) {
+        return call(() -> {
+            service.deleteSession(id);
+            return null;
+        });
+    }
+
+    public ChatService getService() {
+        return service;
+    }
+
+    /**
+     * Shuts down the executor if this instance created it. Does not shut down the ChatService.
+     */
+    @Override
+    public void close() {
+        if (!ownsExecutor) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private <T> CompletableFuture<T> call(Callable<T> task) {
+        return withTimeout(AsyncTasks.supply(executor, task));
+    }
+
+    private <T> CompletableFuture<T> withTimeout(CompletableFuture<T> future) {
+        return timeoutMillis > 0 ? future.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS) : future;
+    }
+
+    private static final class Participants {
+        private final Bot bot;
+        private final User user;
+
+        private Participants(Bot bot, User user) {
+            this.bot = bot;
+            this.user = user;
+        }
+    }
+}
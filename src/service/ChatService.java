@@ -1,27 +1,53 @@
 package service;
 
+import analytics.TokenAnalytics;
+import archive.SessionArchive;
+import exception.DuplicateResourceException;
 import exception.InvalidInputException;
 import exception.ResourceNotFoundException;
 import model.Bot;
 import model.User;
 import model.ChatSession;
-import repository.BotRepository;
-import repository.ChatSessionRepository;
-import repository.UserRepository;
+import repository.interfaces.CrudRepository;
+import repository.interfaces.Page;
+import repository.interfaces.PageRequest;
+import repository.interfaces.SessionRepository;
+import search.BotSearchIndex;
 
+import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Date;
+import java.util.stream.Stream;
 
 public class ChatService {
-    private final BotRepository botRepository;
-    private final UserRepository userRepository;
-    private final ChatSessionRepository sessionRepository;
+    private final CrudRepository<Bot> botRepository;
+    private final CrudRepository<User> userRepository;
+    private final SessionRepository sessionRepository;
+    private final SessionWriteBehindBuffer sessionWriteBehind;
+    private volatile TokenUsageAccumulator tokenAccumulator;
+    private volatile TokenRateLimiter rateLimiter;
+    private volatile SessionBudgetTracker budgetTracker;
+    private volatile BotSearchIndex searchIndex;
+    private volatile SessionArchive sessionArchive;
+    private volatile TokenAnalytics tokenAnalytics;
 
-    public ChatService(BotRepository botRepository, UserRepository userRepository, ChatSessionRepository chatSessionRepository) {
+    public ChatService(CrudRepository<Bot> botRepository, CrudRepository<User> userRepository,
+                       SessionRepository chatSessionRepository) {
+        this(botRepository, userRepository, chatSessionRepository, null);
+    }
+
+    /**
+     * @param sessionWriteBehind when non-null, logChatSession queues sessions instead of inserting them
+     *                           synchronously; pass null to keep the synchronous behaviour
+     */
+    public ChatService(CrudRepository<Bot> botRepository, CrudRepository<User> userRepository,
+                       SessionRepository chatSessionRepository, SessionWriteBehindBuffer sessionWriteBehind) {
         this.botRepository = botRepository;
         this.userRepository = userRepository;
         this.sessionRepository = chatSessionRepository;
+        this.sessionWriteBehind = sessionWriteBehind;
     }
 
     public List<model.Bot> getAllBots() throws SQLException {
@@ -36,7 +62,7 @@ public class ChatService {
         return bot;
     }
 
-    public void createBot(String name, String greeting, String definition, int tokenLimit)
+    public model.Bot createBot(String name, String greeting, String definition, int tokenLimit)
             throws InvalidInputException {
 
         if (name == null || name.trim().isEmpty()) {
@@ -53,6 +79,11 @@ public class ChatService {
         } catch (SQLException e) {
             throw new exception.DatabaseOperationException("Critical error: Could not save bot to database.", e);
         }
+        BotSearchIndex index = searchIndex;
+        if (index != null) {
+            index.put(bot);
+        }
+        return bot;
     }
 
     public void updateBot(int id, String newName, String newGreet, String newDef, int newLimit) throws Exception {
@@ -69,6 +100,10 @@ public class ChatService {
         if (!isUpdated) {
             throw new exception.ResourceNotFoundException("Bot with ID " + id + " not found.");
         }
+        BotSearchIndex index = searchIndex;
+        if (index != null) {
+            index.put(updatedBot);
+        }
     }
 
     public void deleteBot(int id) throws SQLException {
@@ -76,6 +111,47 @@ public class ChatService {
         if (!isDeleted) {
             throw new exception.ResourceNotFoundException("Bot with ID " + id + " not found.");
         }
+        BotSearchIndex index = searchIndex;
+        if (index != null) {
+            index.remove(id);
+        }
+        SessionArchive archive = sessionArchive;
+        if (archive != null) {
+            try {
+                archive.deleteBotSessions(id);
+            } catch (IOException e) {
+                throw new exception.DatabaseOperationException("Bot " + id + " was deleted, but its archived sessions were not.", e);
+            }
+        }
+        TokenAnalytics analytics = tokenAnalytics;
+        if (analytics != null) {
+            analytics.forgetBot(id);
+        }
+    }
+
+    /**
+     * Bots ranked by how well their name, greeting and definition match the query.
+     * The last query word also matches as a prefix.
+     */
+    public List<Bot> searchBots(String query, int limit) throws SQLException, InvalidInputException {
+        if (query == null || query.trim().isEmpty()) {
+            throw new InvalidInputException("Search query cannot be empty.");
+        }
+        if (limit <= 0 || limit > PageRequest.MAX_PAGE_SIZE) {
+            throw new InvalidInputException("Search limit must be between 1 and " + PageRequest.MAX_PAGE_SIZE + ".");
+        }
+        BotSearchIndex index = searchIndex;
+        if (index == null) {
+            throw new IllegalStateException("Bot search is not enabled.");
+        }
+        List<Bot> bots = new ArrayList<>();
+        for (BotSearchIndex.Hit hit : index.search(query, limit)) {
+            Bot bot = botRepository.getById(hit.getBotId());
+            if (bot != null) {
+                bots.add(bot);
+            }
+        }
+        return bots;
     }
 
     public List<model.User> getAllUsers() throws SQLException {
@@ -90,12 +166,13 @@ public class ChatService {
         return user;
     }
 
-    public void createUser(String name, String persona, boolean isPremium) throws InvalidInputException, SQLException {
+    public User createUser(String name, String persona, boolean isPremium) throws InvalidInputException, SQLException {
         if (name == null || name.isEmpty()) {
             throw new InvalidInputException("User name cannot be empty.");
         }
         User user = new User(0, name, persona, isPremium);
         userRepository.create(user);
+        return user;
     }
 
     public void updateUser(int id, String newName, String newPersona, boolean isPremium)
@@ -117,23 +194,249 @@ public class ChatService {
         if (!success) {
             throw new exception.ResourceNotFoundException("Cannot delete: User with ID " + id + " not found.");
         }
+        SessionArchive archive = sessionArchive;
+        if (archive != null) {
+            try {
+                archive.deleteUserSessions(id);
+            } catch (IOException e) {
+                throw new exception.DatabaseOperationException("User " + id + " was deleted, but their archived sessions were not.", e);
+            }
+        }
+        TokenAnalytics analytics = tokenAnalytics;
+        if (analytics != null) {
+            analytics.forgetUser(id);
+        }
     }
 
     public List<ChatSession> getAllSessions() throws SQLException {
         return sessionRepository.getAll();
     }
 
+    /**
+     * Streams the whole session history through a database cursor. Close the stream when done.
+     */
+    public Stream<ChatSession> streamAllSessions() throws SQLException {
+        return sessionRepository.streamAll();
+    }
+
+    public Stream<ChatSession> streamAllSessions(SessionRepository.FetchMode mode) throws SQLException {
+        return sessionRepository.streamAll(mode);
+    }
+
+    public List<ChatSession> getAllSessions(SessionRepository.FetchMode mode) throws SQLException {
+        return sessionRepository.getAll(mode);
+    }
+
+    public ChatSession getSessionById(int id, SessionRepository.FetchMode mode)
+            throws SQLException, exception.ResourceNotFoundException {
+        ChatSession session = sessionRepository.getById(id, mode);
+        if (session == null) {
+            session = getArchivedSession(id, mode);
+        }
+        if (session == null) {
+            throw new exception.ResourceNotFoundException("Session with ID " + id + " not found.");
+        }
+        return session;
+    }
+
+    public List<ChatSession> getSessionsPage(int afterId, int pageSize) throws SQLException, InvalidInputException {
+        if (pageSize <= 0) {
+            throw new InvalidInputException("Page size must be positive.");
+        }
+        return sessionRepository.getPageAfterId(afterId, pageSize);
+    }
+
+    public List<ChatSession> getSessionsPageByStartTime(Date afterStartedAt, int afterId, int pageSize)
+            throws SQLException, InvalidInputException {
+        if (pageSize <= 0) {
+            throw new InvalidInputException("Page size must be positive.");
+        }
+        return sessionRepository.getPageAfterStartedAt(afterStartedAt, afterId, pageSize);
+    }
+
+    public Page<Bot> listBots(PageRequest request) throws SQLException, InvalidInputException {
+        try {
+            return botRepository.findPage(request);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidInputException(e.getMessage());
+        }
+    }
+
+    public Page<User> listUsers(PageRequest request) throws SQLException, InvalidInputException {
+        try {
+            return userRepository.findPage(request);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidInputException(e.getMessage());
+        }
+    }
+
+    public Page<ChatSession> listSessions(PageRequest request) throws SQLException, InvalidInputException {
+        try {
+            return sessionRepository.findPage(request);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidInputException(e.getMessage());
+        }
+    }
+
+    // Every row with id > afterId, in id order, read through a cursor. Close the stream when done.
+    public Stream<Bot> streamBots(int afterId) throws SQLException {
+        return botRepository.streamAfter(afterId);
+    }
+
+    public Stream<User> streamUsers(int afterId) throws SQLException {
+        return userRepository.streamAfter(afterId);
+    }
+
+    public Stream<ChatSession> streamSessions(int afterId) throws SQLException {
+        return sessionRepository.streamAfter(afterId);
+    }
+
+    /**
+     * The checks createBot applies, for a bot that arrives with its id (an import).
+     */
+    public void validateBot(Bot bot) throws InvalidInputException {
+        if (bot.getId() <= 0) {
+            throw new InvalidInputException("Bot ID must be positive.");
+        }
+        if (bot.getName() == null || bot.getName().trim().isEmpty()) {
+            throw new InvalidInputException("Bot name cannot be empty.");
+        }
+        if (bot.getGreeting() == null || bot.getDefinition() == null) {
+            throw new InvalidInputException("Bot greeting and definition are required.");
+        }
+        if (bot.getTokenLimit() <= 0) {
+            throw new InvalidInputException("Token limit must be positive.");
+        }
+    }
+
+    public void validateUser(User user) throws InvalidInputException {
+        if (user.getId() <= 0) {
+            throw new InvalidInputException("User ID must be positive.");
+        }
+        if (user.getName() == null || user.getName().trim().isEmpty()) {
+            throw new InvalidInputException("User name cannot be empty.");
+        }
+        if (user.getPersona() == null) {
+            throw new InvalidInputException("User persona is required.");
+        }
+    }
+
+    public void validateSession(ChatSession session) throws InvalidInputException {
+        if (session.getId() <= 0) {
+            throw new InvalidInputException("Session ID must be positive.");
+        }
+        if (session.getBot() == null || session.getBot().getId() <= 0
+                || session.getUser() == null || session.getUser().getId() <= 0) {
+            throw new InvalidInputException("Session needs a bot ID and a user ID.");
+        }
+        if (session.getStartedAt() == null) {
+            throw new InvalidInputException("Session start time is required.");
+        }
+        if (session.getTotalTokensUsed() < 0) {
+            throw new InvalidInputException("Token count cannot be negative.");
+        }
+    }
+
+    /**
+     * Inserts bots that keep their ids, after validating all of them. Ids that
+     * already exist with the same values are skipped, so the same batch can be
+     * applied twice; an id stored with other values fails the whole batch with
+     * DuplicateResourceException. Returns the number of bots inserted.
+     */
+    public int importBots(List<Bot> bots) throws SQLException, InvalidInputException {
+        for (Bot bot : bots) {
+            validateBot(bot);
+        }
+        int inserted;
+        try {
+            inserted = botRepository.importAll(bots);
+        } catch (IllegalArgumentException e) {
+            throw new DuplicateResourceException(e.getMessage());
+        }
+        BotSearchIndex index = searchIndex;
+        if (index != null) {
+            for (Bot bot : bots) {
+                index.put(bot);
+            }
+        }
+        return inserted;
+    }
+
+    public int importUsers(List<User> users) throws SQLException, InvalidInputException {
+        for (User user : users) {
+            validateUser(user);
+        }
+        try {
+            return userRepository.importAll(users);
+        } catch (IllegalArgumentException e) {
+            throw new DuplicateResourceException(e.getMessage());
+        }
+    }
+
+    /**
+     * Sessions bypass the rate limiter and write-behind buffer: they are history, not new traffic.
+     */
+    public int importSessions(List<ChatSession> sessions) throws SQLException, InvalidInputException {
+        for (ChatSession session : sessions) {
+            validateSession(session);
+        }
+        try {
+            return sessionRepository.importAll(sessions);
+        } catch (IllegalArgumentException e) {
+            throw new DuplicateResourceException(e.getMessage());
+        }
+    }
+
+    /**
+     * The k bots with the highest token limits, read straight off the token_limit index.
+     */
+    public List<Bot> getTopBotsByTokenLimit(int k) throws SQLException, InvalidInputException {
+        if (k <= 0 || k > PageRequest.MAX_PAGE_SIZE) {
+            throw new InvalidInputException("K must be between 1 and " + PageRequest.MAX_PAGE_SIZE + ".");
+        }
+        return listBots(PageRequest.first("token_limit", PageRequest.Direction.DESC, k)).getItems();
+    }
+
     public ChatSession getSessionById(int id) throws SQLException, exception.ResourceNotFoundException {
         ChatSession session = sessionRepository.getById(id);
+        if (session == null) {
+            session = getArchivedSession(id, SessionRepository.FetchMode.STUBS);
+        }
         if (session == null) {
             throw new exception.ResourceNotFoundException("Session with ID " + id + " not found.");
         }
         return session;
     }
 
-    public void logChatSession(Bot bot, User user, Date startTime, int tokensUsed) throws SQLException {
+    /**
+     * Starts a chat: loads the bot and user and logs a session whose initial usage is their
+     * combined context load. In write-behind mode the returned session has no id yet.
+     */
+    public ChatSession startChatSession(int botId, int userId) throws SQLException {
+        return startChatSession(getBotById(botId), getUserById(userId));
+    }
+
+    public ChatSession startChatSession(Bot bot, User user) throws SQLException {
+        int load = bot.estimateTokenUsage() + user.estimateTokenUsage();
+        return logChatSession(bot, user, new Date(), load);
+    }
+
+    public ChatSession logChatSession(Bot bot, User user, Date startTime, int tokensUsed) throws SQLException {
+        TokenRateLimiter limiter = rateLimiter;
+        if (limiter != null) {
+            limiter.acquire(user, tokensUsed);
+        }
         ChatSession session = new ChatSession(0, bot, user, startTime, tokensUsed);
-        sessionRepository.create(session);
+        if (sessionWriteBehind != null) {
+            sessionWriteBehind.submit(session);
+        } else {
+            sessionRepository.create(session);
+        }
+        return session;
+    }
+
+    public SessionWriteBehindBuffer getSessionWriteBehind() {
+        return sessionWriteBehind;
     }
 
     public void updateSessionTokens(int id, int newTotalTokens)
@@ -143,23 +446,206 @@ public class ChatService {
             throw new exception.InvalidInputException("Token count cannot be negative.");
         }
 
-        ChatSession session = sessionRepository.getById(id);
-        if (session == null) {
-            throw new exception.ResourceNotFoundException("Cannot update: Session with ID " + id + " not found.");
+        SessionBudgetTracker tracker = budgetTracker;
+        if (tracker != null) {
+            tracker.setUsed(id, newTotalTokens);
+            return;
         }
 
-        session.setTotalTokensUsed(newTotalTokens);
+        // update() only touches total_tokens_used, so there is no need to read the session first.
+        ChatSession session = new ChatSession(id, null, null, null, newTotalTokens);
         boolean success = sessionRepository.update(session);
 
         if (!success) {
-            throw new exception.DatabaseOperationException("Failed to update session.");
+            throw new exception.ResourceNotFoundException("Cannot update: Session with ID " + id + " not found.");
         }
     }
 
+    /**
+     * Adds tokens to a session without a read-modify-write. With budget tracking
+     * enabled the delta is checked against the bot's limit and written by the
+     * tracker; with a token accumulator configured it is buffered and written on
+     * the next flush; otherwise it is applied immediately with a single atomic UPDATE.
+     */
+    public void addSessionTokens(int id, int delta)
+            throws SQLException, exception.ResourceNotFoundException, exception.InvalidInputException {
+        if (delta < 0) {
+            throw new exception.InvalidInputException("Token delta cannot be negative.");
+        }
+
+        SessionBudgetTracker tracker = budgetTracker;
+        if (tracker != null) {
+            tracker.consume(id, delta);
+            return;
+        }
+
+        TokenUsageAccumulator accumulator = tokenAccumulator;
+        if (accumulator != null) {
+            accumulator.add(id, delta);
+            return;
+        }
+
+        Integer newTotal = sessionRepository.addTokens(id, delta);
+        if (newTotal == null) {
+            throw new exception.ResourceNotFoundException("Cannot update: Session with ID " + id + " not found.");
+        }
+    }
+
+    /**
+     * Reserves tokens for a message against the session's bot limit. Commit the
+     * reservation with the tokens actually used, or release it if the message is abandoned.
+     */
+    public SessionBudgetTracker.Reservation reserveSessionTokens(int sessionId, int tokens)
+            throws SQLException, exception.InvalidInputException {
+        if (tokens <= 0) {
+            throw new exception.InvalidInputException("Reserved tokens must be positive.");
+        }
+        return requireBudgetTracker().reserve(sessionId, tokens);
+    }
+
+    public void commitSessionTokens(SessionBudgetTracker.Reservation reservation, int actualTokens) {
+        requireBudgetTracker().commit(reservation, actualTokens);
+    }
+
+    public void releaseSessionTokens(SessionBudgetTracker.Reservation reservation) {
+        requireBudgetTracker().release(reservation);
+    }
+
+    public void closeSessionBudget(int sessionId) throws SQLException {
+        requireBudgetTracker().closeSession(sessionId);
+    }
+
+    private SessionBudgetTracker requireBudgetTracker() {
+        SessionBudgetTracker tracker = budgetTracker;
+        if (tracker == null) {
+            throw new IllegalStateException("Session budget tracking is not enabled.");
+        }
+        return tracker;
+    }
+
+    public void setBudgetTracker(SessionBudgetTracker budgetTracker) {
+        this.budgetTracker = budgetTracker;
+    }
+
+    public SessionBudgetTracker getBudgetTracker() {
+        return budgetTracker;
+    }
+
+    public void setRateLimiter(TokenRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    public TokenRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Attach after the index has been built from the current bots; from then on
+     * bot create/update/delete keep it up to date.
+     */
+    public void setSearchIndex(BotSearchIndex searchIndex) {
+        this.searchIndex = searchIndex;
+    }
+
+    public BotSearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    /**
+     * With an archive attached, getSessionById and deleteSession fall back to
+     * it for sessions that are no longer in the live table, and deleting a bot
+     * or user also deletes its archived sessions.
+     */
+    public void setSessionArchive(SessionArchive sessionArchive) {
+        this.sessionArchive = sessionArchive;
+    }
+
+    public SessionArchive getSessionArchive() {
+        return sessionArchive;
+    }
+
+    /**
+     * With token analytics attached, deleting an archived session, bot or user
+     * also takes the archived usage out of the token rollups.
+     */
+    public void setTokenAnalytics(TokenAnalytics tokenAnalytics) {
+        this.tokenAnalytics = tokenAnalytics;
+    }
+
+    // Archiving bypasses the rollup triggers, so the rollups are corrected here instead.
+    private boolean deleteArchivedSession(int id) throws SQLException {
+        SessionArchive archive = sessionArchive;
+        ChatSession archived = archive == null ? null : archive.getById(id);
+        try {
+            if (archived == null || !archive.deleteSession(id)) {
+                return false;
+            }
+        } catch (IOException e) {
+            throw new exception.DatabaseOperationException("Could not delete archived session " + id + ".", e);
+        }
+        TokenAnalytics analytics = tokenAnalytics;
+        if (analytics != null) {
+            analytics.forgetSession(archived);
+        }
+        return true;
+    }
+
+    // Archived sessions hold only ids; other modes load the bot and user if they still exist.
+    private ChatSession getArchivedSession(int id, SessionRepository.FetchMode mode) throws SQLException {
+        SessionArchive archive = sessionArchive;
+        ChatSession session = archive == null ? null : archive.getById(id);
+        if (session == null || mode == SessionRepository.FetchMode.STUBS) {
+            return session;
+        }
+        Bot bot = botRepository.getById(session.getBot().getId());
+        User user = userRepository.getById(session.getUser().getId());
+        if (bot != null && mode == SessionRepository.FetchMode.NAMES_ONLY) {
+            bot = new Bot(bot.getId(), bot.getName(), "", "", bot.getTokenLimit());
+        }
+        if (user != null && mode == SessionRepository.FetchMode.NAMES_ONLY) {
+            user = new User(user.getId(), user.getName(), "", user.isPremium());
+        }
+        return new ChatSession(session.getId(), bot != null ? bot : session.getBot(),
+                user != null ? user : session.getUser(), session.getStartedAt(), session.getTotalTokensUsed());
+    }
+
+    public void setTokenAccumulator(TokenUsageAccumulator tokenAccumulator) {
+        this.tokenAccumulator = tokenAccumulator;
+    }
+
+    public TokenUsageAccumulator getTokenAccumulator() {
+        return tokenAccumulator;
+    }
+
     public void deleteSession(int id) throws SQLException, exception.ResourceNotFoundException {
         boolean success = sessionRepository.delete(id);
+        if (!success) {
+            success = deleteArchivedSession(id);
+        }
         if (!success) {
             throw new exception.ResourceNotFoundException("Cannot delete: Session with ID " + id + " not found.");
         }
+        SessionBudgetTracker tracker = budgetTracker;
+        if (tracker != null) {
+            tracker.discard(id);
+        }
+    }
+
+    /**
+     * Flushes anything still buffered. Call before closing the IDB.
+     */
+    public void shutdown() {
+        if (sessionWriteBehind != null) {
+            sessionWriteBehind.close();
+        }
+        if (tokenAccumulator != null) {
+            tokenAccumulator.close();
+        }
+        if (rateLimiter != null) {
+            rateLimiter.close();
+        }
+        if (budgetTracker != null) {
+            budgetTracker.close();
+        }
     }
-}
\ No newline at end of file
+}
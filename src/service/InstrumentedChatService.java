@@ -0,0 +1,600 @@
+package service;
+
+import exception.InvalidInputException;
+import exception.ResourceNotFoundException;
+import metrics.MetricsRegistry;
+import metrics.OperationMetrics;
+import model.Bot;
+import model.ChatSession;
+import model.User;
+import repository.interfaces.CrudRepository;
+import repository.interfaces.Page;
+import repository.interfaces.PageRequest;
+import repository.interfaces.SessionRepository;
+
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * ChatService that records call counts, errors by type and latency for each
+ * public operation under "service.&lt;method&gt;". Calls between service methods
+ * are recorded under each method they pass through: startChatSession(botId, userId)
+ * shows up as getBotById, getUserById, startChatSession and logChatSession.
+ * Stream-returning methods are timed until the stream is open.
+ */
+public class InstrumentedChatService extends ChatService {
+    private static final String PREFIX = "service.";
+
+    private final OperationMetrics getAllBots;
+    private final OperationMetrics getBotById;
+    private final OperationMetrics createBot;
+    private final OperationMetrics updateBot;
+    private final OperationMetrics deleteBot;
+    private final OperationMetrics searchBots;
+    private final OperationMetrics getAllUsers;
+    private final OperationMetrics getUserById;
+    private final OperationMetrics createUser;
+    private final OperationMetrics updateUser;
+    private final OperationMetrics deleteUser;
+    private final OperationMetrics getAllSessions;
+    private final OperationMetrics getAllSessionsByMode;
+    private final OperationMetrics streamAllSessions;
+    private final OperationMetrics getSessionById;
+    private final OperationMetrics getSessionByIdByMode;
+    private final OperationMetrics getSessionsPage;
+    private final OperationMetrics getSessionsPageByStartTime;
+    private final OperationMetrics listBots;
+    private final OperationMetrics getTopBotsByTokenLimit;
+    private final OperationMetrics listUsers;
+    private final OperationMetrics listSessions;
+    private final OperationMetrics streamBots;
+    private final OperationMetrics streamUsers;
+    private final OperationMetrics streamSessions;
+    private final OperationMetrics importBots;
+    private final OperationMetrics importUsers;
+    private final OperationMetrics importSessions;
+    private final OperationMetrics startChatSession;
+    private final OperationMetrics logChatSession;
+    private final OperationMetrics updateSessionTokens;
+    private final OperationMetrics addSessionTokens;
+    private final OperationMetrics reserveSessionTokens;
+    private final OperationMetrics commitSessionTokens;
+    private final OperationMetrics releaseSessionTokens;
+    private final OperationMetrics closeSessionBudget;
+    private final OperationMetrics deleteSession;
+
+    public InstrumentedChatService(CrudRepository<Bot> botRepository, CrudRepository<User> userRepository,
+                                   SessionRepository chatSessionRepository, SessionWriteBehindBuffer sessionWriteBehind,
+                                   MetricsRegistry registry) {
+        super(botRepository, userRepository, chatSessionRepository, sessionWriteBehind);
+        this.getAllBots = registry.operation(PREFIX + "getAllBots");
+        this.getBotById = registry.operation(PREFIX + "getBotById");
+        this.createBot = registry.operation(PREFIX + "createBot");
+        this.updateBot = registry.operation(PREFIX + "updateBot");
+        this.deleteBot = registry.operation(PREFIX + "deleteBot");
+        this.searchBots = registry.operation(PREFIX + "searchBots");
+        this.getAllUsers = registry.operation(PREFIX + "getAllUsers");
+        this.getUserById = registry.operation(PREFIX + "getUserById");
+        this.createUser = registry.operation(PREFIX + "createUser");
+        this.updateUser = registry.operation(PREFIX + "updateUser");
+        this.deleteUser = registry.operation(PREFIX + "deleteUser");
+        this.getAllSessions = registry.operation(PREFIX + "getAllSessions");
+        this.getAllSessionsByMode = registry.operation(PREFIX + "getAllSessions(mode)");
+        this.streamAllSessions = registry.operation(PREFIX + "streamAllSessions");
+        this.getSessionById = registry.operation(PREFIX + "getSessionById");
+        this.getSessionByIdByMode = registry.operation(PREFIX + "getSessionById(mode)");
+        this.getSessionsPage = registry.operation(PREFIX + "getSessionsPage");
+        this.getSessionsPageByStartTime = registry.operation(PREFIX + "getSessionsPageByStartTime");
+        this.listBots = registry.operation(PREFIX + "listBots");
+        this.getTopBotsByTokenLimit = registry.operation(PREFIX + "getTopBotsByTokenLimit");
+        this.listUsers = registry.operation(PREFIX + "listUsers");
+        this.listSessions = registry.operation(PREFIX + "listSessions");
+        this.streamBots = registry.operation(PREFIX + "streamBots");
+        this.streamUsers = registry.operation(PREFIX + "streamUsers");
+        this.streamSessions = registry.operation(PREFIX + "streamSessions");
+        this.importBots = registry.operation(PREFIX + "importBots");
+        this.importUsers = registry.operation(PREFIX + "importUsers");
+        this.importSessions = registry.operation(PREFIX + "importSessions");
+        this.startChatSession = registry.operation(PREFIX + "startChatSession");
+        this.logChatSession = registry.operation(PREFIX + "logChatSession");
+        this.updateSessionTokens = registry.operation(PREFIX + "updateSessionTokens");
+        this.addSessionTokens = registry.operation(PREFIX + "addSessionTokens");
+        this.reserveSessionTokens = registry.operation(PREFIX + "reserveSessionTokens");
+        this.commitSessionTokens = registry.operation(PREFIX + "commitSessionTokens");
+        this.releaseSessionTokens = registry.operation(PREFIX + "releaseSessionTokens");
+        this.closeSessionBudget = registry.operation(PREFIX + "closeSessionBudget");
+        this.deleteSession = registry.operation(PREFIX + "deleteSession");
+    }
+
+    @Override
+    public List<Bot> getAllBots() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            List<Bot> result = super.getAllBots();
+            getAllBots.success(start);
+            return result;
+        } catch (Throwable e) {
+            getAllBots.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public Bot getBotById(int id) throws SQLException, ResourceNotFoundException {
+        long start = System.nanoTime();
+        try {
+            Bot result = super.getBotById(id);
+            getBotById.success(start);
+            return result;
+        } catch (Throwable e) {
+            getBotById.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public Bot createBot(String name, String greeting, String definition, int tokenLimit) throws InvalidInputException {
+        long start = System.nanoTime();
+        try {
+            Bot result = super.createBot(name, greeting, definition, tokenLimit);
+            createBot.success(start);
+            return result;
+        } catch (Throwable e) {
+            createBot.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public void updateBot(int id, String newName, String newGreet, String newDef, int newLimit) throws Exception {
+        long start = System.nanoTime();
+        try {
+            super.updateBot(id, newName, newGreet, newDef, newLimit);
+            updateBot.success(start);
+        } catch (Throwable e) {
+            updateBot.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public void deleteBot(int id) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            super.deleteBot(id);
+            deleteBot.success(start);
+        } catch (Throwable e) {
+            deleteBot.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<Bot> searchBots(String query, int limit) throws SQLException, InvalidInputException {
+        long start = System.nanoTime();
+        try {
+            List<Bot> result = super.searchBots(query, limit);
+            searchBots.success(start);
+            return result;
+        } catch (Throwable e) {
+            searchBots.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<User> getAllUsers() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            List<User> result = super.getAllUsers();
+            getAllUsers.success(start);
+            return result;
+        } catch (Throwable e) {
+            getAllUsers.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public User getUserById(int id) throws SQLException, ResourceNotFoundException {
+        long start = System.nanoTime();
+        try {
+            User result = super.getUserById(id);
+            getUserById.success(start);
+            return result;
+        } catch (Throwable e) {
+            getUserById.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public User createUser(String name, String persona, boolean isPremium) throws InvalidInputException, SQLException {
+        long start = System.nanoTime();
+        try {
+            User result = super.createUser(name, persona, isPremium);
+            createUser.success(start);
+            return result;
+        } catch (Throwable e) {
+            createUser.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public void updateUser(int id, String newName, String newPersona, boolean isPremium)
+            throws SQLException, ResourceNotFoundException, InvalidInputException {
+        long start = System.nanoTime();
+        try {
+            super.updateUser(id, newName, newPersona, isPremium);
+            updateUser.success(start);
+        } catch (Throwable e) {
+            updateUser.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public void deleteUser(int id) throws SQLException, ResourceNotFoundException {
+        long start = System.nanoTime();
+        try {
+            super.deleteUser(id);
+            deleteUser.success(start);
+        } catch (Throwable e) {
+            deleteUser.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<ChatSession> getAllSessions() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            List<ChatSession> result = super.getAllSessions();
+            getAllSessions.success(start);
+            return result;
+        } catch (Throwable e) {
+            getAllSessions.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<ChatSession> getAllSessions(SessionRepository.FetchMode mode) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            List<ChatSession> result = super.getAllSessions(mode);
+            getAllSessionsByMode.success(start);
+            return result;
+        } catch (Throwable e) {
+            getAllSessionsByMode.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public Stream<ChatSession> streamAllSessions() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            Stream<ChatSession> result = super.streamAllSessions();
+            streamAllSessions.success(start);
+            return result;
+        } catch (Throwable e) {
+            streamAllSessions.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public Stream<ChatSession> streamAllSessions(SessionRepository.FetchMode mode) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            Stream<ChatSession> result = super.streamAllSessions(mode);
+            streamAllSessions.success(start);
+            return result;
+        } catch (Throwable e) {
+            streamAllSessions.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public ChatSession getSessionById(int id) throws SQLException, ResourceNotFoundException {
+        long start = System.nanoTime();
+        try {
+            ChatSession result = super.getSessionById(id);
+            getSessionById.success(start);
+            return result;
+        } catch (Throwable e) {
+            getSessionById.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public ChatSession getSessionById(int id, SessionRepository.FetchMode mode)
+            throws SQLException, ResourceNotFoundException {
+        long start = System.nanoTime();
+        try {
+            ChatSession result = super.getSessionById(id, mode);
+            getSessionByIdByMode.success(start);
+            return result;
+        } catch (Throwable e) {
+            getSessionByIdByMode.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<ChatSession> getSessionsPage(int afterId, int pageSize) throws SQLException, InvalidInputException {
+        long start = System.nanoTime();
+        try {
+            List<ChatSession> result = super.getSessionsPage(afterId, pageSize);
+            getSessionsPage.success(start);
+            return result;
+        } catch (Throwable e) {
+            getSessionsPage.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<ChatSession> getSessionsPageByStartTime(Date afterStartedAt, int afterId, int pageSize)
+            throws SQLException, InvalidInputException {
+        long start = System.nanoTime();
+        try {
+            List<ChatSession> result = super.getSessionsPageByStartTime(afterStartedAt, afterId, pageSize);
+            getSessionsPageByStartTime.success(start);
+            return result;
+        } catch (Throwable e) {
+            getSessionsPageByStartTime.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public Page<Bot> listBots(PageRequest request) throws SQLException, InvalidInputException {
+        long start = System.nanoTime();
+        try {
+            Page<Bot> result = super.listBots(request);
+            listBots.success(start);
+            return result;
+        } catch (Throwable e) {
+            listBots.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<Bot> getTopBotsByTokenLimit(int k) throws SQLException, InvalidInputException {
+        long start = System.nanoTime();
+        try {
+            List<Bot> result = super.getTopBotsByTokenLimit(k);
+            getTopBotsByTokenLimit.success(start);
+            return result;
+        } catch (Throwable e) {
+            getTopBotsByTokenLimit.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public Page<User> listUsers(PageRequest request) throws SQLException, InvalidInputException {
+        long start = System.nanoTime();
+        try {
+            Page<User> result = super.listUsers(request);
+            listUsers.success(start);
+            return result;
+        } catch (Throwable e) {
+            listUsers.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public Page<ChatSession> listSessions(PageRequest request) throws SQLException, InvalidInputException {
+        long start = System.nanoTime();
+        try {
+            Page<ChatSession> result = super.listSessions(request);
+            listSessions.success(start);
+            return result;
+        } catch (Throwable e) {
+            listSessions.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public Stream<Bot> streamBots(int afterId) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            Stream<Bot> result = super.streamBots(afterId);
+            streamBots.success(start);
+            return result;
+        } catch (Throwable e) {
+            streamBots.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public Stream<User> streamUsers(int afterId) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            Stream<User> result = super.streamUsers(afterId);
+            streamUsers.success(start);
+            return result;
+        } catch (Throwable e) {
+            streamUsers.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public Stream<ChatSession> streamSessions(int afterId) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            Stream<ChatSession> result = super.streamSessions(afterId);
+            streamSessions.success(start);
+            return result;
+        } catch (Throwable e) {
+            streamSessions.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public int importBots(List<Bot> bots) throws SQLException, InvalidInputException {
+        long start = System.nanoTime();
+        try {
+            int result = super.importBots(bots);
+            importBots.success(start);
+            return result;
+        } catch (Throwable e) {
+            importBots.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public int importUsers(List<User> users) throws SQLException, InvalidInputException {
+        long start = System.nanoTime();
+        try {
+            int result = super.importUsers(users);
+            importUsers.success(start);
+            return result;
+        } catch (Throwable e) {
+            importUsers.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public int importSessions(List<ChatSession> sessions) throws SQLException, InvalidInputException {
+        long start = System.nanoTime();
+        try {
+            int result = super.importSessions(sessions);
+            importSessions.success(start);
+            return result;
+        } catch (Throwable e) {
+            importSessions.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public ChatSession startChatSession(Bot bot, User user) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            ChatSession result = super.startChatSession(bot, user);
+            startChatSession.success(start);
+            return result;
+        } catch (Throwable e) {
+            startChatSession.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public ChatSession logChatSession(Bot bot, User user, Date startTime, int tokensUsed) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            ChatSession result = super.logChatSession(bot, user, startTime, tokensUsed);
+            logChatSession.success(start);
+            return result;
+        } catch (Throwable e) {
+            logChatSession.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public void updateSessionTokens(int id, int newTotalTokens)
+            throws SQLException, ResourceNotFoundException, InvalidInputException {
+        long start = System.nanoTime();
+        try {
+            super.updateSessionTokens(id, newTotalTokens);
+            updateSessionTokens.success(start);
+        } catch (Throwable e) {
+            updateSessionTokens.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public void addSessionTokens(int id, int delta)
+            throws SQLException, ResourceNotFoundException, InvalidInputException {
+        long start = System.nanoTime();
+        try {
+            super.addSessionTokens(id, delta);
+            addSessionTokens.success(start);
+        } catch (Throwable e) {
+            addSessionTokens.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public SessionBudgetTracker.Reservation reserveSessionTokens(int sessionId, int tokens)
+            throws SQLException, InvalidInputException {
+        long start = System.nanoTime();
+        try {
+            SessionBudgetTracker.Reservation result = super.reserveSessionTokens(sessionId, tokens);
+            reserveSessionTokens.success(start);
+            return result;
+        } catch (Throwable e) {
+            reserveSessionTokens.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public void commitSessionTokens(SessionBudgetTracker.Reservation reservation, int actualTokens) {
+        long start = System.nanoTime();
+        try {
+            super.commitSessionTokens(reservation, actualTokens);
+            commitSessionTokens.success(start);
+        } catch (Throwable e) {
+            commitSessionTokens.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public void releaseSessionTokens(SessionBudgetTracker.Reservation reservation) {
+        long start = System.nanoTime();
+        try {
+            super.releaseSessionTokens(reservation);
+            releaseSessionTokens.success(start);
+        } catch (Throwable e) {
+            releaseSessionTokens.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public void closeSessionBudget(int sessionId) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            super.closeSessionBudget(sessionId);
+            closeSessionBudget.success(start);
+        } catch (Throwable e) {
+            closeSessionBudget.failure(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public void deleteSession(int id) throws SQLException, ResourceNotFoundException {
+        long start = System.nanoTime();
+        try {
+            super.deleteSession(id);
+            deleteSession.success(start);
+        } catch (Throwable e) {
+            deleteSession.failure(start, e);
+            throw e;
+        }
+    }
+}
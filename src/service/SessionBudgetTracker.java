@@ -0,0 +1,462 @@
+package service;
+
+import exception.ResourceNotFoundException;
+import exception.TokenBudgetExceededException;
+import model.ChatSession;
+import repository.interfaces.SessionRepository;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Enforces Bot.tokenLimit for active sessions in memory.
+ *
+ * A session is loaded once (with its bot) on first use. After that,
+ * reserve/commit/release only take the session's own Budget lock, and an
+ * over-budget request is rejected without a database round trip. Committed
+ * usage goes back to chat_sessions.total_tokens_used as increments, either
+ * periodically or when the session is closed.
+ *
+ * A Budget is put into the map before its session is read, so there is only
+ * ever one Budget per session, and concurrent first uses wait for the one
+ * load. It leaves the map only while no reservation is in flight and all of
+ * its usage has been written, and it is marked evicted under its lock; a
+ * reserve that finds an evicted Budget loads the session again. So no commit
+ * can land on a Budget whose usage has already been handed back. Sessions
+ * idle for longer than the idle timeout are evicted the same way.
+ *
+ * There is no tracker-wide lock. Database writes for a session hold its
+ * Budget's write lock, never its monitor, so reservations go on while usage
+ * is being written. Lock order: the write lock, then the Budget's monitor.
+ */
+public class SessionBudgetTracker implements AutoCloseable {
+    private static final long DEFAULT_IDLE_MILLIS = 10 * 60_000L;
+
+    private final SessionRepository repository;
+    private final ConcurrentHashMap<Integer, Budget> budgets = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService reconciler;
+    private volatile long idleNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_IDLE_MILLIS);
+
+    private final LongAdder reservations = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public SessionBudgetTracker(SessionRepository repository, long reconcileIntervalMillis) {
+        this.repository = repository;
+        this.reconciler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "session-budget-reconciler");
+            t.setDaemon(true);
+            return t;
+        });
+        reconciler.scheduleWithFixedDelay(this::reconcileQuietly, reconcileIntervalMillis, reconcileIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    // Sessions without activity for this long are dropped on the next reconcile.
+    public void setIdleMillis(long idleMillis) {
+        if (idleMillis <= 0) {
+            throw new IllegalArgumentException("Idle timeout must be positive.");
+        }
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+    }
+
+    /**
+     * Holds back tokens against the session's bot limit until they are committed or released.
+     */
+    public Reservation reserve(int sessionId, int tokens) throws SQLException {
+        if (tokens <= 0) {
+            throw new IllegalArgumentException("Reserved tokens must be positive.");
+        }
+        while (true) {
+            Budget budget = budgetFor(sessionId);
+            synchronized (budget) {
+                if (budget.evicted) {
+                    continue;
+                }
+                long claimed = budget.claimed();
+                if (claimed + tokens > budget.limit) {
+                    rejections.increment();
+                    throw new TokenBudgetExceededException("Session " + sessionId + " would exceed its bot's limit of "
+                            + budget.limit + " tokens (" + claimed + " used or reserved, " + tokens + " requested).");
+                }
+                budget.reserved += tokens;
+                budget.inFlight++;
+                budget.closing = false;
+                budget.lastUsed = System.nanoTime();
+            }
+            reservations.increment();
+            return new Reservation(sessionId, tokens, budget);
+        }
+    }
+
+    /**
+     * Records the tokens actually used, at most what was reserved; the rest goes back to the budget.
+     */
+    public void commit(Reservation reservation, int actualTokens) {
+        if (actualTokens < 0 || actualTokens > reservation.tokens) {
+            throw new IllegalArgumentException("Committed tokens must be between 0 and the reserved "
+                    + reservation.tokens + ".");
+        }
+        if (!reservation.done.compareAndSet(false, true)) {
+            throw new IllegalStateException("Reservation was already committed or released.");
+        }
+        finish(reservation, actualTokens);
+    }
+
+    public void release(Reservation reservation) {
+        if (reservation.done.compareAndSet(false, true)) {
+            finish(reservation, 0);
+        }
+    }
+
+    private static void finish(Reservation reservation, int actualTokens) {
+        Budget budget = reservation.budget;
+        synchronized (budget) {
+            budget.reserved -= reservation.tokens;
+            budget.committed += actualTokens;
+            budget.inFlight--;
+            budget.lastUsed = System.nanoTime();
+        }
+    }
+
+    /**
+     * Reserves and commits in one step. Zero tokens only checks that the session exists.
+     */
+    public void consume(int sessionId, int tokens) throws SQLException {
+        if (tokens == 0) {
+            budgetFor(sessionId);
+            return;
+        }
+        commit(reserve(sessionId, tokens), tokens);
+    }
+
+    /**
+     * Sets the session's total usage, replacing whatever was committed before
+     * the call but not yet written. Raising it past the bot's limit is rejected
+     * like a reservation. Commits made while the update runs count on top of it.
+     */
+    public void setUsed(int sessionId, int totalTokens) throws SQLException {
+        while (true) {
+            Budget budget = budgetFor(sessionId);
+            budget.writes.lock();
+            try {
+                long replaced;
+                synchronized (budget) {
+                    if (budget.evicted) {
+                        continue;
+                    }
+                    long used = budget.base + budget.committed;
+                    if (totalTokens > used && totalTokens + budget.reserved > budget.limit) {
+                        rejections.increment();
+                        throw new TokenBudgetExceededException("Session " + sessionId
+                                + " would exceed its bot's limit of " + budget.limit + " tokens (" + totalTokens
+                                + " used, " + budget.reserved + " reserved).");
+                    }
+                    replaced = budget.committed;
+                    budget.pendingTotal = totalTokens;
+                    budget.pendingReplaced = replaced;
+                }
+                Boolean updated = null;
+                try {
+                    updated = repository.update(new ChatSession(sessionId, null, null, null, totalTokens));
+                } finally {
+                    synchronized (budget) {
+                        budget.pendingTotal = -1;
+                        if (Boolean.TRUE.equals(updated)) {
+                            budget.base = totalTokens;
+                            budget.committed -= replaced;
+                            budget.persisted = 0;
+                            budget.lastUsed = System.nanoTime();
+                        } else if (Boolean.FALSE.equals(updated)) {
+                            evict(sessionId, budget);
+                        }
+                    }
+                }
+                if (!updated) {
+                    throw new ResourceNotFoundException("Session with ID " + sessionId + " not found.");
+                }
+                return;
+            } finally {
+                budget.writes.unlock();
+            }
+        }
+    }
+
+    public long getRemaining(int sessionId) throws SQLException {
+        Budget budget = budgetFor(sessionId);
+        synchronized (budget) {
+            return budget.limit - budget.claimed();
+        }
+    }
+
+    /**
+     * Writes the session's outstanding usage and stops tracking it once no
+     * reservation is in flight; otherwise the next reconcile drops it.
+     */
+    public void closeSession(int sessionId) throws SQLException {
+        Budget budget = budgets.get(sessionId);
+        if (budget == null || !budget.isLoaded()) {
+            return;
+        }
+        budget.writes.lock();
+        try {
+            if (!flush(sessionId, budget)) {
+                synchronized (budget) {
+                    evict(sessionId, budget);
+                }
+                return;
+            }
+            synchronized (budget) {
+                if (budget.inFlight == 0 && budget.committed == budget.persisted) {
+                    evict(sessionId, budget);
+                } else {
+                    budget.closing = true;
+                }
+            }
+        } finally {
+            budget.writes.unlock();
+        }
+    }
+
+    // Caller holds the budget's write lock. Returns false if the session no longer exists.
+    private boolean flush(int sessionId, Budget budget) throws SQLException {
+        long committed;
+        long delta;
+        synchronized (budget) {
+            committed = budget.committed;
+            delta = committed - budget.persisted;
+        }
+        if (delta > 0) {
+            if (repository.addTokens(sessionId, (int) delta) == null) {
+                return false;
+            }
+            synchronized (budget) {
+                budget.persisted = committed;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops tracking a session that no longer exists, dropping its unwritten usage.
+     */
+    public void discard(int sessionId) {
+        Budget budget = budgets.get(sessionId);
+        if (budget != null) {
+            synchronized (budget) {
+                evict(sessionId, budget);
+            }
+        }
+    }
+
+    /**
+     * Pushes committed-but-unwritten usage of every tracked session in one
+     * batched update, then drops closed and idle sessions that are fully written.
+     * Sessions whose usage is being written by someone else are left for the next run.
+     */
+    public void reconcile() throws SQLException {
+        Map<Integer, Long> deltas = new HashMap<>();
+        Map<Budget, Long> snapshots = new HashMap<>();
+        try {
+            budgets.forEach((sessionId, budget) -> {
+                if (!budget.isLoaded() || !budget.writes.tryLock()) {
+                    return;
+                }
+                long committed;
+                long delta;
+                synchronized (budget) {
+                    committed = budget.committed;
+                    delta = committed - budget.persisted;
+                }
+                if (delta > 0) {
+                    deltas.put(sessionId, delta);
+                    snapshots.put(budget, committed);
+                } else {
+                    budget.writes.unlock();
+                }
+            });
+            if (!deltas.isEmpty()) {
+                repository.addTokensBatch(deltas);
+                snapshots.forEach((budget, committed) -> {
+                    synchronized (budget) {
+                        budget.persisted = committed;
+                    }
+                });
+            }
+        } finally {
+            snapshots.keySet().forEach(budget -> budget.writes.unlock());
+        }
+        long now = System.nanoTime();
+        budgets.forEach((sessionId, budget) -> {
+            if (!budget.isLoaded() || !budget.writes.tryLock()) {
+                return;
+            }
+            try {
+                synchronized (budget) {
+                    if (budget.inFlight == 0 && budget.committed == budget.persisted
+                            && (budget.closing || now - budget.lastUsed > idleNanos)) {
+                        evict(sessionId, budget);
+                    }
+                }
+            } finally {
+                budget.writes.unlock();
+            }
+        });
+    }
+
+    // Caller holds the budget's monitor.
+    private void evict(int sessionId, Budget budget) {
+        budget.evicted = true;
+        if (budgets.remove(sessionId, budget)) {
+            evictions.increment();
+        }
+    }
+
+    private void reconcileQuietly() {
+        try {
+            reconcile();
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("[BUDGET] Reconciliation failed, will retry: " + e.getMessage());
+        }
+    }
+
+    /**
+     * The session's Budget, loaded by whichever caller installs it; everyone
+     * else waits for that load. The Budget is installed before the read, so
+     * the read sees everything an earlier, evicted Budget wrote.
+     */
+    private Budget budgetFor(int sessionId) throws SQLException {
+        while (true) {
+            Budget budget = budgets.get(sessionId);
+            if (budget == null) {
+                Budget fresh = new Budget();
+                budget = budgets.putIfAbsent(sessionId, fresh);
+                if (budget == null) {
+                    load(sessionId, fresh);
+                    return fresh;
+                }
+            }
+            budget.awaitLoaded();
+            synchronized (budget) {
+                if (!budget.evicted) {
+                    return budget;
+                }
+            }
+        }
+    }
+
+    private void load(int sessionId, Budget budget) throws SQLException {
+        try {
+            ChatSession session = repository.getById(sessionId, SessionRepository.FetchMode.NAMES_ONLY);
+            if (session == null) {
+                throw new ResourceNotFoundException("Session with ID " + sessionId + " not found.");
+            }
+            synchronized (budget) {
+                budget.limit = session.getBot().getTokenLimit();
+                budget.base = session.getTotalTokensUsed();
+            }
+            budget.loaded.complete(null);
+        } catch (SQLException | RuntimeException e) {
+            synchronized (budget) {
+                evict(sessionId, budget);
+            }
+            budget.loaded.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        reconciler.shutdown();
+        try {
+            reconciler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        reconcileQuietly();
+    }
+
+    public int getActiveSessions() { return budgets.size(); }
+    public long getReservationCount() { return reservations.sum(); }
+    public long getRejectionCount() { return rejections.sum(); }
+    public long getEvictionCount() { return evictions.sum(); }
+
+    @Override
+    public String toString() {
+        return "activeSessions=" + getActiveSessions() + ", reservations=" + getReservationCount() +
+                ", rejected=" + getRejectionCount() + ", evicted=" + getEvictionCount();
+    }
+
+    public static final class Reservation {
+        private final int sessionId;
+        private final int tokens;
+        private final Budget budget;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private Reservation(int sessionId, int tokens, Budget budget) {
+            this.sessionId = sessionId;
+            this.tokens = tokens;
+            this.budget = budget;
+        }
+
+        public int getSessionId() { return sessionId; }
+        public int getTokens() { return tokens; }
+    }
+
+    // Counters are guarded by the Budget's monitor; limit and base are set once loaded completes.
+    private static final class Budget {
+        // Held while this session's usage is written to the database.
+        private final ReentrantLock writes = new ReentrantLock();
+        private final CompletableFuture<Void> loaded = new CompletableFuture<>();
+        private long limit;
+        // Usage in the database when loaded, or as last set by setUsed.
+        private long base;
+        // Usage committed since then.
+        private long committed;
+        // Tokens held by reservations not yet committed or released.
+        private long reserved;
+        private int inFlight;
+        private long lastUsed = System.nanoTime();
+        private boolean closing;
+        private boolean evicted;
+        // Part of committed that has been written back; changed only under the write lock.
+        private long persisted;
+        // While setUsed is writing: the new total, and the committed usage it replaces.
+        private long pendingTotal = -1;
+        private long pendingReplaced;
+
+        private boolean isLoaded() {
+            return loaded.isDone() && !loaded.isCompletedExceptionally();
+        }
+
+        private void awaitLoaded() throws SQLException {
+            try {
+                loaded.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof SQLException) {
+                    throw (SQLException) e.getCause();
+                }
+                throw (RuntimeException) e.getCause();
+            }
+        }
+
+        // Until a setUsed write is known to have succeeded or failed, count whichever total is higher.
+        private long claimed() {
+            long used = base + committed;
+            if (pendingTotal >= 0) {
+                used = Math.max(used, pendingTotal + committed - pendingReplaced);
+            }
+            return used + reserved;
+        }
+    }
+}
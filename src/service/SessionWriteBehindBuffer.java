@@ -0,0 +1,275 @@
+package service;
+
+import exception.DatabaseOperationException;
+import model.ChatSession;
+import repository.interfaces.CrudRepository;
+
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bounded queue in front of the session repository. Callers enqueue and return
+ * immediately; a background thread writes the queued sessions with createAll()
+ * once batchSize is reached or flushIntervalMillis has passed.
+ *
+ * submit() runs under the read lock and close() flips the state under the
+ * write lock, so once close() has started no session can slip into the queue
+ * behind the flusher's final drain. The flusher is never interrupted; it sees
+ * the closed state within one flush interval and drains the rest.
+ *
+ * Callers were told their sessions were accepted, so a failed write is not
+ * simply dropped: transient errors (lost connection, deadlock, serialization
+ * failure) are retried, and a batch that fails for any other reason is split
+ * in halves until only the rows that fail on their own are left. Those are
+ * logged and counted as failed.
+ */
+public class SessionWriteBehindBuffer implements AutoCloseable {
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_BACKOFF_MILLIS = 200;
+
+    public enum OverflowPolicy {
+        /** Wait up to the offer timeout for space, then fail the call. */
+        BLOCK,
+        /** Drop the session and count it. */
+        DROP
+    }
+
+    private final CrudRepository<ChatSession> repository;
+    private final BlockingQueue<ChatSession> queue;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final OverflowPolicy overflowPolicy;
+    private final long offerTimeoutMillis;
+    private final Thread flusher;
+    private volatile boolean running = true;
+    private final ReadWriteLock stateLock = new ReentrantReadWriteLock();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+    private final LongAdder failedRows = new LongAdder();
+    private final LongAdder flushCount = new LongAdder();
+    private final LongAdder totalFlushNanos = new LongAdder();
+    private final AtomicLong lastFlushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+
+    public SessionWriteBehindBuffer(CrudRepository<ChatSession> repository, int capacity, int batchSize,
+                                    long flushIntervalMillis, OverflowPolicy overflowPolicy) {
+        this(repository, capacity, batchSize, flushIntervalMillis, overflowPolicy, 1_000);
+    }
+
+    public SessionWriteBehindBuffer(CrudRepository<ChatSession> repository, int capacity, int batchSize,
+                                    long flushIntervalMillis, OverflowPolicy overflowPolicy,
+                                    long offerTimeoutMillis) {
+        if (capacity <= 0 || batchSize <= 0 || flushIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Capacity, batch size and flush interval must be positive.");
+        }
+        this.repository = repository;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.overflowPolicy = overflowPolicy;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+
+        this.flusher = new Thread(this::runFlusher, "session-write-behind");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * @return false if the session was shed because the queue was full (DROP policy)
+     */
+    public boolean submit(ChatSession session) {
+        stateLock.readLock().lock();
+        try {
+            if (!running) {
+                throw new IllegalStateException("Session write-behind buffer is closed.");
+            }
+            return enqueue(session);
+        } finally {
+            stateLock.readLock().unlock();
+        }
+    }
+
+    private boolean enqueue(ChatSession session) {
+        boolean accepted;
+        if (overflowPolicy == OverflowPolicy.BLOCK) {
+            try {
+                accepted = queue.offer(session, offerTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DatabaseOperationException("Interrupted while queueing chat session.", e);
+            }
+            if (!accepted) {
+                dropped.increment();
+                throw new DatabaseOperationException("Session log queue is full (" + queue.size()
+                        + " pending); try again later.");
+            }
+        } else {
+            accepted = queue.offer(session);
+            if (!accepted) {
+                dropped.increment();
+                return false;
+            }
+        }
+        submitted.increment();
+        return true;
+    }
+
+    /**
+     * Stops accepting sessions and blocks until everything already queued is written.
+     */
+    @Override
+    public void close() {
+        stateLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runFlusher() {
+        List<ChatSession> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                if (running) {
+                    collectBatch(batch);
+                } else {
+                    queue.drainTo(batch, batchSize);
+                }
+            } catch (InterruptedException e) {
+                // Shutdown never interrupts; a stray interrupt only ends this wait.
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void collectBatch(List<ChatSession> batch) throws InterruptedException {
+        ChatSession first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0) {
+                return;
+            }
+            ChatSession next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<ChatSession> batch) {
+        // A pending interrupt would make the pool refuse every connection and fail the batch.
+        Thread.interrupted();
+        long start = System.nanoTime();
+        try {
+            write(batch);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            flushCount.increment();
+            totalFlushNanos.add(elapsed);
+            lastFlushNanos.set(elapsed);
+            maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+        }
+    }
+
+    private void write(List<ChatSession> rows) {
+        Exception failure;
+        int attempt = 1;
+        while (true) {
+            try {
+                repository.createAll(rows);
+                flushedRows.add(rows.size());
+                return;
+            } catch (SQLException | RuntimeException e) {
+                failure = e;
+            }
+            if (!isTransient(failure) || attempt == MAX_ATTEMPTS) {
+                break;
+            }
+            pause(RETRY_BACKOFF_MILLIS * attempt++);
+        }
+        if (rows.size() > 1 && !isTransient(failure)) {
+            // createAll is one transaction, so one bad row (say, a bot deleted while queued) fails them all.
+            int mid = rows.size() / 2;
+            write(rows.subList(0, mid));
+            write(rows.subList(mid, rows.size()));
+            return;
+        }
+        failedRows.add(rows.size());
+        if (rows.size() == 1) {
+            ChatSession session = rows.get(0);
+            System.err.println("[WRITE-BEHIND] Dropped session for bot " + session.getBot().getId() + ", user "
+                    + session.getUser().getId() + ": " + failure.getMessage());
+        } else {
+            System.err.println("[WRITE-BEHIND] Failed to write " + rows.size() + " sessions after " + attempt
+                    + " attempts: " + failure.getMessage());
+        }
+    }
+
+    private static boolean isTransient(Exception e) {
+        if (e instanceof SQLTransientException || e instanceof SQLRecoverableException) {
+            return true;
+        }
+        String state = e instanceof SQLException ? ((SQLException) e).getSQLState() : null;
+        // Connection errors, transaction rollbacks (deadlock, serialization), insufficient resources.
+        return state != null && (state.startsWith("08") || state.startsWith("40") || state.startsWith("53"));
+    }
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            // Shutdown never interrupts; retry right away.
+        }
+    }
+
+    public int getQueueDepth() { return queue.size(); }
+    public long getSubmittedCount() { return submitted.sum(); }
+    public long getDroppedCount() { return dropped.sum(); }
+    public long getFlushedCount() { return flushedRows.sum(); }
+    public long getFailedCount() { return failedRows.sum(); }
+    public long getFlushCount() { return flushCount.sum(); }
+    public double getLastFlushLatencyMillis() { return lastFlushNanos.get() / 1_000_000.0; }
+    public double getMaxFlushLatencyMillis() { return maxFlushNanos.get() / 1_000_000.0; }
+
+    public double getAverageFlushLatencyMillis() {
+        long flushes = flushCount.sum();
+        return flushes == 0 ? 0 : totalFlushNanos.sum() / 1_000_000.0 / flushes;
+    }
+
+    @Override
+    public String toString() {
+        return "queueDepth=" + getQueueDepth() + ", submitted=" + getSubmittedCount() +
+                ", flushed=" + getFlushedCount() + ", failed=" + getFailedCount() +
+                ", dropped=" + getDroppedCount() + ", flushes=" + getFlushCount() +
+                String.format(", flushMs(avg/last/max)=%.2f/%.2f/%.2f",
+                        getAverageFlushLatencyMillis(), getLastFlushLatencyMillis(), getMaxFlushLatencyMillis());
+    }
+}
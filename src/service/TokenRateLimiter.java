@@ -0,0 +1,144 @@
+package service;
+
+import exception.RateLimitExceededException;
+import model.User;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-user token bucket, with separate refill rate and burst size for premium
+ * and free users.
+ *
+ * Each bucket is a single AtomicLong holding its "theoretical arrival time"
+ * (the GCRA form of a token bucket): a request for n tokens pushes it forward
+ * by n refill intervals and is allowed if it stays within the burst window of
+ * now. Updates are a CAS on that one value, so there is no lock at all, and
+ * buckets of different users never contend. Buckets that have been full for
+ * longer than the idle timeout are evicted in the background.
+ */
+public class TokenRateLimiter implements AutoCloseable {
+
+    public enum Tier { FREE, PREMIUM }
+
+    private final long[] nanosPerToken = new long[2];
+    private final long[] burstTokens = new long[2];
+    private final long idleNanos;
+    private final ConcurrentHashMap<Integer, Bucket> buckets = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sweeper;
+
+    private final LongAdder[] allowed = {new LongAdder(), new LongAdder()};
+    private final LongAdder[] rejected = {new LongAdder(), new LongAdder()};
+    private final LongAdder evicted = new LongAdder();
+
+    public TokenRateLimiter(double freeTokensPerSecond, long freeBurst,
+                            double premiumTokensPerSecond, long premiumBurst, long idleEvictMillis) {
+        configure(Tier.FREE, freeTokensPerSecond, freeBurst);
+        configure(Tier.PREMIUM, premiumTokensPerSecond, premiumBurst);
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleEvictMillis);
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "rate-limiter-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1_000, idleEvictMillis / 2);
+        sweeper.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private void configure(Tier tier, double tokensPerSecond, long burst) {
+        if (tokensPerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("Rate and burst must be positive for tier " + tier + ".");
+        }
+        nanosPerToken[tier.ordinal()] = Math.max(1, Math.round(1_000_000_000.0 / tokensPerSecond));
+        burstTokens[tier.ordinal()] = burst;
+    }
+
+    /**
+     * Takes tokens from the user's bucket or throws. A request bigger than the burst
+     * size is charged as a full bucket, so it can still go through once the bucket is full.
+     */
+    public void acquire(User user, int tokens) {
+        Tier tier = user.isPremium() ? Tier.PREMIUM : Tier.FREE;
+        long wait = tryAcquire(user.getId(), tier, Math.max(1, tokens));
+        if (wait > 0) {
+            throw new RateLimitExceededException("Rate limit exceeded for user " + user.getId()
+                    + " (" + tier + " tier); retry in " + TimeUnit.NANOSECONDS.toMillis(wait) + " ms.",
+                    TimeUnit.NANOSECONDS.toMillis(wait));
+        }
+    }
+
+    /**
+     * @return 0 if allowed, otherwise the nanoseconds until the request would fit
+     */
+    public long tryAcquire(int userId, Tier tier, long tokens) {
+        int t = tier.ordinal();
+        long interval = nanosPerToken[t];
+        long window = burstTokens[t] * interval;
+        long cost = Math.min(tokens, burstTokens[t]) * interval;
+
+        Bucket bucket = bucketFor(userId, tier);
+        while (true) {
+            long now = System.nanoTime();
+            long tat = bucket.tat.get();
+            long next = Math.max(tat, now) + cost;
+            long ahead = next - now;
+            if (ahead > window) {
+                rejected[t].increment();
+                return ahead - window;
+            }
+            if (bucket.tat.compareAndSet(tat, next)) {
+                allowed[t].increment();
+                return 0;
+            }
+        }
+    }
+
+    private Bucket bucketFor(int userId, Tier tier) {
+        Bucket bucket = buckets.get(userId);
+        if (bucket != null && bucket.tier == tier) {
+            return bucket;
+        }
+        // First request, or the user changed tier: start from a full bucket of the new tier.
+        return buckets.compute(userId, (id, old) -> old != null && old.tier == tier ? old : new Bucket(tier));
+    }
+
+    private void evictIdle() {
+        long now = System.nanoTime();
+        buckets.forEach((userId, bucket) -> {
+            if (now - bucket.tat.get() > idleNanos && buckets.remove(userId, bucket)) {
+                evicted.increment();
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+    }
+
+    public long getAllowedCount(Tier tier) { return allowed[tier.ordinal()].sum(); }
+    public long getRejectedCount(Tier tier) { return rejected[tier.ordinal()].sum(); }
+    public long getEvictedCount() { return evicted.sum(); }
+    public int getActiveBuckets() { return buckets.size(); }
+
+    @Override
+    public String toString() {
+        return "buckets=" + getActiveBuckets() + ", evicted=" + getEvictedCount() +
+                ", free(allowed/rejected)=" + getAllowedCount(Tier.FREE) + "/" + getRejectedCount(Tier.FREE) +
+                ", premium(allowed/rejected)=" + getAllowedCount(Tier.PREMIUM) + "/" + getRejectedCount(Tier.PREMIUM);
+    }
+
+    private static final class Bucket {
+        private final Tier tier;
+        // tat <= now means the bucket is full.
+        private final AtomicLong tat = new AtomicLong(System.nanoTime());
+
+        private Bucket(Tier tier) {
+            this.tier = tier;
+        }
+    }
+}
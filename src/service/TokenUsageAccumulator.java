@@ -0,0 +1,128 @@
+package service;
+
+import repository.interfaces.SessionRepository;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects per-session token deltas in memory and writes them periodically
+ * as one batched UPDATE, so chatty sessions do not hit the database per message.
+ *
+ * Each session has its own AtomicLong counter. A flush retires a counter by
+ * swapping in SEALED and removing it from the map; a writer that sees SEALED
+ * retries against the fresh counter, so no increment is lost between the
+ * swap and the removal.
+ */
+public class TokenUsageAccumulator implements AutoCloseable {
+    private static final long SEALED = Long.MIN_VALUE;
+
+    private final SessionRepository repository;
+    private final ConcurrentHashMap<Integer, AtomicLong> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder flushedSessions = new LongAdder();
+    private final LongAdder flushCount = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+
+    public TokenUsageAccumulator(SessionRepository repository, long flushIntervalMillis) {
+        if (flushIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Flush interval must be positive.");
+        }
+        this.repository = repository;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "token-usage-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    public void add(int sessionId, long delta) {
+        recorded.increment();
+        accumulate(sessionId, delta);
+    }
+
+    private void accumulate(int sessionId, long delta) {
+        while (true) {
+            AtomicLong counter = pending.computeIfAbsent(sessionId, id -> new AtomicLong());
+            long current = counter.get();
+            if (current == SEALED) {
+                Thread.onSpinWait();
+                continue;
+            }
+            if (counter.compareAndSet(current, current + delta)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes every pending delta now. Deltas that fail to write are put back.
+     */
+    public synchronized void flush() throws SQLException {
+        Map<Integer, Long> batch = new HashMap<>();
+        for (Map.Entry<Integer, AtomicLong> entry : pending.entrySet()) {
+            AtomicLong counter = entry.getValue();
+            long delta = counter.getAndSet(SEALED);
+            pending.remove(entry.getKey(), counter);
+            if (delta != 0) {
+                batch.put(entry.getKey(), delta);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        flushCount.increment();
+        try {
+            repository.addTokensBatch(batch);
+            flushedSessions.add(batch.size());
+        } catch (SQLException | RuntimeException e) {
+            failedFlushes.increment();
+            batch.forEach(this::accumulate);
+            throw e;
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("[TOKEN ACCUMULATOR] Flush failed, will retry: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+    }
+
+    public int getPendingSessions() { return pending.size(); }
+    public long getRecordedCount() { return recorded.sum(); }
+    public long getFlushedSessions() { return flushedSessions.sum(); }
+    public long getFlushCount() { return flushCount.sum(); }
+    public long getFailedFlushes() { return failedFlushes.sum(); }
+
+    @Override
+    public String toString() {
+        return "pendingSessions=" + getPendingSessions() + ", recorded=" + getRecordedCount() +
+                ", flushes=" + getFlushCount() + ", flushedSessions=" + getFlushedSessions() +
+                ", failedFlushes=" + getFailedFlushes();
+    }
+}
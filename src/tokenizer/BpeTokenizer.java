@@ -0,0 +1,326 @@
+package tokenizer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import utils.LruMap;
+
+/**
+ * Byte-level byte-pair-encoding tokenizer.
+ *
+ * Text is split into pieces (a run of letters and combining marks, digits (max 3),
+ * other symbols or whitespace, with a single leading space glued to the following
+ * run), each
+ * piece is turned into its UTF-8 bytes and adjacent tokens are merged by rank
+ * until no known pair is left. Pair ranks live in an open-addressing long->int
+ * table and the per-thread scratch buffer is reused, so counting does not
+ * allocate once the buffer has grown to the longest piece.
+ */
+public final class BpeTokenizer implements TokenCounter {
+    private static final int BYTE_TOKENS = 256;
+    private static final int NO_RANK = Integer.MAX_VALUE;
+    private static final long EMPTY = -1L;
+    private static final int MAX_DIGIT_RUN = 3;
+    private static final int DEFAULT_CACHE_ENTRIES = 4_096;
+    private static final int CACHE_STRIPES = 16;
+
+    private static final int LETTER = 0;
+    private static final int DIGIT = 1;
+    private static final int SPACE = 2;
+    private static final int OTHER = 3;
+
+    private final long[] pairKeys;
+    private final int[] pairRanks;
+    private final int mask;
+    private final int mergeCount;
+
+    // Striped so concurrent counters rarely contend; each stripe evicts its least recently used entry.
+    private final LruMap<String, Integer>[] countCache;
+    private final ThreadLocal<int[][]> scratch = ThreadLocal.withInitial(() -> new int[][]{new int[256]});
+
+    private BpeTokenizer(int[] lefts, int[] rights, int mergeCount, int maxCacheEntries) {
+        int capacity = Integer.highestOneBit(Math.max(16, mergeCount * 2 - 1)) << 1;
+        this.pairKeys = new long[capacity];
+        this.pairRanks = new int[capacity];
+        this.mask = capacity - 1;
+        this.mergeCount = mergeCount;
+        Arrays.fill(pairKeys, EMPTY);
+        for (int rank = 0; rank < mergeCount; rank++) {
+            long key = pairKey(lefts[rank], rights[rank]);
+            int slot = slot(key);
+            while (pairKeys[slot] != EMPTY && pairKeys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (pairKeys[slot] == EMPTY) {
+                pairKeys[slot] = key;
+                pairRanks[slot] = rank;
+            }
+        }
+        this.countCache = maxCacheEntries > 0 ? newCache(maxCacheEntries) : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static LruMap<String, Integer>[] newCache(int maxEntries) {
+        int stripes = Math.min(CACHE_STRIPES, maxEntries);
+        LruMap<String, Integer>[] cache = (LruMap<String, Integer>[]) new LruMap<?, ?>[stripes];
+        for (int i = 0; i < stripes; i++) {
+            cache[i] = new LruMap<>((maxEntries + stripes - 1) / stripes);
+        }
+        return cache;
+    }
+
+    public static BpeTokenizer load(Path mergesFile) throws IOException {
+        try (Reader reader = Files.newBufferedReader(mergesFile, StandardCharsets.UTF_8)) {
+            return load(reader, DEFAULT_CACHE_ENTRIES);
+        }
+    }
+
+    public static BpeTokenizer load(InputStream in) throws IOException {
+        return load(new InputStreamReader(in, StandardCharsets.UTF_8), DEFAULT_CACHE_ENTRIES);
+    }
+
+    /**
+     * @param maxCacheEntries size of the text -> count cache; 0 disables it
+     */
+    public static BpeTokenizer load(Reader source, int maxCacheEntries) throws IOException {
+        int[] lefts = new int[1024];
+        int[] rights = new int[1024];
+        int count = 0;
+        BufferedReader reader = source instanceof BufferedReader ? (BufferedReader) source : new BufferedReader(source);
+        String line;
+        int lineNo = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNo++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int space = line.indexOf(' ');
+            if (space < 0) {
+                throw new IOException("Malformed merge on line " + lineNo + ": " + line);
+            }
+            int left = Integer.parseInt(line.substring(0, space));
+            int right = Integer.parseInt(line.substring(space + 1).trim());
+            int next = BYTE_TOKENS + count;
+            if (left < 0 || right < 0 || left >= next || right >= next) {
+                throw new IOException("Merge on line " + lineNo + " refers to an unknown token.");
+            }
+            if (count == lefts.length) {
+                lefts = Arrays.copyOf(lefts, count * 2);
+                rights = Arrays.copyOf(rights, count * 2);
+            }
+            lefts[count] = left;
+            rights[count] = right;
+            count++;
+        }
+        return new BpeTokenizer(lefts, rights, count, maxCacheEntries);
+    }
+
+    public int vocabularySize() {
+        return BYTE_TOKENS + mergeCount;
+    }
+
+    /**
+     * Token count for the given text. Results are cached per string so unchanged
+     * prompts are only encoded once.
+     */
+    @Override
+    public int countTokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        if (countCache == null) {
+            return countTokensUncached(text);
+        }
+        int h = text.hashCode();
+        LruMap<String, Integer> stripe = countCache[((h ^ (h >>> 16)) & 0x7FFFFFFF) % countCache.length];
+        Integer cached;
+        synchronized (stripe) {
+            cached = stripe.get(text);
+        }
+        if (cached != null) {
+            return cached;
+        }
+        int count = countTokensUncached(text);
+        synchronized (stripe) {
+            stripe.put(text, count);
+        }
+        return count;
+    }
+
+    public int countTokensUncached(CharSequence text) {
+        int total = 0;
+        int length = text.length();
+        int pos = 0;
+        while (pos < length) {
+            int end = pieceEnd(text, pos);
+            total += encodePiece(text, pos, end);
+            pos = end;
+        }
+        return total;
+    }
+
+    public int[] encode(CharSequence text) {
+        int[] out = new int[Math.max(16, text.length() / 3)];
+        int size = 0;
+        int length = text.length();
+        int pos = 0;
+        while (pos < length) {
+            int end = pieceEnd(text, pos);
+            int n = encodePiece(text, pos, end);
+            int[] tokens = scratch.get()[0];
+            if (size + n > out.length) {
+                out = Arrays.copyOf(out, Math.max(out.length * 2, size + n));
+            }
+            System.arraycopy(tokens, 0, out, size, n);
+            size += n;
+            pos = end;
+        }
+        return Arrays.copyOf(out, size);
+    }
+
+    /**
+     * Encodes text[start, end) into the thread's scratch buffer and returns how many tokens it produced.
+     */
+    private int encodePiece(CharSequence text, int start, int end) {
+        int[][] holder = scratch.get();
+        int[] tokens = holder[0];
+        int maxBytes = (end - start) * 3;
+        if (tokens.length < maxBytes) {
+            tokens = new int[Integer.highestOneBit(maxBytes) << 1];
+            holder[0] = tokens;
+        }
+
+        int n = 0;
+        for (int i = start; i < end; i++) {
+            int c = text.charAt(i);
+            if (Character.isHighSurrogate((char) c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                c = Character.toCodePoint((char) c, text.charAt(++i));
+            }
+            if (c < 0x80) {
+                tokens[n++] = c;
+            } else if (c < 0x800) {
+                tokens[n++] = 0xC0 | (c >> 6);
+                tokens[n++] = 0x80 | (c & 0x3F);
+            } else if (c < 0x10000) {
+                tokens[n++] = 0xE0 | (c >> 12);
+                tokens[n++] = 0x80 | ((c >> 6) & 0x3F);
+                tokens[n++] = 0x80 | (c & 0x3F);
+            } else {
+                tokens[n++] = 0xF0 | (c >> 18);
+                tokens[n++] = 0x80 | ((c >> 12) & 0x3F);
+                tokens[n++] = 0x80 | ((c >> 6) & 0x3F);
+                tokens[n++] = 0x80 | (c & 0x3F);
+            }
+        }
+        return applyMerges(tokens, n);
+    }
+
+    private int applyMerges(int[] tokens, int n) {
+        while (n > 1) {
+            int bestRank = NO_RANK;
+            int bestIndex = -1;
+            for (int i = 0; i < n - 1; i++) {
+                int rank = rank(tokens[i], tokens[i + 1]);
+                if (rank < bestRank) {
+                    bestRank = rank;
+                    bestIndex = i;
+                }
+            }
+            if (bestIndex < 0) {
+                break;
+            }
+
+            int left = tokens[bestIndex];
+            int right = tokens[bestIndex + 1];
+            int merged = BYTE_TOKENS + bestRank;
+            int write = bestIndex;
+            int read = bestIndex;
+            while (read < n) {
+                if (read + 1 < n && tokens[read] == left && tokens[read + 1] == right) {
+                    tokens[write++] = merged;
+                    read += 2;
+                } else {
+                    tokens[write++] = tokens[read++];
+                }
+            }
+            n = write;
+        }
+        return n;
+    }
+
+    private int rank(int left, int right) {
+        long key = pairKey(left, right);
+        int slot = slot(key);
+        while (true) {
+            long found = pairKeys[slot];
+            if (found == key) {
+                return pairRanks[slot];
+            }
+            if (found == EMPTY) {
+                return NO_RANK;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private static long pairKey(int left, int right) {
+        return ((long) left << 32) | (right & 0xFFFFFFFFL);
+    }
+
+    private static int pieceEnd(CharSequence text, int start) {
+        int length = text.length();
+        int i = start;
+        char c = text.charAt(i);
+        int cls = charClass(c);
+        if (c == ' ' && i + 1 < length && charClass(text.charAt(i + 1)) != SPACE) {
+            i++;
+            cls = charClass(text.charAt(i));
+        }
+        if (cls == SPACE) {
+            while (i < length && charClass(text.charAt(i)) == SPACE) {
+                if (i > start && text.charAt(i) == ' ' && i + 1 < length && charClass(text.charAt(i + 1)) != SPACE) {
+                    break;
+                }
+                i++;
+            }
+        } else if (cls == DIGIT) {
+            int digits = 0;
+            while (i < length && digits < MAX_DIGIT_RUN && charClass(text.charAt(i)) == DIGIT) {
+                i++;
+                digits++;
+            }
+        } else {
+            while (i < length && charClass(text.charAt(i)) == cls) {
+                i++;
+            }
+        }
+        return i;
+    }
+
+    private static int charClass(char c) {
+        if (Character.isLetter(c)) return LETTER;
+        if (Character.isDigit(c)) return DIGIT;
+        if (Character.isWhitespace(c) || Character.isSpaceChar(c)) return SPACE;
+        switch (Character.getType(c)) {
+            // Vowel signs and diacritics (Devanagari, Thai, Arabic harakat...) stay inside their word.
+            case Character.NON_SPACING_MARK:
+            case Character.COMBINING_SPACING_MARK:
+            case Character.ENCLOSING_MARK:
+                return LETTER;
+            default:
+                return OTHER;
+        }
+    }
+}
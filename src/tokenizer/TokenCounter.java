@@ -0,0 +1,5 @@
+package tokenizer;
+
+public interface TokenCounter {
+    int countTokens(String text);
+}
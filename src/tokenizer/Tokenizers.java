@@ -0,0 +1,87 @@
+package tokenizer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds the process-wide token counter used by Bot and User.
+ * The merges file is looked up in this order: the "tokenizer.merges" system property,
+ * /bpe_merges.txt on the classpath, resources/bpe_merges.txt next to the compiled
+ * classes (or one level up), then resources/bpe_merges.txt relative to the working
+ * directory (or its parent, when started from src/).
+ */
+public final class Tokenizers {
+    private static final String MERGES_FILE = "bpe_merges.txt";
+
+    private static volatile TokenCounter defaultCounter;
+
+    private Tokenizers() {
+    }
+
+    public static TokenCounter getDefault() {
+        TokenCounter counter = defaultCounter;
+        if (counter == null) {
+            synchronized (Tokenizers.class) {
+                counter = defaultCounter;
+                if (counter == null) {
+                    counter = loadDefault();
+                    defaultCounter = counter;
+                }
+            }
+        }
+        return counter;
+    }
+
+    public static void setDefault(TokenCounter counter) {
+        defaultCounter = counter;
+    }
+
+    private static TokenCounter loadDefault() {
+        try {
+            String configured = System.getProperty("tokenizer.merges");
+            if (configured != null) {
+                return BpeTokenizer.load(Paths.get(configured));
+            }
+            try (InputStream in = Tokenizers.class.getResourceAsStream("/" + MERGES_FILE)) {
+                if (in != null) {
+                    return BpeTokenizer.load(in);
+                }
+            }
+            for (Path candidate : candidates()) {
+                if (Files.isRegularFile(candidate)) {
+                    return BpeTokenizer.load(candidate);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[TOKENIZER] Could not load BPE merges: " + e.getMessage());
+        }
+        System.err.println("[TOKENIZER] " + MERGES_FILE + " not found, falling back to length/4 estimate.");
+        return text -> text == null ? 0 : text.length() / 4;
+    }
+
+    private static List<Path> candidates() {
+        List<Path> candidates = new ArrayList<>();
+        try {
+            CodeSource source = Tokenizers.class.getProtectionDomain().getCodeSource();
+            if (source != null) {
+                Path classes = Paths.get(source.getLocation().toURI()).toAbsolutePath();
+                // A class directory (out/) or a jar; either way resources/ is usually beside it or one level up.
+                for (Path dir = classes.getParent(); dir != null && candidates.size() < 2; dir = dir.getParent()) {
+                    candidates.add(dir.resolve("resources").resolve(MERGES_FILE));
+                }
+            }
+        } catch (URISyntaxException | RuntimeException e) {
+            // No usable code source location; the working directory is still tried.
+        }
+        candidates.add(Paths.get("resources", MERGES_FILE));
+        candidates.add(Paths.get("..", "resources", MERGES_FILE));
+        return candidates;
+    }
+}
@@ -0,0 +1,101 @@
+package transfer;
+
+import exception.DatabaseOperationException;
+import model.BaseEntity;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Writes every row of one table to a JSONL or CSV file, in id order, from a
+ * database cursor, so neither side holds more than a fetch and a write buffer.
+ *
+ * Every progress interval the file is synced and a checkpoint records its
+ * length and the last id in it. After a failure, running the same export again
+ * cuts the file back to the checkpointed length and continues with the rows
+ * after that id. The checkpoint is deleted once the export completes.
+ */
+public class BulkExporter<T extends BaseEntity> {
+    private static final String LABEL = "[EXPORT]";
+    private static final int PROGRESS_CHECK_ROWS = 1_024;
+
+    @FunctionalInterface
+    public interface Source<T> {
+        // Rows with id > afterId in id order; the stream is closed by the exporter.
+        Stream<T> open(int afterId) throws SQLException;
+    }
+
+    private final RecordCodec<T> codec;
+    private final Source<T> source;
+    private long progressIntervalMillis = 5_000;
+
+    public BulkExporter(RecordCodec<T> codec, Source<T> source) {
+        this.codec = codec;
+        this.source = source;
+    }
+
+    public void setProgressInterval(long millis) {
+        this.progressIntervalMillis = millis;
+    }
+
+    public TransferResult run(Path output) throws IOException, SQLException {
+        Format format = Format.forPath(output);
+        String job = "export " + codec.getName() + " " + format;
+        Checkpoint checkpoint = Checkpoint.load(output);
+        if (checkpoint != null && !job.equals(checkpoint.job)) {
+            throw new IOException("Checkpoint " + Checkpoint.pathFor(output) + " belongs to a different export; "
+                    + "delete it to start over.");
+        }
+
+        long records = checkpoint == null ? 0 : checkpoint.records;
+        long resumedFrom = records;
+        int lastId = checkpoint == null ? 0 : (int) checkpoint.lastId;
+        Progress progress = new Progress(LABEL + " " + codec.getName() + ":", progressIntervalMillis, records);
+
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            if (checkpoint != null) {
+                if (channel.size() < checkpoint.bytes) {
+                    throw new IOException(output + " is shorter than its checkpoint; delete "
+                            + Checkpoint.pathFor(output) + " to start over.");
+                }
+                channel.truncate(checkpoint.bytes);
+                channel.position(checkpoint.bytes);
+                System.out.println(String.format(Locale.ROOT, "%s %s: resuming after record %,d (id %d)", LABEL,
+                        codec.getName(), records, lastId));
+            } else {
+                channel.truncate(0);
+            }
+
+            try (RecordWriter writer = RecordWriter.open(channel, format, codec, checkpoint == null);
+                 Stream<T> rows = source.open(lastId)) {
+                Iterator<T> it = rows.iterator();
+                try {
+                    while (it.hasNext()) {
+                        T entity = it.next();
+                        writer.write(codec.toValues(entity));
+                        lastId = entity.getId();
+                        if (++records % PROGRESS_CHECK_ROWS == 0 && progress.isDue()) {
+                            new Checkpoint(job, records, 0, lastId, writer.sync()).save(output);
+                            progress.report(records, " written");
+                        }
+                    }
+                    writer.sync();
+                } catch (DatabaseOperationException e) {
+                    // The cursor failed mid-way; everything written so far is good, so checkpoint it.
+                    new Checkpoint(job, records, 0, lastId, writer.sync()).save(output);
+                    System.out.println(String.format(Locale.ROOT, "%s %s: stopped: %s. %,d records are written; "
+                            + "run the same export again to resume.", LABEL, codec.getName(), e.getMessage(), records));
+                    throw e;
+                }
+            }
+        }
+        Checkpoint.delete(output);
+        return new TransferResult(codec.getName(), false, records, 0, resumedFrom, progress.elapsedNanos());
+    }
+}
@@ -0,0 +1,243 @@
+package transfer;
+
+import exception.InvalidInputException;
+import model.BaseEntity;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streams a JSONL or CSV file into storage. One thread reads, parses and
+ * validates records; full batches go to a pool of workers that write them.
+ * At most two batches per worker are in memory at a time, so memory depends
+ * on the batch size and not on the size of the file.
+ *
+ * Workers finish batches in any order, but progress is committed in file
+ * order: the checkpoint only ever covers the longest run of finished batches
+ * from the start of the file. A rerun skips exactly those records and writes
+ * the rest again, which is safe because the BatchWriter must skip rows that
+ * already exist unchanged and reject ids stored with other values (as
+ * CrudRepository.importAll does).
+ */
+public class BulkImporter<T extends BaseEntity> {
+    private static final String LABEL = "[IMPORT]";
+    private static final AtomicInteger THREAD_IDS = new AtomicInteger();
+
+    @FunctionalInterface
+    public interface Validator<T> {
+        void validate(T entity) throws InvalidInputException;
+    }
+
+    @FunctionalInterface
+    public interface BatchWriter<T> {
+        // Writes the batch, skipping identical rows that already exist; returns the number of rows inserted.
+        int write(List<T> batch) throws SQLException, InvalidInputException;
+    }
+
+    private final RecordCodec<T> codec;
+    private final Validator<T> validator;
+    private final BatchWriter<T> writer;
+    private final int workers;
+    private final int batchSize;
+    private long progressIntervalMillis = 5_000;
+
+    public BulkImporter(RecordCodec<T> codec, Validator<T> validator, BatchWriter<T> writer, int workers, int batchSize) {
+        if (workers <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Workers and batch size must be positive.");
+        }
+        this.codec = codec;
+        this.validator = validator;
+        this.writer = writer;
+        this.workers = workers;
+        this.batchSize = batchSize;
+    }
+
+    public void setProgressInterval(long millis) {
+        this.progressIntervalMillis = millis;
+    }
+
+    /**
+     * Imports input, resuming from its checkpoint if there is one. On failure
+     * the checkpoint is kept and the original exception rethrown; running the
+     * same import again continues where it stopped. The checkpoint is deleted
+     * once the whole file is in.
+     */
+    public TransferResult run(Path input) throws IOException, SQLException, InvalidInputException, InterruptedException {
+        Format format = Format.forPath(input);
+        String job = "import " + codec.getName() + " " + format + " " + Files.size(input) + " "
+                + Files.getLastModifiedTime(input).toMillis();
+        Checkpoint checkpoint = Checkpoint.load(input);
+        if (checkpoint != null && !job.equals(checkpoint.job)) {
+            throw new InvalidInputException("Checkpoint " + Checkpoint.pathFor(input) + " belongs to a different import "
+                    + "or the file has changed since; delete it to start over (rows already imported are skipped).");
+        }
+        long resumeAt = checkpoint == null ? 0 : checkpoint.records;
+        Run run = new Run(input, job, resumeAt, checkpoint == null ? 0 : checkpoint.inserted);
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "bulk-import-" + THREAD_IDS.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        Semaphore inFlight = new Semaphore(workers * 2);
+        Exception readError = null;
+        try (RecordReader reader = RecordReader.open(input, format)) {
+            for (long i = 0; i < resumeAt; i++) {
+                if (!reader.skip()) {
+                    throw new InvalidInputException("Input is shorter than its checkpoint; delete "
+                            + Checkpoint.pathFor(input) + " to start over.");
+                }
+            }
+            if (resumeAt > 0) {
+                System.out.println(String.format(Locale.ROOT, "%s %s: resuming after record %,d", LABEL,
+                        codec.getName(), resumeAt));
+            }
+            long record = resumeAt;
+            long seq = 0;
+            List<T> batch = new ArrayList<>(batchSize);
+            Map<String, Object> fields;
+            while (run.failure == null && (fields = reader.next()) != null) {
+                record++;
+                try {
+                    T entity = codec.fromRecord(fields);
+                    validator.validate(entity);
+                    batch.add(entity);
+                } catch (InvalidInputException e) {
+                    throw new InvalidInputException("Record " + record + " (line " + reader.getLine() + "): "
+                            + e.getMessage());
+                }
+                if (batch.size() == batchSize) {
+                    submit(pool, inFlight, run, seq++, record, batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty() && run.failure == null) {
+                submit(pool, inFlight, run, seq, record, batch);
+            }
+        } catch (IOException | InvalidInputException | InterruptedException | RuntimeException e) {
+            readError = e;
+        } finally {
+            pool.shutdown();
+            while (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+                System.out.println(LABEL + " Waiting for batches in flight...");
+            }
+        }
+
+        Exception failure = readError != null ? readError : run.failure;
+        if (failure != null) {
+            run.saveCheckpoint();
+            System.out.println(String.format(Locale.ROOT, "%s %s: stopped%s: %s. %,d records are committed; "
+                            + "run the same import again to resume.", LABEL, codec.getName(),
+                    readError != null ? "" : " writing records " + run.failedRange, failure.getMessage(),
+                    run.committedRecords));
+            throw rethrow(failure);
+        }
+        Checkpoint.delete(input);
+        return new TransferResult(codec.getName(), true, run.committedRecords, run.inserted, resumeAt,
+                run.progress.elapsedNanos());
+    }
+
+    private void submit(ExecutorService pool, Semaphore inFlight, Run run, long seq, long lastRecord, List<T> batch)
+            throws InterruptedException {
+        inFlight.acquire();
+        long firstRecord = lastRecord - batch.size() + 1;
+        try {
+            pool.execute(() -> {
+                try {
+                    if (run.failure == null) {
+                        run.finished(seq, lastRecord, writer.write(batch));
+                    }
+                } catch (Exception e) {
+                    run.fail(e, firstRecord + "-" + lastRecord);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    private static RuntimeException rethrow(Exception e) throws IOException, SQLException, InvalidInputException,
+            InterruptedException {
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        }
+        if (e instanceof SQLException) {
+            throw (SQLException) e;
+        }
+        if (e instanceof InvalidInputException) {
+            throw (InvalidInputException) e;
+        }
+        if (e instanceof InterruptedException) {
+            throw (InterruptedException) e;
+        }
+        return (RuntimeException) e;
+    }
+
+    /**
+     * State of one run. Batches are numbered in file order; finished() parks
+     * out-of-order completions until every earlier batch is done.
+     */
+    private final class Run {
+        final Path input;
+        final String job;
+        final Progress progress;
+        private final TreeMap<Long, long[]> parked = new TreeMap<>();
+        private long nextSeq;
+        long committedRecords;
+        long inserted;
+        volatile Exception failure;
+        volatile String failedRange;
+
+        Run(Path input, String job, long committedRecords, long inserted) {
+            this.input = input;
+            this.job = job;
+            this.committedRecords = committedRecords;
+            this.inserted = inserted;
+            this.progress = new Progress(LABEL + " " + codec.getName() + ":", progressIntervalMillis, committedRecords);
+        }
+
+        synchronized void finished(long seq, long lastRecord, int batchInserted) {
+            parked.put(seq, new long[]{lastRecord, batchInserted});
+            long[] next;
+            while ((next = parked.remove(nextSeq)) != null) {
+                committedRecords = next[0];
+                inserted += next[1];
+                nextSeq++;
+            }
+            if (progress.isDue()) {
+                progress.report(committedRecords, String.format(Locale.ROOT, " committed (%,d inserted)", inserted));
+                saveCheckpoint();
+            }
+        }
+
+        synchronized void fail(Exception e, String range) {
+            if (failure == null) {
+                failedRange = range;
+                failure = e;
+            }
+        }
+
+        synchronized void saveCheckpoint() {
+            try {
+                new Checkpoint(job, committedRecords, inserted, 0, 0).save(input);
+            } catch (IOException e) {
+                System.err.println(LABEL + " Could not write checkpoint: " + e.getMessage());
+            }
+        }
+    }
+}
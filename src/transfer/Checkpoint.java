@@ -0,0 +1,82 @@
+package transfer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Progress of an import or export, kept next to its file as "&lt;file&gt;.checkpoint"
+ * and replaced atomically, so a crash leaves either the old or the new one.
+ *
+ * For an import, records is how many records from the start of the input are
+ * known to be written; for an export, records and bytes describe the part of
+ * the output already on disk and lastId the last row in it. job identifies the
+ * run (entity, format and, for imports, the input's size and modification
+ * time) so a checkpoint is never applied to a different job.
+ */
+final class Checkpoint {
+    final String job;
+    final long records;
+    final long inserted;
+    final long lastId;
+    final long bytes;
+
+    Checkpoint(String job, long records, long inserted, long lastId, long bytes) {
+        this.job = job;
+        this.records = records;
+        this.inserted = inserted;
+        this.lastId = lastId;
+        this.bytes = bytes;
+    }
+
+    static Path pathFor(Path file) {
+        return file.resolveSibling(file.getFileName() + ".checkpoint");
+    }
+
+    /**
+     * @return the checkpoint for file, or null if there is none
+     */
+    static Checkpoint load(Path file) throws IOException {
+        Path path = pathFor(file);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (Reader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(in);
+        }
+        try {
+            return new Checkpoint(properties.getProperty("job"),
+                    Long.parseLong(properties.getProperty("records")),
+                    Long.parseLong(properties.getProperty("inserted", "0")),
+                    Long.parseLong(properties.getProperty("lastId", "0")),
+                    Long.parseLong(properties.getProperty("bytes", "0")));
+        } catch (NumberFormatException | NullPointerException e) {
+            throw new IOException("Corrupt checkpoint " + path + "; delete it to start over.");
+        }
+    }
+
+    void save(Path file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("job", job);
+        properties.setProperty("records", Long.toString(records));
+        properties.setProperty("inserted", Long.toString(inserted));
+        properties.setProperty("lastId", Long.toString(lastId));
+        properties.setProperty("bytes", Long.toString(bytes));
+        Path path = pathFor(file);
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            properties.store(out, null);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static void delete(Path file) throws IOException {
+        Files.deleteIfExists(pathFor(file));
+    }
+}
@@ -0,0 +1,19 @@
+package transfer;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * File formats for bulk import and export. JSONL holds one JSON object per
+ * line; CSV has a header row naming the columns, RFC 4180 quoting, and tells
+ * an empty string ("") apart from a missing value (nothing between the commas).
+ */
+public enum Format {
+    JSONL,
+    CSV;
+
+    // Files ending in .csv are CSV, everything else JSONL.
+    public static Format forPath(Path path) {
+        return path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv") ? CSV : JSONL;
+    }
+}
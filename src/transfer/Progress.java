@@ -0,0 +1,41 @@
+package transfer;
+
+import java.util.Locale;
+
+/**
+ * Throttled progress lines for a running transfer: total so far, overall rate
+ * and the rate since the previous line.
+ */
+final class Progress {
+    private final String label;
+    private final long intervalNanos;
+    private final long startRecords;
+    private final long start = System.nanoTime();
+    private long lastReport = start;
+    private long lastRecords;
+
+    Progress(String label, long intervalMillis, long startRecords) {
+        this.label = label;
+        this.intervalNanos = intervalMillis * 1_000_000;
+        this.startRecords = startRecords;
+        this.lastRecords = startRecords;
+    }
+
+    boolean isDue() {
+        return System.nanoTime() - lastReport >= intervalNanos;
+    }
+
+    void report(long records, String detail) {
+        long now = System.nanoTime();
+        double overall = (records - startRecords) * 1e9 / Math.max(1, now - start);
+        double recent = (records - lastRecords) * 1e9 / Math.max(1, now - lastReport);
+        System.out.println(String.format(Locale.ROOT, "%s %,d records%s, %,.0f records/s (last %,.0f/s)",
+                label, records, detail, overall, recent));
+        lastReport = now;
+        lastRecords = records;
+    }
+
+    long elapsedNanos() {
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,167 @@
+package transfer;
+
+import exception.InvalidInputException;
+import model.BaseEntity;
+import model.Bot;
+import model.ChatSession;
+import model.User;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Maps one entity type to and from flat records with a fixed list of columns,
+ * named like the table columns. Values are Strings, Integers, Booleans or
+ * Timestamps; timestamps are written as ISO-8601 instants in UTC, keeping the
+ * microseconds PostgreSQL stores. Sessions carry only their bot and user ids.
+ */
+public abstract class RecordCodec<T extends BaseEntity> {
+    public static final RecordCodec<Bot> BOTS = new BotCodec();
+    public static final RecordCodec<User> USERS = new UserCodec();
+    public static final RecordCodec<ChatSession> SESSIONS = new SessionCodec();
+
+    private final String name;
+    private final String[] columns;
+
+    private RecordCodec(String name, String... columns) {
+        this.name = name;
+        this.columns = columns;
+    }
+
+    /**
+     * @return BOTS, USERS or SESSIONS for "bots", "users" or "sessions"; null for anything else
+     */
+    public static RecordCodec<?> forName(String name) {
+        switch (name) {
+            case "bots": return BOTS;
+            case "users": return USERS;
+            case "sessions": return SESSIONS;
+            default: return null;
+        }
+    }
+
+    public String getName() { return name; }
+    public String[] getColumns() { return columns.clone(); }
+
+    int columnCount() { return columns.length; }
+    String column(int index) { return columns[index]; }
+
+    // One value per column, in column order.
+    public abstract Object[] toValues(T entity);
+
+    /**
+     * @param record column name to value; JSON gives Strings, Longs and Booleans, CSV only Strings
+     */
+    public abstract T fromRecord(Map<String, Object> record) throws InvalidInputException;
+
+    private static final class BotCodec extends RecordCodec<Bot> {
+        BotCodec() {
+            super("bots", "id", "name", "greeting", "definition", "token_limit");
+        }
+
+        @Override
+        public Object[] toValues(Bot bot) {
+            return new Object[]{bot.getId(), bot.getName(), bot.getGreeting(), bot.getDefinition(), bot.getTokenLimit()};
+        }
+
+        @Override
+        public Bot fromRecord(Map<String, Object> record) throws InvalidInputException {
+            return new Bot(intValue(record, "id"), string(record, "name"), string(record, "greeting"),
+                    string(record, "definition"), intValue(record, "token_limit"));
+        }
+    }
+
+    private static final class UserCodec extends RecordCodec<User> {
+        UserCodec() {
+            super("users", "id", "name", "persona", "is_premium");
+        }
+
+        @Override
+        public Object[] toValues(User user) {
+            return new Object[]{user.getId(), user.getName(), user.getPersona(), user.isPremium()};
+        }
+
+        @Override
+        public User fromRecord(Map<String, Object> record) throws InvalidInputException {
+            return new User(intValue(record, "id"), string(record, "name"), string(record, "persona"),
+                    booleanValue(record, "is_premium"));
+        }
+    }
+
+    private static final class SessionCodec extends RecordCodec<ChatSession> {
+        SessionCodec() {
+            super("sessions", "id", "bot_id", "user_id", "started_at", "total_tokens_used");
+        }
+
+        @Override
+        public Object[] toValues(ChatSession session) {
+            Date startedAt = session.getStartedAt();
+            Timestamp timestamp = startedAt instanceof Timestamp ? (Timestamp) startedAt
+                    : startedAt == null ? null : new Timestamp(startedAt.getTime());
+            return new Object[]{session.getId(), session.getBot().getId(), session.getUser().getId(),
+                    timestamp, session.getTotalTokensUsed()};
+        }
+
+        @Override
+        public ChatSession fromRecord(Map<String, Object> record) throws InvalidInputException {
+            Bot bot = new Bot(intValue(record, "bot_id"), "Unknown", "", "", 0);
+            User user = new User(intValue(record, "user_id"), "Unknown", "", false);
+            return new ChatSession(intValue(record, "id"), bot, user, timestamp(record, "started_at"),
+                    intValue(record, "total_tokens_used"));
+        }
+    }
+
+    private static Object require(Map<String, Object> record, String column) throws InvalidInputException {
+        Object value = record.get(column);
+        if (value == null) {
+            throw new InvalidInputException("Missing value for " + column + ".");
+        }
+        return value;
+    }
+
+    private static String string(Map<String, Object> record, String column) throws InvalidInputException {
+        Object value = require(record, column);
+        if (!(value instanceof String)) {
+            throw new InvalidInputException(column + " must be a string.");
+        }
+        return (String) value;
+    }
+
+    private static int intValue(Map<String, Object> record, String column) throws InvalidInputException {
+        Object value = require(record, column);
+        try {
+            long number = value instanceof Number ? ((Number) value).longValue() : Long.parseLong(((String) value).trim());
+            if (number < Integer.MIN_VALUE || number > Integer.MAX_VALUE
+                    || (value instanceof Double && (double) number != (Double) value)) {
+                throw new NumberFormatException();
+            }
+            return (int) number;
+        } catch (NumberFormatException | ClassCastException e) {
+            throw new InvalidInputException(column + " must be an integer, got " + value + ".");
+        }
+    }
+
+    private static boolean booleanValue(Map<String, Object> record, String column) throws InvalidInputException {
+        Object value = require(record, column);
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if ("true".equals(value) || "false".equals(value)) {
+            return Boolean.parseBoolean((String) value);
+        }
+        throw new InvalidInputException(column + " must be true or false, got " + value + ".");
+    }
+
+    private static Timestamp timestamp(Map<String, Object> record, String column) throws InvalidInputException {
+        String value = string(record, column);
+        try {
+            return Timestamp.from(Instant.parse(value.trim()));
+        } catch (DateTimeParseException e) {
+            throw new InvalidInputException(column + " must be an ISO-8601 instant such as 2024-05-01T12:00:00Z, got "
+                    + value + ".");
+        }
+    }
+}
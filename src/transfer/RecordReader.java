@@ -0,0 +1,211 @@
+package transfer;
+
+import controller.http.JsonParser;
+import exception.InvalidInputException;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads records one at a time, so memory does not grow with the file. next()
+ * returns null at the end; parse errors name the line they start on.
+ */
+abstract class RecordReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    final BufferedReader in;
+    long line;
+
+    private RecordReader(BufferedReader in) {
+        this.in = in;
+    }
+
+    static RecordReader open(Path path, Format format) throws IOException, InvalidInputException {
+        BufferedReader in = new BufferedReader(
+                new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8), BUFFER_SIZE);
+        try {
+            in.mark(1);
+            if (in.read() != '\uFEFF') { // byte order mark, as spreadsheets write it
+                in.reset();
+            }
+            return format == Format.CSV ? new Csv(in) : new JsonLines(in);
+        } catch (IOException | InvalidInputException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    abstract Map<String, Object> next() throws IOException, InvalidInputException;
+
+    // Moves past one record without building it; false at the end.
+    abstract boolean skip() throws IOException, InvalidInputException;
+
+    // Line the last record returned or skipped started on, 1-based.
+    long getLine() {
+        return line;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private static final class JsonLines extends RecordReader {
+        private long lineNumber;
+
+        JsonLines(BufferedReader in) {
+            super(in);
+        }
+
+        @Override
+        Map<String, Object> next() throws IOException, InvalidInputException {
+            String text = nextLine();
+            if (text == null) {
+                return null;
+            }
+            Object value;
+            try {
+                value = JsonParser.parse(text);
+            } catch (InvalidInputException e) {
+                throw new InvalidInputException("Line " + line + ": " + e.getMessage());
+            }
+            if (!(value instanceof Map)) {
+                throw new InvalidInputException("Line " + line + ": expected a JSON object.");
+            }
+            @SuppressWarnings("unchecked")
+            Map<String, Object> record = (Map<String, Object>) value;
+            return record;
+        }
+
+        @Override
+        boolean skip() throws IOException {
+            return nextLine() != null;
+        }
+
+        private String nextLine() throws IOException {
+            String text;
+            do {
+                text = in.readLine();
+                lineNumber++;
+            } while (text != null && text.trim().isEmpty());
+            line = lineNumber;
+            return text;
+        }
+    }
+
+    private static final class Csv extends RecordReader {
+        private final String[] header;
+        private final List<String> fields = new ArrayList<>();
+        private final List<Boolean> quoted = new ArrayList<>();
+        private final StringBuilder field = new StringBuilder();
+        private long lineNumber = 1;
+
+        Csv(BufferedReader in) throws IOException, InvalidInputException {
+            super(in);
+            if (!readRow()) {
+                throw new InvalidInputException("CSV file is empty; expected a header row.");
+            }
+            header = fields.toArray(new String[0]);
+        }
+
+        @Override
+        Map<String, Object> next() throws IOException, InvalidInputException {
+            if (!readRow()) {
+                return null;
+            }
+            if (fields.size() != header.length) {
+                throw new InvalidInputException("Line " + line + ": expected " + header.length + " fields, found "
+                        + fields.size() + ".");
+            }
+            Map<String, Object> record = new HashMap<>(header.length * 2);
+            for (int i = 0; i < header.length; i++) {
+                String value = fields.get(i);
+                // An unquoted empty field is NULL; "" is the empty string.
+                record.put(header[i], value.isEmpty() && !quoted.get(i) ? null : value);
+            }
+            return record;
+        }
+
+        @Override
+        boolean skip() throws IOException, InvalidInputException {
+            return readRow();
+        }
+
+        /**
+         * Reads one row into fields, skipping blank lines. Quoted fields may
+         * contain commas, doubled quotes and line breaks.
+         */
+        private boolean readRow() throws IOException, InvalidInputException {
+            fields.clear();
+            quoted.clear();
+            int c = in.read();
+            while (c == '\n' || c == '\r') {
+                if (c == '\n') {
+                    lineNumber++;
+                }
+                c = in.read();
+            }
+            if (c == -1) {
+                return false;
+            }
+            line = lineNumber;
+            while (true) {
+                field.setLength(0);
+                boolean isQuoted = c == '"';
+                if (isQuoted) {
+                    while (true) {
+                        c = in.read();
+                        if (c == -1) {
+                            throw new InvalidInputException("Line " + line + ": unterminated quoted field.");
+                        }
+                        if (c == '"') {
+                            c = in.read();
+                            if (c != '"') {
+                                break;
+                            }
+                        } else if (c == '\n') {
+                            lineNumber++;
+                        }
+                        field.append((char) c);
+                    }
+                    if (c != ',' && c != '\n' && c != '\r' && c != -1) {
+                        throw new InvalidInputException("Line " + lineNumber + ": unexpected character after a quoted field.");
+                    }
+                } else {
+                    while (c != ',' && c != '\n' && c != '\r' && c != -1) {
+                        if (c == '"') {
+                            throw new InvalidInputException("Line " + lineNumber + ": quote inside an unquoted field.");
+                        }
+                        field.append((char) c);
+                        c = in.read();
+                    }
+                }
+                fields.add(field.toString());
+                quoted.add(isQuoted);
+                if (c == ',') {
+                    c = in.read();
+                    continue;
+                }
+                if (c == '\r') {
+                    c = in.read();
+                    if (c != '\n' && c != -1) {
+                        throw new InvalidInputException("Line " + lineNumber + ": bare carriage return.");
+                    }
+                }
+                if (c == '\n') {
+                    lineNumber++;
+                }
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package transfer;
+
+import controller.http.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+
+/**
+ * Writes records to a file channel through a buffer. sync() pushes everything
+ * written so far to disk and returns the file length, which is what a
+ * checkpoint records so a resumed export can cut the file back to it.
+ */
+abstract class RecordWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    final FileChannel channel;
+    final Writer out;
+    final RecordCodec<?> codec;
+
+    private RecordWriter(FileChannel channel, RecordCodec<?> codec) {
+        this.channel = channel;
+        this.out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8),
+                BUFFER_SIZE);
+        this.codec = codec;
+    }
+
+    /**
+     * @param channel positioned where writing should start
+     * @param header  whether to start a CSV file with its header row
+     */
+    static RecordWriter open(FileChannel channel, Format format, RecordCodec<?> codec, boolean header) throws IOException {
+        if (format == Format.CSV) {
+            Csv writer = new Csv(channel, codec);
+            if (header) {
+                writer.writeHeader();
+            }
+            return writer;
+        }
+        return new JsonLines(channel, codec);
+    }
+
+    abstract void write(Object[] values) throws IOException;
+
+    long sync() throws IOException {
+        out.flush();
+        channel.force(false);
+        return channel.position();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private static final class JsonLines extends RecordWriter {
+        private final JsonWriter json;
+
+        JsonLines(FileChannel channel, RecordCodec<?> codec) {
+            super(channel, codec);
+            this.json = new JsonWriter(out);
+        }
+
+        @Override
+        void write(Object[] values) throws IOException {
+            json.beginObject();
+            for (int i = 0; i < values.length; i++) {
+                json.name(codec.column(i));
+                Object value = values[i];
+                if (value instanceof Number) {
+                    json.value(((Number) value).longValue());
+                } else if (value instanceof Boolean) {
+                    json.value((boolean) (Boolean) value);
+                } else if (value instanceof Timestamp) {
+                    json.value(((Timestamp) value).toInstant().toString());
+                } else {
+                    json.value((String) value);
+                }
+            }
+            json.endObject();
+            out.write('\n');
+        }
+    }
+
+    private static final class Csv extends RecordWriter {
+        Csv(FileChannel channel, RecordCodec<?> codec) {
+            super(channel, codec);
+        }
+
+        void writeHeader() throws IOException {
+            for (int i = 0; i < codec.columnCount(); i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                out.write(codec.column(i));
+            }
+            out.write("\r\n");
+        }
+
+        @Override
+        void write(Object[] values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                Object value = values[i];
+                if (value instanceof String) {
+                    writeQuoted((String) value);
+                } else if (value instanceof Timestamp) {
+                    out.write(((Timestamp) value).toInstant().toString());
+                } else if (value != null) {
+                    out.write(value.toString());
+                }
+            }
+            out.write("\r\n");
+        }
+
+        // Strings are always quoted, so an empty string ("") stays distinct from NULL.
+        private void writeQuoted(String value) throws IOException {
+            out.write('"');
+            int start = 0;
+            for (int i = value.indexOf('"'); i >= 0; i = value.indexOf('"', start)) {
+                out.write(value, start, i + 1 - start);
+                out.write('"');
+                start = i + 1;
+            }
+            out.write(value, start, value.length() - start);
+            out.write('"');
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package transfer;
+
+import java.util.Locale;
+
+/**
+ * Outcome of a finished import or export. Counts cover the whole job, including
+ * the part done before a resume; elapsed time and throughput cover this run.
+ */
+public final class TransferResult {
+    private final String entity;
+    private final long records;
+    private final long inserted;
+    private final long resumedFrom;
+    private final long elapsedNanos;
+    private final boolean isImport;
+
+    TransferResult(String entity, boolean isImport, long records, long inserted, long resumedFrom, long elapsedNanos) {
+        this.entity = entity;
+        this.isImport = isImport;
+        this.records = records;
+        this.inserted = inserted;
+        this.resumedFrom = resumedFrom;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public String getEntity() { return entity; }
+    public long getRecords() { return records; }
+    // Imports only: rows written; records minus inserted already existed with the same values.
+    public long getInserted() { return inserted; }
+    public long getResumedFrom() { return resumedFrom; }
+    public long getElapsedMillis() { return elapsedNanos / 1_000_000; }
+
+    public double getRecordsPerSecond() {
+        return elapsedNanos == 0 ? 0 : (records - resumedFrom) * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%s: %,d records", entity, records));
+        if (isImport) {
+            sb.append(String.format(Locale.ROOT, ", %,d inserted, %,d already present and identical", inserted, records - inserted));
+        }
+        if (resumedFrom > 0) {
+            sb.append(String.format(Locale.ROOT, " (resumed at record %,d)", resumedFrom));
+        }
+        sb.append(String.format(Locale.ROOT, " in %,d ms, %,.0f records/s", getElapsedMillis(), getRecordsPerSecond()));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,51 @@
+package utils;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * CompletableFuture.supplyAsync cannot run checked-exception code and ignores
+ * cancel(true). supply() fixes both: the task may throw anything, and when the
+ * returned future is cancelled or times out before the task finished, the
+ * worker thread is interrupted so a blocked JDBC call can give up.
+ */
+public final class AsyncTasks {
+
+    private AsyncTasks() {
+    }
+
+    public static <T> CompletableFuture<T> supply(ExecutorService executor, Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> running = executor.submit(() -> {
+            if (result.isDone()) {
+                return;
+            }
+            try {
+                result.complete(task.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        result.whenComplete((value, error) -> {
+            if (error != null) {
+                running.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns the exception a caller should see, unwrapping the CompletionException
+     * and ExecutionException layers added by joins and dependent stages.
+     */
+    public static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+}
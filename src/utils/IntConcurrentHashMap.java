@@ -0,0 +1,368 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Concurrent map from primitive int keys to values, so integer ids are never
+ * boxed. The key space is split into segments, each an open-addressing table
+ * (linear probing, tombstones) guarded by a StampedLock: reads are optimistic
+ * and only fall back to the read lock when they raced with a write to the
+ * same segment, writes lock one segment.
+ *
+ * Null values are not allowed. Iteration (forEach, keys, values) is weakly
+ * consistent: each segment is visited under its read lock, one at a time.
+ */
+public class IntConcurrentHashMap<V> {
+    private static final Object TOMBSTONE = new Object();
+    private static final int MIN_SEGMENT_CAPACITY = 16;
+
+    @FunctionalInterface
+    public interface IntObjConsumer<V> {
+        void accept(int key, V value);
+    }
+
+    private final Segment<V>[] segments;
+    private final int segmentShift;
+
+    public IntConcurrentHashMap() {
+        this(64, 1024);
+    }
+
+    /**
+     * @param concurrency number of segments, rounded up to a power of two
+     * @param expectedSize initial capacity hint for the whole map
+     */
+    public IntConcurrentHashMap(int concurrency, int expectedSize) {
+        int segmentCount = Integer.highestOneBit(Math.max(1, concurrency - 1) << 1);
+        this.segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+        this.segments = newSegments(segmentCount);
+        int perSegment = tableSizeFor(Math.max(MIN_SEGMENT_CAPACITY, expectedSize / segmentCount * 2));
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<>(perSegment);
+        }
+    }
+
+    public V get(int key) {
+        int hash = mix(key);
+        return segmentFor(hash).get(key, hash);
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return the previous value, or null
+     */
+    public V put(int key, V value) {
+        int hash = mix(key);
+        return segmentFor(hash).put(key, hash, requireValue(value), false);
+    }
+
+    /**
+     * @return the existing value if the key was present (nothing is stored then), or null
+     */
+    public V putIfAbsent(int key, V value) {
+        int hash = mix(key);
+        return segmentFor(hash).put(key, hash, requireValue(value), true);
+    }
+
+    /**
+     * Replaces the value only if the key currently maps to expected (compared by identity).
+     */
+    public boolean replace(int key, V expected, V value) {
+        int hash = mix(key);
+        return segmentFor(hash).replace(key, hash, expected, requireValue(value));
+    }
+
+    /**
+     * @return the removed value, or null if the key was absent
+     */
+    public V remove(int key) {
+        int hash = mix(key);
+        return segmentFor(hash).remove(key, hash);
+    }
+
+    public int size() {
+        long total = 0;
+        for (Segment<V> segment : segments) {
+            total += segment.size;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, total);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void clear() {
+        for (Segment<V> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public void forEach(IntObjConsumer<? super V> action) {
+        for (Segment<V> segment : segments) {
+            segment.forEach(action);
+        }
+    }
+
+    public List<V> values() {
+        List<V> values = new ArrayList<>(size());
+        forEach((key, value) -> values.add(value));
+        return values;
+    }
+
+    /**
+     * @return the keys in ascending order
+     */
+    public int[] sortedKeys() {
+        int[][] parts = new int[segments.length][];
+        int total = 0;
+        for (int i = 0; i < segments.length; i++) {
+            parts[i] = segments[i].keys();
+            total += parts[i].length;
+        }
+        int[] keys = new int[total];
+        int offset = 0;
+        for (int[] part : parts) {
+            System.arraycopy(part, 0, keys, offset, part.length);
+            offset += part.length;
+        }
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    private Segment<V> segmentFor(int hash) {
+        return segments[segmentShift == 32 ? 0 : hash >>> segmentShift];
+    }
+
+    private static <V> V requireValue(V value) {
+        if (value == null) {
+            throw new NullPointerException("IntConcurrentHashMap does not allow null values.");
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> Segment<V>[] newSegments(int count) {
+        return (Segment<V>[]) new Segment<?>[count];
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSizeFor(int n) {
+        return Integer.highestOneBit(Math.max(MIN_SEGMENT_CAPACITY, n - 1) << 1);
+    }
+
+    private static final class Segment<V> {
+        private final StampedLock lock = new StampedLock();
+        private int[] keys;
+        private Object[] values;
+        private volatile int size;
+        private int used; // live entries plus tombstones
+
+        private Segment(int capacity) {
+            keys = new int[capacity];
+            values = new Object[capacity];
+        }
+
+        @SuppressWarnings("unchecked")
+        V get(int key, int hash) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                Object value = find(keys, values, key, hash);
+                if (lock.validate(stamp)) {
+                    return (V) value;
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                return (V) find(keys, values, key, hash);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        // Probes a possibly stale table snapshot; callers validate the stamp before trusting the result.
+        private Object find(int[] keys, Object[] values, int key, int hash) {
+            if (keys.length != values.length) {
+                return null; // arrays from two different generations; validation will fail
+            }
+            int mask = values.length - 1;
+            for (int i = hash & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+                Object value = values[i];
+                if (value == null) {
+                    return null;
+                }
+                if (value != TOMBSTONE && keys[i] == key) {
+                    return value;
+                }
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        V put(int key, int hash, V value, boolean onlyIfAbsent) {
+            long stamp = lock.writeLock();
+            try {
+                int mask = values.length - 1;
+                int firstTombstone = -1;
+                int i = hash & mask;
+                while (true) {
+                    Object existing = values[i];
+                    if (existing == null) {
+                        break;
+                    }
+                    if (existing == TOMBSTONE) {
+                        if (firstTombstone < 0) {
+                            firstTombstone = i;
+                        }
+                    } else if (keys[i] == key) {
+                        if (!onlyIfAbsent) {
+                            values[i] = value;
+                        }
+                        return (V) existing;
+                    }
+                    i = (i + 1) & mask;
+                }
+                if (firstTombstone >= 0) {
+                    i = firstTombstone;
+                } else {
+                    used++;
+                }
+                keys[i] = key;
+                values[i] = value;
+                size++;
+                if (used * 4 > values.length * 3) {
+                    rehash();
+                }
+                return null;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        boolean replace(int key, int hash, Object expected, V value) {
+            long stamp = lock.writeLock();
+            try {
+                int slot = slotOf(key, hash);
+                if (slot < 0 || values[slot] != expected) {
+                    return false;
+                }
+                values[slot] = value;
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        V remove(int key, int hash) {
+            long stamp = lock.writeLock();
+            try {
+                int slot = slotOf(key, hash);
+                if (slot < 0) {
+                    return null;
+                }
+                Object removed = values[slot];
+                values[slot] = TOMBSTONE;
+                size--;
+                return (V) removed;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        void clear() {
+            long stamp = lock.writeLock();
+            try {
+                keys = new int[MIN_SEGMENT_CAPACITY];
+                values = new Object[MIN_SEGMENT_CAPACITY];
+                size = 0;
+                used = 0;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void forEach(IntObjConsumer<? super V> action) {
+            int[] keySnapshot;
+            Object[] valueSnapshot;
+            long stamp = lock.readLock();
+            try {
+                keySnapshot = keys.clone();
+                valueSnapshot = values.clone();
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            // The callback runs outside the lock so it may write to the map.
+            for (int i = 0; i < valueSnapshot.length; i++) {
+                Object value = valueSnapshot[i];
+                if (value != null && value != TOMBSTONE) {
+                    action.accept(keySnapshot[i], (V) value);
+                }
+            }
+        }
+
+        int[] keys() {
+            long stamp = lock.readLock();
+            try {
+                int[] live = new int[size];
+                int n = 0;
+                for (int i = 0; i < values.length; i++) {
+                    if (values[i] != null && values[i] != TOMBSTONE) {
+                        live[n++] = keys[i];
+                    }
+                }
+                return live;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        private int slotOf(int key, int hash) {
+            int mask = values.length - 1;
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                Object value = values[i];
+                if (value == null) {
+                    return -1;
+                }
+                if (value != TOMBSTONE && keys[i] == key) {
+                    return i;
+                }
+            }
+        }
+
+        // Grows when mostly live entries, otherwise rebuilds at the same size to drop tombstones.
+        private void rehash() {
+            int capacity = size * 2 > values.length ? values.length * 2 : values.length;
+            int[] oldKeys = keys;
+            Object[] oldValues = values;
+            int[] newKeys = new int[capacity];
+            Object[] newValues = new Object[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < oldValues.length; i++) {
+                Object value = oldValues[i];
+                if (value != null && value != TOMBSTONE) {
+                    int j = mix(oldKeys[i]) & mask;
+                    while (newValues[j] != null) {
+                        j = (j + 1) & mask;
+                    }
+                    newKeys[j] = oldKeys[i];
+                    newValues[j] = value;
+                }
+            }
+            keys = newKeys;
+            values = newValues;
+            used = size;
+        }
+    }
+}
@@ -8,11 +8,9 @@ public class SortingUtils {
 
     public static void sortBotsByTokenLimit(List<Bot> bots) {
         bots.sort((b1, b2) -> Integer.compare(b1.getTokenLimit(), b2.getTokenLimit()));
-        System.out.println(">> Sorted bots by Token Limit (Ascending).");
     }
 
     public static void sortBotsByName(List<Bot> bots) {
         bots.sort((b1, b2) -> b1.getName().compareToIgnoreCase(b2.getName()));
-        System.out.println(">> Sorted bots by Name.");
     }
 }
\ No newline at end of file
@@ -0,0 +1,66 @@
+package utils;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Deduplicates equal strings (bot definitions, greetings, personas, prompts) so
+ * thousands of loaded copies of the same entity share one char array.
+ * Entries are weak: a string leaves the pool once nothing else references it.
+ * The pool is split into stripes to keep lock contention low.
+ */
+public final class StringPool {
+    private static final int STRIPES = 16;
+
+    private static final Map<String, WeakReference<String>>[] POOLS = newPools(STRIPES);
+    private static volatile boolean enabled = !"false".equalsIgnoreCase(System.getProperty("stringpool.enabled"));
+
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            POOLS[i] = new WeakHashMap<>();
+        }
+    }
+
+    private StringPool() {
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, WeakReference<String>>[] newPools(int count) {
+        return (Map<String, WeakReference<String>>[]) new Map<?, ?>[count];
+    }
+
+    public static String intern(String value) {
+        if (value == null || !enabled) {
+            return value;
+        }
+        if (value.isEmpty()) {
+            return "";
+        }
+        int hash = value.hashCode();
+        Map<String, WeakReference<String>> pool = POOLS[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+        synchronized (pool) {
+            WeakReference<String> ref = pool.get(value);
+            String pooled = ref == null ? null : ref.get();
+            if (pooled != null) {
+                return pooled;
+            }
+            pool.put(value, new WeakReference<>(value));
+            return value;
+        }
+    }
+
+    public static void setEnabled(boolean enabled) {
+        StringPool.enabled = enabled;
+    }
+
+    public static int size() {
+        int size = 0;
+        for (Map<String, WeakReference<String>> pool : POOLS) {
+            synchronized (pool) {
+                size += pool.size();
+            }
+        }
+        return size;
+    }
+}